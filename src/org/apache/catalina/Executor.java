@@ -0,0 +1,26 @@
+package org.apache.catalina;
+
+
+/**
+ * An <b>Executor</b> is a named pool of threads which runs the work handed
+ * to it by one or more <code>Connectors</code>, so that several connectors
+ * of a <code>Service</code> can share a single thread budget.  When the
+ * executor cannot accept more work, <code>execute()</code> throws a
+ * <code>java.util.concurrent.RejectedExecutionException</code>, and the
+ * caller is expected to refuse the request.
+ */
+
+public interface Executor extends java.util.concurrent.Executor, Lifecycle {
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the name of this Executor, which is used by the connectors to
+	 * refer to it.
+	 */
+	public String getName();
+
+
+}
@@ -172,6 +172,55 @@ public final class Globals {
 			"javax.servlet.include.request_uri";
 
 
+	/**
+	 * The request attribute under which a connector which compresses its
+	 * responses stores its rules (as an object of type
+	 * <code>org.apache.catalina.util.CompressionPolicy</code>), so that a
+	 * servlet can send content it has compressed beforehand.  A response
+	 * which has a <code>Content-Encoding</code> header is never compressed
+	 * again by the connector.
+	 */
+	public static final String COMPRESSION_POLICY_ATTR =
+			"org.apache.catalina.compression.policy";
+
+
+	/**
+	 * The request attribute under which a servlet asks the connector to
+	 * send the content of a file (as an object of type String, the absolute
+	 * path of the file) after <code>service()</code> has returned, instead of
+	 * writing it to the response.  The content length must have been set,
+	 * and nothing written to the response.
+	 */
+	public static final String SENDFILE_FILENAME_ATTR =
+			"org.apache.catalina.sendfile.filename";
+
+
+	/**
+	 * The request attribute under which a servlet stores the offset of the
+	 * first byte of the file to send (as an object of type Long).
+	 */
+	public static final String SENDFILE_FILE_START_ATTR =
+			"org.apache.catalina.sendfile.start";
+
+
+	/**
+	 * The request attribute under which a servlet stores the offset of the
+	 * byte following the last byte of the file to send (as an object of
+	 * type Long).
+	 */
+	public static final String SENDFILE_FILE_END_ATTR =
+			"org.apache.catalina.sendfile.end";
+
+
+	/**
+	 * The request attribute which a connector sets to
+	 * <code>Boolean.TRUE</code> when it honors the
+	 * <code>SENDFILE_FILENAME_ATTR</code> attribute.
+	 */
+	public static final String SENDFILE_SUPPORTED_ATTR =
+			"org.apache.catalina.sendfile.support";
+
+
 	/**
 	 * The request attribute under which we forward a servlet name to
 	 * an error page.
@@ -164,6 +164,38 @@ public interface Service {
 	 */
 	public void removeConnector(Connector connector);
 
+	/**
+	 * Add a named Executor which the Connectors of this Service may share.
+	 *
+	 * @param executor The Executor to be added
+	 */
+	public void addExecutor(Executor executor);
+
+
+	/**
+	 * Find and return the set of Executors associated with this Service.
+	 */
+	public Executor[] findExecutors();
+
+
+	/**
+	 * Return the Executor with the specified name, or <code>null</code> if
+	 * there is none.
+	 *
+	 * @param name Name of the requested Executor
+	 */
+	public Executor getExecutor(String name);
+
+
+	/**
+	 * Remove the specified Executor from the set associated with this
+	 * Service.
+	 *
+	 * @param executor The Executor to be removed
+	 */
+	public void removeExecutor(Executor executor);
+
+
 	/**
 	 * Invoke a pre-startup initialization. This is used to allow connectors
 	 * to bind to restricted ports under Unix operating environments.
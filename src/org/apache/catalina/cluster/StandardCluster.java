@@ -76,6 +76,7 @@ import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Logger;
+import org.apache.catalina.util.BackgroundScheduler;
 import org.apache.catalina.util.LifecycleSupport;
 import org.apache.catalina.util.StringManager;
 
@@ -97,11 +98,6 @@ public final class StandardCluster
 	 */
 	private static final String info = "StandardCluster/1.0";
 
-	/**
-	 * Name to register for the background thread.
-	 */
-	private String threadName = "StandardCluster";
-
 	/**
 	 * Name for logging purpose
 	 */
@@ -123,14 +119,10 @@ public final class StandardCluster
 	private Vector clusterMembers = new Vector();
 
 	/**
-	 * The background thread.
+	 * The periodic processing of the received data, while this Cluster is
+	 * started.
 	 */
-	private Thread thread = null;
-
-	/**
-	 * The background thread completion semaphore.
-	 */
-	private boolean threadDone = false;
+	private BackgroundScheduler.Task backgroundTask = null;
 
 	/**
 	 * The cluster name to join
@@ -335,6 +327,8 @@ public final class StandardCluster
 	public void setCheckInterval(int checkInterval) {
 		int oldCheckInterval = this.checkInterval;
 		this.checkInterval = checkInterval;
+		if (backgroundTask != null)
+			backgroundTask.setInterval(checkInterval * 1000L);
 		support.firePropertyChange("checkInterval",
 				oldCheckInterval,
 				this.checkInterval);
@@ -538,8 +532,10 @@ public final class StandardCluster
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
 
-		// Start the background reaper thread
-		threadStart();
+		// Start processing the received data periodically
+		backgroundTask = BackgroundScheduler.getScheduler(container).schedule
+				("StandardCluster[" + getClusterName() + "]", this,
+						checkInterval * 1000L, container);
 	}
 
 	/**
@@ -570,64 +566,20 @@ public final class StandardCluster
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		started = false;
 
-		// Stop the background reaper thread
-		threadStop();
+		// Stop processing the received data periodically
+		if (backgroundTask != null) {
+			backgroundTask.cancel();
+			backgroundTask = null;
+		}
 	}
 
 	// ------------------------------------------------------ Background Thread
 
 	/**
-	 * The background thread.
+	 * Process the data received from the other members of the Cluster.
+	 * This is run periodically by the background scheduler of our Engine.
 	 */
 	public void run() {
-		// Loop until the termination semaphore is set
-		while (!threadDone) {
-			processReceive();
-			threadSleep();
-		}
-	}
-
-	/**
-	 * Sleep for the duration specified by the <code>checkInterval</code>
-	 * property.
-	 */
-	private void threadSleep() {
-		try {
-			Thread.sleep(checkInterval * 1000L);
-		} catch (InterruptedException e) {
-			;
-		}
-	}
-
-	/**
-	 * Start the background thread.
-	 */
-	private void threadStart() {
-		if (thread != null)
-			return;
-
-		threadDone = false;
-		threadName = "StandardCluster[" + getClusterName() + "]";
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.start();
-	}
-
-	/**
-	 * Stop the background thread.
-	 */
-	private void threadStop() {
-		if (thread == null)
-			return;
-
-		threadDone = true;
-		thread.interrupt();
-		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			;
-		}
-
-		thread = null;
+		processReceive();
 	}
 }
@@ -73,4 +73,10 @@ public final class Constants {
 
 	public static final String Package = "org.apache.catalina.connector";
 
+	/**
+	 * Maximum number of header value lists kept by a request or a response
+	 * to be reused by the next one.
+	 */
+	public static final int MAX_SPARE_VALUES = 32;
+
 }
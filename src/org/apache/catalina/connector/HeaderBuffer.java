@@ -0,0 +1,230 @@
+package org.apache.catalina.connector;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+
+/**
+ * Reusable byte buffer in which the status line and the headers of a
+ * response are serialized, so that they reach the socket stream in a single
+ * write instead of going through a <code>PrintWriter</code> and its
+ * encoder.  Values made of US-ASCII characters, which is nearly always the
+ * case, are copied without any allocation.  The bytes of the values written
+ * with <code>writeCached()</code> are remembered, so that a value which is
+ * the same String instance from one response to the next, like the
+ * <code>Server</code> header or the <code>Date</code> header within a given
+ * second, is only encoded once.
+ * <p>
+ * Instances are not thread safe, and belong to a single response object.
+ */
+
+final class HeaderBuffer {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The buffer.
+	 */
+	private byte[] buf = new byte[512];
+
+
+	/**
+	 * Number of bytes in the buffer.
+	 */
+	private int count = 0;
+
+
+	/**
+	 * Values whose bytes are remembered.
+	 */
+	private String[] cachedValues = new String[CACHE_SIZE];
+
+
+	/**
+	 * Encoded bytes of the remembered values.
+	 */
+	private byte[][] cachedBytes = new byte[CACHE_SIZE][];
+
+
+	/**
+	 * Slot of the next value to remember.
+	 */
+	private int cacheNext = 0;
+
+
+	/**
+	 * Number of values whose bytes are remembered.
+	 */
+	private static final int CACHE_SIZE = 16;
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Discard the content of this buffer.
+	 */
+	public void reset() {
+
+		count = 0;
+
+	}
+
+
+	/**
+	 * Append the specified bytes.
+	 *
+	 * @param b The bytes
+	 */
+	public void write(byte[] b) {
+
+		ensureCapacity(b.length);
+		System.arraycopy(b, 0, buf, count, b.length);
+		count += b.length;
+
+	}
+
+
+	/**
+	 * Append the decimal representation of the specified number.
+	 *
+	 * @param n The number
+	 */
+	public void write(long n) {
+
+		if (n < 0) {
+			ensureCapacity(1);
+			buf[count++] = (byte) '-';
+			n = -n;
+		}
+		int digits = 1;
+		for (long m = n / 10; m > 0; m /= 10)
+			digits++;
+		ensureCapacity(digits);
+		for (int i = count + digits - 1; i >= count; i--) {
+			buf[i] = (byte) ('0' + (n % 10));
+			n /= 10;
+		}
+		count += digits;
+
+	}
+
+
+	/**
+	 * Append the specified String.  Characters outside of US-ASCII are
+	 * encoded with the specified character encoding.
+	 *
+	 * @param s        The String
+	 * @param encoding Character encoding of the non US-ASCII characters
+	 */
+	public void write(String s, String encoding) {
+
+		if (s == null)
+			s = "null";
+		int len = s.length();
+		ensureCapacity(len);
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				write(encode(s, encoding));
+				return;
+			}
+		}
+		for (int i = 0; i < len; i++)
+			buf[count++] = (byte) s.charAt(i);
+
+	}
+
+
+	/**
+	 * Append the specified String, reusing its bytes if the very same
+	 * String instance has recently been written with this method.  This is
+	 * only worth it for Strings shared from one response to the next, as
+	 * any other String takes the slot of a remembered one.
+	 *
+	 * @param s        The String
+	 * @param encoding Character encoding of the non US-ASCII characters
+	 */
+	public void writeCached(String s, String encoding) {
+
+		if (s == null)
+			s = "null";
+		for (int i = 0; i < CACHE_SIZE; i++) {
+			if (cachedValues[i] == s) {
+				write(cachedBytes[i]);
+				return;
+			}
+		}
+		byte[] bytes = encode(s, encoding);
+		cachedValues[cacheNext] = s;
+		cachedBytes[cacheNext] = bytes;
+		cacheNext = (cacheNext + 1) % CACHE_SIZE;
+		write(bytes);
+
+	}
+
+
+	/**
+	 * Write the content of this buffer to the specified stream, in a single
+	 * call, and discard it.
+	 *
+	 * @param os The stream
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void writeTo(OutputStream os) throws IOException {
+
+		try {
+			os.write(buf, 0, count);
+		} finally {
+			count = 0;
+		}
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Return the bytes of the specified String.
+	 */
+	private static byte[] encode(String s, String encoding) {
+
+		int len = s.length();
+		boolean ascii = true;
+		for (int i = 0; ascii && (i < len); i++)
+			ascii = (s.charAt(i) < 0x80);
+		if (ascii) {
+			byte[] bytes = new byte[len];
+			for (int i = 0; i < len; i++)
+				bytes[i] = (byte) s.charAt(i);
+			return (bytes);
+		}
+		try {
+			return (s.getBytes(encoding));
+		} catch (UnsupportedEncodingException e) {
+			return (s.getBytes());
+		}
+
+	}
+
+
+	/**
+	 * Make room for the specified number of bytes.
+	 */
+	private void ensureCapacity(int len) {
+
+		if (count + len <= buf.length)
+			return;
+		byte[] newBuf = new byte[Math.max(buf.length * 2, count + len)];
+		System.arraycopy(buf, 0, newBuf, 0, count);
+		buf = newBuf;
+
+	}
+
+
+}
@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import javax.servlet.RequestDispatcher;
@@ -115,6 +116,12 @@ public class HttpRequestBase
 	protected HashMap headers = new HashMap();
 
 
+	/**
+	 * Value lists of the headers of previous requests, kept to be reused.
+	 */
+	private ArrayList spareValues = new ArrayList();
+
+
 	/**
 	 * Descriptive information about this HttpRequest implementation.
 	 */
@@ -270,7 +277,7 @@ public class HttpRequestBase
 		synchronized (headers) {
 			ArrayList values = (ArrayList) headers.get(name);
 			if (values == null) {
-				values = new ArrayList();
+				values = createValues();
 				headers.put(name, values);
 			}
 			values.add(value);
@@ -313,7 +320,7 @@ public class HttpRequestBase
 	 */
 	public void clearHeaders() {
 
-		headers.clear();
+		releaseHeaders();
 
 	}
 
@@ -353,7 +360,7 @@ public class HttpRequestBase
 		authType = null;
 		contextPath = "";
 		cookies.clear();
-		headers.clear();
+		releaseHeaders();
 		method = null;
 		if (parameters != null) {
 			parameters.setLocked(false);
@@ -638,6 +645,42 @@ public class HttpRequestBase
 	}
 
 
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Return an empty list for the values of a header, reusing one left
+	 * over by a previous request if possible.
+	 */
+	private ArrayList createValues() {
+
+		int n = spareValues.size();
+		if (n > 0)
+			return ((ArrayList) spareValues.remove(n - 1));
+		return (new ArrayList());
+
+	}
+
+
+	/**
+	 * Remove all the headers, and keep their value lists to be reused.
+	 */
+	private void releaseHeaders() {
+
+		synchronized (headers) {
+			Iterator lists = headers.values().iterator();
+			while (lists.hasNext()
+					&& (spareValues.size() < Constants.MAX_SPARE_VALUES)) {
+				ArrayList values = (ArrayList) lists.next();
+				values.clear();
+				spareValues.add(values);
+			}
+			headers.clear();
+		}
+
+	}
+
+
 	// ------------------------------------------------- ServletRequest Methods
 
 
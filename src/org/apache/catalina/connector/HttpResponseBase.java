@@ -2,9 +2,7 @@ package org.apache.catalina.connector;
 
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 // import java.net.URL;
 import java.security.AccessController;
@@ -93,6 +91,12 @@ public class HttpResponseBase
 	protected HttpResponseFacade facade = new HttpResponseFacade(this);
 
 
+	/**
+	 * The buffer in which the status line and the headers are serialized.
+	 */
+	private final HeaderBuffer headerBuffer = new HeaderBuffer();
+
+
 	/**
 	 * The HTTP headers explicitly added via addHeader(), but not including
 	 * those to be added with setContentLength(), setContentType(), and so on.
@@ -102,6 +106,12 @@ public class HttpResponseBase
 	protected HashMap headers = new HashMap();
 
 
+	/**
+	 * Value lists of the headers of previous responses, kept to be reused.
+	 */
+	private ArrayList spareValues = new ArrayList();
+
+
 	/**
 	 * Descriptive information about this HttpResponse implementation.
 	 */
@@ -127,6 +137,18 @@ public class HttpResponseBase
 	protected static final TimeZone zone = TimeZone.getTimeZone("GMT");
 
 
+	/**
+	 * Pre-encoded fragments of the status line and the headers.
+	 */
+	private static final byte[] COLON = {(byte) ':', (byte) ' '};
+	private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes();
+	private static final byte[] CONTENT_TYPE = "Content-Type: ".getBytes();
+	private static final byte[] CRLF = {(byte) '\r', (byte) '\n'};
+	private static final byte[] HTTP_1_0 = "HTTP/1.0".getBytes();
+	private static final byte[] HTTP_1_1 = "HTTP/1.1".getBytes();
+	private static final byte[] SPACE = {(byte) ' '};
+
+
 	// ------------------------------------------------------------- Properties
 
 
@@ -289,7 +311,7 @@ public class HttpResponseBase
 
 		super.recycle();
 		cookies.clear();
-		headers.clear();
+		releaseHeaders();
 		message = getStatusMessage(HttpServletResponse.SC_OK);
 		status = HttpServletResponse.SC_OK;
 
@@ -527,37 +549,37 @@ public class HttpResponseBase
 			return;
 		}
 
-		// Prepare a suitable output writer
-		OutputStreamWriter osr = null;
-		try {
-			osr = new OutputStreamWriter(getStream(), getCharacterEncoding());
-		} catch (UnsupportedEncodingException e) {
-			osr = new OutputStreamWriter(getStream());
-		}
-		final PrintWriter outputWriter = new PrintWriter(osr);
+		// Serialize the status line and the headers
+		String encoding = getCharacterEncoding();
+		HeaderBuffer buffer = headerBuffer;
+		buffer.reset();
 
 		// Send the "Status:" header
-		outputWriter.print(this.getProtocol());
-		outputWriter.print(" ");
-		outputWriter.print(status);
+		String protocol = this.getProtocol();
+		if ("HTTP/1.1".equals(protocol))
+			buffer.write(HTTP_1_1);
+		else if ("HTTP/1.0".equals(protocol))
+			buffer.write(HTTP_1_0);
+		else
+			buffer.write(protocol, encoding);
+		buffer.write(SPACE);
+		buffer.write(status);
 		if (message != null) {
-			outputWriter.print(" ");
-			outputWriter.print(message);
+			buffer.write(SPACE);
+			buffer.write(message, encoding);
 		}
-		outputWriter.print("\r\n");
-		// System.out.println("sendHeaders: " +
-		//                    request.getRequest().getProtocol() +
-		//                    " " + status + " " + message);
+		buffer.write(CRLF);
 
 		// Send the content-length and content-type headers (if any)
 		if (getContentType() != null) {
-			outputWriter.print("Content-Type: " + getContentType() + "\r\n");
-			// System.out.println(" Content-Type: " + getContentType());
+			buffer.write(CONTENT_TYPE);
+			buffer.write(getContentType(), encoding);
+			buffer.write(CRLF);
 		}
 		if (getContentLength() >= 0) {
-			outputWriter.print("Content-Length: " + getContentLength() +
-					"\r\n");
-			// System.out.println(" Content-Length: " + getContentLength());
+			buffer.write(CONTENT_LENGTH);
+			buffer.write(getContentLength());
+			buffer.write(CRLF);
 		}
 
 		// Send all specified headers (if any)
@@ -566,14 +588,23 @@ public class HttpResponseBase
 			while (names.hasNext()) {
 				String name = (String) names.next();
 				ArrayList values = (ArrayList) headers.get(name);
+				// The names and values of these headers are usually shared
+				// Strings, unlike those set by the application
+				boolean cached = "Server".equalsIgnoreCase(name)
+						|| "Date".equalsIgnoreCase(name);
 				Iterator items = values.iterator();
 				while (items.hasNext()) {
 					String value = (String) items.next();
-					outputWriter.print(name);
-					outputWriter.print(": ");
-					outputWriter.print(value);
-					outputWriter.print("\r\n");
-					// System.out.println(" " + name + ": " + value);
+					if (cached) {
+						buffer.writeCached(name, encoding);
+						buffer.write(COLON);
+						buffer.writeCached(value, encoding);
+					} else {
+						buffer.write(name, encoding);
+						buffer.write(COLON);
+						buffer.write(value, encoding);
+					}
+					buffer.write(CRLF);
 				}
 			}
 		}
@@ -605,21 +636,20 @@ public class HttpResponseBase
 			Iterator items = cookies.iterator();
 			while (items.hasNext()) {
 				Cookie cookie = (Cookie) items.next();
-				outputWriter.print(CookieTools.getCookieHeaderName(cookie));
-				outputWriter.print(": ");
-				outputWriter.print(CookieTools.getCookieHeaderValue(cookie));
-				outputWriter.print("\r\n");
-				//System.out.println(" " +
-				//                   CookieTools.getCookieHeaderName(cookie) +
-				//                   ": " +
-				//                  CookieTools.getCookieHeaderValue(cookie));
+				// The header name is one of two constant Strings
+				buffer.writeCached
+						(CookieTools.getCookieHeaderName(cookie), encoding);
+				buffer.write(COLON);
+				buffer.write(CookieTools.getCookieHeaderValue(cookie), encoding);
+				buffer.write(CRLF);
 			}
 		}
 
-		// Send a terminating blank line to mark the end of the headers
-		outputWriter.print("\r\n");
-		outputWriter.flush();
-		// System.out.println("----------");
+		// Send a terminating blank line to mark the end of the headers,
+		// and hand everything to the stream in a single write
+		buffer.write(CRLF);
+		buffer.writeTo(getStream());
+		getStream().flush();
 
 		// The response is now committed
 		committed = true;
@@ -698,6 +728,42 @@ public class HttpResponseBase
 	}
 
 
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Return an empty list for the values of a header, reusing one left
+	 * over by a previous response if possible.
+	 */
+	private ArrayList createValues() {
+
+		int n = spareValues.size();
+		if (n > 0)
+			return ((ArrayList) spareValues.remove(n - 1));
+		return (new ArrayList());
+
+	}
+
+
+	/**
+	 * Remove all the headers, and keep their value lists to be reused.
+	 */
+	private void releaseHeaders() {
+
+		synchronized (headers) {
+			Iterator lists = headers.values().iterator();
+			while (lists.hasNext()
+					&& (spareValues.size() < Constants.MAX_SPARE_VALUES)) {
+				ArrayList values = (ArrayList) lists.next();
+				values.clear();
+				spareValues.add(values);
+			}
+			headers.clear();
+		}
+
+	}
+
+
 	// ------------------------------------------------ ServletResponse Methods
 
 
@@ -746,7 +812,7 @@ public class HttpResponseBase
 
 		super.reset();
 		cookies.clear();
-		headers.clear();
+		releaseHeaders();
 		message = null;
 		status = HttpServletResponse.SC_OK;
 
@@ -878,7 +944,7 @@ public class HttpResponseBase
 		synchronized (headers) {
 			ArrayList values = (ArrayList) headers.get(name);
 			if (values == null) {
-				values = new ArrayList();
+				values = createValues();
 				headers.put(name, values);
 			}
 			values.add(value);
@@ -1112,10 +1178,15 @@ public class HttpResponseBase
 		if (included)
 			return;     // Ignore any call from an included servlet
 
-		ArrayList values = new ArrayList();
-		values.add(value);
 		synchronized (headers) {
-			headers.put(name, values);
+			ArrayList values = (ArrayList) headers.get(name);
+			if (values == null) {
+				values = createValues();
+				headers.put(name, values);
+			} else {
+				values.clear();
+			}
+			values.add(value);
 		}
 
 		String match = name.toLowerCase();
@@ -0,0 +1,264 @@
+package org.apache.catalina.connector;
+
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.catalina.Request;
+import org.apache.catalina.Response;
+
+
+/**
+ * Pool of the request and response objects of a connector.  A processor
+ * takes a request and a response when it starts working on a connection,
+ * reuses them for every request received on that connection, and gives
+ * them back when the connection is closed or handed over to a poller, so
+ * that the objects, and the collections they hold on to, are shared by all
+ * the processors instead of being allocated for each of them.
+ * <p>
+ * The pool keeps at most <code>maxIdle</code> objects of each kind, and
+ * counts the objects which had to be created, the ones which were reused,
+ * and the ones which were discarded because the pool was full.
+ */
+
+public final class RequestResponsePool {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new pool.
+	 *
+	 * @param maxIdle Maximum number of idle objects of each kind, or
+	 *                0 for no limit
+	 */
+	public RequestResponsePool(int maxIdle) {
+
+		this.maxIdle = maxIdle;
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Number of objects created because the pool was empty.
+	 */
+	private AtomicLong created = new AtomicLong();
+
+
+	/**
+	 * Number of objects dropped because the pool was full.
+	 */
+	private AtomicLong discarded = new AtomicLong();
+
+
+	/**
+	 * Maximum number of idle objects of each kind.
+	 */
+	private int maxIdle = 0;
+
+
+	/**
+	 * Number of idle requests.
+	 */
+	private AtomicInteger requestCount = new AtomicInteger();
+
+
+	/**
+	 * Idle requests.
+	 */
+	private ConcurrentLinkedQueue<Request> requests =
+			new ConcurrentLinkedQueue<Request>();
+
+
+	/**
+	 * Number of idle responses.
+	 */
+	private AtomicInteger responseCount = new AtomicInteger();
+
+
+	/**
+	 * Idle responses.
+	 */
+	private ConcurrentLinkedQueue<Response> responses =
+			new ConcurrentLinkedQueue<Response>();
+
+
+	/**
+	 * Number of objects taken from the pool.
+	 */
+	private AtomicLong reused = new AtomicLong();
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the number of objects which have been created because the
+	 * pool was empty.
+	 */
+	public long getCreatedCount() {
+
+		return (created.get());
+
+	}
+
+
+	/**
+	 * Return the number of objects which have been dropped because the
+	 * pool was full.
+	 */
+	public long getDiscardedCount() {
+
+		return (discarded.get());
+
+	}
+
+
+	/**
+	 * Return the number of idle objects in the pool.
+	 */
+	public int getIdleCount() {
+
+		return (requestCount.get() + responseCount.get());
+
+	}
+
+
+	/**
+	 * Return the maximum number of idle objects of each kind.
+	 */
+	public int getMaxIdle() {
+
+		return (this.maxIdle);
+
+	}
+
+
+	/**
+	 * Set the maximum number of idle objects of each kind, or 0 for no
+	 * limit.
+	 *
+	 * @param maxIdle The new maximum
+	 */
+	public void setMaxIdle(int maxIdle) {
+
+		this.maxIdle = maxIdle;
+
+	}
+
+
+	/**
+	 * Return the number of objects which have been taken from the pool
+	 * instead of being created.
+	 */
+	public long getReusedCount() {
+
+		return (reused.get());
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Drop all the idle objects.
+	 */
+	public void clear() {
+
+		while (requests.poll() != null)
+			requestCount.decrementAndGet();
+		while (responses.poll() != null)
+			responseCount.decrementAndGet();
+
+	}
+
+
+	/**
+	 * Take an idle request from the pool.  If <code>null</code> is
+	 * returned, the caller is expected to create a new request, and it is
+	 * counted as such.
+	 */
+	public Request pollRequest() {
+
+		Request request = requests.poll();
+		if (request == null) {
+			created.incrementAndGet();
+			return (null);
+		}
+		requestCount.decrementAndGet();
+		reused.incrementAndGet();
+		return (request);
+
+	}
+
+
+	/**
+	 * Take an idle response from the pool.  If <code>null</code> is
+	 * returned, the caller is expected to create a new response, and it is
+	 * counted as such.
+	 */
+	public Response pollResponse() {
+
+		Response response = responses.poll();
+		if (response == null) {
+			created.incrementAndGet();
+			return (null);
+		}
+		responseCount.decrementAndGet();
+		reused.incrementAndGet();
+		return (response);
+
+	}
+
+
+	/**
+	 * Recycle the specified request and response, and give them back to
+	 * the pool.  Neither object may be used by the caller afterwards.
+	 *
+	 * @param request  The request, or <code>null</code>
+	 * @param response The response, or <code>null</code>
+	 */
+	public void recycle(Request request, Response response) {
+
+		if (request != null) {
+			request.recycle();
+			if (reserve(requestCount))
+				requests.offer(request);
+		}
+		if (response != null) {
+			response.recycle();
+			if (reserve(responseCount))
+				responses.offer(response);
+		}
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Make room for one more idle object, unless the pool is full.
+	 *
+	 * @param count Number of idle objects of the relevant kind
+	 * @return <code>true</code> if the object can be pooled
+	 */
+	private boolean reserve(AtomicInteger count) {
+
+		if ((count.incrementAndGet() > maxIdle) && (maxIdle > 0)) {
+			count.decrementAndGet();
+			discarded.incrementAndGet();
+			return (false);
+		}
+		return (true);
+
+	}
+
+
+}
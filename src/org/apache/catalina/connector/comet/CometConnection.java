@@ -0,0 +1,488 @@
+package org.apache.catalina.connector.comet;
+
+
+import org.apache.catalina.util.StringManager;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+
+/**
+ * 一个可以挂起的Comet连接。
+ * <p>
+ * The connection of the request being processed is exposed to the servlet
+ * as the request attribute named by
+ * <code>Constants.COMET_CONNECTION_ATTR</code>.  A servlet which calls
+ * <code>suspend()</code> may return from <code>service()</code> without
+ * completing the response: the processor thread is then released, and the
+ * socket is watched by the connector's poller until the servlet, from any
+ * thread, calls <code>complete()</code>.
+ * <p>
+ * Content is written through the usual response stream or writer, followed
+ * by a call to <code>flush()</code>; the bytes are queued and sent by the
+ * poller without ever blocking the caller.  A suspended response is always
+ * terminated by closing the connection.  The response is not thread safe,
+ * so threads writing to it must hold the lock of this connection:
+ * <pre>
+ *     synchronized (connection) {
+ *         writer.print(message);
+ *         connection.flush();
+ *     }
+ * </pre>
+ * Once <code>complete()</code> has been called, the request and the response
+ * must not be used anymore: they are given back to the connector, and
+ * reused for other connections, as soon as the connection is closed.
+ *
+ * @author lishuang
+ */
+public final class CometConnection {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new connection for the request being processed on the
+	 * specified socket.
+	 */
+	CometConnection(CometConnector connector, Socket socket,
+	                HttpRequestImpl request, HttpResponseImpl response) {
+
+		this.connector = connector;
+		this.socket = socket;
+		this.request = request;
+		this.response = response;
+		this.timeout = connector.getCometTimeout();
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	//The client has gone away, or the connector has been stopped.
+	private boolean closed = false;
+
+
+	//complete()已经调用过了。
+	private boolean completed = false;
+
+
+	private CometConnector connector = null;
+
+
+	//Selection key of the channel, only used by the poller thread.
+	SelectionKey key = null;
+
+
+	private CometListener listener = null;
+
+
+	//Bytes waiting to be written to the channel.
+	private LinkedList<ByteBuffer> queue = null;
+
+
+	//The poller watching this connection, once it has been parked.
+	private CometPoller poller = null;
+
+
+	//The request and the response have been given back to the connector.
+	private boolean recycled = false;
+
+
+	//The processor has finished with this request.
+	private boolean released = false;
+
+
+	private HttpRequestImpl request = null;
+
+
+	private HttpResponseImpl response = null;
+
+
+	private Socket socket = null;
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private static final StringManager sm =
+			StringManager.getManager(Constants.Package);
+
+
+	//Time at which the connection has been parked on the poller.
+	private long suspendTime = 0L;
+
+
+	private boolean suspended = false;
+
+
+	//挂起的超时时间（毫秒），0表示永不超时。
+	private long timeout = 0L;
+
+
+	//The poller has been asked to look at our queue.
+	private boolean writePending = false;
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the listener notified of the events of this connection.
+	 */
+	public CometListener getListener() {
+
+		return (this.listener);
+
+	}
+
+
+	/**
+	 * Set the listener notified of the events of this connection.
+	 *
+	 * @param listener The new listener
+	 */
+	public void setListener(CometListener listener) {
+
+		this.listener = listener;
+
+	}
+
+
+	/**
+	 * Return the request associated with this connection.
+	 */
+	public HttpServletRequest getRequest() {
+
+		return ((HttpServletRequest) request.getRequest());
+
+	}
+
+
+	/**
+	 * Return the response associated with this connection.
+	 */
+	public HttpServletResponse getResponse() {
+
+		return ((HttpServletResponse) response.getResponse());
+
+	}
+
+
+	/**
+	 * Return the time, in milliseconds, after which a suspended connection
+	 * is completed, or 0 for no timeout.
+	 */
+	public long getTimeout() {
+
+		return (this.timeout);
+
+	}
+
+
+	/**
+	 * Set the time, in milliseconds, after which a suspended connection is
+	 * completed, or 0 for no timeout.  The timeout is counted from the end
+	 * of the <code>service()</code> call which suspended the request.
+	 *
+	 * @param timeout The new timeout
+	 */
+	public void setTimeout(long timeout) {
+
+		this.timeout = timeout;
+
+	}
+
+
+	/**
+	 * Has the client closed this connection?
+	 */
+	public synchronized boolean isClosed() {
+
+		return (this.closed);
+
+	}
+
+
+	/**
+	 * Has this connection been completed?
+	 */
+	public synchronized boolean isCompleted() {
+
+		return (this.completed);
+
+	}
+
+
+	/**
+	 * Has this connection been suspended?
+	 */
+	public synchronized boolean isSuspended() {
+
+		return (this.suspended);
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Suspend this request, so that the response can be completed after
+	 * the <code>service()</code> method has returned.  This method must be
+	 * called by the thread processing the request.
+	 *
+	 * @throws IllegalStateException if this request is not being
+	 *                               processed anymore, or has already been
+	 *                               suspended
+	 */
+	public synchronized void suspend() {
+
+		if (released || suspended)
+			throw new IllegalStateException
+					(sm.getString("cometConnection.suspend.ise"));
+		suspended = true;
+		queue = new LinkedList<>();
+		response.setCometStream(new CometOutputStream(this));
+
+	}
+
+
+	/**
+	 * Send the content written so far to the client.  The bytes are only
+	 * queued, and this method never blocks on the network.
+	 *
+	 * @throws IOException if the connection has been closed
+	 */
+	public synchronized void flush() throws IOException {
+
+		if (closed)
+			throw new IOException(sm.getString("cometConnection.closed"));
+		if (!completed)
+			response.flushContent();
+
+	}
+
+
+	/**
+	 * Finish the response and close the connection once all the queued
+	 * content has been sent.  Calling this method more than once has no
+	 * effect.
+	 *
+	 * @throws IOException if the connection has been closed
+	 */
+	public synchronized void complete() throws IOException {
+
+		if (completed)
+			return;
+		completed = true;
+		try {
+			if (!closed)
+				response.finishResponse();
+		} finally {
+			signal();
+			recycle();
+		}
+
+	}
+
+
+	/**
+	 * Return a String value representing this object.
+	 */
+	public String toString() {
+
+		return ("CometConnection[" + socket + "]");
+
+	}
+
+
+	// -------------------------------------------------------- Package Methods
+
+
+	/**
+	 * Mark this connection as closed, and notify the listener if asked to.
+	 * Called by the poller thread once the channel has been closed.
+	 *
+	 * @param notify Should the listener be notified?
+	 */
+	void closed(boolean notify) {
+
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			if (queue != null)
+				queue.clear();
+		}
+		CometListener listener = this.listener;
+		if (notify && (listener != null)) {
+			try {
+				listener.closed(this);
+			} catch (Throwable t) {
+				connector.log("CometListener.closed", t);
+			}
+		}
+		recycle();
+
+	}
+
+
+	/**
+	 * Write as much of the queued content as possible to the channel.
+	 * Called by the poller thread when the channel is writable.
+	 *
+	 * @param channel The channel of this connection
+	 * @return <code>true</code> if the queue has been emptied
+	 * @throws IOException if an input/output error occurs
+	 */
+	synchronized boolean drain(SocketChannel channel) throws IOException {
+
+		while (!queue.isEmpty()) {
+			ByteBuffer buffer = queue.getFirst();
+			channel.write(buffer);
+			if (buffer.hasRemaining())
+				return (false);
+			queue.removeFirst();
+		}
+		writePending = false;
+		return (true);
+
+	}
+
+
+	/**
+	 * Queue the specified bytes, and ask the poller to send them.
+	 *
+	 * @param b   The bytes to be written
+	 * @param off Start offset
+	 * @param len Number of bytes to write
+	 * @throws IOException if the connection has been closed
+	 */
+	synchronized void enqueue(byte[] b, int off, int len) throws IOException {
+
+		if (closed)
+			throw new IOException(sm.getString("cometConnection.closed"));
+		if (len <= 0)
+			return;
+		byte[] copy = new byte[len];
+		System.arraycopy(b, off, copy, 0, len);
+		queue.add(ByteBuffer.wrap(copy));
+		if (!writePending) {
+			writePending = true;
+			signal();
+		}
+
+	}
+
+
+	/**
+	 * Return the socket of this connection.
+	 */
+	Socket getSocket() {
+
+		return (this.socket);
+
+	}
+
+
+	/**
+	 * Is this connection due for a timeout at the specified time?
+	 *
+	 * @param now The current time
+	 */
+	synchronized boolean isExpired(long now) {
+
+		return (!completed && !closed && (timeout > 0)
+				&& ((now - suspendTime) > timeout));
+
+	}
+
+
+	/**
+	 * Hand this connection over to the specified poller.  Called by the
+	 * processor once <code>service()</code> has returned.
+	 *
+	 * @param poller The poller which will watch this connection
+	 */
+	synchronized void park(CometPoller poller) {
+
+		this.poller = poller;
+		this.suspendTime = System.currentTimeMillis();
+
+	}
+
+
+	/**
+	 * Forbid any further call to <code>suspend()</code>.  Called by the
+	 * processor once <code>service()</code> has returned.
+	 */
+	synchronized void release() {
+
+		released = true;
+
+	}
+
+
+	/**
+	 * Notify the listener that this connection has timed out, and complete
+	 * it if the listener did not.  Called by the poller thread.
+	 */
+	void timeout() {
+
+		CometListener listener = this.listener;
+		if (listener != null) {
+			try {
+				listener.timeout(this);
+			} catch (Throwable t) {
+				connector.log("CometListener.timeout", t);
+			}
+		}
+		try {
+			complete();
+		} catch (IOException e) {
+			;
+		}
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Give the request and the response back to the connector once this
+	 * connection has been both completed and closed, as neither the
+	 * application nor the poller will use them anymore.
+	 */
+	private void recycle() {
+
+		synchronized (this) {
+			if (recycled || !completed || !closed)
+				return;
+			recycled = true;
+		}
+		connector.recycle(request, response);
+
+	}
+
+
+	/**
+	 * Ask the poller, if we have one yet, to look at this connection.
+	 */
+	private void signal() {
+
+		if (poller != null)
+			poller.update(this);
+
+	}
+
+
+}
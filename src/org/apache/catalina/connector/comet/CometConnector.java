@@ -4,24 +4,38 @@ package org.apache.catalina.connector.comet;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.catalina.*;
+import org.apache.catalina.connector.RequestResponsePool;
+import org.apache.catalina.core.StandardThreadExecutor;
 import org.apache.catalina.net.DefaultServerSocketFactory;
 import org.apache.catalina.net.ServerSocketFactory;
 import org.apache.catalina.util.LifecycleSupport;
 import org.apache.catalina.util.StringManager;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.BindException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.security.*;
-import java.security.cert.CertificateException;
-import java.util.Stack;
+import java.nio.channels.ServerSocketChannel;
+import java.security.AccessControlException;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
  * 用于长连接的Connector,全新改装的机器。
+ * <p>
+ * A servlet may suspend the request it is processing through the
+ * <code>CometConnection</code> found in the request attributes.  The
+ * processor thread is then given back to the pool, and the socket is
+ * watched by a <code>CometPoller</code> until the application completes
+ * the response, so the number of waiting clients is not bounded by
+ * <code>maxProcessors</code>.  Server sockets are opened through a
+ * <code>ServerSocketChannel</code>, and the <code>factory</code> property
+ * (and therefore SSL) is ignored.
  *
  * @author lishuang 2014/08/21
  */
@@ -59,6 +73,13 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	@Setter
 	protected Container container = null;
 
+	/**
+	 * 挂起的连接的超时时间（毫秒），0表示永不超时。
+	 */
+	@Getter
+	@Setter
+	private int cometTimeout = Constants.DEFAULT_COMET_TIMEOUT;
+
 	/**
 	 * The set of processors that have ever been created.
 	 */
@@ -78,6 +99,27 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	@Setter
 	private int debug = 0;
 
+	/**
+	 * 运行processor的线程池。没有设置的话，就用Service里名为executorName的那个，
+	 * 再没有就在start()时自己建一个。
+	 */
+	@Getter
+	@Setter
+	private Executor executor = null;
+
+	/**
+	 * The name of the shared executor of our <code>Service</code> which
+	 * should run our processors, if any.
+	 */
+	@Getter
+	@Setter
+	private String executorName = null;
+
+	/**
+	 * 线程池是不是自己建的（自己建的要自己关掉）。
+	 */
+	private boolean internalExecutor = false;
+
 	/**
 	 * The "enable DNS lookups" flag for this Connector.
 	 */
@@ -114,6 +156,14 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 		return info;
 	}
 
+	/**
+	 * 线程池满了的时候，返回给客户端的响应。
+	 */
+	private static final byte[] SERVICE_UNAVAILABLE =
+			("HTTP/1.0 503 Service Unavailable\r\n"
+					+ "Content-Length: 0\r\n"
+					+ "Connection: close\r\n\r\n").getBytes();
+
 
 	/**
 	 * The lifecycle event support for this component.
@@ -158,7 +208,7 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	 * The set of processors that have been created but are not currently
 	 * being used to process a request.
 	 */
-	private final Stack<CometProcessor> processors = new Stack<>();
+	private final ConcurrentLinkedQueue<CometProcessor> processors = new ConcurrentLinkedQueue<>();
 
 
 	/**
@@ -191,6 +241,11 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	private int redirectPort = 443;
 
 
+	//processors和挂起的连接使用的request和response的池子。
+	@Getter
+	private final RequestResponsePool requestPool = new RequestResponsePool(0);
+
+
 	/**
 	 * The request scheme that will be set on all requests received
 	 * through this connector.
@@ -212,6 +267,12 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	}
 
 
+	/**
+	 * 看守所有挂起连接的poller.
+	 */
+	private CometPoller poller = null;
+
+
 	/**
 	 * The server socket through which we listen for incoming TCP connections.
 	 */
@@ -290,6 +351,18 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 
 	}
 
+	/**
+	 * Return the number of connections currently suspended.
+	 */
+	public int getSuspendedCount() {
+
+		CometPoller poller = this.poller;
+		if (poller == null)
+			return (0);
+		return (poller.getKeyCount());
+
+	}
+
 	/**
 	 * Is this connector available for processing requests?
 	 */
@@ -305,8 +378,11 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	 * specifying the contents of a Request to the responsible Container.
 	 */
 	public Request createRequest() {
-		HttpRequestImpl request = new HttpRequestImpl();
-		request.setConnector(this);
+		Request request = requestPool.pollRequest();
+		if (request == null) {
+			request = new HttpRequestImpl();
+			request.setConnector(this);
+		}
 		return (request);
 
 	}
@@ -317,8 +393,11 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	 * receiving the contents of a Response from the responsible Container.
 	 */
 	public Response createResponse() {
-		HttpResponseImpl response = new HttpResponseImpl();
-		response.setConnector(this);
+		Response response = requestPool.pollResponse();
+		if (response == null) {
+			response = new HttpResponseImpl();
+			response.setConnector(this);
+		}
 		return (response);
 
 	}
@@ -329,7 +408,7 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	 *
 	 * @param message Message to be logged
 	 */
-	private void log(String message) {
+	void log(String message) {
 		Logger logger = container.getLogger();
 		String localName = threadName;
 
@@ -352,7 +431,7 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	 * @param message   Message to be logged
 	 * @param throwable Associated exception
 	 */
-	private void log(String message, Throwable throwable) {
+	void log(String message, Throwable throwable) {
 
 		Logger logger = container.getLogger();
 		String localName = threadName;
@@ -373,8 +452,11 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 	/*********************************processor栈相关*****start*********************************************/
 	private CometProcessor newProcessor() {
 
-		System.out.println("新建processor");
-		CometProcessor processor = new CometProcessor(this, curProcessors++);
+		int id = 0;
+		synchronized (created) {
+			id = curProcessors++;
+		}
+		CometProcessor processor = new CometProcessor(this, id);
 
 		try {
 			processor.start();
@@ -389,84 +471,109 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 
 	}
 
+	//processor的个数由线程池来限制，池子空了就新建一个。
 	private CometProcessor createProcessor() {
 
-		synchronized (processors) {
-			if (processors.size() > 0) {
-				System.out.println("重用之前的processor");
-				return processors.pop();
-			}
-
-			if ((maxProcessors > 0) && (curProcessors < maxProcessors)) {
-				return newProcessor();
-			} else {
-				if (maxProcessors < 0) {
-					return newProcessor();
-				} else {
-					return null;
-				}
-			}
+		CometProcessor processor = processors.poll();
+		if (processor != null) {
+			return processor;
 		}
+		return newProcessor();
+
 	}
 
 
 	public void recycle(CometProcessor processor) {
-		processors.push(processor);
+		processors.offer(processor);
+	}
+
+
+	//连接处理完了，把它的request和response还给池子。
+	void recycle(Request request, Response response) {
+		requestPool.recycle(request, response);
+	}
+
+
+	/**
+	 * 线程池接不下了，返回503并关闭连接。
+	 *
+	 * @param socket The connection to refuse
+	 */
+	private void reject(Socket socket) {
+
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write(SERVICE_UNAVAILABLE);
+			output.flush();
+		} catch (IOException e) {
+			;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				;
+			}
+		}
+
 	}
 
 	/*********************************processor栈相关*****end*********************************************/
+
+
+	/**
+	 * 把一个被挂起的连接交给poller，processor就可以去干别的了。
+	 *
+	 * @param connection The suspended connection
+	 * @return <code>false</code> if the connector is stopping, in which case
+	 *         the caller still owns the socket
+	 */
+	boolean suspend(CometConnection connection) {
+
+		CometPoller poller = this.poller;
+		if ((poller == null) || (connection.getSocket().getChannel() == null))
+			return (false);
+		return (poller.add(connection));
+
+	}
+
+
 	/**
 	 * Open and return the server socket for this Connector.  If an IP
 	 * address has been specified, the socket will be opened only on that
-	 * address; otherwise it will be opened on all addresses.
+	 * address; otherwise it will be opened on all addresses.  The returned
+	 * socket is backed by a <code>ServerSocketChannel</code>, so that the
+	 * accepted sockets can later be registered with a selector.
 	 *
-	 * @throws java.io.IOException                     input/output or network error
-	 * @throws java.security.KeyStoreException         error instantiating the
-	 *                                                 KeyStore from file (SSL only)
-	 * @throws java.security.NoSuchAlgorithmException  KeyStore algorithm unsupported
-	 *                                                 by current provider (SSL only)
-	 * @throws java.security.cert.CertificateException general certificate error (SSL only)
-	 * @throws java.security.UnrecoverableKeyException internal KeyStore problem with
-	 *                                                 the certificate (SSL only)
-	 * @throws java.security.KeyManagementException    problem in the key management
-	 *                                                 layer (SSL only)
-	 */
-	private ServerSocket open() throws IOException, KeyStoreException, NoSuchAlgorithmException, CertificateException, UnrecoverableKeyException, KeyManagementException {
-
-		//获取一个Socket工厂，其实就相当于直接创建ServerSocket，没什么特别的。
-		ServerSocketFactory factory = getFactory();
+	 * @throws java.io.IOException input/output or network error
+	 */
+	private ServerSocket open() throws IOException {
+
+		InetSocketAddress endpoint = null;
 
 		//对于所有IP均能连接的ServerSocket，一般也是这个方法。
 		if (address == null) {
 			log(sm.getString("cometConnector.allAddresses"));
-			try {
-				//这里其实和new ServerSocket(port, acceptCount)一样
-				return (factory.createSocket(port, acceptCount));
-			} catch (BindException be) {
-				throw new BindException(be.getMessage() + ":" + port);
-			}
+			endpoint = new InetSocketAddress(port);
 		} else {
 			//对于指定了IP地址的，则创建指定的地址，创建不成功就继续返回所有地址的。
 			try {
 				InetAddress is = InetAddress.getByName(address);
 				log(sm.getString("cometConnector.anAddress", address));
-				try {
-					//这里其实和new ServerSocket(port, acceptCount, is)一样
-					return (factory.createSocket(port, acceptCount, is));
-				} catch (BindException be) {
-					throw new BindException(be.getMessage() + ":" + address +
-							":" + port);
-				}
+				endpoint = new InetSocketAddress(is, port);
 			} catch (Exception e) {
 				log(sm.getString("cometConnector.noAddress", address));
-				try {
-					return (factory.createSocket(port, acceptCount));
-				} catch (BindException be) {
-					throw new BindException(be.getMessage() + ":" + port);
-				}
+				endpoint = new InetSocketAddress(port);
 			}
 		}
 
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket().bind(endpoint, acceptCount);
+		} catch (BindException be) {
+			channel.close();
+			throw new BindException(be.getMessage() + ":" + endpoint);
+		}
+		return (channel.socket());
 
 	}
 
@@ -510,42 +617,33 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 				} catch (IOException ioe) {
 					log("socket reopen, io problem: ", ioe);
 					break;
-				} catch (KeyStoreException kse) {
-					log("socket reopen, keystore problem: ", kse);
-					break;
-				} catch (NoSuchAlgorithmException nsae) {
-					log("socket reopen, keystore algorithm problem: ", nsae);
-					break;
-				} catch (CertificateException ce) {
-					log("socket reopen, certificate problem: ", ce);
-					break;
-				} catch (UnrecoverableKeyException uke) {
-					log("socket reopen, unrecoverable key: ", uke);
-					break;
-				} catch (KeyManagementException kme) {
-					log("socket reopen, key management problem: ", kme);
-					break;
 				}
 
 				continue;
 			}
 
-			//从池子中取出一个processor.
+			//从池子中取出一个processor。
 			CometProcessor processor = createProcessor();
 
-			//如果取出是null，就什么也不做，直接关闭socket。一般都不可能进入到这个方法中。
+			//如果是null，就什么也不做，直接拒绝。
 			if (processor == null) {
-				try {
-					log(sm.getString("cometConnector.noProcessor"));
-					socket.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+				log(sm.getString("cometConnector.noProcessor"));
+				reject(socket);
 				continue;
 			}
 
-			//把socket交给processor去处理了。
+			//把socket交给processor，再把processor交给线程池去跑。
 			processor.assign(socket);
+			try {
+				executor.execute(processor);
+			} catch (RejectedExecutionException e) {
+				processor.assign(null);
+				recycle(processor);
+				if (debug >= 1) {
+					log(sm.getString("cometConnector.rejected"));
+				}
+				reject(socket);
+			}
 
 			// processor处理完事情后会自己回收。
 
@@ -630,21 +728,6 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 		} catch (IOException ioe) {
 			log("cometConnector, io problem: ", ioe);
 			eRethrow = ioe;
-		} catch (KeyStoreException kse) {
-			log("cometConnector, keystore problem: ", kse);
-			eRethrow = kse;
-		} catch (NoSuchAlgorithmException nsae) {
-			log("cometConnector, keystore algorithm problem: ", nsae);
-			eRethrow = nsae;
-		} catch (CertificateException ce) {
-			log("cometConnector, certificate problem: ", ce);
-			eRethrow = ce;
-		} catch (UnrecoverableKeyException uke) {
-			log("cometConnector, unrecoverable key: ", uke);
-			eRethrow = uke;
-		} catch (KeyManagementException kme) {
-			log("cometConnector, key management problem: ", kme);
-			eRethrow = kme;
 		}
 
 		if (eRethrow != null)
@@ -660,11 +743,41 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 			throw new LifecycleException(sm.getString("cometConnector.alreadyStarted"));
 		}
 
+		// poller必须在接收第一个socket之前准备好。
+		CometPoller poller = new CometPoller(this);
+		try {
+			poller.start();
+		} catch (IOException e) {
+			throw new LifecycleException("CometConnector.start", e);
+		}
+		this.poller = poller;
+
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
 
-		// Start our background thread
-		threadStart();
+		// 找到或者新建运行processor的线程池。
+		if (executor == null) {
+			if ((executorName != null) && (service != null)) {
+				executor = service.getExecutor(executorName);
+			}
+			if (executor == null) {
+				if (executorName != null) {
+					log(sm.getString("cometConnector.noExecutor", executorName));
+				}
+				StandardThreadExecutor internal = new StandardThreadExecutor();
+				internal.setName("CometConnector[" + port + "]");
+				internal.setNamePrefix("CometProcessor[" + port + "]-");
+				internal.setMinSpareThreads(minProcessors);
+				internal.setMaxThreads(maxProcessors);
+				internal.setMaxQueueSize(acceptCount);
+				internal.start();
+				executor = internal;
+				internalExecutor = true;
+			}
+		}
+
+		// 池子里最多留下同时能用到的request和response。
+		requestPool.setMaxIdle(maxProcessors);
 
 		// 创建processors池。
 		while (curProcessors < minProcessors) {
@@ -675,6 +788,9 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 			recycle(processor);
 		}
 
+		// Start our background thread
+		threadStart();
+
 	}
 
 
@@ -711,6 +827,26 @@ public final class CometConnector implements Connector, Lifecycle, Runnable {
 		}
 		serverSocket = null;
 
+		// 关闭自己建的线程池，忘掉所有的processor。
+		if (internalExecutor) {
+			try {
+				executor.stop();
+			} catch (LifecycleException e) {
+				log("CometConnector.stop", e);
+			}
+			executor = null;
+			internalExecutor = false;
+		}
+		processors.clear();
+		created.clear();
+		requestPool.clear();
+
+		// 关闭所有挂起的连接。
+		if (poller != null) {
+			poller.stop();
+			poller = null;
+		}
+
 	}
 
 
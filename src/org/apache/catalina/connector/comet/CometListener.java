@@ -0,0 +1,32 @@
+package org.apache.catalina.connector.comet;
+
+
+/**
+ * Interface defining a listener for the significant events of a suspended
+ * <code>CometConnection</code>.  Listener methods are called by the poller
+ * thread of the connector, so they must not block.
+ */
+
+public interface CometListener {
+
+
+	/**
+	 * The client has closed the connection, or the connector is being
+	 * stopped.  Nothing more can be written to this connection.
+	 *
+	 * @param connection The connection which has been closed
+	 */
+	public void closed(CometConnection connection);
+
+
+	/**
+	 * The connection has been suspended for longer than its timeout.  If
+	 * the listener does not complete the connection, it will be completed
+	 * on return from this method.
+	 *
+	 * @param connection The connection which has timed out
+	 */
+	public void timeout(CometConnection connection);
+
+
+}
@@ -0,0 +1,45 @@
+package org.apache.catalina.connector.comet;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * 挂起的连接所使用的输出流。
+ * <p>
+ * Output stream which replaces the socket stream of a suspended response.
+ * Nothing is written to the network here: the bytes are queued on the
+ * <code>CometConnection</code>, and written by the connector's poller when
+ * the channel is writable.
+ *
+ * @author lishuang
+ */
+final class CometOutputStream extends OutputStream {
+
+
+	CometOutputStream(CometConnection connection) {
+
+		this.connection = connection;
+
+	}
+
+
+	private CometConnection connection = null;
+
+
+	public void write(int b) throws IOException {
+
+		connection.enqueue(new byte[]{(byte) b}, 0, 1);
+
+	}
+
+
+	public void write(byte[] b, int off, int len) throws IOException {
+
+		connection.enqueue(b, off, len);
+
+	}
+
+
+}
@@ -0,0 +1,387 @@
+package org.apache.catalina.connector.comet;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+
+/**
+ * 看守所有挂起连接的后台线程。
+ * <p>
+ * Background thread which owns the suspended connections of a
+ * <code>CometConnector</code>.  Each channel is kept in non-blocking mode on
+ * a <code>Selector</code>: the content queued by the application is written
+ * when the channel is writable, a read of end-of-stream tells us that the
+ * client has gone away, and connections suspended for longer than their
+ * timeout are completed.  No processor thread is held by a suspended
+ * connection.
+ *
+ * @author lishuang
+ */
+final class CometPoller implements Runnable {
+
+
+	CometPoller(CometConnector connector) {
+
+		this.connector = connector;
+		this.threadName = "CometPoller[" + connector.getPort() + "]";
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	private CometConnector connector = null;
+
+
+	//Connections waiting to be registered with our selector.
+	private final ArrayList<CometConnection> events = new ArrayList<>();
+
+
+	//Time at which the connections were last checked for a timeout.
+	private long lastExpiration = 0L;
+
+
+	//Scratch buffer for whatever the clients send on suspended connections.
+	private ByteBuffer readBuffer = null;
+
+
+	private Selector selector = null;
+
+
+	private boolean stopped = false;
+
+
+	private Thread thread = null;
+
+
+	private String threadName = null;
+
+
+	//Connections which have new content to write, or have been completed.
+	private final ArrayList<CometConnection> updates = new ArrayList<>();
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	public String toString() {
+
+		return (this.threadName);
+
+	}
+
+
+	// -------------------------------------------------------- Package Methods
+
+
+	/**
+	 * Take ownership of the channel of the specified suspended connection.
+	 *
+	 * @param connection The suspended connection
+	 * @return <code>false</code> if this poller has been stopped
+	 */
+	boolean add(CometConnection connection) {
+
+		synchronized (events) {
+			if (stopped)
+				return (false);
+			connection.park(this);
+			events.add(connection);
+		}
+		selector.wakeup();
+		return (true);
+
+	}
+
+
+	/**
+	 * Return the number of connections currently suspended on this poller.
+	 */
+	int getKeyCount() {
+
+		Selector selector = this.selector;
+		if (selector == null)
+			return (0);
+		try {
+			return (selector.keys().size());
+		} catch (Exception e) {
+			return (0);
+		}
+
+	}
+
+
+	/**
+	 * Ask the poller thread to write the content queued on the specified
+	 * connection, or to close it once it has been completed.
+	 *
+	 * @param connection The connection to look at
+	 */
+	void update(CometConnection connection) {
+
+		synchronized (events) {
+			if (stopped)
+				return;
+			updates.add(connection);
+		}
+		selector.wakeup();
+
+	}
+
+
+	/**
+	 * Open the selector and start the background thread.
+	 *
+	 * @throws IOException if the selector cannot be opened
+	 */
+	void start() throws IOException {
+
+		selector = Selector.open();
+		readBuffer = ByteBuffer.allocate(connector.getBufferSize());
+		thread = new Thread(this, threadName);
+		thread.setDaemon(true);
+		thread.start();
+
+	}
+
+
+	/**
+	 * Stop the background thread, which closes all the suspended
+	 * connections on its way out.
+	 */
+	void stop() {
+
+		synchronized (events) {
+			stopped = true;
+		}
+		if (selector != null)
+			selector.wakeup();
+		thread = null;
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Close the channel of the specified connection.
+	 *
+	 * @param connection The connection to close
+	 * @param notify     Should the listener be told that the connection
+	 *                   has been closed?
+	 */
+	private void close(CometConnection connection, boolean notify) {
+
+		if (connection.key != null)
+			connection.key.cancel();
+		try {
+			connection.getSocket().close();
+		} catch (IOException e) {
+			;
+		}
+		connection.closed(notify);
+
+	}
+
+
+	/**
+	 * Close all the connections which are still suspended.
+	 */
+	private void closeAll() {
+
+		ArrayList<CometConnection> pending = new ArrayList<>();
+		synchronized (events) {
+			pending.addAll(events);
+			events.clear();
+			updates.clear();
+		}
+		try {
+			for (SelectionKey key : selector.keys())
+				pending.add((CometConnection) key.attachment());
+			selector.close();
+		} catch (Exception e) {
+			;
+		}
+		for (CometConnection connection : pending)
+			close(connection, true);
+
+	}
+
+
+	/**
+	 * Complete the connections which have been suspended for longer than
+	 * their timeout.
+	 */
+	private void expire() {
+
+		long now = System.currentTimeMillis();
+		if ((now - lastExpiration) < 1000L)
+			return;
+		lastExpiration = now;
+		ArrayList<CometConnection> expired = null;
+		for (SelectionKey key : selector.keys()) {
+			CometConnection connection = (CometConnection) key.attachment();
+			if (key.isValid() && connection.isExpired(now)) {
+				if (expired == null)
+					expired = new ArrayList<>();
+				expired.add(connection);
+			}
+		}
+		if (expired == null)
+			return;
+		for (CometConnection connection : expired)
+			connection.timeout();
+
+	}
+
+
+	/**
+	 * Read and discard whatever the client has sent.  A suspended
+	 * connection is only read to find out when the client goes away.
+	 */
+	private void read(CometConnection connection) {
+
+		SocketChannel channel = (SocketChannel) connection.key.channel();
+		int n = 0;
+		try {
+			do {
+				readBuffer.clear();
+				n = channel.read(readBuffer);
+			} while (n > 0);
+		} catch (IOException e) {
+			n = -1;
+		}
+		if (n < 0)
+			close(connection, true);
+
+	}
+
+
+	/**
+	 * Register the connections parked since the last iteration, and
+	 * process the pending updates.
+	 */
+	private void register() {
+
+		CometConnection added[] = null;
+		CometConnection updated[] = null;
+		synchronized (events) {
+			if (!events.isEmpty()) {
+				added = events.toArray(new CometConnection[events.size()]);
+				events.clear();
+			}
+			if (!updates.isEmpty()) {
+				updated = updates.toArray(new CometConnection[updates.size()]);
+				updates.clear();
+			}
+		}
+
+		if (added != null) {
+			for (CometConnection connection : added) {
+				SocketChannel channel = connection.getSocket().getChannel();
+				try {
+					channel.configureBlocking(false);
+					// Start with a write, which sends the head of the response
+					connection.key = channel.register(selector,
+							SelectionKey.OP_READ | SelectionKey.OP_WRITE,
+							connection);
+				} catch (Exception e) {
+					close(connection, true);
+				}
+			}
+		}
+
+		if (updated != null) {
+			for (CometConnection connection : updated) {
+				SelectionKey key = connection.key;
+				try {
+					if ((key != null) && key.isValid())
+						key.interestOps(key.interestOps()
+								| SelectionKey.OP_WRITE);
+				} catch (CancelledKeyException e) {
+					;
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Write the queued content of the specified connection, and close it
+	 * if it has been completed and everything has been sent.
+	 */
+	private void write(CometConnection connection) {
+
+		SelectionKey key = connection.key;
+		try {
+			if (!connection.drain((SocketChannel) key.channel()))
+				return;
+		} catch (IOException e) {
+			close(connection, true);
+			return;
+		}
+		if (connection.isCompleted())
+			close(connection, false);
+		else
+			key.interestOps(SelectionKey.OP_READ);
+
+	}
+
+
+	// ---------------------------------------------- Background Thread Methods
+
+
+	/**
+	 * The background thread that watches the suspended connections.
+	 */
+	public void run() {
+
+		while (!stopped) {
+
+			try {
+
+				register();
+				selector.select(1000L);
+				if (stopped)
+					break;
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					CometConnection connection =
+							(CometConnection) key.attachment();
+					try {
+						if (key.isValid() && key.isWritable())
+							write(connection);
+						if (key.isValid() && key.isReadable())
+							read(connection);
+					} catch (CancelledKeyException e) {
+						close(connection, true);
+					}
+				}
+
+				expire();
+
+			} catch (Throwable t) {
+				connector.log(threadName + " run", t);
+			}
+
+		}
+
+		closeAll();
+
+	}
+
+
+}
@@ -32,9 +32,6 @@ final class CometProcessor implements Lifecycle, Runnable {
 	// ----------------------------------------------------- Instance Variables
 
 
-	//是否有一个socket可用。
-	private boolean available = false;
-
 	private CometConnector connector = null;
 
 	private int debug = 0;
@@ -100,12 +97,8 @@ final class CometProcessor implements Lifecycle, Runnable {
 	private boolean started = false;
 	private boolean stopped = false;
 
-	//该类的线程。
-	private Thread thread = null;
-	//线程名字
+	//名字，用于日志。
 	private String threadName = null;
-	//线程锁
-	private final Object threadSync = new Object();
 	//Http中的keepAlive标识。
 	private boolean keepAlive = false;
 	//是否是http1.1协议
@@ -152,8 +145,6 @@ final class CometProcessor implements Lifecycle, Runnable {
 		this.id = id;
 		this.proxyName = connector.getProxyName();
 		this.proxyPort = connector.getProxyPort();
-		this.request = (HttpRequestImpl) connector.createRequest();
-		this.response = (HttpResponseImpl) connector.createResponse();
 		this.serverPort = connector.getPort();
 		this.threadName = this.getClass().getSimpleName()+"[" + connector.getPort() + "][" + id + "]";
 
@@ -170,28 +161,15 @@ final class CometProcessor implements Lifecycle, Runnable {
 	 * 灵魂方法！！！
 	 * Process an incoming TCP/IP connection on the specified socket.  Any
 	 * exception that occurs during processing must be logged and swallowed.
-	 * <b>NOTE</b>:  This method is called from our Connector's thread.  We
-	 * must assign it to our own thread so that multiple simultaneous
-	 * requests can be handled.
+	 * <b>NOTE</b>:  This method is called from our Connector's thread,
+	 * before this processor is handed to the connector's executor, which
+	 * then calls <code>run()</code> on one of its own threads.
 	 *
 	 * @param socket TCP socket to process
 	 */
-	synchronized void assign(Socket socket) {
-
-		// 如果当前尚且有一个socket没有被占用，那自己就先排队等会儿了。
-		while (available) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-
+	void assign(Socket socket) {
 
 		this.socket = socket;
-		available = true;
-
-		notifyAll();
 
 	}
 
@@ -199,32 +177,6 @@ final class CometProcessor implements Lifecycle, Runnable {
 	// -------------------------------------------------------- Private Methods
 
 
-	/**
-	 * Await a newly assigned Socket from our Connector, or <code>null</code>
-	 * if we are supposed to shut down.
-	 */
-	private synchronized Socket await() {
-
-		// Wait for the Connector to provide a new Socket
-		while (!available) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-
-		// Notify the Connector that we have received this Socket
-		Socket socket = this.socket;
-		available = false;
-		notifyAll();
-
-
-		return socket;
-
-	}
-
-
 	/**
 	 * Log a message on the Logger associated with our Container (if any)
 	 *
@@ -752,55 +704,17 @@ final class CometProcessor implements Lifecycle, Runnable {
 
 	/**
 	 * 处理socket，任何异常要么吞掉，要么处理掉。
+	 * 如果请求被servlet挂起了，socket就交给CometPoller，processor马上回收自己。
 	 *
 	 * @param socket 远道而来的socket
 	 */
 	private void process(Socket socket) {
 		boolean ok = true;
 		boolean finishResponse = true;
+		boolean suspended = false;
 		SocketInputStream input = null;
 		OutputStream output = null;
 
-
-		//测试代码
-		try {
-			InputStream inputStream=socket.getInputStream();
-			BufferedReader is = new BufferedReader(new InputStreamReader(inputStream));
-			//由Socket对象得到输入流，并构造相应的BufferedReader对象
-			PrintWriter os = new PrintWriter(socket.getOutputStream());
-			//由Socket对象得到输出流，并构造PrintWriter对象
-			//BufferedReader sin = new BufferedReader(new InputStreamReader(System.in));
-			//由系统标准输入设备构造BufferedReader对象
-			String line = null;
-			String res=null;
-			//在标准输出上打印从客户端读入的字符串
-			//line = sin.readLine();
-			//从标准输入读入一字符串
-			do {
-				line = is.readLine();
-				System.out.println("Client:" + line);
-
-
-				//如果该字符串为 "bye"，则停止循环
-				res = "<h1>Good</h1>";
-				os.println(res);
-				//向客户端输出该字符串
-				os.flush();
-
-				if (line.equals("")) break;
-
-			} while (true);
-			os.close(); //关闭Socket输出流
-			is.close(); //关闭Socket输入流
-			socket.close();
-
-		}catch (IOException e){
-			e.printStackTrace();
-		}
-
-
-
-		/*
 		// Construct and initialize the objects we will need
 		try {
 			input = new SocketInputStream(socket.getInputStream(),connector.getBufferSize());
@@ -814,6 +728,7 @@ final class CometProcessor implements Lifecycle, Runnable {
 		while (!stopped && ok && keepAlive) {
 
 			finishResponse = true;
+			CometConnection connection = null;
 
 			try {
 				request.setStream(input);
@@ -914,6 +829,29 @@ final class CometProcessor implements Lifecycle, Runnable {
 				ok = false;
 			}
 
+			// 请求被挂起了：把已经写好的内容排队，然后把socket交给poller。
+			connection = request.getCometConnection();
+			if (connection != null) {
+				connection.release();
+				if (ok && connection.isSuspended()) {
+					try {
+						connection.flush();
+					} catch (IOException e) {
+						ok = false;
+					}
+					if (ok && connector.suspend(connection)) {
+						// The request and the response now belong to the
+						// connection, which gives them back to the pool
+						request = null;
+						response = null;
+						suspended = true;
+						break;
+					}
+					ok = false;
+					finishResponse = false;
+				}
+			}
+
 			// Finish up the handling of the request
 			if (finishResponse) {
 				try {
@@ -956,17 +894,21 @@ final class CometProcessor implements Lifecycle, Runnable {
 
 		}
 
+		// 挂起的socket已经归poller所有，这里不能关闭它。
+		if (suspended) {
+			status = Constants.PROCESSOR_IDLE;
+			return;
+		}
+
 		try {
-			shutdownInput(input);
+			if (input != null)
+				shutdownInput(input);
 			socket.close();
 		} catch (IOException e) {
-			e.printStackTrace();
+			;
 		} catch (Throwable e) {
 			log("process.invoke", e);
 		}
-		socket = null;
-		*/
-
 
 	}
 
@@ -989,65 +931,32 @@ final class CometProcessor implements Lifecycle, Runnable {
 
 
 	/**
-	 * The background thread that listens for incoming TCP/IP connections and
-	 * hands them off to an appropriate processor.
+	 * Process the socket assigned to this processor, then hand this
+	 * processor back to the connector.  Called by one of the threads of the
+	 * connector's executor.
 	 */
 	public void run() {
 
-		// Process requests until we receive a shutdown signal
-		while (!stopped) {
-
-			// 等待分配过来的socket
-			Socket socket = await();
-			if (socket == null){
-				continue;
-			}
-
-			//开始处理这个socket请求。
-			process(socket);
-
-			//干完活了就回收自己。
-			connector.recycle(this);
-
-		}
-
-		// Tell threadStop() we have shut ourselves down successfully
-		synchronized (threadSync) {
-			threadSync.notifyAll();
-		}
-
-	}
-
-
-	//启动线程
-	private void threadStart() {
-
-		log(sm.getString("cometProcessor.starting"));
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.start();
-	}
-
-
-	//停止线程
-	private void threadStop() {
-
-		log(sm.getString("cometProcessor.stopping"));
-
-		stopped = true;
-		assign(null);
+		Socket socket = this.socket;
+		this.socket = null;
 
-		if (status != Constants.PROCESSOR_IDLE) {
-			// Only wait if the processor is actually processing a command
-			synchronized (threadSync) {
+		try {
+			//开始处理这个socket请求，request和response从connector的池子里拿。
+			if (socket != null){
+				request = (HttpRequestImpl) connector.createRequest();
+				response = (HttpResponseImpl) connector.createResponse();
 				try {
-					threadSync.wait(5000);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+					process(socket);
+				} finally {
+					connector.recycle(request, response);
+					request = null;
+					response = null;
 				}
 			}
+		} finally {
+			//干完活了就回收自己。
+			connector.recycle(this);
 		}
-		thread = null;
 
 	}
 
@@ -1068,8 +977,7 @@ final class CometProcessor implements Lifecycle, Runnable {
 		}
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
-
-		threadStart();
+		stopped = false;
 
 	}
 	public void stop() throws LifecycleException {
@@ -1080,8 +988,7 @@ final class CometProcessor implements Lifecycle, Runnable {
 
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		started = false;
-
-		threadStop();
+		stopped = true;
 
 	}
 	/* ------------------------Lifecycle接口方法--------end------------------------*/
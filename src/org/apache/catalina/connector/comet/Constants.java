@@ -9,8 +9,15 @@ public final class Constants {
 
 	public static final String Package = "org.apache.catalina.connector.comet";
 	public static final int DEFAULT_CONNECTION_TIMEOUT = 0;
+	public static final int DEFAULT_COMET_TIMEOUT = 0;
+
+	/**
+	 * The request attribute under which the <code>CometConnection</code> of
+	 * the request being processed is exposed to the application.
+	 */
+	public static final String COMET_CONNECTION_ATTR =
+			"org.apache.catalina.connector.comet.CometConnection";
 
 	public static final int PROCESSOR_IDLE = 0;
 	public static final int PROCESSOR_ACTIVE = 1;
-
 }
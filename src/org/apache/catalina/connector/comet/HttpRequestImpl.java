@@ -81,6 +81,13 @@ final class HttpRequestImpl
 	protected HttpHeader transferEncodingHeader = null;
 
 
+	/**
+	 * The Comet connection of this request, created the first time the
+	 * application asks for it.
+	 */
+	protected CometConnection cometConnection = null;
+
+
 	// ------------------------------------------------------------- Properties
 
 
@@ -108,6 +115,17 @@ final class HttpRequestImpl
 	}
 
 
+	/**
+	 * [Package Private] Return the Comet connection of this request, or
+	 * <code>null</code> if the application has not asked for it.
+	 */
+	CometConnection getCometConnection() {
+
+		return (cometConnection);
+
+	}
+
+
 	/**
 	 * Return descriptive information about this Request implementation and
 	 * the corresponding version number, in the format
@@ -123,6 +141,28 @@ final class HttpRequestImpl
 	// --------------------------------------------------------- Public Methods
 
 
+	/**
+	 * Return the specified request attribute if it exists; otherwise, return
+	 * <code>null</code>.  The Comet connection of this request is created
+	 * when it is first asked for, so that the requests which do not use it
+	 * do not pay for it.
+	 *
+	 * @param name Name of the request attribute to return
+	 */
+	public Object getAttribute(String name) {
+
+		if (Constants.COMET_CONNECTION_ATTR.equals(name)) {
+			if ((cometConnection == null) && (socket != null))
+				cometConnection = new CometConnection
+						((CometConnector) connector, socket, this,
+								(HttpResponseImpl) response);
+			return (cometConnection);
+		}
+		return (super.getAttribute(name));
+
+	}
+
+
 	/**
 	 * Release all object references, and initialize instance variables, in
 	 * preparation for reuse of this object.
@@ -133,6 +173,7 @@ final class HttpRequestImpl
 		inet = null;
 		nextHeader = 0;
 		connectionHeader = null;
+		cometConnection = null;
 
 	}
 
@@ -7,6 +7,7 @@ import org.apache.catalina.connector.comet.HttpResponseStream;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 
 
@@ -194,6 +195,40 @@ final class HttpResponseImpl
 	}
 
 
+	/**
+	 * Prepare this response to be completed after the end of the request
+	 * processing: the connection will be closed at the end of the response,
+	 * and everything is written to the specified stream from now on.
+	 *
+	 * @param stream The stream which queues the content of the response
+	 */
+	void setCometStream(OutputStream stream) {
+
+		setHeader("Connection", "close");
+		if (responseStream != null)
+			responseStream.checkChunking(this);
+		setStream(stream);
+
+	}
+
+
+	/**
+	 * Flush the writer or stream which the application is using, then the
+	 * response buffer.
+	 *
+	 * @throws java.io.IOException if an input/output error occurs
+	 */
+	void flushContent() throws IOException {
+
+		if (writer != null)
+			writer.flush();
+		else if (stream != null)
+			stream.flush();
+		flushBuffer();
+
+	}
+
+
 	/**
 	 * Has stream been created ?
 	 */
@@ -10,6 +10,7 @@ public final class Constants {
 
 	public static final String Package = "org.apache.catalina.connector.http";
 	public static final int DEFAULT_CONNECTION_TIMEOUT = 60000;
+	public static final int OUTPUT_BUFFER_SIZE = 8192;
 
 	public static final int PROCESSOR_IDLE = 0;
 	public static final int PROCESSOR_ACTIVE = 1;
@@ -29,6 +29,22 @@ final class DefaultHeaders {
 			"transfer-encoding".toCharArray();
 
 
+	// Header names, with their hash code already computed
+	static final HttpHeader AUTHORIZATION =
+			new HttpHeader(AUTHORIZATION_NAME);
+	static final HttpHeader ACCEPT_LANGUAGE =
+			new HttpHeader(ACCEPT_LANGUAGE_NAME);
+	static final HttpHeader COOKIE = new HttpHeader(COOKIE_NAME);
+	static final HttpHeader CONTENT_LENGTH =
+			new HttpHeader(CONTENT_LENGTH_NAME);
+	static final HttpHeader CONTENT_TYPE = new HttpHeader(CONTENT_TYPE_NAME);
+	static final HttpHeader HOST = new HttpHeader(HOST_NAME);
+	static final HttpHeader CONNECTION = new HttpHeader(CONNECTION_NAME);
+	static final HttpHeader EXPECT = new HttpHeader(EXPECT_NAME);
+	static final HttpHeader TRANSFER_ENCODING =
+			new HttpHeader(TRANSFER_ENCODING_NAME);
+
+
 	static final HttpHeader CONNECTION_CLOSE =
 			new HttpHeader("connection", "close");
 	static final HttpHeader EXPECT_CONTINUE =
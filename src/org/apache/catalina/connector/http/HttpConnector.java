@@ -7,8 +7,14 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.security.AccessControlException;
-import java.util.Stack;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
@@ -17,6 +23,7 @@ import java.security.KeyManagementException;
 
 import org.apache.catalina.Connector;
 import org.apache.catalina.Container;
+import org.apache.catalina.Executor;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
@@ -24,9 +31,15 @@ import org.apache.catalina.Logger;
 import org.apache.catalina.Request;
 import org.apache.catalina.Response;
 import org.apache.catalina.Service;
+import org.apache.catalina.connector.RequestResponsePool;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.core.VirtualThreadExecutor;
 import org.apache.catalina.net.DefaultServerSocketFactory;
 import org.apache.catalina.net.ServerSocketFactory;
+import org.apache.catalina.util.CompressionPolicy;
+import org.apache.catalina.util.LatencyHistogram;
 import org.apache.catalina.util.LifecycleSupport;
+import org.apache.catalina.util.RequestStatistics;
 import org.apache.catalina.util.StringManager;
 
 
@@ -40,7 +53,7 @@ import org.apache.catalina.util.StringManager;
  */
 
 
-public final class HttpConnector implements Connector, Lifecycle, Runnable {
+public class HttpConnector implements Connector, Lifecycle, Runnable {
 
 
 	// ----------------------------------------------------- Instance Variables
@@ -83,10 +96,19 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	private Vector created = new Vector();
 
 
+	/**
+	 * The processors of the connections which are being run on their own
+	 * virtual thread.  These processors are neither pooled nor listed in
+	 * <code>created</code>, and are only kept here so that
+	 * <code>stop()</code> can reach them.
+	 */
+	private Set connections = ConcurrentHashMap.newKeySet();
+
+
 	/**
 	 * The current number of processors that have been created.
 	 */
-	private int curProcessors = 0;
+	private AtomicInteger curProcessors = new AtomicInteger();
 
 
 	/**
@@ -95,6 +117,35 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	private int debug = 0;
 
 
+	/**
+	 * The executor which runs our processors.
+	 */
+	private Executor executor = null;
+
+
+	/**
+	 * The name of the shared executor of our <code>Service</code> which
+	 * should run our processors, if any.
+	 */
+	private String executorName = null;
+
+
+	/**
+	 * Has our executor been created by this connector, rather than shared
+	 * with other connectors?
+	 */
+	private boolean internalExecutor = false;
+
+
+	/**
+	 * Does each connection get a processor of its own, rather than one
+	 * from our pool?  This is the case when our executor runs each
+	 * connection on its own virtual thread, so that there are as many
+	 * processors as connections and pooling them saves nothing.
+	 */
+	private boolean perConnection = false;
+
+
 	/**
 	 * The "enable DNS lookups" flag for this Connector.
 	 */
@@ -114,6 +165,15 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 			"org.apache.catalina.connector.http.HttpConnector/1.0";
 
 
+	/**
+	 * The response sent on connections which our executor cannot take.
+	 */
+	private static final byte[] SERVICE_UNAVAILABLE =
+			("HTTP/1.0 503 Service Unavailable\r\n"
+					+ "Content-Length: 0\r\n"
+					+ "Connection: close\r\n\r\n").getBytes();
+
+
 	/**
 	 * The lifecycle event support for this component.
 	 */
@@ -149,7 +209,13 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	 * The set of processors that have been created but are not currently
 	 * being used to process a request.
 	 */
-	private Stack processors = new Stack();
+	private ConcurrentLinkedQueue processors = new ConcurrentLinkedQueue();
+
+
+	/**
+	 * The number of processors in <code>processors</code>.
+	 */
+	private AtomicInteger idleProcessors = new AtomicInteger();
 
 
 	/**
@@ -176,6 +242,43 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	private int redirectPort = 443;
 
 
+	/**
+	 * The pool of the request and response objects used by our processors.
+	 */
+	private RequestResponsePool requestPool = new RequestResponsePool(0);
+
+
+	/**
+	 * Times spent parsing the request line and headers of the requests.
+	 */
+	private LatencyHistogram parseTimes = new LatencyHistogram();
+
+
+	/**
+	 * Times the accepted connections have waited for a processing thread.
+	 */
+	private LatencyHistogram queueTimes = new LatencyHistogram();
+
+
+	/**
+	 * Statistics of the requests processed by this connector, timed from
+	 * the reading of the request line to the sending of the response.
+	 */
+	private RequestStatistics requestStatistics = new RequestStatistics();
+
+
+	/**
+	 * Times spent by the container processing the requests.
+	 */
+	private LatencyHistogram serviceTimes = new LatencyHistogram();
+
+
+	/**
+	 * Times spent finishing and sending the responses.
+	 */
+	private LatencyHistogram writeTimes = new LatencyHistogram();
+
+
 	/**
 	 * The request scheme that will be set on all requests received
 	 * through this connector.
@@ -245,12 +348,50 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	private boolean allowChunking = true;
 
 
+	/**
+	 * Compress the responses of the clients which accept it?
+	 */
+	private boolean compression = false;
+
+
+	/**
+	 * Comma separated list of the MIME types to compress.
+	 */
+	private String compressableMimeType = "text/html,text/xml,text/plain";
+
+
+	/**
+	 * Minimum content length of the responses to compress.
+	 */
+	private int compressionMinSize = 2048;
+
+
+	/**
+	 * Comma separated list of regular expressions matching the user agents
+	 * which must not get compressed responses.
+	 */
+	private String noCompressionUserAgents = null;
+
+
+	/**
+	 * The rules deciding which responses are compressed, or
+	 * <code>null</code> if compression is disabled.
+	 */
+	private volatile CompressionPolicy compressionPolicy = null;
+
+
 	/**
 	 * Use TCP no delay ?
 	 */
 	private boolean tcpNoDelay = true;
 
 
+	/**
+	 * Run each connection on its own virtual thread?
+	 */
+	private boolean useVirtualThreads = false;
+
+
 	// ------------------------------------------------------------- Properties
 
 
@@ -276,6 +417,56 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	}
 
 
+	/**
+	 * Return the executor which runs our processors.
+	 */
+	public Executor getExecutor() {
+
+		return (this.executor);
+
+	}
+
+
+	/**
+	 * Set the executor which runs our processors.  If no executor is set,
+	 * the one named by the <code>executorName</code> property is used, and
+	 * failing that a private executor is created when this connector is
+	 * started, with <code>minProcessors</code> spare threads,
+	 * <code>maxProcessors</code> threads and <code>acceptCount</code>
+	 * queued connections.
+	 *
+	 * @param executor The new executor
+	 */
+	public void setExecutor(Executor executor) {
+
+		this.executor = executor;
+
+	}
+
+
+	/**
+	 * Return the name of the shared executor which runs our processors.
+	 */
+	public String getExecutorName() {
+
+		return (this.executorName);
+
+	}
+
+
+	/**
+	 * Set the name of the shared executor of our <code>Service</code> which
+	 * runs our processors.
+	 *
+	 * @param executorName The new executor name
+	 */
+	public void setExecutorName(String executorName) {
+
+		this.executorName = executorName;
+
+	}
+
+
 	/**
 	 * Return the connection timeout for this Connector.
 	 */
@@ -352,6 +543,91 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	}
 
 
+	/**
+	 * Return the comma separated list of the MIME types to compress.
+	 */
+	public String getCompressableMimeType() {
+
+		return (this.compressableMimeType);
+
+	}
+
+
+	/**
+	 * Set the comma separated list of the MIME types to compress.  An entry
+	 * like <code>text/*</code> matches all the subtypes of a type.
+	 *
+	 * @param compressableMimeType The new list of MIME types
+	 */
+	public void setCompressableMimeType(String compressableMimeType) {
+
+		this.compressableMimeType = compressableMimeType;
+		updateCompressionPolicy();
+
+	}
+
+
+	/**
+	 * Return the compression flag.
+	 */
+	public boolean getCompression() {
+
+		return (this.compression);
+
+	}
+
+
+	/**
+	 * Set the compression flag.  When it is set, the responses whose MIME
+	 * type and length are worth it are compressed for the clients which
+	 * accept it.
+	 *
+	 * @param compression The new compression flag
+	 */
+	public void setCompression(boolean compression) {
+
+		this.compression = compression;
+		updateCompressionPolicy();
+
+	}
+
+
+	/**
+	 * Return the minimum content length of the responses to compress.
+	 */
+	public int getCompressionMinSize() {
+
+		return (this.compressionMinSize);
+
+	}
+
+
+	/**
+	 * Set the minimum content length of the responses to compress.  The
+	 * responses whose length is not known when their first bytes are
+	 * written are always compressed.
+	 *
+	 * @param compressionMinSize The new minimum content length
+	 */
+	public void setCompressionMinSize(int compressionMinSize) {
+
+		this.compressionMinSize = compressionMinSize;
+		updateCompressionPolicy();
+
+	}
+
+
+	/**
+	 * Return the rules deciding which responses are compressed, or
+	 * <code>null</code> if compression is disabled.
+	 */
+	public CompressionPolicy getCompressionPolicy() {
+
+		return (this.compressionPolicy);
+
+	}
+
+
 	/**
 	 * Return the bind IP address for this Connector.
 	 */
@@ -431,11 +707,12 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 
 
 	/**
-	 * Return the current number of processors that have been created.
+	 * Return the current number of processors that have been created, and
+	 * have not been discarded.
 	 */
 	public int getCurProcessors() {
 
-		return (curProcessors);
+		return (created.size() + connections.size());
 
 	}
 
@@ -565,6 +842,32 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	}
 
 
+	/**
+	 * Return the list of the user agents which must not get compressed
+	 * responses.
+	 */
+	public String getNoCompressionUserAgents() {
+
+		return (this.noCompressionUserAgents);
+
+	}
+
+
+	/**
+	 * Set the comma separated list of regular expressions matching the
+	 * <code>User-Agent</code> header of the clients which must not get
+	 * compressed responses.
+	 *
+	 * @param noCompressionUserAgents The new list of regular expressions
+	 */
+	public void setNoCompressionUserAgents(String noCompressionUserAgents) {
+
+		this.noCompressionUserAgents = noCompressionUserAgents;
+		updateCompressionPolicy();
+
+	}
+
+
 	/**
 	 * Return the port number on which we listen for HTTP requests.
 	 */
@@ -655,6 +958,67 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	}
 
 
+	/**
+	 * Return the pool of the request and response objects of this
+	 * connector.
+	 */
+	public RequestResponsePool getRequestPool() {
+
+		return (this.requestPool);
+
+	}
+
+
+	/**
+	 * Return the times spent parsing the requests.
+	 */
+	public LatencyHistogram getParseTimes() {
+
+		return (this.parseTimes);
+
+	}
+
+
+	/**
+	 * Return the times the connections have waited for a processing thread.
+	 */
+	public LatencyHistogram getQueueTimes() {
+
+		return (this.queueTimes);
+
+	}
+
+
+	/**
+	 * Return the statistics of the requests processed by this connector.
+	 */
+	public RequestStatistics getRequestStatistics() {
+
+		return (this.requestStatistics);
+
+	}
+
+
+	/**
+	 * Return the times spent by the container processing the requests.
+	 */
+	public LatencyHistogram getServiceTimes() {
+
+		return (this.serviceTimes);
+
+	}
+
+
+	/**
+	 * Return the times spent finishing and sending the responses.
+	 */
+	public LatencyHistogram getWriteTimes() {
+
+		return (this.writeTimes);
+
+	}
+
+
 	/**
 	 * Return the scheme that will be assigned to requests received
 	 * through this connector.  Default value is "http".
@@ -726,6 +1090,33 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	}
 
 
+	/**
+	 * Return the flag which runs each connection on its own virtual thread.
+	 */
+	public boolean getUseVirtualThreads() {
+
+		return (this.useVirtualThreads);
+
+	}
+
+
+	/**
+	 * Set the flag which runs each connection on its own virtual thread,
+	 * instead of on a pool of <code>maxProcessors</code> threads.  The
+	 * number of connections processed at the same time is then only
+	 * limited by the open sockets.  This flag is ignored when an executor
+	 * has been configured, and on virtual machines which do not support
+	 * virtual threads, in which case a private thread pool is used.
+	 *
+	 * @param useVirtualThreads The new flag
+	 */
+	public void setUseVirtualThreads(boolean useVirtualThreads) {
+
+		this.useVirtualThreads = useVirtualThreads;
+
+	}
+
+
 	// --------------------------------------------------------- Public Methods
 
 
@@ -737,8 +1128,11 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 
 		//        if (debug >= 2)
 		//            log("createRequest: Creating new request");
-		HttpRequestImpl request = new HttpRequestImpl();
-		request.setConnector(this);
+		Request request = requestPool.pollRequest();
+		if (request == null) {
+			request = new HttpRequestImpl();
+			request.setConnector(this);
+		}
 		return (request);
 
 	}
@@ -752,18 +1146,52 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 
 		//        if (debug >= 2)
 		//            log("createResponse: Creating new response");
-		HttpResponseImpl response = new HttpResponseImpl();
-		response.setConnector(this);
+		Response response = requestPool.pollResponse();
+		if (response == null) {
+			response = new HttpResponseImpl();
+			response.setConnector(this);
+		}
 		return (response);
 
 	}
 
 
+	/**
+	 * Forget the request statistics recorded so far.
+	 */
+	public void resetStatistics() {
+
+		requestStatistics.reset();
+		parseTimes.reset();
+		queueTimes.reset();
+		serviceTimes.reset();
+		writeTimes.reset();
+
+	}
+
+
 	// -------------------------------------------------------- Package Methods
 
 
 	/**
-	 * Recycle the specified Processor so that it can be used again.
+	 * Give the specified request and response back to our pool, once the
+	 * connection for which they have been allocated is done with.
+	 *
+	 * @param request  The request to be recycled
+	 * @param response The response to be recycled
+	 */
+	void recycle(Request request, Response response) {
+
+		requestPool.recycle(request, response);
+
+	}
+
+
+	/**
+	 * Recycle the specified Processor so that it can be used again, unless
+	 * <code>maxProcessors</code> processors are idle already, in which case
+	 * it is discarded so that a burst of connections does not leave all the
+	 * processors it needed pooled forever.
 	 *
 	 * @param processor The processor to be recycled
 	 */
@@ -771,44 +1199,117 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 
 		//        if (debug >= 2)
 		//            log("recycle: Recycling processor " + processor);
-		processors.push(processor);
+		if (perConnection) {
+			connections.remove(processor);
+			return;
+		}
+		if ((maxProcessors > 0) && (idleProcessors.get() >= maxProcessors)) {
+			created.removeElement(processor);
+			if (processor instanceof Lifecycle) {
+				try {
+					((Lifecycle) processor).stop();
+				} catch (LifecycleException e) {
+					log("recycle", e);
+				}
+			}
+			return;
+		}
+		idleProcessors.incrementAndGet();
+		processors.offer(processor);
 
 	}
 
 
-	// -------------------------------------------------------- Private Methods
+	/**
+	 * Hand a newly accepted socket off to an appropriate processor.
+	 *
+	 * @param socket The socket returned by <code>accept()</code>
+	 */
+	void dispatch(Socket socket) {
+
+		execute(socket, null, 0);
+
+	}
+
+
+	/**
+	 * Assign the specified socket to a processor, and hand the processor to
+	 * our executor.  If the executor cannot take more work, the connection
+	 * is refused with a <code>503</code> response.
+	 *
+	 * @param socket    The socket to process
+	 * @param readAhead Bytes already read from the socket, or
+	 *                  <code>null</code>
+	 * @param count     Number of valid bytes in <code>readAhead</code>
+	 */
+	void execute(Socket socket, byte[] readAhead, int count) {
+
+		HttpProcessor processor = createProcessor();
+		if (processor == null) {
+			log(sm.getString("httpConnector.noProcessor"));
+			reject(socket);
+			return;
+		}
+		processor.assign(socket, readAhead, count);
+		try {
+			executor.execute(processor);
+		} catch (RejectedExecutionException e) {
+			processor.assign(null, null, 0);
+			recycle(processor);
+			if (debug >= 1)
+				log(sm.getString("httpConnector.rejected"));
+			reject(socket);
+		}
+
+		// The processor will recycle itself when it finishes
+
+	}
+
+
+	/**
+	 * Take back an idle keep-alive connection from a processor which has
+	 * finished with its current request, so that the processor can be
+	 * recycled without waiting for the next request to arrive.  This
+	 * connector has no way of watching idle sockets, so it always returns
+	 * <code>false</code> and the processor keeps blocking on the socket.
+	 *
+	 * @param socket The idle connection
+	 * @return <code>true</code> if the connector has taken ownership of
+	 *         the socket
+	 */
+	boolean park(Socket socket) {
+
+		return (false);
+
+	}
 
 
 	/**
 	 * Create (or allocate) and return an available processor for use in
-	 * processing a specific HTTP request, if possible.  If the maximum
-	 * allowed processors have already been created and are in use, return
-	 * <code>null</code> instead.
+	 * processing a specific HTTP request.  The number of processors in use
+	 * is bounded by our executor, which runs them, so a new processor is
+	 * created whenever the pool is empty; <code>null</code> is only
+	 * returned if the new processor cannot be started.  When each
+	 * connection runs on its own virtual thread, a new processor is
+	 * created for each connection.
 	 */
-	private HttpProcessor createProcessor() {
+	HttpProcessor createProcessor() {
 
-		synchronized (processors) {
-			if (processors.size() > 0) {
-				// if (debug >= 2)
-				// log("createProcessor: Reusing existing processor");
-				return ((HttpProcessor) processors.pop());
-			}
-			if ((maxProcessors > 0) && (curProcessors < maxProcessors)) {
-				// if (debug >= 2)
-				// log("createProcessor: Creating new processor");
-				return (newProcessor());
-			} else {
-				if (maxProcessors < 0) {
-					// if (debug >= 2)
-					// log("createProcessor: Creating new processor");
-					return (newProcessor());
-				} else {
-					// if (debug >= 2)
-					// log("createProcessor: Cannot create new processor");
-					return (null);
-				}
-			}
+		if (perConnection) {
+			HttpProcessor processor = newProcessor();
+			if (processor != null)
+				connections.add(processor);
+			return (processor);
+		}
+		HttpProcessor processor = (HttpProcessor) processors.poll();
+		if (processor != null) {
+			idleProcessors.decrementAndGet();
+			return (processor);
 		}
+		processor = newProcessor();
+		if (processor != null)
+			created.addElement(processor);
+		return (processor);
 
 	}
 
@@ -818,7 +1319,7 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	 *
 	 * @param message Message to be logged
 	 */
-	private void log(String message) {
+	void log(String message) {
 		Logger logger = container.getLogger();
 		String localName = threadName;
 		if (localName == null)
@@ -837,7 +1338,7 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	 * @param message   Message to be logged
 	 * @param throwable Associated exception
 	 */
-	private void log(String message, Throwable throwable) {
+	void log(String message, Throwable throwable) {
 
 		Logger logger = container.getLogger();
 		String localName = threadName;
@@ -853,6 +1354,23 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	}
 
 
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Build the compression rules from our current properties.
+	 */
+	private void updateCompressionPolicy() {
+
+		if (compression)
+			compressionPolicy = new CompressionPolicy(compressableMimeType,
+					compressionMinSize, noCompressionUserAgents);
+		else
+			compressionPolicy = null;
+
+	}
+
+
 	/**
 	 * Create and return a new processor suitable for processing HTTP
 	 * requests and returning the corresponding responses.
@@ -861,7 +1379,8 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 
 		//        if (debug >= 2)
 		//            log("newProcessor: Creating new processor");
-		HttpProcessor processor = new HttpProcessor(this, curProcessors++);
+		int id = curProcessors.getAndIncrement();
+		HttpProcessor processor = new HttpProcessor(this, id);
 		if (processor instanceof Lifecycle) {
 			try {
 				((Lifecycle) processor).start();
@@ -870,12 +1389,62 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 				return (null);
 			}
 		}
-		created.addElement(processor);
 		return (processor);
 
 	}
 
 
+	/**
+	 * Create and start the private executor which runs each connection on
+	 * its own virtual thread.  If virtual threads are not supported by this
+	 * virtual machine, a warning is logged and <code>null</code> is
+	 * returned.
+	 */
+	private Executor createVirtualExecutor() {
+
+		if (!VirtualThreadExecutor.isSupported()) {
+			log(sm.getString("httpConnector.noVirtualThreads"));
+			return (null);
+		}
+		VirtualThreadExecutor internal = new VirtualThreadExecutor();
+		internal.setName(threadName);
+		internal.setNamePrefix("HttpProcessor[" + port + "]-");
+		try {
+			internal.start();
+		} catch (LifecycleException e) {
+			log(sm.getString("httpConnector.noVirtualThreads"), e);
+			return (null);
+		}
+		return (internal);
+
+	}
+
+
+	/**
+	 * Refuse the specified connection with a <code>503</code> response,
+	 * and close it.
+	 *
+	 * @param socket The connection to refuse
+	 */
+	private void reject(Socket socket) {
+
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write(SERVICE_UNAVAILABLE);
+			output.flush();
+		} catch (IOException e) {
+			;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				;
+			}
+		}
+
+	}
+
+
 	/**
 	 * Open and return the server socket for this Connector.  If an IP
 	 * address has been specified, the socket will be opened only on that
@@ -892,7 +1461,7 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 	 * @throws KeyManagementException    problem in the key management
 	 *                                   layer (SSL only)
 	 */
-	private ServerSocket open() throws IOException, KeyStoreException, NoSuchAlgorithmException,CertificateException, UnrecoverableKeyException,KeyManagementException {
+	ServerSocket open() throws IOException, KeyStoreException, NoSuchAlgorithmException,CertificateException, UnrecoverableKeyException,KeyManagementException {
 
 		// Acquire the server socket factory for this Connector
 		ServerSocketFactory factory = getFactory();
@@ -996,21 +1565,7 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 			}
 
 			// Hand this socket off to an appropriate processor
-			HttpProcessor processor = createProcessor();
-			if (processor == null) {
-				try {
-					log(sm.getString("httpConnector.noProcessor"));
-					socket.close();
-				} catch (IOException e) {
-					;
-				}
-				continue;
-			}
-			//            if (debug >= 3)
-			//                log("run: Assigning socket to processor " + processor);
-			processor.assign(socket);
-
-			// The processor will recycle itself when it finishes
+			dispatch(socket);
 
 		}
 
@@ -1151,17 +1706,49 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
 
-		// Start our background thread
-		threadStart();
+		// Find or create the executor which will run our processors
+		if (executor == null) {
+			if ((executorName != null) && (service != null))
+				executor = service.getExecutor(executorName);
+			if (executor == null) {
+				if (executorName != null)
+					log(sm.getString("httpConnector.noExecutor", executorName));
+				if (useVirtualThreads) {
+					executor = createVirtualExecutor();
+					perConnection = (executor != null);
+				}
+				if (executor == null) {
+					StandardThreadExecutor internal =
+							new StandardThreadExecutor();
+					internal.setName(threadName);
+					internal.setNamePrefix("HttpProcessor[" + port + "]-");
+					internal.setMinSpareThreads(minProcessors);
+					internal.setMaxThreads(maxProcessors);
+					internal.setMaxQueueSize(acceptCount);
+					internal.start();
+					executor = internal;
+				}
+				internalExecutor = true;
+			}
+		}
+
+		// Keep as many idle requests and responses as we may use at once
+		requestPool.setMaxIdle(maxProcessors);
 
 		// Create the specified minimum number of processors
-		while (curProcessors < minProcessors) {
-			if ((maxProcessors > 0) && (curProcessors >= maxProcessors))
+		while (!perConnection && (curProcessors.get() < minProcessors)) {
+			if ((maxProcessors > 0) && (curProcessors.get() >= maxProcessors))
 				break;
 			HttpProcessor processor = newProcessor();
+			if (processor == null)
+				break;
+			created.addElement(processor);
 			recycle(processor);
 		}
 
+		// Start our background thread
+		threadStart();
+
 	}
 
 
@@ -1190,6 +1777,15 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 				}
 			}
 		}
+		Iterator live = connections.iterator();
+		while (live.hasNext()) {
+			HttpProcessor processor = (HttpProcessor) live.next();
+			try {
+				processor.stop();
+			} catch (LifecycleException e) {
+				log("HttpConnector.stop", e);
+			}
+		}
 
 		synchronized (threadSync) {
 			// Close the server socket we were using
@@ -1205,6 +1801,23 @@ public final class HttpConnector implements Connector, Lifecycle, Runnable {
 		}
 		serverSocket = null;
 
+		// Stop our private executor, and forget the processors
+		if (internalExecutor) {
+			try {
+				executor.stop();
+			} catch (LifecycleException e) {
+				log("HttpConnector.stop", e);
+			}
+			executor = null;
+			internalExecutor = false;
+			perConnection = false;
+		}
+		processors.clear();
+		idleProcessors.set(0);
+		created.clear();
+		connections.clear();
+		requestPool.clear();
+
 	}
 
 
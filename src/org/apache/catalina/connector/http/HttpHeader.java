@@ -41,6 +41,14 @@ final class HttpHeader {
 	}
 
 
+	public HttpHeader(char[] name) {
+
+		this(name, name.length, new char[0], 0);
+		hashCode();
+
+	}
+
+
 	public HttpHeader(String name, String value) {
 
 		this.name = name.toLowerCase().toCharArray();
@@ -61,9 +69,47 @@ final class HttpHeader {
 	protected int hashCode = 0;
 
 
+	/**
+	 * The name of the header as a String, once it has been asked for.
+	 */
+	private String nameString = null;
+
+
+	/**
+	 * The value of the header as a String, once it has been asked for.
+	 */
+	private String valueString = null;
+
+
 	// ------------------------------------------------------------- Properties
 
 
+	/**
+	 * Return the name of the header as a String.  The String is only
+	 * created on the first call.
+	 */
+	public String getName() {
+
+		if (nameString == null)
+			nameString = new String(name, 0, nameEnd);
+		return (nameString);
+
+	}
+
+
+	/**
+	 * Return the value of the header as a String.  The String is only
+	 * created on the first call.
+	 */
+	public String getValue() {
+
+		if (valueString == null)
+			valueString = new String(value, 0, valueEnd);
+		return (valueString);
+
+	}
+
+
 	// --------------------------------------------------------- Public Methods
 
 
@@ -76,6 +122,8 @@ final class HttpHeader {
 		nameEnd = 0;
 		valueEnd = 0;
 		hashCode = 0;
+		nameString = null;
+		valueString = null;
 
 	}
 
@@ -109,7 +157,33 @@ final class HttpHeader {
 	 * The String given must be made of lower case characters.
 	 */
 	public boolean equals(String str) {
-		return equals(str.toCharArray(), str.length());
+		int end = str.length();
+		if (end != nameEnd)
+			return false;
+		for (int i = 0; i < end; i++) {
+			if (str.charAt(i) != name[i])
+				return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Test if the name of the header is equal to the given string, ignoring
+	 * case.
+	 */
+	public boolean equalsIgnoreCase(String str) {
+		int end = str.length();
+		if (end != nameEnd)
+			return false;
+		for (int i = 0; i < end; i++) {
+			char c = str.charAt(i);
+			if ((c >= 'A') && (c <= 'Z'))
+				c = (char) (c + ('a' - 'A'));
+			if (c != name[i])
+				return false;
+		}
+		return true;
 	}
 
 
@@ -139,7 +213,14 @@ final class HttpHeader {
 	 * Test if the value of the header is equal to the given string.
 	 */
 	public boolean valueEquals(String str) {
-		return valueEquals(str.toCharArray(), str.length());
+		int end = str.length();
+		if (end != valueEnd)
+			return false;
+		for (int i = 0; i < end; i++) {
+			if (str.charAt(i) != value[i])
+				return false;
+		}
+		return true;
 	}
 
 
@@ -197,9 +278,13 @@ final class HttpHeader {
 
 	/**
 	 * Test if the name of the header is equal to the given header.
-	 * All the characters in the name must already be lower case.
+	 * All the characters in the name must already be lower case.  Headers
+	 * with different hash codes are told apart without comparing their
+	 * names.
 	 */
 	public boolean equals(HttpHeader header) {
+		if (hashCode() != header.hashCode())
+			return false;
 		return (equals(header.name, header.nameEnd));
 	}
 
@@ -237,7 +322,7 @@ final class HttpHeader {
 
 	public boolean equals(Object obj) {
 		if (obj instanceof String) {
-			return equals(((String) obj).toLowerCase());
+			return equalsIgnoreCase((String) obj);
 		} else if (obj instanceof HttpHeader) {
 			return equals((HttpHeader) obj);
 		}
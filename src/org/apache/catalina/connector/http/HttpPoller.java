@@ -0,0 +1,529 @@
+package org.apache.catalina.connector.http;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+
+/**
+ * Background thread which watches idle connections on behalf of an
+ * <code>NioHttpConnector</code>.  Each registered channel is kept in
+ * non-blocking mode on a <code>Selector</code> until a complete request
+ * head has been read; the channel is then switched back to blocking mode
+ * and handed to the connector's executor, together with the bytes read
+ * so far.  Connections which stay idle for longer than the
+ * connector's connection timeout are closed.
+ */
+
+final class HttpPoller implements Runnable {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new HttpPoller associated with the specified connector.
+	 *
+	 * @param connector NioHttpConnector that owns this poller
+	 * @param id        Identifier of this HttpPoller (unique per connector)
+	 */
+	public HttpPoller(NioHttpConnector connector, int id) {
+
+		super();
+		this.connector = connector;
+		this.bufferSize = connector.getBufferSize();
+		this.timeout = connector.getConnectionTimeout();
+		this.threadName =
+				"HttpPoller[" + connector.getPort() + "][" + id + "]";
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Size of the read-ahead buffer, which is also the size of the
+	 * processor input buffer.
+	 */
+	private int bufferSize = 2048;
+
+
+	/**
+	 * The NioHttpConnector with which this poller is associated.
+	 */
+	private NioHttpConnector connector = null;
+
+
+	/**
+	 * Channels waiting to be registered with our selector.
+	 */
+	private ArrayList events = new ArrayList();
+
+
+	/**
+	 * Time at which idle connections were last checked for expiration.
+	 */
+	private long lastExpiration = 0L;
+
+
+	/**
+	 * The buffer into which channels are read.
+	 */
+	private ByteBuffer readBuffer = null;
+
+
+	/**
+	 * The selector watching our channels.
+	 */
+	private Selector selector = null;
+
+
+	/**
+	 * The shutdown signal to our background thread
+	 */
+	private boolean stopped = false;
+
+
+	/**
+	 * The background thread.
+	 */
+	private Thread thread = null;
+
+
+	/**
+	 * The name to register for the background thread.
+	 */
+	private String threadName = null;
+
+
+	/**
+	 * Idle timeout, in milliseconds, or 0 for no timeout.
+	 */
+	private int timeout = 0;
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Return a String value representing this object.
+	 */
+	public String toString() {
+
+		return (this.threadName);
+
+	}
+
+
+	// -------------------------------------------------------- Package Methods
+
+
+	/**
+	 * Register the specified channel with this poller.  The actual
+	 * registration happens on the poller thread.
+	 *
+	 * @param channel The channel to watch
+	 * @return <code>false</code> if this poller has been stopped
+	 */
+	boolean add(SocketChannel channel) {
+
+		synchronized (events) {
+			if (stopped)
+				return (false);
+			events.add(channel);
+		}
+		selector.wakeup();
+		return (true);
+
+	}
+
+
+	/**
+	 * Return the number of channels currently registered with this poller.
+	 */
+	int getKeyCount() {
+
+		Selector selector = this.selector;
+		if (selector == null)
+			return (0);
+		try {
+			return (selector.keys().size());
+		} catch (Exception e) {
+			return (0);
+		}
+
+	}
+
+
+	/**
+	 * Open the selector and start the background thread.
+	 *
+	 * @throws IOException if the selector cannot be opened
+	 */
+	void start() throws IOException {
+
+		selector = Selector.open();
+		readBuffer = ByteBuffer.allocateDirect(bufferSize);
+		thread = new Thread(this, threadName);
+		thread.setDaemon(true);
+		thread.start();
+
+	}
+
+
+	/**
+	 * Stop the background thread.  All the connections which are still
+	 * registered will be closed by the background thread on its way out.
+	 */
+	void stop() {
+
+		synchronized (events) {
+			stopped = true;
+		}
+		if (selector != null)
+			selector.wakeup();
+		thread = null;
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Cancel the specified key and close its channel.
+	 *
+	 * @param key The key to cancel
+	 */
+	private void cancel(SelectionKey key) {
+
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			;
+		}
+
+	}
+
+
+	/**
+	 * Hand the connections which have a complete request head to the
+	 * connector's executor.
+	 *
+	 * @param ready The keys which are ready
+	 */
+	private void dispatch(ArrayList ready) throws IOException {
+
+		if (ready.isEmpty())
+			return;
+		for (int i = 0; i < ready.size(); i++)
+			((SelectionKey) ready.get(i)).cancel();
+
+		// Deregister the cancelled keys so the channels can block again
+		selector.selectNow();
+
+		for (int i = 0; i < ready.size(); i++) {
+			SelectionKey key = (SelectionKey) ready.get(i);
+			SocketChannel channel = (SocketChannel) key.channel();
+			ReadAhead head = (ReadAhead) key.attachment();
+			try {
+				channel.configureBlocking(true);
+			} catch (IOException e) {
+				try {
+					channel.close();
+				} catch (IOException f) {
+					;
+				}
+				continue;
+			}
+			connector.execute(channel.socket(), head.buf, head.count);
+		}
+
+	}
+
+
+	/**
+	 * Close the connections which have been idle for longer than the
+	 * connection timeout.
+	 */
+	private void expire() {
+
+		long now = System.currentTimeMillis();
+		if ((timeout <= 0) || ((now - lastExpiration) < 1000L))
+			return;
+		lastExpiration = now;
+		Iterator keys = selector.keys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = (SelectionKey) keys.next();
+			if (!key.isValid())
+				continue;
+			ReadAhead head = (ReadAhead) key.attachment();
+			if ((now - head.lastAccess) > timeout)
+				cancel(key);
+		}
+
+	}
+
+
+	/**
+	 * Register the channels added since the last iteration.
+	 */
+	private void register() {
+
+		Object channels[] = null;
+		synchronized (events) {
+			if (events.isEmpty())
+				return;
+			channels = events.toArray();
+			events.clear();
+		}
+		for (int i = 0; i < channels.length; i++) {
+			SocketChannel channel = (SocketChannel) channels[i];
+			try {
+				channel.configureBlocking(false);
+				channel.register(selector, SelectionKey.OP_READ,
+						new ReadAhead());
+			} catch (Exception e) {
+				try {
+					channel.close();
+				} catch (IOException f) {
+					;
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Close all the channels still registered with our selector.
+	 */
+	private void closeAll() {
+
+		synchronized (events) {
+			for (int i = 0; i < events.size(); i++) {
+				try {
+					((SocketChannel) events.get(i)).close();
+				} catch (IOException e) {
+					;
+				}
+			}
+			events.clear();
+		}
+		try {
+			Iterator keys = selector.keys().iterator();
+			while (keys.hasNext())
+				cancel((SelectionKey) keys.next());
+			selector.close();
+		} catch (Exception e) {
+			;
+		}
+
+	}
+
+
+	/**
+	 * Read whatever is available on the specified key, and return
+	 * <code>true</code> if the request head is now complete (or if the
+	 * read-ahead buffer is full, in which case the processor will read
+	 * the rest itself).
+	 *
+	 * @param key The readable key
+	 */
+	private boolean read(SelectionKey key) {
+
+		SocketChannel channel = (SocketChannel) key.channel();
+		ReadAhead head = (ReadAhead) key.attachment();
+		// Only take off the socket what the read-ahead buffer can hold, the
+		// rest being left for the processor
+		readBuffer.clear();
+		readBuffer.limit(Math.min(readBuffer.capacity(),
+				head.remaining(bufferSize)));
+		int n = -1;
+		try {
+			n = channel.read(readBuffer);
+		} catch (IOException e) {
+			n = -1;
+		}
+		if (n < 0) {
+			// The client has closed the connection
+			cancel(key);
+			return (false);
+		}
+		if (n == 0)
+			return (false);
+		readBuffer.flip();
+		head.append(readBuffer, bufferSize);
+		if (head.isComplete()) {
+			key.interestOps(0);
+			return (true);
+		}
+		return (false);
+
+	}
+
+
+	// ---------------------------------------------- Background Thread Methods
+
+
+	/**
+	 * The background thread that watches idle connections and hands them
+	 * off to processors.
+	 */
+	public void run() {
+
+		ArrayList ready = new ArrayList();
+
+		while (!stopped) {
+
+			try {
+
+				register();
+				selector.select(1000L);
+				if (stopped)
+					break;
+
+				Iterator keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = (SelectionKey) keys.next();
+					keys.remove();
+					try {
+						if (key.isValid() && key.isReadable() && read(key))
+							ready.add(key);
+					} catch (CancelledKeyException e) {
+						cancel(key);
+					}
+				}
+
+				dispatch(ready);
+				ready.clear();
+				expire();
+
+			} catch (Throwable t) {
+				connector.log(threadName + " run", t);
+			}
+
+		}
+
+		closeAll();
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * The bytes read so far from an idle connection, and the state of the
+	 * scan for the end of the request head.
+	 */
+	private static final class ReadAhead {
+
+		/**
+		 * The bytes read so far, allocated when the first byte arrives.
+		 */
+		byte[] buf = null;
+
+		/**
+		 * Number of valid bytes in <code>buf</code>.
+		 */
+		int count = 0;
+
+		/**
+		 * Time of the last activity on this connection.
+		 */
+		long lastAccess = System.currentTimeMillis();
+
+		/**
+		 * Number of bytes already scanned.
+		 */
+		int scanned = 0;
+
+		/**
+		 * Number of complete (non-blank) lines seen so far.
+		 */
+		int lines = 0;
+
+		/**
+		 * Length of the current line, not counting CR.
+		 */
+		int lineLength = 0;
+
+		/**
+		 * Number of spaces seen in the request line.
+		 */
+		int spaces = 0;
+
+		/**
+		 * Has the end of the request head been reached?
+		 */
+		boolean complete = false;
+
+		/**
+		 * Append the bytes available in the specified buffer, up to the
+		 * given capacity.
+		 */
+		void append(ByteBuffer src, int capacity) {
+			if (buf == null)
+				buf = new byte[capacity];
+			int n = Math.min(src.remaining(), buf.length - count);
+			src.get(buf, count, n);
+			count += n;
+			lastAccess = System.currentTimeMillis();
+			scan();
+		}
+
+		/**
+		 * Return the number of bytes which can still be buffered, given
+		 * the capacity of the buffer once it is allocated.
+		 */
+		int remaining(int capacity) {
+			return (((buf == null) ? capacity : buf.length) - count);
+		}
+
+		/**
+		 * Return <code>true</code> if the head is complete or if no more
+		 * bytes can be buffered.
+		 */
+		boolean isComplete() {
+			return (complete || (count == buf.length));
+		}
+
+		/**
+		 * Scan the new bytes for the blank line ending the request head.
+		 * Blank lines before the request line are ignored, and a request
+		 * line without a protocol (HTTP/0.9) ends the head on its own.
+		 */
+		private void scan() {
+			while (!complete && (scanned < count)) {
+				byte b = buf[scanned++];
+				if (b == '\n') {
+					if (lineLength == 0) {
+						if (lines > 0)
+							complete = true;
+					} else {
+						lines++;
+						if ((lines == 1) && (spaces < 2))
+							complete = true;
+					}
+					lineLength = 0;
+				} else if (b != '\r') {
+					if ((lines == 0) && (b == ' '))
+						spaces++;
+					lineLength++;
+				}
+			}
+		}
+
+	}
+
+
+}
@@ -22,6 +22,7 @@ import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Logger;
+import org.apache.catalina.util.CompressionPolicy;
 import org.apache.catalina.util.FastHttpDateFormat;
 import org.apache.catalina.util.LifecycleSupport;
 import org.apache.catalina.util.RequestUtil;
@@ -31,11 +32,12 @@ import org.apache.catalina.util.StringParser;
 
 
 /**
- * Implementation of a request processor (and its associated thread) that may
- * be used by an HttpConnector to process individual requests.  The connector
- * will allocate a processor from its pool, assign a particular socket to it,
- * and the processor will then execute the processing required to complete
- * the request.  When the processor is completed, it will recycle itself.
+ * Implementation of a request processor that may be used by an
+ * HttpConnector to process individual requests.  The connector will
+ * allocate a processor from its pool, assign a particular socket to it, and
+ * hand the processor to its executor, which runs the processing required
+ * to complete the request on one of its threads.  When the processor is
+ * completed, it will recycle itself.
  *
  * @author Craig R. McClanahan
  * @author Remy Maucherat
@@ -74,8 +76,6 @@ final class HttpProcessor
 		this.id = id;
 		this.proxyName = connector.getProxyName();
 		this.proxyPort = connector.getProxyPort();
-		this.request = (HttpRequestImpl) connector.createRequest();
-		this.response = (HttpResponseImpl) connector.createResponse();
 		this.serverPort = connector.getPort();
 		this.threadName =
 				"HttpProcessor[" + connector.getPort() + "][" + id + "]";
@@ -86,12 +86,6 @@ final class HttpProcessor
 	// ----------------------------------------------------- Instance Variables
 
 
-	/**
-	 * Is there a new socket available?
-	 */
-	private boolean available = false;
-
-
 	/**
 	 * The HttpConnector with which this processor is associated.
 	 */
@@ -148,13 +142,15 @@ final class HttpProcessor
 
 
 	/**
-	 * The HTTP request object we will pass to our associated container.
+	 * The HTTP request object we will pass to our associated container,
+	 * taken from the connector's pool for the current connection.
 	 */
 	private HttpRequestImpl request = null;
 
 
 	/**
-	 * The HTTP response object we will pass to our associated container.
+	 * The HTTP response object we will pass to our associated container,
+	 * taken from the connector's pool for the current connection.
 	 */
 	private HttpResponseImpl response = null;
 
@@ -173,40 +169,41 @@ final class HttpProcessor
 
 
 	/**
-	 * The socket we are currently processing a request for.  This object
-	 * is used for inter-thread communication only.
+	 * The socket assigned to this processor, which has not been picked up
+	 * by <code>run()</code> yet.
 	 */
 	private Socket socket = null;
 
 
 	/**
-	 * Has this component been started yet?
+	 * Bytes which the connector has already read from the socket assigned
+	 * to this processor, if any.
 	 */
-	private boolean started = false;
+	private byte[] readAhead = null;
 
 
 	/**
-	 * The shutdown signal to our background thread
+	 * Number of valid bytes in <code>readAhead</code>.
 	 */
-	private boolean stopped = false;
+	private int readAheadCount = 0;
 
 
 	/**
-	 * The background thread.
+	 * Has this component been started yet?
 	 */
-	private Thread thread = null;
+	private boolean started = false;
 
 
 	/**
-	 * The name to register for the background thread.
+	 * The shutdown signal, which ends the keep-alive loop.
 	 */
-	private String threadName = null;
+	private boolean stopped = false;
 
 
 	/**
-	 * The thread synchronization object.
+	 * The name of this processor, used in log messages.
 	 */
-	private Object threadSync = new Object();
+	private String threadName = null;
 
 
 	/**
@@ -261,6 +258,20 @@ final class HttpProcessor
 	private int status = Constants.PROCESSOR_IDLE;
 
 
+	/**
+	 * Time at which the socket was assigned to this processor, in
+	 * nanoseconds.
+	 */
+	private long assignTime = 0L;
+
+
+	/**
+	 * Time at which the request line of the current request was read, in
+	 * nanoseconds, or 0 if no request is being processed.
+	 */
+	private long requestStart = 0L;
+
+
 	// --------------------------------------------------------- Public Methods
 
 
@@ -278,65 +289,46 @@ final class HttpProcessor
 
 
 	/**
-	 * Process an incoming TCP/IP connection on the specified socket.  Any
-	 * exception that occurs during processing must be logged and swallowed.
-	 * <b>NOTE</b>:  This method is called from our Connector's thread.  We
-	 * must assign it to our own thread so that multiple simultaneous
-	 * requests can be handled.
+	 * Assign an incoming TCP/IP connection on the specified socket to this
+	 * processor.  The socket is processed when the connector's executor
+	 * runs this processor.
 	 *
 	 * @param socket TCP socket to process
 	 */
-	synchronized void assign(Socket socket) {
+	void assign(Socket socket) {
 
-		// Wait for the Processor to get the previous Socket
-		while (available) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-			}
-		}
-
-		// Store the newly available Socket and notify our thread
-		this.socket = socket;
-		available = true;
-		notifyAll();
-
-		if ((debug >= 1) && (socket != null))
-			log(" An incoming request is being assigned");
+		assign(socket, null, 0);
 
 	}
 
 
-	// -------------------------------------------------------- Private Methods
-
-
 	/**
-	 * Await a newly assigned Socket from our Connector, or <code>null</code>
-	 * if we are supposed to shut down.
+	 * Assign an incoming TCP/IP connection on the specified socket, the
+	 * first bytes of which have already been read by the connector, to this
+	 * processor.  Handing the processor to the executor afterwards makes
+	 * these fields visible to the thread which runs it.
+	 *
+	 * @param socket    TCP socket to process
+	 * @param readAhead Bytes already read from the socket, or
+	 *                  <code>null</code>
+	 * @param count     Number of valid bytes in <code>readAhead</code>
 	 */
-	private synchronized Socket await() {
-
-		// Wait for the Connector to provide a new Socket
-		while (!available) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-			}
-		}
+	void assign(Socket socket, byte[] readAhead, int count) {
 
-		// Notify the Connector that we have received this Socket
-		Socket socket = this.socket;
-		available = false;
-		notifyAll();
+		this.socket = socket;
+		this.readAhead = readAhead;
+		this.readAheadCount = count;
+		this.assignTime = System.nanoTime();
 
 		if ((debug >= 1) && (socket != null))
-			log("  The incoming request has been awaited");
-
-		return (socket);
+			log(" An incoming request is being assigned");
 
 	}
 
 
+	// -------------------------------------------------------- Private Methods
+
+
 	/**
 	 * Log a message on the Logger associated with our Container (if any)
 	 *
@@ -527,18 +519,19 @@ final class HttpProcessor
 				}
 			}
 
-			String value = new String(header.value, 0, header.valueEnd);
 			if (debug >= 1)
-				log(" Header " + new String(header.name, 0, header.nameEnd)
-						+ " = " + value);
-
-			// Set the corresponding request headers
-			if (header.equals(DefaultHeaders.AUTHORIZATION_NAME)) {
-				request.setAuthorization(value);
-			} else if (header.equals(DefaultHeaders.ACCEPT_LANGUAGE_NAME)) {
-				parseAcceptLanguage(value);
-			} else if (header.equals(DefaultHeaders.COOKIE_NAME)) {
-				Cookie cookies[] = RequestUtil.parseCookieHeader(value);
+				log(" Header " + header.getName() + " = " + header.getValue());
+
+			// Set the corresponding request headers.  The well known names
+			// are matched on their hash code first, and the value is only
+			// turned into a String when it is needed.
+			if (header.equals(DefaultHeaders.AUTHORIZATION)) {
+				request.setAuthorization(header.getValue());
+			} else if (header.equals(DefaultHeaders.ACCEPT_LANGUAGE)) {
+				parseAcceptLanguage(header.getValue());
+			} else if (header.equals(DefaultHeaders.COOKIE)) {
+				Cookie cookies[] =
+						RequestUtil.parseCookieHeader(header.getValue());
 				for (int i = 0; i < cookies.length; i++) {
 					if (cookies[i].getName().equals
 							(Globals.SESSION_COOKIE_NAME)) {
@@ -560,20 +553,18 @@ final class HttpProcessor
 								cookies[i].getValue());
 					request.addCookie(cookies[i]);
 				}
-			} else if (header.equals(DefaultHeaders.CONTENT_LENGTH_NAME)) {
-				int n = -1;
-				try {
-					n = Integer.parseInt(value);
-				} catch (Exception e) {
+			} else if (header.equals(DefaultHeaders.CONTENT_LENGTH)) {
+				int n = parseInt(header.value, 0, header.valueEnd);
+				if (n < 0) {
 					throw new ServletException
 							(sm.getString
 									("httpProcessor.parseHeaders.contentLength"));
 				}
 				request.setContentLength(n);
-			} else if (header.equals(DefaultHeaders.CONTENT_TYPE_NAME)) {
-				request.setContentType(value);
-			} else if (header.equals(DefaultHeaders.HOST_NAME)) {
-				int n = value.indexOf(':');
+			} else if (header.equals(DefaultHeaders.CONTENT_TYPE)) {
+				request.setContentType(header.getValue());
+			} else if (header.equals(DefaultHeaders.HOST)) {
+				int n = header.valueIndexOf(':', 0);
 				if (n < 0) {
 					if (connector.getScheme().equals("http")) {
 						request.setServerPort(80);
@@ -583,20 +574,19 @@ final class HttpProcessor
 					if (proxyName != null)
 						request.setServerName(proxyName);
 					else
-						request.setServerName(value);
+						request.setServerName(header.getValue());
 				} else {
 					if (proxyName != null)
 						request.setServerName(proxyName);
 					else
-						request.setServerName(value.substring(0, n).trim());
+						request.setServerName
+								(new String(header.value, 0, n).trim());
 					if (proxyPort != 0)
 						request.setServerPort(proxyPort);
 					else {
-						int port = 80;
-						try {
-							port =
-									Integer.parseInt(value.substring(n + 1).trim());
-						} catch (Exception e) {
+						int port =
+								parseInt(header.value, n + 1, header.valueEnd);
+						if (port < 0) {
 							throw new ServletException
 									(sm.getString
 											("httpProcessor.parseHeaders.portNumber"));
@@ -604,7 +594,7 @@ final class HttpProcessor
 						request.setServerPort(port);
 					}
 				}
-			} else if (header.equals(DefaultHeaders.CONNECTION_NAME)) {
+			} else if (header.equals(DefaultHeaders.CONNECTION)) {
 				if (header.valueEquals
 						(DefaultHeaders.CONNECTION_CLOSE_VALUE)) {
 					keepAlive = false;
@@ -616,14 +606,14 @@ final class HttpProcessor
                   keepAlive = true;
                   }
                 */
-			} else if (header.equals(DefaultHeaders.EXPECT_NAME)) {
+			} else if (header.equals(DefaultHeaders.EXPECT)) {
 				if (header.valueEquals(DefaultHeaders.EXPECT_100_VALUE))
 					sendAck = true;
 				else
 					throw new ServletException
 							(sm.getString
 									("httpProcessor.parseHeaders.unknownExpectation"));
-			} else if (header.equals(DefaultHeaders.TRANSFER_ENCODING_NAME)) {
+			} else if (header.equals(DefaultHeaders.TRANSFER_ENCODING)) {
 				//request.setTransferEncoding(header);
 			}
 
@@ -634,6 +624,37 @@ final class HttpProcessor
 	}
 
 
+	/**
+	 * Parse a non negative decimal integer out of the specified characters,
+	 * ignoring leading and trailing white space, without creating a String.
+	 *
+	 * @param buf   The characters to parse
+	 * @param start Offset of the first character
+	 * @param end   Offset of the character following the last one
+	 * @return the value, or -1 if the characters are not a valid number
+	 */
+	private static int parseInt(char[] buf, int start, int end) {
+
+		while ((start < end) && (buf[start] <= ' '))
+			start++;
+		while ((end > start) && (buf[end - 1] <= ' '))
+			end--;
+		if (start == end)
+			return (-1);
+		long n = 0;
+		for (int i = start; i < end; i++) {
+			char c = buf[i];
+			if ((c < '0') || (c > '9'))
+				return (-1);
+			n = n * 10 + (c - '0');
+			if (n > Integer.MAX_VALUE)
+				return (-1);
+		}
+		return ((int) n);
+
+	}
+
+
 	/**
 	 * Parse the incoming HTTP request and set the corresponding HTTP request
 	 * properties.
@@ -652,12 +673,11 @@ final class HttpProcessor
 		// When the previous method returns, we're actually processing a
 		// request
 		status = Constants.PROCESSOR_ACTIVE;
+		requestStart = System.nanoTime();
 
-		String method =
-				new String(requestLine.method, 0, requestLine.methodEnd);
+		String method = requestLine.getMethod();
 		String uri = null;
-		String protocol = new String(requestLine.protocol, 0,
-				requestLine.protocolEnd);
+		String protocol = requestLine.getProtocol();
 
 		//System.out.println(" Method:" + method + "_ Uri:" + uri
 		//                   + "_ Protocol:" + protocol);
@@ -688,7 +708,7 @@ final class HttpProcessor
 		}
 
 		// Parse any query parameters out of the request URI
-		int question = requestLine.indexOf("?");
+		int question = requestLine.indexOf('?', 0);
 		if (question >= 0) {
 			request.setQueryString
 					(new String(requestLine.uri, question + 1,
@@ -858,10 +878,12 @@ final class HttpProcessor
 	 *
 	 * @param output Socket output stream
 	 */
-	private void ackRequest(OutputStream output)
+	private void ackRequest(SocketOutputStream output)
 			throws IOException {
-		if (sendAck)
+		if (sendAck) {
 			output.write(ack);
+			output.commit();
+		}
 	}
 
 
@@ -876,16 +898,25 @@ final class HttpProcessor
 		boolean ok = true;
 		boolean finishResponse = true;
 		SocketInputStream input = null;
-		OutputStream output = null;
+		SocketOutputStream output = null;
+
+		boolean parked = false;
 
 		// Construct and initialize the objects we will need
 		try {
 			input = new SocketInputStream(socket.getInputStream(),
 					connector.getBufferSize());
+			if (readAheadCount > 0)
+				input.preload(readAhead, 0, readAheadCount);
+			output = new SocketOutputStream(socket,
+					Constants.OUTPUT_BUFFER_SIZE);
+			input.setOutput(output);
 		} catch (Exception e) {
 			log("process.create", e);
 			ok = false;
 		}
+		readAhead = null;
+		readAheadCount = 0;
 
 		keepAlive = true;
 
@@ -896,7 +927,6 @@ final class HttpProcessor
 			try {
 				request.setStream(input);
 				request.setResponse(response);
-				output = socket.getOutputStream();
 				response.setStream(output);
 				response.setRequest(request);
 				((HttpServletResponse) response.getResponse()).setHeader
@@ -961,12 +991,24 @@ final class HttpProcessor
 				ok = false;
 			}
 
+			long parsed = System.nanoTime();
+			if (requestStart != 0L)
+				connector.getParseTimes().record(parsed - requestStart);
+
 			// Ask our Container to process this request
 			try {
 				((HttpServletResponse) response).setHeader
 						("Date", FastHttpDateFormat.getCurrentDate());
 				if (ok) {
 
+					request.setAttribute(Globals.SENDFILE_SUPPORTED_ATTR,
+							Boolean.TRUE);
+					CompressionPolicy policy =
+							connector.getCompressionPolicy();
+					if (policy != null)
+						request.setAttribute
+								(Globals.COMPRESSION_POLICY_ATTR, policy);
+
 					//这里把请求交给容器去处理了。
 					connector.getContainer().invoke(request, response);
 				}
@@ -992,6 +1034,32 @@ final class HttpProcessor
 				ok = false;
 			}
 
+			long serviced = System.nanoTime();
+			if (requestStart != 0L)
+				connector.getServiceTimes().record(serviced - parsed);
+
+			// Send the file the application asked for, if any
+			if (ok && finishResponse) {
+				String filename = (String)
+						request.getAttribute(Globals.SENDFILE_FILENAME_ATTR);
+				if (filename != null) {
+					try {
+						response.sendFile(socket, filename,
+								((Long) request.getAttribute
+										(Globals.SENDFILE_FILE_START_ATTR))
+										.longValue(),
+								((Long) request.getAttribute
+										(Globals.SENDFILE_FILE_END_ATTR))
+										.longValue());
+					} catch (IOException e) {
+						ok = false;
+					} catch (Throwable e) {
+						log("process.sendfile", e);
+						ok = false;
+					}
+				}
+			}
+
 			// Finish up the handling of the request
 			if (finishResponse) {
 				try {
@@ -1010,12 +1078,6 @@ final class HttpProcessor
 					log("process.invoke", e);
 					ok = false;
 				}
-				try {
-					if (output != null)
-						output.flush();
-				} catch (IOException e) {
-					ok = false;
-				}
 			}
 
 			// We have to check if the connection closure has been requested
@@ -1025,22 +1087,62 @@ final class HttpProcessor
 				keepAlive = false;
 			}
 
+			// Send the response, unless the client has already sent its next
+			// request, in which case the next response is batched with this
+			// one in the same write.  The input stream sends it anyway before
+			// waiting for more bytes.
+			if (ok && keepAlive && !stopped && input.hasPendingRequest()) {
+				if (debug >= 2)
+					log(" Pipelined request, batching response");
+			} else if (output != null) {
+				try {
+					output.commit();
+				} catch (IOException e) {
+					ok = false;
+				}
+			}
+
 			// End of request processing
 			status = Constants.PROCESSOR_IDLE;
+			if (requestStart != 0L) {
+				long now = System.nanoTime();
+				connector.getWriteTimes().record(now - serviced);
+				connector.getRequestStatistics().record(now - requestStart,
+						!ok || (response.getStatus() >= 500),
+						response.getContentCount());
+				requestStart = 0L;
+			}
 
 			// Recycling the request and the response objects
 			request.recycle();
 			response.recycle();
 
+			// If the client has not sent anything else yet, give the idle
+			// connection back to the connector (if it is able to watch it)
+			// rather than blocking this processor until the next request
+			if (ok && keepAlive && !stopped && (input.remaining() == 0)
+					&& connector.park(socket)) {
+				parked = true;
+				break;
+			}
+
 		}
 
-		try {
-			shutdownInput(input);
-			socket.close();
-		} catch (IOException e) {
-			;
-		} catch (Throwable e) {
-			log("process.invoke", e);
+		if (!parked) {
+			try {
+				if (output != null)
+					output.commit();
+			} catch (IOException e) {
+				;
+			}
+			try {
+				shutdownInput(input);
+				socket.close();
+			} catch (IOException e) {
+				;
+			} catch (Throwable e) {
+				log("process.invoke", e);
+			}
 		}
 		socket = null;
 
@@ -1065,77 +1167,34 @@ final class HttpProcessor
 
 
 	/**
-	 * The background thread that listens for incoming TCP/IP connections and
-	 * hands them off to an appropriate processor.
+	 * Process the socket which has been assigned to this processor, with a
+	 * request and a response taken from the connector's pool for as long as
+	 * the connection is being processed, then recycle this processor.  This
+	 * method is run by one of the threads of the connector's executor.
 	 */
 	public void run() {
 
-		// Process requests until we receive a shutdown signal
-		while (!stopped) {
-
-			// Wait for the next socket to be assigned
-			Socket socket = await();
-			if (socket == null)
-				continue;
+		Socket socket = this.socket;
+		this.socket = null;
 
-			// Process the request from this socket
+		// Process the request from this socket
+		if (socket != null) {
+			connector.getQueueTimes().record(System.nanoTime() - assignTime);
+			request = (HttpRequestImpl) connector.createRequest();
+			response = (HttpResponseImpl) connector.createResponse();
 			try {
 				process(socket);
 			} catch (Throwable t) {
 				log("process.invoke", t);
+			} finally {
+				connector.recycle(request, response);
+				request = null;
+				response = null;
 			}
-
-			// Finish up this request
-			connector.recycle(this);
-
 		}
 
-		// Tell threadStop() we have shut ourselves down successfully
-		synchronized (threadSync) {
-			threadSync.notifyAll();
-		}
-
-	}
-
-
-	/**
-	 * Start the background processing thread.
-	 */
-	private void threadStart() {
-
-		log(sm.getString("httpProcessor.starting"));
-
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.start();
-
-		if (debug >= 1)
-			log(" Background thread has been started");
-
-	}
-
-
-	/**
-	 * Stop the background processing thread.
-	 */
-	private void threadStop() {
-
-		log(sm.getString("httpProcessor.stopping"));
-
-		stopped = true;
-		assign(null);
-
-		if (status != Constants.PROCESSOR_IDLE) {
-			// Only wait if the processor is actually processing a command
-			synchronized (threadSync) {
-				try {
-					threadSync.wait(5000);
-				} catch (InterruptedException e) {
-					;
-				}
-			}
-		}
-		thread = null;
+		// Finish up this request
+		connector.recycle(this);
 
 	}
 
@@ -1179,7 +1238,7 @@ final class HttpProcessor
 
 
 	/**
-	 * Start the background thread we will use for request processing.
+	 * Prepare this processor for request processing.
 	 *
 	 * @throws LifecycleException if a fatal startup error occurs
 	 */
@@ -1190,14 +1249,14 @@ final class HttpProcessor
 					(sm.getString("httpProcessor.alreadyStarted"));
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
-
-		threadStart();
+		stopped = false;
 
 	}
 
 
 	/**
-	 * Stop the background thread we will use for request processing.
+	 * Stop request processing.  A connection which is being processed is
+	 * closed once its current request has been completed.
 	 *
 	 * @throws LifecycleException if a fatal shutdown error occurs
 	 */
@@ -1208,8 +1267,7 @@ final class HttpProcessor
 					(sm.getString("httpProcessor.notStarted"));
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		started = false;
-
-		threadStop();
+		stopped = true;
 
 	}
 
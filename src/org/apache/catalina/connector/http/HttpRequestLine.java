@@ -23,6 +23,15 @@ final class HttpRequestLine {
 	public static final int MAX_PROTOCOL_SIZE = 1024;
 
 
+	/**
+	 * The methods and protocols which are returned as shared constants,
+	 * rather than as new Strings.
+	 */
+	private static final String[] METHODS =
+			{"GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE"};
+	private static final String[] PROTOCOLS = {"HTTP/1.1", "HTTP/1.0"};
+
+
 	// ----------------------------------------------------------- Constructors
 
 
@@ -62,6 +71,22 @@ final class HttpRequestLine {
 	// ------------------------------------------------------------- Properties
 
 
+	/**
+	 * Return the method of the request line.
+	 */
+	public String getMethod() {
+		return toString(method, methodEnd, METHODS);
+	}
+
+
+	/**
+	 * Return the protocol of the request line.
+	 */
+	public String getProtocol() {
+		return toString(protocol, protocolEnd, PROTOCOLS);
+	}
+
+
 	// --------------------------------------------------------- Public Methods
 
 
@@ -114,6 +139,8 @@ final class HttpRequestLine {
 	 * Test if the value of the header includes the given string.
 	 */
 	public int indexOf(String str) {
+		if (str.length() == 1)
+			return indexOf(str.charAt(0), 0);
 		return indexOf(str.toCharArray(), str.length());
 	}
 
@@ -130,6 +157,28 @@ final class HttpRequestLine {
 	}
 
 
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Return the known String equal to the specified characters if there is
+	 * one, or a new String otherwise.
+	 */
+	private static String toString(char[] buf, int end, String[] known) {
+		for (int i = 0; i < known.length; i++) {
+			String str = known[i];
+			if (str.length() != end)
+				continue;
+			int j = 0;
+			while ((j < end) && (str.charAt(j) == buf[j]))
+				j++;
+			if (j == end)
+				return str;
+		}
+		return new String(buf, 0, end);
+	}
+
+
 	// --------------------------------------------------------- Object Methods
 
 
@@ -1,7 +1,13 @@
 package org.apache.catalina.connector.http;
 
 
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -44,6 +50,18 @@ final class HttpResponseImpl
 	protected HttpResponseStream responseStream;
 
 
+	/**
+	 * Is this response being finished by the processor?
+	 */
+	private boolean finishing = false;
+
+
+	/**
+	 * Is the content buffer being flushed because it is full?
+	 */
+	private boolean writing = false;
+
+
 	// ------------------------------------------------------------- Properties
 
 
@@ -99,6 +117,8 @@ final class HttpResponseImpl
 		super.recycle();
 		responseStream = null;
 		allowChunking = false;
+		finishing = false;
+		writing = false;
 
 	}
 
@@ -135,6 +155,8 @@ final class HttpResponseImpl
 		String transferEncodingValue =
 				(String) getHeader("Transfer-Encoding");
 		super.reset();
+		if (responseStream != null)
+			responseStream.resetCompression(this);
 		if (connectionValue != null)
 			addHeader("Connection", connectionValue);
 		if (transferEncodingValue != null)
@@ -143,6 +165,22 @@ final class HttpResponseImpl
 	}
 
 
+	/**
+	 * Clear any content written to the buffer, without changing the status
+	 * or the headers.
+	 *
+	 * @throws IllegalStateException if this response has already
+	 *                               been committed
+	 */
+	public void resetBuffer() {
+
+		super.resetBuffer();
+		if (responseStream != null)
+			responseStream.resetCompression(this);
+
+	}
+
+
 	/**
 	 * Create and return a ServletOutputStream to write the content
 	 * associated with this Response.
@@ -194,6 +232,46 @@ final class HttpResponseImpl
 	}
 
 
+	/**
+	 * Commit the headers of this response, and send the specified region of
+	 * a file as its content.  When the socket has a channel, the bytes are
+	 * transferred by the operating system from the file to the network,
+	 * without ever being copied into the heap.  The content length must
+	 * have been set to the size of the region, and nothing written to the
+	 * response stream.
+	 *
+	 * @param socket   The socket on which the response is sent
+	 * @param filename Absolute path of the file
+	 * @param start    Offset of the first byte to send
+	 * @param end      Offset of the byte following the last byte to send
+	 * @throws IOException if an input/output error occurs, or if the file
+	 *                     is shorter than expected
+	 */
+	void sendFile(Socket socket, String filename, long start, long end)
+			throws IOException {
+
+		flushBuffer();
+
+		FileInputStream input = new FileInputStream(filename);
+		try {
+			FileChannel file = input.getChannel();
+			WritableByteChannel channel = socket.getChannel();
+			if (channel == null)
+				channel = Channels.newChannel(getStream());
+			long position = start;
+			while (position < end) {
+				long n = file.transferTo(position, end - position, channel);
+				if (n <= 0)
+					throw new EOFException(filename);
+				position += n;
+			}
+		} finally {
+			input.close();
+		}
+
+	}
+
+
 	/**
 	 * Has stream been created ?
 	 */
@@ -219,7 +297,74 @@ final class HttpResponseImpl
 		} else {
 			setHeader("Connection", "close");
 		}
-		super.finishResponse();
+		finishing = true;
+		try {
+			super.finishResponse();
+		} finally {
+			finishing = false;
+		}
+
+	}
+
+
+	/**
+	 * Write the specified byte to our output stream, flushing if necessary.
+	 *
+	 * @param b The byte to be written
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void write(int b) throws IOException {
+
+		writing = true;
+		try {
+			super.write(b);
+		} finally {
+			writing = false;
+		}
+
+	}
+
+
+	/**
+	 * Write <code>len</code> bytes from the specified byte array, starting
+	 * at the specified offset, to our output stream, flushing if necessary.
+	 *
+	 * @param b   The byte array containing the bytes to be written
+	 * @param off Zero-relative starting offset of the bytes to be written
+	 * @param len The number of bytes to be written
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void write(byte b[], int off, int len) throws IOException {
+
+		writing = true;
+		try {
+			super.write(b, off, len);
+		} finally {
+			writing = false;
+		}
+
+	}
+
+
+	// ------------------------------------------------ ServletResponse Methods
+
+
+	/**
+	 * Flush the buffered content of this response.  The socket stream holds
+	 * back its writes until the processor is done with the response, so
+	 * a flush asked for by the application is passed on to it, to reach the
+	 * client straight away.  The content buffer being full is not such a
+	 * flush: its bytes are left to the socket stream, which sends them with
+	 * the headers in as few writes as possible.
+	 *
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void flushBuffer() throws IOException {
+
+		super.flushBuffer();
+		if (!finishing && !writing
+				&& (getStream() instanceof SocketOutputStream))
+			((SocketOutputStream) getStream()).commit();
 
 	}
 
@@ -255,6 +400,10 @@ final class HttpResponseImpl
 		if (included)
 			return;     // Ignore any call from an included servlet
 
+		// The length of compressed content is not known in advance
+		if ((responseStream != null) && responseStream.isCompressing())
+			return;
+
 		super.setContentLength(length);
 
 		if (responseStream != null)
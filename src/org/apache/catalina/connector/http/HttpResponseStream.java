@@ -65,15 +65,20 @@
 package org.apache.catalina.connector.http;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.catalina.connector.ResponseStream;
+import org.apache.catalina.util.CompressionPolicy;
 
 /**
  * Response stream for the HTTP/1.1 connector. This stream will automatically
  * chunk the answer if using HTTP/1.1 and no Content-Length has been properly
- * set.
+ * set.  When the connector compresses its responses, the content is
+ * compressed as it is written, if the client accepts it and the response is
+ * worth it, and the compressed data goes out in chunks.
  *
  * @author <a href="mailto:remm@apache.org">Remy Maucherat</a>
  * @deprecated
@@ -128,6 +133,31 @@ public final class HttpResponseStream extends ResponseStream {
 	private boolean writeContent;
 
 
+	/**
+	 * True once we have decided whether to compress the content.
+	 */
+	private boolean compressionChecked;
+
+
+	/**
+	 * The stream compressing the content, or <code>null</code> if the
+	 * content is not compressed.
+	 */
+	private DeflaterOutputStream compressor;
+
+
+	/**
+	 * The content coding of the compressed content.
+	 */
+	private String encoding;
+
+
+	/**
+	 * Buffer for the single bytes written to the compressor.
+	 */
+	private byte[] oneByte;
+
+
 	// -------------------------------------------- ServletOutputStream Methods
 
 
@@ -146,7 +176,20 @@ public final class HttpResponseStream extends ResponseStream {
 		if (!writeContent)
 			return;
 
-		if (useChunking && !writingChunk) {
+		if (writingChunk) {
+			super.write(b);
+			return;
+		}
+
+		if (!compressionChecked)
+			checkCompression();
+
+		if (compressor != null) {
+			if (oneByte == null)
+				oneByte = new byte[1];
+			oneByte[0] = (byte) b;
+			compressor.write(oneByte, 0, 1);
+		} else if (useChunking) {
 			writingChunk = true;
 			try {
 				print("1\r\n");
@@ -174,20 +217,27 @@ public final class HttpResponseStream extends ResponseStream {
 		if (!writeContent)
 			return;
 
-		if (useChunking && !writingChunk) {
-			if (len > 0) {
-				writingChunk = true;
-				try {
-					println(Integer.toHexString(len));
-					super.write(b, off, len);
-					println();
-				} finally {
-					writingChunk = false;
-				}
-			}
-		} else {
-			super.write(b, off, len);
-		}
+		if (!compressionChecked && !writingChunk)
+			checkCompression();
+
+		if ((compressor != null) && !writingChunk)
+			compressor.write(b, off, len);
+		else
+			writeChunk(b, off, len);
+
+	}
+
+
+	/**
+	 * Flush any buffered data for this output stream, including the data
+	 * held by the compressor, which also causes the response to be
+	 * committed.
+	 */
+	public void flush() throws IOException {
+
+		if ((compressor != null) && !suspended && !closed)
+			compressor.flush();
+		super.flush();
 
 	}
 
@@ -205,6 +255,13 @@ public final class HttpResponseStream extends ResponseStream {
 		if (!writeContent)
 			return;
 
+		if (compressor != null) {
+			// Write the end of the compressed data
+			DeflaterOutputStream compressor = this.compressor;
+			this.compressor = null;
+			compressor.close();
+		}
+
 		if (useChunking) {
 			// Write the final chunk.
 			writingChunk = true;
@@ -258,4 +315,132 @@ public final class HttpResponseStream extends ResponseStream {
 	}
 
 
+	/**
+	 * Is the content being compressed?
+	 */
+	boolean isCompressing() {
+
+		return (compressor != null);
+
+	}
+
+
+	/**
+	 * Forget about the compressed data written so far, because the content
+	 * of the response has been reset.  The decision to compress is taken
+	 * again when the new content is written.
+	 *
+	 * @param response The associated response
+	 */
+	void resetCompression(HttpResponseImpl response) {
+
+		if (compressor == null)
+			return;
+		CompressionPolicy.discard(compressor);
+		compressor = null;
+		compressionChecked = false;
+		response.removeHeader("Content-Encoding", encoding);
+		response.removeHeader("Vary", "Accept-Encoding");
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Decide whether to compress the content, when its first bytes are
+	 * written.  The content is compressed if the connector is configured to
+	 * do so, the type and length of the content make it worth it, the
+	 * content has not been encoded by the application, and the client
+	 * accepts one of the codings we support.
+	 *
+	 * @throws IOException if an input/output error occurs
+	 */
+	private void checkCompression() throws IOException {
+
+		compressionChecked = true;
+		HttpResponseImpl response = (HttpResponseImpl) this.response;
+		CompressionPolicy policy =
+				((HttpConnector) response.getConnector()).getCompressionPolicy();
+		if ((policy == null) || response.isCommitted()
+				|| response.getIncluded())
+			return;
+
+		int status = response.getStatus();
+		if ((status == HttpServletResponse.SC_PARTIAL_CONTENT)
+				|| (status == HttpServletResponse.SC_NO_CONTENT)
+				|| (status == HttpServletResponse.SC_NOT_MODIFIED)
+				|| (response.getHeader("Content-Encoding") != null)
+				|| !policy.isCompressable(response.getContentType(),
+				response.getContentLength()))
+			return;
+
+		// The content depends on the coding accepted by the client
+		String[] vary = response.getHeaderValues("Vary");
+		boolean found = false;
+		for (int i = 0; !found && (i < vary.length); i++)
+			found = "Accept-Encoding".equalsIgnoreCase(vary[i]);
+		if (!found)
+			response.addHeader("Vary", "Accept-Encoding");
+		HttpServletRequest request =
+				(HttpServletRequest) response.getRequest();
+		encoding = policy.getEncoding(request.getHeader("Accept-Encoding"),
+				request.getHeader("User-Agent"));
+		if (encoding == null)
+			return;
+
+		// The compressed length is not known, so the content is chunked
+		response.setHeader("Content-Encoding", encoding);
+		response.setContentLength(-1);
+		length = -1;
+		compressor = CompressionPolicy.newStream(new ChunkStream(),
+				encoding, MAX_CHUNK_SIZE, true);
+
+	}
+
+
+	/**
+	 * Write the specified bytes in a chunk, if chunking is used.
+	 */
+	private void writeChunk(byte[] b, int off, int len)
+			throws IOException {
+
+		if (useChunking && !writingChunk) {
+			if (len > 0) {
+				writingChunk = true;
+				try {
+					println(Integer.toHexString(len));
+					super.write(b, off, len);
+					println();
+				} finally {
+					writingChunk = false;
+				}
+			}
+		} else {
+			super.write(b, off, len);
+		}
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * Stream receiving the compressed data, which is written in chunks.
+	 */
+	private final class ChunkStream extends OutputStream {
+
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			writeChunk(b, off, len);
+		}
+
+	}
+
+
 }
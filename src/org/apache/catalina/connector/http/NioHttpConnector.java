@@ -0,0 +1,280 @@
+package org.apache.catalina.connector.http;
+
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.util.StringManager;
+
+
+/**
+ * Implementation of an HTTP/1.1 connector which watches idle connections
+ * with <code>java.nio</code> selectors instead of parking a processor
+ * thread on each open socket.  Accepted connections, and keep-alive
+ * connections between two requests, are registered with one of a small
+ * number of poller threads; a socket is only handed to an
+ * <code>HttpProcessor</code> once a complete request head has been read,
+ * and the processor then runs the usual blocking code path for that
+ * request.  As a result, the number of open connections is no longer
+ * bounded by <code>maxProcessors</code>.
+ * <p>
+ * Server sockets are opened directly through a
+ * <code>ServerSocketChannel</code>, so any configured
+ * <code>ServerSocketFactory</code> (and therefore SSL) is not supported
+ * by this connector.
+ */
+
+public final class NioHttpConnector extends HttpConnector {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Descriptive information about this Connector implementation.
+	 */
+	private static final String info =
+			"org.apache.catalina.connector.http.NioHttpConnector/1.0";
+
+
+	/**
+	 * The number of poller threads watching idle connections.
+	 */
+	private int pollerThreadCount =
+			Math.min(2, Runtime.getRuntime().availableProcessors());
+
+
+	/**
+	 * The pollers watching our idle connections.
+	 */
+	private HttpPoller pollers[] = null;
+
+
+	/**
+	 * Rotation counter used to spread connections across the pollers.
+	 */
+	private final AtomicInteger pollerRotater = new AtomicInteger();
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private StringManager sm =
+			StringManager.getManager(Constants.Package);
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return descriptive information about this Connector implementation.
+	 */
+	public String getInfo() {
+
+		return (info);
+
+	}
+
+
+	/**
+	 * Return the number of poller threads.
+	 */
+	public int getPollerThreadCount() {
+
+		return (this.pollerThreadCount);
+
+	}
+
+
+	/**
+	 * Set the number of poller threads.
+	 *
+	 * @param pollerThreadCount The new number of poller threads
+	 */
+	public void setPollerThreadCount(int pollerThreadCount) {
+
+		this.pollerThreadCount = pollerThreadCount;
+
+	}
+
+
+	/**
+	 * Return the number of connections currently registered with our
+	 * pollers, which are either idle or waiting for a complete request
+	 * head.
+	 */
+	public int getKeepAliveCount() {
+
+		HttpPoller pollers[] = this.pollers;
+		if (pollers == null)
+			return (0);
+		int count = 0;
+		for (int i = 0; i < pollers.length; i++)
+			count += pollers[i].getKeyCount();
+		return (count);
+
+	}
+
+
+	// -------------------------------------------------------- Package Methods
+
+
+	/**
+	 * Register a newly accepted socket with one of our pollers, which will
+	 * hand it to a processor once the first request has arrived.
+	 *
+	 * @param socket The socket returned by <code>accept()</code>
+	 */
+	void dispatch(Socket socket) {
+
+		HttpPoller poller = getPoller();
+		if ((poller == null) || !poller.add(socket.getChannel())) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				;
+			}
+		}
+
+	}
+
+
+	/**
+	 * Take back an idle keep-alive connection from a processor, and watch
+	 * it until the next request arrives.
+	 *
+	 * @param socket The idle connection
+	 * @return <code>true</code> if a poller has taken ownership of the
+	 *         socket
+	 */
+	boolean park(Socket socket) {
+
+		SocketChannel channel = socket.getChannel();
+		if ((channel == null) || !isAvailable())
+			return (false);
+		HttpPoller poller = getPoller();
+		return ((poller != null) && poller.add(channel));
+
+	}
+
+
+	/**
+	 * Open and return the server socket for this Connector.  If an IP
+	 * address has been specified, the socket will be opened only on that
+	 * address; otherwise it will be opened on all addresses.  The returned
+	 * socket is backed by a <code>ServerSocketChannel</code>, so that the
+	 * accepted sockets can later be registered with a selector.
+	 *
+	 * @throws IOException input/output or network error
+	 */
+	ServerSocket open() throws IOException {
+
+		InetSocketAddress endpoint = null;
+		if (getAddress() == null) {
+			log(sm.getString("httpConnector.allAddresses"));
+			endpoint = new InetSocketAddress(getPort());
+		} else {
+			try {
+				InetAddress is = InetAddress.getByName(getAddress());
+				log(sm.getString("httpConnector.anAddress", getAddress()));
+				endpoint = new InetSocketAddress(is, getPort());
+			} catch (Exception e) {
+				log(sm.getString("httpConnector.noAddress", getAddress()));
+				endpoint = new InetSocketAddress(getPort());
+			}
+		}
+
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket().bind(endpoint, getAcceptCount());
+		} catch (BindException be) {
+			channel.close();
+			throw new BindException(be.getMessage() + ":" + endpoint);
+		}
+		return (channel.socket());
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Return the poller to which the next connection should be given, or
+	 * <code>null</code> if this connector is not running.
+	 */
+	private HttpPoller getPoller() {
+
+		HttpPoller pollers[] = this.pollers;
+		if (pollers == null)
+			return (null);
+		int n = (pollerRotater.getAndIncrement() & 0x7fffffff) % pollers.length;
+		return (pollers[n]);
+
+	}
+
+
+	// ------------------------------------------------------ Lifecycle Methods
+
+
+	/**
+	 * Begin processing requests via this Connector.
+	 *
+	 * @throws LifecycleException if a fatal startup error occurs
+	 */
+	public void start() throws LifecycleException {
+
+		if (isAvailable())
+			throw new LifecycleException
+					(sm.getString("httpConnector.alreadyStarted"));
+
+		// The pollers must be ready before the first socket is accepted
+		int count = (pollerThreadCount > 0) ? pollerThreadCount : 1;
+		HttpPoller pollers[] = new HttpPoller[count];
+		try {
+			for (int i = 0; i < count; i++) {
+				pollers[i] = new HttpPoller(this, i);
+				pollers[i].start();
+			}
+		} catch (IOException e) {
+			for (int i = 0; i < count; i++) {
+				if (pollers[i] != null)
+					pollers[i].stop();
+			}
+			throw new LifecycleException("NioHttpConnector.start", e);
+		}
+		this.pollers = pollers;
+
+		super.start();
+
+	}
+
+
+	/**
+	 * Terminate processing requests via this Connector.
+	 *
+	 * @throws LifecycleException if a fatal shutdown error occurs
+	 */
+	public void stop() throws LifecycleException {
+
+		super.stop();
+
+		HttpPoller pollers[] = this.pollers;
+		this.pollers = null;
+		if (pollers != null) {
+			for (int i = 0; i < pollers.length; i++)
+				pollers[i].stop();
+		}
+
+	}
+
+
+}
@@ -79,6 +79,13 @@ public class SocketInputStream extends InputStream {
 	protected InputStream is;
 
 
+	/**
+	 * Stream holding the responses which are sent before blocking on the
+	 * underlying input stream, or <code>null</code>.
+	 */
+	private SocketOutputStream output = null;
+
+
 	// ----------------------------------------------------------- Constructors
 
 
@@ -294,8 +301,7 @@ public class SocketInputStream extends InputStream {
 			throws IOException {
 
 		// Recycling check
-		if (header.nameEnd != 0)
-			header.recycle();
+		header.recycle();
 
 		// Checking for a blank line
 		int chr = read();
@@ -316,6 +322,7 @@ public class SocketInputStream extends InputStream {
 		int readCount = 0;
 
 		boolean colon = false;
+		int hash = 0;
 
 		while (!colon) {
 			// if the buffer is full, extend it
@@ -347,12 +354,15 @@ public class SocketInputStream extends InputStream {
 			if ((val >= 'A') && (val <= 'Z')) {
 				val = (char) (val - LC_OFFSET);
 			}
+			if (!colon)
+				hash = 31 * hash + val;
 			header.name[readCount] = val;
 			readCount++;
 			pos++;
 		}
 
 		header.nameEnd = readCount - 1;
+		header.hashCode = hash;
 
 		// Reading the header value (which can be spanned over multiple lines)
 
@@ -505,6 +515,61 @@ public class SocketInputStream extends InputStream {
 	}
 
 
+	/**
+	 * Returns the number of bytes which have already been read from the
+	 * underlying stream but not yet consumed.  A non-zero value after a
+	 * request has been completely read means that the client has already
+	 * started sending the next one.
+	 */
+	public int remaining() {
+		return (count - pos);
+	}
+
+
+	/**
+	 * Return <code>true</code> if the bytes which have already been read
+	 * but not yet consumed contain something other than line terminators,
+	 * which means that the client has started sending its next request
+	 * rather than a stray CRLF after the last one.
+	 */
+	public boolean hasPendingRequest() {
+		for (int i = pos; i < count; i++) {
+			if ((buf[i] != CR) && (buf[i] != LF))
+				return (true);
+		}
+		return (false);
+	}
+
+
+	/**
+	 * Set the stream whose buffered responses are sent before this stream
+	 * blocks to read more bytes, so that a response held back for a
+	 * pipelined request is never left waiting on the client.
+	 *
+	 * @param output The stream, or <code>null</code>
+	 */
+	void setOutput(SocketOutputStream output) {
+		this.output = output;
+	}
+
+
+	/**
+	 * Preload the internal buffer with bytes which have already been read
+	 * from the underlying connection by someone else (for example a
+	 * selector thread waiting for a complete request head).  Any data
+	 * currently buffered is discarded.
+	 *
+	 * @param b   The bytes which were read ahead
+	 * @param off Offset of the first byte
+	 * @param len Number of bytes, which must not exceed the buffer size
+	 */
+	public void preload(byte[] b, int off, int len) {
+		System.arraycopy(b, off, buf, 0, len);
+		pos = 0;
+		count = len;
+	}
+
+
 	/**
 	 * Close the input stream.
 	 */
@@ -526,6 +591,8 @@ public class SocketInputStream extends InputStream {
 	 */
 	protected void fill()
 			throws IOException {
+		if (output != null)
+			output.commit();
 		pos = 0;
 		count = 0;
 		int nRead = is.read(buf, 0, buf.length);
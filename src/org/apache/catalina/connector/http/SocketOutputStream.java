@@ -0,0 +1,185 @@
+package org.apache.catalina.connector.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Buffered output stream over the socket of a connection, which only
+ * writes to the network when its buffer is full or when the processor
+ * commits it.  Calls to <code>flush()</code> are ignored, so that the
+ * status line, the headers and the body of a response, as well as the
+ * responses to pipelined requests, are sent in as few writes as possible.
+ * When a block too large to be buffered is written on a socket which has a
+ * channel, it is sent together with the buffered bytes in a single gathering
+ * write.
+ */
+final class SocketOutputStream extends OutputStream {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a stream over the specified socket.
+	 *
+	 * @param socket     The socket
+	 * @param bufferSize Size of the internal buffer
+	 * @throws IOException if the socket stream cannot be obtained
+	 */
+	public SocketOutputStream(Socket socket, int bufferSize)
+			throws IOException {
+
+		this.os = socket.getOutputStream();
+		this.channel = socket.getChannel();
+		this.buf = new byte[bufferSize];
+		this.buffers = new ByteBuffer[]{ByteBuffer.wrap(buf), null};
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Internal buffer.
+	 */
+	private byte[] buf;
+
+
+	/**
+	 * Internal buffer and written block, for gathering writes.
+	 */
+	private ByteBuffer[] buffers;
+
+
+	/**
+	 * Channel of the socket, if any.
+	 */
+	private SocketChannel channel = null;
+
+
+	/**
+	 * Number of bytes in the buffer.
+	 */
+	private int count = 0;
+
+
+	/**
+	 * Underlying socket output stream.
+	 */
+	private OutputStream os = null;
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Send the buffered bytes to the client.
+	 *
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void commit()
+			throws IOException {
+
+		if (count > 0) {
+			try {
+				os.write(buf, 0, count);
+			} finally {
+				count = 0;
+			}
+		}
+		os.flush();
+
+	}
+
+
+	/**
+	 * Ignored: the buffered bytes are only sent by <code>commit()</code>,
+	 * or when the buffer is full.
+	 */
+	public void flush() {
+	}
+
+
+	/**
+	 * Send the buffered bytes, and close the socket stream.
+	 *
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void close()
+			throws IOException {
+
+		try {
+			commit();
+		} finally {
+			os.close();
+		}
+
+	}
+
+
+	public void write(int b)
+			throws IOException {
+
+		if (count >= buf.length)
+			commit();
+		buf[count++] = (byte) b;
+
+	}
+
+
+	public void write(byte[] b, int off, int len)
+			throws IOException {
+
+		if (len >= buf.length) {
+			// Don't bother copying a large block
+			if ((count > 0) && (channel != null) && channel.isBlocking())
+				gather(b, off, len);
+			else {
+				commit();
+				os.write(b, off, len);
+			}
+			return;
+		}
+		if (len > (buf.length - count))
+			commit();
+		System.arraycopy(b, off, buf, count, len);
+		count += len;
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Send the buffered bytes, followed by the specified block, in as few
+	 * gathering writes on the channel as possible.
+	 *
+	 * @param b   The block
+	 * @param off Start offset
+	 * @param len Number of bytes to write
+	 * @throws IOException if an input/output error occurs
+	 */
+	private void gather(byte[] b, int off, int len)
+			throws IOException {
+
+		ByteBuffer head = buffers[0];
+		head.clear();
+		head.limit(count);
+		buffers[1] = ByteBuffer.wrap(b, off, len);
+		try {
+			while (buffers[1].hasRemaining())
+				channel.write(buffers);
+		} finally {
+			buffers[1] = null;
+			count = 0;
+		}
+
+	}
+
+
+}
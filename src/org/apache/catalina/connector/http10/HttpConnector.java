@@ -66,12 +66,14 @@ package org.apache.catalina.connector.http10;
 
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.security.AccessControlException;
-import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
@@ -80,6 +82,7 @@ import java.security.KeyManagementException;
 
 import org.apache.catalina.Connector;
 import org.apache.catalina.Container;
+import org.apache.catalina.Executor;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
@@ -87,6 +90,8 @@ import org.apache.catalina.Logger;
 import org.apache.catalina.Request;
 import org.apache.catalina.Response;
 import org.apache.catalina.Service;
+import org.apache.catalina.connector.RequestResponsePool;
+import org.apache.catalina.core.StandardThreadExecutor;
 import org.apache.catalina.net.DefaultServerSocketFactory;
 import org.apache.catalina.net.ServerSocketFactory;
 import org.apache.catalina.util.LifecycleSupport;
@@ -153,6 +158,26 @@ public final class HttpConnector
 	private int debug = 0;
 
 
+	/**
+	 * The executor which runs our processors.
+	 */
+	private Executor executor = null;
+
+
+	/**
+	 * The name of the shared executor of our <code>Service</code> which
+	 * should run our processors, if any.
+	 */
+	private String executorName = null;
+
+
+	/**
+	 * Has our executor been created by this connector, rather than shared
+	 * with other connectors?
+	 */
+	private boolean internalExecutor = false;
+
+
 	/**
 	 * The "enable DNS lookups" flag for this Connector.
 	 */
@@ -172,6 +197,15 @@ public final class HttpConnector
 			"org.apache.catalina.connector.http10.HttpConnector/1.0";
 
 
+	/**
+	 * The response sent on connections which our executor cannot take.
+	 */
+	private static final byte[] SERVICE_UNAVAILABLE =
+			("HTTP/1.0 503 Service Unavailable\r\n"
+					+ "Content-Length: 0\r\n"
+					+ "Connection: close\r\n\r\n").getBytes();
+
+
 	/**
 	 * The lifecycle event support for this component.
 	 */
@@ -207,7 +241,7 @@ public final class HttpConnector
 	 * The set of processors that have been created but are not currently
 	 * being used to process a request.
 	 */
-	private Stack processors = new Stack();
+	private ConcurrentLinkedQueue processors = new ConcurrentLinkedQueue();
 
 
 	/**
@@ -234,6 +268,12 @@ public final class HttpConnector
 	private int redirectPort = 443;
 
 
+	/**
+	 * The pool of the request and response objects used by our processors.
+	 */
+	private RequestResponsePool requestPool = new RequestResponsePool(0);
+
+
 	/**
 	 * The request scheme that will be set on all requests received
 	 * through this connector.
@@ -306,6 +346,56 @@ public final class HttpConnector
 	// ------------------------------------------------------------- Properties
 
 
+	/**
+	 * Return the executor which runs our processors.
+	 */
+	public Executor getExecutor() {
+
+		return (this.executor);
+
+	}
+
+
+	/**
+	 * Set the executor which runs our processors.  If no executor is set,
+	 * the one named by the <code>executorName</code> property is used, and
+	 * failing that a private executor is created when this connector is
+	 * started, with <code>minProcessors</code> spare threads,
+	 * <code>maxProcessors</code> threads and <code>acceptCount</code>
+	 * queued connections.
+	 *
+	 * @param executor The new executor
+	 */
+	public void setExecutor(Executor executor) {
+
+		this.executor = executor;
+
+	}
+
+
+	/**
+	 * Return the name of the shared executor which runs our processors.
+	 */
+	public String getExecutorName() {
+
+		return (this.executorName);
+
+	}
+
+
+	/**
+	 * Set the name of the shared executor of our <code>Service</code> which
+	 * runs our processors.
+	 *
+	 * @param executorName The new executor name
+	 */
+	public void setExecutorName(String executorName) {
+
+		this.executorName = executorName;
+
+	}
+
+
 	/**
 	 * Return the connection timeout for this Connector.
 	 */
@@ -653,6 +743,17 @@ public final class HttpConnector
 	}
 
 
+	/**
+	 * Return the pool of the request and response objects of this
+	 * connector.
+	 */
+	public RequestResponsePool getRequestPool() {
+
+		return (this.requestPool);
+
+	}
+
+
 	/**
 	 * Return the scheme that will be assigned to requests received
 	 * through this connector.  Default value is "http".
@@ -732,8 +833,11 @@ public final class HttpConnector
 	 */
 	public Request createRequest() {
 
-		HttpRequestImpl request = new HttpRequestImpl();
-		request.setConnector(this);
+		Request request = requestPool.pollRequest();
+		if (request == null) {
+			request = new HttpRequestImpl();
+			request.setConnector(this);
+		}
 		return (request);
 
 	}
@@ -745,8 +849,11 @@ public final class HttpConnector
 	 */
 	public Response createResponse() {
 
-		HttpResponseImpl response = new HttpResponseImpl();
-		response.setConnector(this);
+		Response response = requestPool.pollResponse();
+		if (response == null) {
+			response = new HttpResponseImpl();
+			response.setConnector(this);
+		}
 		return (response);
 
 	}
@@ -755,6 +862,20 @@ public final class HttpConnector
 	// -------------------------------------------------------- Package Methods
 
 
+	/**
+	 * Give the specified request and response back to our pool, once the
+	 * connection for which they have been allocated is done with.
+	 *
+	 * @param request  The request to be recycled
+	 * @param response The response to be recycled
+	 */
+	void recycle(Request request, Response response) {
+
+		requestPool.recycle(request, response);
+
+	}
+
+
 	/**
 	 * Recycle the specified Processor so that it can be used again.
 	 *
@@ -762,7 +883,7 @@ public final class HttpConnector
 	 */
 	void recycle(HttpProcessor processor) {
 
-		processors.push(processor);
+		processors.offer(processor);
 
 	}
 
@@ -772,25 +893,17 @@ public final class HttpConnector
 
 	/**
 	 * Create (or allocate) and return an available processor for use in
-	 * processing a specific HTTP request, if possible.  If the maximum
-	 * allowed processors have already been created and are in use, return
-	 * <code>null</code> instead.
+	 * processing a specific HTTP request.  The number of processors in use
+	 * is bounded by our executor, which runs them, so a new processor is
+	 * created whenever the pool is empty; <code>null</code> is only
+	 * returned if the new processor cannot be started.
 	 */
 	private HttpProcessor createProcessor() {
 
-		synchronized (processors) {
-			if (processors.size() > 0)
-				return ((HttpProcessor) processors.pop());
-			if ((maxProcessors > 0) && (curProcessors < maxProcessors)) {
-				return (newProcessor());
-			} else {
-				if (maxProcessors < 0) {
-					return (newProcessor());
-				} else {
-					return (null);
-				}
-			}
-		}
+		HttpProcessor processor = (HttpProcessor) processors.poll();
+		if (processor != null)
+			return (processor);
+		return (newProcessor());
 
 	}
 
@@ -842,7 +955,11 @@ public final class HttpConnector
 	 */
 	private HttpProcessor newProcessor() {
 
-		HttpProcessor processor = new HttpProcessor(this, curProcessors++);
+		int id = 0;
+		synchronized (created) {
+			id = curProcessors++;
+		}
+		HttpProcessor processor = new HttpProcessor(this, id);
 		if (processor instanceof Lifecycle) {
 			try {
 				((Lifecycle) processor).start();
@@ -857,6 +974,31 @@ public final class HttpConnector
 	}
 
 
+	/**
+	 * Refuse the specified connection with a <code>503</code> response,
+	 * and close it.
+	 *
+	 * @param socket The connection to refuse
+	 */
+	private void reject(Socket socket) {
+
+		try {
+			OutputStream output = socket.getOutputStream();
+			output.write(SERVICE_UNAVAILABLE);
+			output.flush();
+		} catch (IOException e) {
+			;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				;
+			}
+		}
+
+	}
+
+
 	/**
 	 * Open and return the server socket for this Connector.  If an IP
 	 * address has been specified, the socket will be opened only on that
@@ -936,15 +1078,20 @@ public final class HttpConnector
 			// Hand this socket off to an appropriate processor
 			HttpProcessor processor = createProcessor();
 			if (processor == null) {
-				try {
-					log(sm.getString("httpConnector.noProcessor"));
-					socket.close();
-				} catch (IOException e) {
-					;
-				}
+				log(sm.getString("httpConnector.noProcessor"));
+				reject(socket);
 				continue;
 			}
 			processor.assign(socket);
+			try {
+				executor.execute(processor);
+			} catch (RejectedExecutionException e) {
+				processor.assign(null);
+				recycle(processor);
+				if (debug >= 1)
+					log(sm.getString("httpConnector.rejected"));
+				reject(socket);
+			}
 
 			// The processor will recycle itself when it finishes
 
@@ -1085,8 +1232,27 @@ public final class HttpConnector
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
 
-		// Start our background thread
-		threadStart();
+		// Find or create the executor which will run our processors
+		if (executor == null) {
+			if ((executorName != null) && (service != null))
+				executor = service.getExecutor(executorName);
+			if (executor == null) {
+				if (executorName != null)
+					log(sm.getString("httpConnector.noExecutor", executorName));
+				StandardThreadExecutor internal = new StandardThreadExecutor();
+				internal.setName(threadName);
+				internal.setNamePrefix("HttpProcessor[" + port + "]-");
+				internal.setMinSpareThreads(minProcessors);
+				internal.setMaxThreads(maxProcessors);
+				internal.setMaxQueueSize(acceptCount);
+				internal.start();
+				executor = internal;
+				internalExecutor = true;
+			}
+		}
+
+		// Keep as many idle requests and responses as we may use at once
+		requestPool.setMaxIdle(maxProcessors);
 
 		// Create the specified minimum number of processors
 		while (curProcessors < minProcessors) {
@@ -1096,6 +1262,9 @@ public final class HttpConnector
 			recycle(processor);
 		}
 
+		// Start our background thread
+		threadStart();
+
 	}
 
 
@@ -1138,6 +1307,20 @@ public final class HttpConnector
 		// Stop our background thread
 		threadStop();
 
+		// Stop our private executor, and forget the processors
+		if (internalExecutor) {
+			try {
+				executor.stop();
+			} catch (LifecycleException e) {
+				log("HttpConnector.stop", e);
+			}
+			executor = null;
+			internalExecutor = false;
+		}
+		processors.clear();
+		created.clear();
+		requestPool.clear();
+
 	}
 
 
@@ -94,11 +94,12 @@ import org.apache.catalina.util.StringManager;
 
 
 /**
- * Implementation of a request processor (and its associated thread) that may
- * be used by an HttpConnector to process individual requests.  The connector
- * will allocate a processor from its pool, assign a particular socket to it,
- * and the processor will then execute the processing required to complete
- * the request.  When the processor is completed, it will recycle itself.
+ * Implementation of a request processor that may be used by an
+ * HttpConnector to process individual requests.  The connector will
+ * allocate a processor from its pool, assign a particular socket to it, and
+ * hand the processor to its executor, which runs the processing required
+ * to complete the request on one of its threads.  When the processor is
+ * completed, it will recycle itself.
  *
  * @author Craig R. McClanahan
  * @version $Revision: 1.9 $ $Date: 2002/04/04 17:50:34 $
@@ -136,8 +137,6 @@ final class HttpProcessor
 		this.id = id;
 		this.proxyName = connector.getProxyName();
 		this.proxyPort = connector.getProxyPort();
-		this.request = (HttpRequestImpl) connector.createRequest();
-		this.response = (HttpResponseImpl) connector.createResponse();
 		this.serverPort = connector.getPort();
 		this.threadName =
 				"HttpProcessor[" + connector.getPort() + "][" + id + "]";
@@ -148,12 +147,6 @@ final class HttpProcessor
 	// ----------------------------------------------------- Instance Variables
 
 
-	/**
-	 * Is there a new socket available?
-	 */
-	private boolean available = false;
-
-
 	/**
 	 * The HttpConnector with which this processor is associated.
 	 */
@@ -223,8 +216,8 @@ final class HttpProcessor
 
 
 	/**
-	 * The socket we are currently processing a request for.  This object
-	 * is used for inter-thread communication only.
+	 * The socket assigned to this processor, which has not been picked up
+	 * by <code>run()</code> yet.
 	 */
 	private Socket socket = null;
 
@@ -236,55 +229,24 @@ final class HttpProcessor
 
 
 	/**
-	 * The shutdown signal to our background thread
-	 */
-	private boolean stopped = false;
-
-
-	/**
-	 * The background thread.
-	 */
-	private Thread thread = null;
-
-
-	/**
-	 * The name to register for the background thread.
+	 * The name of this processor, used in log messages.
 	 */
 	private String threadName = null;
 
 
-	/**
-	 * The thread synchronization object.
-	 */
-	private Object threadSync = new Object();
-
-
 	// -------------------------------------------------------- Package Methods
 
 
 	/**
-	 * Process an incoming TCP/IP connection on the specified socket.  Any
-	 * exception that occurs during processing must be logged and swallowed.
-	 * <b>NOTE</b>:  This method is called from our Connector's thread.  We
-	 * must assign it to our own thread so that multiple simultaneous
-	 * requests can be handled.
+	 * Assign an incoming TCP/IP connection on the specified socket to this
+	 * processor.  The socket is processed when the connector's executor
+	 * runs this processor.
 	 *
 	 * @param socket TCP socket to process
 	 */
-	synchronized void assign(Socket socket) {
+	void assign(Socket socket) {
 
-		// Wait for the Processor to get the previous Socket
-		while (available) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-			}
-		}
-
-		// Store the newly available Socket and notify our thread
 		this.socket = socket;
-		available = true;
-		notifyAll();
 
 		if ((debug >= 1) && (socket != null))
 			log(" An incoming request is being assigned");
@@ -295,33 +257,6 @@ final class HttpProcessor
 	// -------------------------------------------------------- Private Methods
 
 
-	/**
-	 * Await a newly assigned Socket from our Connector, or <code>null</code>
-	 * if we are supposed to shut down.
-	 */
-	private synchronized Socket await() {
-
-		// Wait for the Connector to provide a new Socket
-		while (!available) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
-			}
-		}
-
-		// Notify the Connector that we have received this Socket
-		Socket socket = this.socket;
-		available = false;
-		notifyAll();
-
-		if ((debug >= 1) && (socket != null))
-			log("  The incoming request has been awaited");
-
-		return (socket);
-
-	}
-
-
 	/**
 	 * Log a message on the Logger associated with our Container (if any)
 	 *
@@ -782,71 +717,30 @@ final class HttpProcessor
 
 
 	/**
-	 * The background thread that listens for incoming TCP/IP connections and
-	 * hands them off to an appropriate processor.
+	 * Process the socket which has been assigned to this processor, with a
+	 * request and a response taken from the connector's pool, then recycle
+	 * this processor.  This method is run by one of the threads of the
+	 * connector's executor.
 	 */
 	public void run() {
 
-		// Process requests until we receive a shutdown signal
-		while (!stopped) {
-
-			// Wait for the next socket to be assigned
-			Socket socket = await();
-			if (socket == null)
-				continue;
-
-			// Process the request from this socket
-			process(socket);
-
-			// Finish up this request
-			request.recycle();
-			response.recycle();
-			connector.recycle(this);
-
-		}
-
-		// Tell threadStop() we have shut ourselves down successfully
-		synchronized (threadSync) {
-			threadSync.notifyAll();
-		}
-
-	}
-
-
-	/**
-	 * Start the background processing thread.
-	 */
-	private void threadStart() {
-
-		log(sm.getString("httpProcessor.starting"));
-
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.start();
-
-		if (debug >= 1)
-			log(" Background thread has been started");
-
-	}
-
-
-	/**
-	 * Stop the background processing thread.
-	 */
-	private void threadStop() {
-
-		log(sm.getString("httpProcessor.stopping"));
+		Socket socket = this.socket;
+		this.socket = null;
 
-		stopped = true;
-		assign(null);
-		synchronized (threadSync) {
+		// Process the request from this socket
+		if (socket != null) {
+			request = (HttpRequestImpl) connector.createRequest();
+			response = (HttpResponseImpl) connector.createResponse();
 			try {
-				threadSync.wait(5000);
-			} catch (InterruptedException e) {
-				;
+				process(socket);
+			} finally {
+				// Finish up this request
+				connector.recycle(request, response);
+				request = null;
+				response = null;
 			}
 		}
-		thread = null;
+		connector.recycle(this);
 
 	}
 
@@ -890,7 +784,7 @@ final class HttpProcessor
 
 
 	/**
-	 * Start the background thread we will use for request processing.
+	 * Prepare this processor for request processing.
 	 *
 	 * @throws LifecycleException if a fatal startup error occurs
 	 */
@@ -902,13 +796,11 @@ final class HttpProcessor
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
 
-		threadStart();
-
 	}
 
 
 	/**
-	 * Stop the background thread we will use for request processing.
+	 * Stop request processing.
 	 *
 	 * @throws LifecycleException if a fatal shutdown error occurs
 	 */
@@ -920,8 +812,6 @@ final class HttpProcessor
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		started = false;
 
-		threadStop();
-
 	}
 
 
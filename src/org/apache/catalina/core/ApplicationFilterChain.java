@@ -66,8 +66,6 @@ package org.apache.catalina.core;
 
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.security.PrivilegedActionException;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -114,17 +112,23 @@ final class ApplicationFilterChain implements FilterChain {
 
 
 	/**
-	 * The set of filters that will be executed on this chain.
+	 * Empty set of filters.
 	 */
-	private ArrayList filters = new ArrayList();
+	private static final ApplicationFilterConfig[] NO_FILTERS =
+			new ApplicationFilterConfig[0];
 
 
 	/**
-	 * The iterator that is used to maintain the current position in the filter chain.
-	 * This iterator is called the first time that <code>doFilter()</code>
-	 * is called.
+	 * The set of filters that will be executed on this chain.  The array
+	 * may be shared with other chains, and must not be modified.
 	 */
-	private Iterator iterator = null;
+	private ApplicationFilterConfig[] filters = NO_FILTERS;
+
+
+	/**
+	 * The position of the next filter to execute in the filter chain.
+	 */
+	private int pos = 0;
 
 
 	/**
@@ -194,14 +198,9 @@ final class ApplicationFilterChain implements FilterChain {
 	private void internalDoFilter(ServletRequest request, ServletResponse response)
 			throws IOException, ServletException {
 
-		// Construct an iterator the first time this method is called
-		if (this.iterator == null)
-			this.iterator = filters.iterator();
-
 		// Call the next filter if there is one
-		if (this.iterator.hasNext()) {
-			ApplicationFilterConfig filterConfig =
-					(ApplicationFilterConfig) iterator.next();
+		if (pos < filters.length) {
+			ApplicationFilterConfig filterConfig = filters[pos++];
 			Filter filter = null;
 			try {
 				filter = filterConfig.getFilter();
@@ -274,25 +273,29 @@ final class ApplicationFilterChain implements FilterChain {
 
 
 	/**
-	 * Add a filter to the set of filters that will be executed in this chain.
-	 *
-	 * @param filterConfig The FilterConfig for the servlet to be executed
+	 * Release references to the filters and wrapper executed by this chain,
+	 * so that it can be reused for another request.
 	 */
-	void addFilter(ApplicationFilterConfig filterConfig) {
+	void release() {
 
-		this.filters.add(filterConfig);
+		this.filters = NO_FILTERS;
+		this.pos = 0;
+		this.servlet = null;
+		this.support = null;
 
 	}
 
 
 	/**
-	 * Release references to the filters and wrapper executed by this chain.
+	 * Set the filters that will be executed in this chain, in order.
+	 *
+	 * @param filters The FilterConfigs of the filters to be executed; the
+	 *                array is not copied, and must not be modified afterwards
 	 */
-	void release() {
+	void setFilters(ApplicationFilterConfig[] filters) {
 
-		this.filters.clear();
-		this.iterator = iterator;
-		this.servlet = null;
+		this.filters = filters;
+		this.pos = 0;
 
 	}
 
@@ -0,0 +1,776 @@
+package org.apache.catalina.core;
+
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.ContainerEvent;
+import org.apache.catalina.ContainerListener;
+import org.apache.catalina.Context;
+import org.apache.catalina.Engine;
+import org.apache.catalina.Host;
+import org.apache.catalina.HttpRequest;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.Mapper;
+import org.apache.catalina.Request;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.util.LifecycleSupport;
+import org.apache.catalina.util.StringManager;
+
+
+/**
+ * Implementation of <code>Mapper</code> for an <code>Engine</code>,
+ * designed to process HTTP requests.  This mapper selects the
+ * <code>Host</code> based on the server name included in the request, and,
+ * when the request is updated, also selects its <code>Context</code> and
+ * <code>Wrapper</code>, and sets its context path, servlet path and path
+ * info, so that the mappers of the host and of the context find the request
+ * already mapped.
+ * <p/>
+ * The names, aliases, context paths and servlet mappings of all the hosts
+ * are compiled into an immutable structure, which is read without any lock,
+ * and in which the context-relative parts of the request URI are looked up
+ * in a single scan, without building substrings.  The structure is
+ * discarded whenever a container event may change the result of a mapping,
+ * and compiled again by the next request.  Hosts and contexts which use
+ * another mapper than <code>StandardHostMapper</code> or
+ * <code>StandardContextMapper</code> are left to their own mapper.
+ * <p/>
+ * <b>IMPLEMENTATION NOTE</b>:  This Mapper only works with a
+ * <code>StandardEngine</code>, because it relies on internal APIs.
+ */
+
+public final class CompiledEngineMapper
+		implements ContainerListener, Lifecycle, Mapper, PropertyChangeListener {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The debugging detail level for this component.
+	 */
+	private int debug = 0;
+
+
+	/**
+	 * The Container with which this Mapper is associated.
+	 */
+	private StandardEngine engine = null;
+
+
+	/**
+	 * Number of times the compiled mappings have been discarded.
+	 */
+	private AtomicInteger generation = new AtomicInteger();
+
+
+	/**
+	 * The lifecycle event support for this component.
+	 */
+	private LifecycleSupport lifecycle = new LifecycleSupport(this);
+
+
+	/**
+	 * The compiled mappings, or <code>null</code> if they must be compiled
+	 * again.
+	 */
+	private volatile Mapping mapping = null;
+
+
+	/**
+	 * The protocol with which this Mapper is associated.
+	 */
+	private String protocol = null;
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private static final StringManager sm =
+			StringManager.getManager(Constants.Package);
+
+
+	/**
+	 * Has this component been started yet?
+	 */
+	private boolean started = false;
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the Container with which this Mapper is associated.
+	 */
+	public Container getContainer() {
+
+		return (engine);
+
+	}
+
+
+	/**
+	 * Set the Container with which this Mapper is associated.
+	 *
+	 * @param container The newly associated Container
+	 * @throws IllegalArgumentException if this Container is not
+	 *                                  acceptable to this Mapper
+	 */
+	public void setContainer(Container container) {
+
+		if (!(container instanceof StandardEngine))
+			throw new IllegalArgumentException
+					(sm.getString("httpEngineMapper.container"));
+		engine = (StandardEngine) container;
+
+	}
+
+
+	/**
+	 * Return the protocol for which this Mapper is responsible.
+	 */
+	public String getProtocol() {
+
+		return (this.protocol);
+
+	}
+
+
+	/**
+	 * Set the protocol for which this Mapper is responsible.
+	 *
+	 * @param protocol The newly associated protocol
+	 */
+	public void setProtocol(String protocol) {
+
+		this.protocol = protocol;
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Return the child Container that should be used to process this Request,
+	 * based upon its characteristics.  If no such child Container can be
+	 * identified, return <code>null</code> instead.
+	 *
+	 * @param request Request being processed
+	 * @param update  Update the Request to reflect the mapping selection?
+	 */
+	public Container map(Request request, boolean update) {
+
+		debug = engine.getDebug();
+
+		// Extract the requested server name
+		String server = request.getRequest().getServerName();
+		if (server == null) {
+			server = engine.getDefaultHost();
+			if (update)
+				request.setServerName(server);
+		}
+		if (server == null)
+			return (null);
+		if (debug >= 1)
+			engine.log("Mapping server name '" + server + "'");
+
+		// Find the matching Host, or the default one
+		Mapping mapping = this.mapping;
+		if (mapping == null)
+			mapping = compile();
+		HostMapping host = mapping.findHost(server.toLowerCase());
+		if (host == null)
+			return (null);
+
+		// Select the Context and the Wrapper as well
+		if (update && host.compiled && (request instanceof HttpRequest)
+				&& (request.getContext() == null))
+			host.map((HttpRequest) request);
+		if (debug >= 1)
+			engine.log(" Mapped to host '" + host.host.getName()
+					+ "' and context '" + request.getContext() + "'");
+
+		return (host.host);
+
+	}
+
+
+	// ---------------------------------------------- ContainerListener Methods
+
+
+	/**
+	 * Acknowledge the occurrence of the specified event.
+	 *
+	 * @param event ContainerEvent that has occurred
+	 */
+	public void containerEvent(ContainerEvent event) {
+
+		String type = event.getType();
+		if (Container.ADD_CHILD_EVENT.equals(type)) {
+			Container child = (Container) event.getData();
+			if ((child instanceof Host) || (child instanceof Context))
+				listen(child);
+		} else if (Container.REMOVE_CHILD_EVENT.equals(type)) {
+			Container child = (Container) event.getData();
+			if ((child instanceof Host) || (child instanceof Context))
+				unlisten(child);
+		} else if (!Container.ADD_MAPPER_EVENT.equals(type)
+				&& !Container.REMOVE_MAPPER_EVENT.equals(type)
+				&& !Host.ADD_ALIAS_EVENT.equals(type)
+				&& !Host.REMOVE_ALIAS_EVENT.equals(type)
+				&& !"addServletMapping".equals(type)
+				&& !"removeServletMapping".equals(type)) {
+			return;
+		}
+		invalidate();
+
+	}
+
+
+	// ------------------------------------------------------ Lifecycle Methods
+
+
+	/**
+	 * Add a lifecycle event listener to this component.
+	 *
+	 * @param listener The listener to add
+	 */
+	public void addLifecycleListener(LifecycleListener listener) {
+
+		lifecycle.addLifecycleListener(listener);
+
+	}
+
+
+	/**
+	 * Get the lifecycle listeners associated with this lifecycle. If this
+	 * Lifecycle has no listeners registered, a zero-length array is returned.
+	 */
+	public LifecycleListener[] findLifecycleListeners() {
+
+		return lifecycle.findLifecycleListeners();
+
+	}
+
+
+	/**
+	 * Remove a lifecycle event listener from this component.
+	 *
+	 * @param listener The listener to remove
+	 */
+	public void removeLifecycleListener(LifecycleListener listener) {
+
+		lifecycle.removeLifecycleListener(listener);
+
+	}
+
+
+	/**
+	 * Prepare for active use of the public methods of this Component.
+	 *
+	 * @throws LifecycleException if this component detects a fatal error
+	 *                            that prevents it from being started
+	 */
+	public synchronized void start() throws LifecycleException {
+
+		// Validate and update our current component state
+		if (started)
+			throw new LifecycleException
+					(sm.getString("compiledEngineMapper.alreadyStarted",
+							engine.getName()));
+		started = true;
+
+		// Listen to the changes of our Engine, Hosts and Contexts
+		engine.addContainerListener(this);
+		engine.addPropertyChangeListener(this);
+		Container children[] = engine.findChildren();
+		for (int i = 0; i < children.length; i++)
+			listen(children[i]);
+		invalidate();
+
+		// Notify our interested LifecycleListeners
+		lifecycle.fireLifecycleEvent(START_EVENT, null);
+
+	}
+
+
+	/**
+	 * Gracefully shut down active use of the public methods of this Component.
+	 *
+	 * @throws LifecycleException if this component detects a fatal error
+	 *                            that needs to be reported
+	 */
+	public synchronized void stop() throws LifecycleException {
+
+		// Validate and update our current component state
+		if (!started)
+			throw new LifecycleException
+					(sm.getString("compiledEngineMapper.notStarted",
+							engine.getName()));
+
+		// Notify our interested LifecycleListeners
+		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
+		started = false;
+
+		// Stop listening to our Engine, Hosts and Contexts
+		engine.removePropertyChangeListener(this);
+		engine.removeContainerListener(this);
+		Container children[] = engine.findChildren();
+		for (int i = 0; i < children.length; i++)
+			unlisten(children[i]);
+		invalidate();
+
+	}
+
+
+	// ----------------------------------------- PropertyChangeListener Methods
+
+
+	/**
+	 * Process a property change event.
+	 */
+	public void propertyChange(PropertyChangeEvent event) {
+
+		if ((event.getSource() instanceof Engine)
+				&& "defaultHost".equals(event.getPropertyName()))
+			invalidate();
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Compile the mappings of our Engine, and publish them unless they have
+	 * been changed in the meantime.
+	 */
+	private synchronized Mapping compile() {
+
+		Mapping mapping = this.mapping;
+		if (mapping != null)
+			return (mapping);
+
+		int generation = this.generation.get();
+		if (debug >= 2)
+			engine.log(" Compiling mappings");
+		mapping = new Mapping(engine);
+		this.mapping = mapping;
+		if (this.generation.get() != generation)
+			this.mapping = null;
+		return (mapping);
+
+	}
+
+
+	/**
+	 * Discard the compiled mappings.
+	 */
+	private void invalidate() {
+
+		generation.incrementAndGet();
+		mapping = null;
+
+	}
+
+
+	/**
+	 * Listen to the changes of the specified Host or Context, and of its
+	 * Contexts.
+	 *
+	 * @param container The Host or Context
+	 */
+	private void listen(Container container) {
+
+		container.addContainerListener(this);
+		if (container instanceof Host) {
+			Container children[] = container.findChildren();
+			for (int i = 0; i < children.length; i++)
+				listen(children[i]);
+		}
+
+	}
+
+
+	/**
+	 * Stop listening to the changes of the specified Host or Context, and
+	 * of its Contexts.
+	 *
+	 * @param container The Host or Context
+	 */
+	private void unlisten(Container container) {
+
+		container.removeContainerListener(this);
+		if (container instanceof Host) {
+			Container children[] = container.findChildren();
+			for (int i = 0; i < children.length; i++)
+				unlisten(children[i]);
+		}
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * Compiled mappings of an Engine.
+	 */
+	private static final class Mapping {
+
+		/**
+		 * Hosts by name and alias.
+		 */
+		private final HashMap hosts = new HashMap();
+
+		/**
+		 * The default Host, if any.
+		 */
+		private final HostMapping defaultHost;
+
+		Mapping(Engine engine) {
+			Container children[] = engine.findChildren();
+			HostMapping mappings[] = new HostMapping[children.length];
+			for (int i = 0; i < children.length; i++) {
+				mappings[i] = new HostMapping((Host) children[i]);
+				String aliases[] = mappings[i].host.findAliases();
+				for (int j = 0; j < aliases.length; j++)
+					hosts.put(aliases[j].toLowerCase(), mappings[i]);
+			}
+			// Names win over aliases
+			for (int i = 0; i < children.length; i++)
+				hosts.put(children[i].getName(), mappings[i]);
+			String name = engine.getDefaultHost();
+			defaultHost = (name != null) ? (HostMapping) hosts.get(name) : null;
+		}
+
+		/**
+		 * Return the Host with the specified lower case name or alias, or
+		 * the default Host.
+		 */
+		HostMapping findHost(String name) {
+			HostMapping host = (HostMapping) hosts.get(name);
+			return ((host != null) ? host : defaultHost);
+		}
+
+	}
+
+
+	/**
+	 * Compiled mappings of a Host.
+	 */
+	private static final class HostMapping {
+
+		/**
+		 * The Host.
+		 */
+		final Host host;
+
+		/**
+		 * Are the Contexts of this Host selected by this mapper?
+		 */
+		final boolean compiled;
+
+		/**
+		 * Contexts by path.
+		 */
+		private final PathMap contexts;
+
+		HostMapping(Host host) {
+			this.host = host;
+			Mapper mappers[] = host.findMappers();
+			compiled = (mappers.length == 1)
+					&& (mappers[0] instanceof StandardHostMapper);
+			HashMap map = new HashMap();
+			Container children[] = host.findChildren();
+			for (int i = 0; i < children.length; i++) {
+				if (children[i] instanceof Context) {
+					Context context = (Context) children[i];
+					map.put(context.getPath(), new ContextMapping(context));
+				}
+			}
+			contexts = new PathMap(map);
+		}
+
+		/**
+		 * Select the Context of the specified request, which is the one
+		 * with the longest path matching the request URI up to a slash, and
+		 * map the request within it.
+		 */
+		void map(HttpRequest request) {
+
+			String uri = request.getDecodedRequestURI();
+			if (uri == null)
+				return;
+
+			// The last match is the longest one
+			ContextMapping context = null;
+			int length = uri.length();
+			int hash = 0;
+			for (int i = 0; i < length; i++) {
+				char c = uri.charAt(i);
+				if (c == '/') {
+					ContextMapping match = (ContextMapping)
+							contexts.get(uri, 0, i, hash);
+					if (match != null)
+						context = match;
+				}
+				hash = 31 * hash + c;
+			}
+			ContextMapping match = (ContextMapping)
+					contexts.get(uri, 0, length, hash);
+			if (match != null)
+				context = match;
+			if (context == null)
+				context = (ContextMapping) contexts.get("", 0, 0, 0);
+			if (context == null)
+				return;
+
+			request.setContext(context.context);
+			request.setContextPath(context.path);
+			if (context.compiled)
+				context.map(request, uri);
+
+		}
+
+	}
+
+
+	/**
+	 * Compiled servlet mappings of a Context.
+	 */
+	private static final class ContextMapping {
+
+		/**
+		 * The Context.
+		 */
+		final Context context;
+
+		/**
+		 * Are the Wrappers of this Context selected by this mapper?
+		 */
+		final boolean compiled;
+
+		/**
+		 * The path of the Context.
+		 */
+		final String path;
+
+		/**
+		 * Wrappers by exact pattern.
+		 */
+		private final PathMap exact;
+
+		/**
+		 * Wrappers by path prefix, for the patterns ending with
+		 * <code>/*</code>.
+		 */
+		private final PathMap prefix;
+
+		/**
+		 * Wrappers by extension, including the period, for the patterns
+		 * starting with <code>*</code>.
+		 */
+		private final PathMap extension;
+
+		/**
+		 * The Wrapper of the default servlet, if any.
+		 */
+		private final Wrapper defaultWrapper;
+
+		ContextMapping(Context context) {
+			this.context = context;
+			this.path = context.getPath();
+			Mapper mappers[] = context.findMappers();
+			compiled = (mappers.length == 1)
+					&& (mappers[0] instanceof StandardContextMapper);
+			HashMap exact = new HashMap();
+			HashMap prefix = new HashMap();
+			HashMap extension = new HashMap();
+			Wrapper defaultWrapper = null;
+			String patterns[] = context.findServletMappings();
+			for (int i = 0; i < patterns.length; i++) {
+				String pattern = patterns[i];
+				String name = context.findServletMapping(pattern);
+				Wrapper wrapper = (name != null)
+						? (Wrapper) context.findChild(name) : null;
+				if (wrapper == null)
+					continue;
+				if (pattern.equals("/")) {
+					defaultWrapper = wrapper;
+					continue;
+				}
+				exact.put(pattern, wrapper);
+				if (pattern.endsWith("/*"))
+					prefix.put(pattern.substring(0, pattern.length() - 2),
+							wrapper);
+				else if (pattern.startsWith("*"))
+					extension.put(pattern.substring(1), wrapper);
+			}
+			this.exact = new PathMap(exact);
+			this.prefix = new PathMap(prefix);
+			this.extension = new PathMap(extension);
+			this.defaultWrapper = defaultWrapper;
+		}
+
+		/**
+		 * Select the Wrapper of the specified request, following the
+		 * exact, prefix, extension and default rules of the specification,
+		 * and set its servlet path and path info.
+		 */
+		void map(HttpRequest request, String uri) {
+
+			int start = path.length();
+			int end = uri.length();
+
+			// Scan the relative URI, looking for the longest prefix match
+			Wrapper wrapper = null;
+			int servletEnd = end;
+			int slash = -1;
+			int period = -1;
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				char c = uri.charAt(i);
+				if (c == '/') {
+					Wrapper match = (Wrapper) prefix.get(uri, start, i, hash);
+					if (match != null) {
+						wrapper = match;
+						servletEnd = i;
+					}
+					slash = i;
+				} else if (c == '.') {
+					period = i;
+				}
+				hash = 31 * hash + c;
+			}
+			Wrapper match = (Wrapper) prefix.get(uri, start, end, hash);
+			if (match != null) {
+				wrapper = match;
+				servletEnd = end;
+			}
+
+			// Rule 1 -- Exact Match
+			if (!((end - start == 1) && (uri.charAt(start) == '/'))) {
+				match = (Wrapper) exact.get(uri, start, end, hash);
+				if (match != null) {
+					wrapper = match;
+					servletEnd = end;
+				}
+			}
+
+			// Rule 2 -- Prefix Match, found above
+
+			// Rule 3 -- Extension Match
+			if ((wrapper == null) && (slash >= 0) && (period > slash)) {
+				wrapper = (Wrapper) extension.get(uri, period, end,
+						PathMap.hash(uri, period, end));
+				servletEnd = end;
+			}
+
+			// Rule 4 -- Default Match
+			if (wrapper == null) {
+				wrapper = defaultWrapper;
+				servletEnd = end;
+			}
+
+			// Leave the request to the mapper of the Context
+			if (wrapper == null)
+				return;
+
+			request.setWrapper(wrapper);
+			request.setServletPath(uri.substring(start, servletEnd));
+			request.setPathInfo((servletEnd < end)
+					? uri.substring(servletEnd) : null);
+
+		}
+
+	}
+
+
+	/**
+	 * Immutable hash table whose String keys are looked up by a region of
+	 * another String, so that no substring has to be built.
+	 */
+	private static final class PathMap {
+
+		private final String[] keys;
+
+		private final int[] hashes;
+
+		private final Object[] values;
+
+		private final int mask;
+
+		PathMap(Map map) {
+			int capacity = 2;
+			while (capacity < map.size() * 2)
+				capacity *= 2;
+			keys = new String[capacity];
+			hashes = new int[capacity];
+			values = new Object[capacity];
+			mask = capacity - 1;
+			Iterator entries = map.entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry entry = (Map.Entry) entries.next();
+				String key = (String) entry.getKey();
+				int hash = key.hashCode();
+				int i = spread(hash) & mask;
+				while (keys[i] != null)
+					i = (i + 1) & mask;
+				keys[i] = key;
+				hashes[i] = hash;
+				values[i] = entry.getValue();
+			}
+		}
+
+		/**
+		 * Return the hash code of a region of the specified String, which
+		 * is the hash code of the corresponding substring.
+		 */
+		static int hash(String s, int start, int end) {
+			int hash = 0;
+			for (int i = start; i < end; i++)
+				hash = 31 * hash + s.charAt(i);
+			return (hash);
+		}
+
+		/**
+		 * Return the value whose key is the specified region of a String,
+		 * or <code>null</code>.
+		 *
+		 * @param s     The String
+		 * @param start Start of the region
+		 * @param end   End of the region
+		 * @param hash  Hash code of the region
+		 */
+		Object get(String s, int start, int end, int hash) {
+			int length = end - start;
+			int i = spread(hash) & mask;
+			while (true) {
+				String key = keys[i];
+				if (key == null)
+					return (null);
+				if ((hashes[i] == hash) && (key.length() == length)
+						&& s.regionMatches(start, key, 0, length))
+					return (values[i]);
+				i = (i + 1) & mask;
+			}
+		}
+
+		private static int spread(int hash) {
+			return (hash ^ (hash >>> 16));
+		}
+
+	}
+
+
+}
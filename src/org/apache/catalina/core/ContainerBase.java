@@ -72,8 +72,17 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.ServletException;
 import javax.naming.directory.DirContext;
 
@@ -185,13 +194,55 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	}
 
 
+	/**
+	 * Create the threads of the start and stop pool, which are daemon
+	 * threads named after this Container, with the context class loader of
+	 * the thread starting this Container.
+	 */
+	protected class StartStopThreadFactory
+			implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+		private ClassLoader classLoader =
+				Thread.currentThread().getContextClassLoader();
+
+		private AtomicInteger count = new AtomicInteger();
+
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+			};
+			thread.setName(logName() + "-startStop-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setContextClassLoader(classLoader);
+			return thread;
+		}
+
+	}
+
+
 	// ----------------------------------------------------- Instance Variables
 
 
 	/**
 	 * The child Containers belonging to this Container, keyed by name.
+	 * The map is replaced instead of being modified, so that it can be read
+	 * without locking.
 	 */
-	protected HashMap children = new HashMap();
+	protected volatile HashMap children = new HashMap();
+
+
+	/**
+	 * Lock guarding the changes to <code>children</code> and
+	 * <code>startingChildren</code>.
+	 */
+	protected final Object childrenLock = new Object();
+
+
+	/**
+	 * The names of the child Containers being added which are still being
+	 * started, and are not in <code>children</code> yet so that no request
+	 * is mapped to them.
+	 */
+	protected final HashSet startingChildren = new HashSet();
 
 
 	/**
@@ -239,13 +290,21 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	/**
 	 * The one and only Mapper associated with this Container, if any.
 	 */
-	protected Mapper mapper = null;
+	protected volatile Mapper mapper = null;
 
 
 	/**
 	 * The set of Mappers associated with this Container, keyed by protocol.
+	 * The map is replaced instead of being modified, so that it can be read
+	 * without locking.
+	 */
+	protected volatile HashMap mappers = new HashMap();
+
+
+	/**
+	 * Lock guarding the changes to <code>mappers</code>.
 	 */
-	protected HashMap mappers = new HashMap();
+	protected final Object mappersLock = new Object();
 
 
 	/**
@@ -303,6 +362,21 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	protected boolean started = false;
 
 
+	/**
+	 * The pool starting and stopping the child Containers while this
+	 * Container is started, or <code>null</code> if they are started one
+	 * after the other by the calling thread.
+	 */
+	protected volatile ExecutorService startStopExecutor = null;
+
+
+	/**
+	 * The number of threads starting and stopping the child Containers.
+	 * A value of zero or less means as many threads as processors.
+	 */
+	protected int startStopThreads = 1;
+
+
 	/**
 	 * The property change support for this component.
 	 */
@@ -774,6 +848,49 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	}
 
 
+	/**
+	 * Return the pool starting and stopping the child Containers, or
+	 * <code>null</code> if they are started one after the other.  The pool
+	 * exists while this Container is started, and can be used to deploy new
+	 * children concurrently.
+	 */
+	public ExecutorService getStartStopExecutor() {
+
+		return (this.startStopExecutor);
+
+	}
+
+
+	/**
+	 * Return the number of threads starting and stopping the child
+	 * Containers.
+	 */
+	public int getStartStopThreads() {
+
+		return (this.startStopThreads);
+
+	}
+
+
+	/**
+	 * Set the number of threads starting and stopping the child Containers,
+	 * which takes effect the next time this Container is started.  The
+	 * default value of 1 starts the children one after the other, and a
+	 * value of zero or less uses as many threads as there are processors.
+	 *
+	 * @param startStopThreads The new number of threads
+	 */
+	public void setStartStopThreads(int startStopThreads) {
+
+		int oldStartStopThreads = this.startStopThreads;
+		this.startStopThreads = startStopThreads;
+		support.firePropertyChange("startStopThreads",
+				new Integer(oldStartStopThreads),
+				new Integer(this.startStopThreads));
+
+	}
+
+
 	// ------------------------------------------------------ Container Methods
 
 
@@ -805,24 +922,63 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 
 	private void addChildInternal(Container child) {
 
-		synchronized (children) {
-			if (children.get(child.getName()) != null)
+		// Reserve the name of the child, which is started without holding
+		// the lock so that several children can be added concurrently, and
+		// only becomes visible once it has been started
+		String name = child.getName();
+		boolean start = false;
+		synchronized (childrenLock) {
+			if ((children.get(name) != null)
+					|| startingChildren.contains(name))
 				throw new IllegalArgumentException("addChild:  Child name '" +
-						child.getName() +
+						name +
 						"' is not unique");
 			child.setParent((Container) this);  // May throw IAE
-			if (started && (child instanceof Lifecycle)) {
-				try {
-					((Lifecycle) child).start();
-				} catch (LifecycleException e) {
-					log("ContainerBase.addChild: start: ", e);
-					throw new IllegalStateException
-							("ContainerBase.addChild: start: " + e);
+			start = started && (child instanceof Lifecycle);
+			if (start)
+				startingChildren.add(name);
+			else
+				putChild(name, child);
+		}
+
+		if (start) {
+			try {
+				((Lifecycle) child).start();
+			} catch (LifecycleException e) {
+				log("ContainerBase.addChild: start: ", e);
+				synchronized (childrenLock) {
+					startingChildren.remove(name);
+				}
+				throw new IllegalStateException
+						("ContainerBase.addChild: start: " + e);
+			} catch (RuntimeException e) {
+				synchronized (childrenLock) {
+					startingChildren.remove(name);
 				}
+				throw e;
+			}
+			synchronized (childrenLock) {
+				startingChildren.remove(name);
+				putChild(name, child);
 			}
-			children.put(child.getName(), child);
-			fireContainerEvent(ADD_CHILD_EVENT, child);
 		}
+		fireContainerEvent(ADD_CHILD_EVENT, child);
+
+	}
+
+
+	/**
+	 * Publish the specified child in a new copy of <code>children</code>.
+	 * The caller must hold <code>childrenLock</code>.
+	 *
+	 * @param name  The name of the child
+	 * @param child The child Container
+	 */
+	private void putChild(String name, Container child) {
+
+		HashMap results = new HashMap(children);
+		results.put(name, child);
+		children = results;
 
 	}
 
@@ -850,7 +1006,7 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	 */
 	public void addMapper(Mapper mapper) {
 
-		synchronized (mappers) {
+		synchronized (mappersLock) {
 			if (mappers.get(mapper.getProtocol()) != null)
 				throw new IllegalArgumentException("addMapper:  Protocol '" +
 						mapper.getProtocol() +
@@ -865,7 +1021,9 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 							("ContainerBase.addMapper: start: " + e);
 				}
 			}
-			mappers.put(mapper.getProtocol(), mapper);
+			HashMap results = new HashMap(mappers);
+			results.put(mapper.getProtocol(), mapper);
+			mappers = results;
 			if (mappers.size() == 1)
 				this.mapper = mapper;
 			else
@@ -898,9 +1056,7 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 
 		if (name == null)
 			return (null);
-		synchronized (children) {       // Required by post-start changes
-			return ((Container) children.get(name));
-		}
+		return ((Container) children.get(name));
 
 	}
 
@@ -911,10 +1067,9 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	 */
 	public Container[] findChildren() {
 
-		synchronized (children) {
-			Container results[] = new Container[children.size()];
-			return ((Container[]) children.values().toArray(results));
-		}
+		HashMap children = this.children;
+		Container results[] = new Container[children.size()];
+		return ((Container[]) children.values().toArray(results));
 
 	}
 
@@ -944,12 +1099,11 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	 */
 	public Mapper findMapper(String protocol) {
 
+		Mapper mapper = this.mapper;
 		if (mapper != null)
 			return (mapper);
 		else
-			synchronized (mappers) {
-				return ((Mapper) mappers.get(protocol));
-			}
+			return ((Mapper) mappers.get(protocol));
 
 	}
 
@@ -960,10 +1114,9 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	 */
 	public Mapper[] findMappers() {
 
-		synchronized (mappers) {
-			Mapper results[] = new Mapper[mappers.size()];
-			return ((Mapper[]) mappers.values().toArray(results));
-		}
+		HashMap mappers = this.mappers;
+		Mapper results[] = new Mapper[mappers.size()];
+		return ((Mapper[]) mappers.values().toArray(results));
 
 	}
 
@@ -1016,10 +1169,12 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	 */
 	public void removeChild(Container child) {
 
-		synchronized (children) {
+		synchronized (childrenLock) {
 			if (children.get(child.getName()) == null)
 				return;
-			children.remove(child.getName());
+			HashMap results = new HashMap(children);
+			results.remove(child.getName());
+			children = results;
 		}
 		if (started && (child instanceof Lifecycle)) {
 			try {
@@ -1055,11 +1210,13 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	 */
 	public void removeMapper(Mapper mapper) {
 
-		synchronized (mappers) {
+		synchronized (mappersLock) {
 
 			if (mappers.get(mapper.getProtocol()) == null)
 				return;
-			mappers.remove(mapper.getProtocol());
+			HashMap results = new HashMap(mappers);
+			results.remove(mapper.getProtocol());
+			mappers = results;
 			if (started && (mapper instanceof Lifecycle)) {
 				try {
 					((Lifecycle) mapper).stop();
@@ -1172,10 +1329,25 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 		}
 
 		// Start our child containers, if any
-		Container children[] = findChildren();
-		for (int i = 0; i < children.length; i++) {
-			if (children[i] instanceof Lifecycle)
-				((Lifecycle) children[i]).start();
+		int threads = startStopThreads;
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		if (threads > 1)
+			startStopExecutor = new ForkJoinPool(threads,
+					new StartStopThreadFactory(), null, false);
+		boolean ok = false;
+		try {
+			startStopChildren(findChildren(), true);
+			ok = true;
+		} finally {
+			// The pool is shut down by stop(), which is not called when
+			// starting has failed
+			if (!ok) {
+				ExecutorService executor = startStopExecutor;
+				startStopExecutor = null;
+				if (executor != null)
+					executor.shutdown();
+			}
 		}
 
 		// Start the Valves in our pipeline (including the basic), if any
@@ -1217,10 +1389,13 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 		}
 
 		// Stop our child containers, if any
-		Container children[] = findChildren();
-		for (int i = 0; i < children.length; i++) {
-			if (children[i] instanceof Lifecycle)
-				((Lifecycle) children[i]).stop();
+		try {
+			startStopChildren(findChildren(), false);
+		} finally {
+			ExecutorService executor = startStopExecutor;
+			startStopExecutor = null;
+			if (executor != null)
+				executor.shutdown();
 		}
 
 		// Stop our Mappers, if any
@@ -1370,6 +1545,82 @@ public abstract class ContainerBase implements Container, Lifecycle, Pipeline {
 	}
 
 
+	/**
+	 * Start or stop the specified child Containers, on the start and stop
+	 * pool if there is one, and wait until all of them are done.  A child
+	 * failing does not prevent the others from being started or stopped.
+	 *
+	 * @param children The child Containers
+	 * @param start    Should the children be started, or stopped?
+	 * @throws LifecycleException with the first failure, once all the
+	 *                            children are done
+	 */
+	protected void startStopChildren(Container children[], final boolean start)
+			throws LifecycleException {
+
+		ExecutorService executor = startStopExecutor;
+		if ((executor == null) || (children.length < 2)) {
+			for (int i = 0; i < children.length; i++) {
+				if (!(children[i] instanceof Lifecycle))
+					continue;
+				if (start)
+					((Lifecycle) children[i]).start();
+				else
+					((Lifecycle) children[i]).stop();
+			}
+			return;
+		}
+
+		ArrayList results = new ArrayList();
+		for (int i = 0; i < children.length; i++) {
+			if (!(children[i] instanceof Lifecycle))
+				continue;
+			final Lifecycle child = (Lifecycle) children[i];
+			FutureTask result = new FutureTask(new Callable() {
+				public Object call() throws LifecycleException {
+					if (start)
+						child.start();
+					else
+						child.stop();
+					return (null);
+				}
+			});
+			executor.execute(result);
+			results.add(result);
+		}
+
+		LifecycleException failure = null;
+		boolean interrupted = false;
+		for (int i = 0; i < results.size(); i++) {
+			Future result = (Future) results.get(i);
+			while (true) {
+				try {
+					result.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					log(sm.getString(start ? "containerBase.startChildFailed"
+							: "containerBase.stopChildFailed"), cause);
+					if (failure != null)
+						break;
+					if (cause instanceof LifecycleException)
+						failure = (LifecycleException) cause;
+					else
+						failure = new LifecycleException(cause);
+					break;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure != null)
+			throw failure;
+
+	}
+
+
 	/**
 	 * Notify all container event listeners that a particular event has
 	 * occurred for this Container.  The default implementation performs
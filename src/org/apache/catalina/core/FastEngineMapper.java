@@ -67,8 +67,12 @@ package org.apache.catalina.core;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.catalina.Container;
 import org.apache.catalina.ContainerEvent;
@@ -89,6 +93,14 @@ import org.apache.catalina.util.StringManager;
  * designed to process HTTP requests.  This mapper selects an appropriate
  * <code>Host</code> based on the server name included in the request.
  * <p/>
+ * The names and aliases of the hosts are held in a map which is replaced
+ * as a whole when the configuration changes, so that requests look it up
+ * without locking.  The server names which are not configured, including
+ * the configured ones spelled with another case, are resolved once and
+ * remembered in a separate cache of at most <code>maxLearnedAliases</code>
+ * entries, so that random <code>Host</code> headers cannot make the mapper
+ * grow without bounds.
+ * <p/>
  * <b>IMPLEMENTATION NOTE</b>:  This Mapper only works with a
  * <code>StandardEngine</code>, because it relies on internal APIs.
  *
@@ -104,15 +116,16 @@ public final class FastEngineMapper
 
 
 	/**
-	 * Cache of hostname -> Host mappings.  FIXME - use FastHashMap.
+	 * Configured host names and aliases, in lower case, mapped to their
+	 * Host.  This map is never modified once published.
 	 */
-	private java.util.HashMap cache = new java.util.HashMap();
+	private volatile Map cache = new HashMap();
 
 
 	/**
 	 * The default host used for unknown host names.
 	 */
-	private Host defaultHost = null;
+	private volatile Host defaultHost = null;
 
 
 	/**
@@ -127,12 +140,45 @@ public final class FastEngineMapper
 	private StandardEngine engine = null;
 
 
+	/**
+	 * Number of server names found in the configured names or in the
+	 * learned aliases.
+	 */
+	private AtomicLong hitCount = new AtomicLong();
+
+
+	/**
+	 * Server names which were not found among the configured names, as
+	 * they appeared in the requests, mapped to the Host they resolved to.
+	 */
+	private ConcurrentHashMap<String, Host> learned =
+			new ConcurrentHashMap<String, Host>();
+
+
+	/**
+	 * Number of entries in <code>learned</code>.
+	 */
+	private AtomicInteger learnedCount = new AtomicInteger();
+
+
 	/**
 	 * The lifecycle event support for this component.
 	 */
 	private LifecycleSupport lifecycle = new LifecycleSupport(this);
 
 
+	/**
+	 * Maximum number of learned aliases.
+	 */
+	private int maxLearnedAliases = 256;
+
+
+	/**
+	 * Number of server names which had to be resolved.
+	 */
+	private AtomicLong missCount = new AtomicLong();
+
+
 	/**
 	 * The protocol with which this Mapper is associated.
 	 */
@@ -182,6 +228,62 @@ public final class FastEngineMapper
 	}
 
 
+	/**
+	 * Return the number of server names which have been found among the
+	 * configured names or the learned aliases.
+	 */
+	public long getHitCount() {
+
+		return (hitCount.get());
+
+	}
+
+
+	/**
+	 * Return the number of learned aliases.
+	 */
+	public int getLearnedAliasCount() {
+
+		return (learnedCount.get());
+
+	}
+
+
+	/**
+	 * Return the maximum number of learned aliases.
+	 */
+	public int getMaxLearnedAliases() {
+
+		return (this.maxLearnedAliases);
+
+	}
+
+
+	/**
+	 * Set the maximum number of learned aliases, that is of server names
+	 * which are not configured names or aliases of a host, but whose
+	 * resolution is remembered.  Zero disables the learned aliases.
+	 *
+	 * @param maxLearnedAliases The new maximum
+	 */
+	public void setMaxLearnedAliases(int maxLearnedAliases) {
+
+		this.maxLearnedAliases = maxLearnedAliases;
+		clearLearned();
+
+	}
+
+
+	/**
+	 * Return the number of server names which have had to be resolved.
+	 */
+	public long getMissCount() {
+
+		return (missCount.get());
+
+	}
+
+
 	/**
 	 * Return the protocol for which this Mapper is responsible.
 	 */
@@ -234,14 +336,28 @@ public final class FastEngineMapper
 		// Find the specified host in our cache
 		if (debug >= 2)
 			engine.log(" Trying a cache match");
-		Host host = (Host) cache.get(server);
+		Map names = cache;
+		Host host = (Host) names.get(server);
+		if (host == null)
+			host = learned.get(server);
+		if (host != null) {
+			hitCount.incrementAndGet();
+			return (host);
+		}
+		missCount.incrementAndGet();
 
-		// Map to the default host if any
-		if ((host == null) && (defaultHost != null)) {
+		// Resolve the name, mapping to the default host if any
+		host = (Host) names.get(server.toLowerCase());
+		if (host == null) {
 			if (debug >= 2)
 				engine.log(" Mapping to default host");
 			host = defaultHost;
-			addAlias(server, host);
+		}
+		if (host != null) {
+			learnAlias(server, host);
+			// Do not keep a resolution made against a stale configuration
+			if (names != cache)
+				clearLearned();
 		}
 
 		// Update the Request if requested, and return the selected Host
@@ -372,7 +488,8 @@ public final class FastEngineMapper
 		engine.removeContainerListener(this);
 
 		// Clear our mapping cache
-		cache.clear();
+		cache = new HashMap();
+		clearLearned();
 
 	}
 
@@ -403,12 +520,30 @@ public final class FastEngineMapper
 	 * @param alias New alias name
 	 * @param host  Host to resolve to
 	 */
-	private void addAlias(String alias, Host host) {
+	private synchronized void addAlias(String alias, Host host) {
 
 		if (debug >= 3)
 			engine.log("Adding alias '" + alias + "' for host '" +
 					host.getName() + "'");
-		cache.put(alias.toLowerCase(), host);
+		HashMap newCache = new HashMap(cache);
+		newCache.put(alias.toLowerCase(), host);
+		cache = newCache;
+		clearLearned();
+
+	}
+
+
+	/**
+	 * Forget all the learned aliases.
+	 */
+	private void clearLearned() {
+
+		Iterator keys = learned.keySet().iterator();
+		while (keys.hasNext()) {
+			Object key = keys.next();
+			if (learned.remove(key) != null)
+				learnedCount.decrementAndGet();
+		}
 
 	}
 
@@ -449,16 +584,52 @@ public final class FastEngineMapper
 	}
 
 
+	/**
+	 * Remember the Host a server name which is not configured resolved to.
+	 * When the learned aliases are full, an arbitrary one is evicted to
+	 * make room.
+	 *
+	 * @param server Server name, as it appeared in the request
+	 * @param host   Host to resolve to
+	 */
+	private void learnAlias(String server, Host host) {
+
+		if (maxLearnedAliases <= 0)
+			return;
+		if (learned.putIfAbsent(server, host) != null)
+			return;
+		if (debug >= 3)
+			engine.log("Learning alias '" + server + "' for host '" +
+					host.getName() + "'");
+		if (learnedCount.incrementAndGet() <= maxLearnedAliases)
+			return;
+		Iterator keys = learned.keySet().iterator();
+		while (keys.hasNext()) {
+			Object key = keys.next();
+			if (key.equals(server))
+				continue;
+			if (learned.remove(key) != null) {
+				learnedCount.decrementAndGet();
+				return;
+			}
+		}
+
+	}
+
+
 	/**
 	 * Remove the specified alias from our cache.
 	 *
 	 * @param alias Alias to remove
 	 */
-	private void removeAlias(String alias) {
+	private synchronized void removeAlias(String alias) {
 
 		if (debug >= 3)
 			engine.log("Removing alias '" + alias + "'");
-		cache.remove(alias.toLowerCase());
+		HashMap newCache = new HashMap(cache);
+		newCache.remove(alias.toLowerCase());
+		cache = newCache;
+		clearLearned();
 
 	}
 
@@ -468,27 +639,22 @@ public final class FastEngineMapper
 	 *
 	 * @param host Host to be removed
 	 */
-	private void removeHost(Host host) {
+	private synchronized void removeHost(Host host) {
 
 		if (debug >= 3)
 			engine.log("Removing host '" + host.getName() + "'");
 
 		host.removeContainerListener(this);
 
-		// Identify all names mapped to this host
-		ArrayList removes = new ArrayList();
-		Iterator keys = cache.keySet().iterator();
-		while (keys.hasNext()) {
-			String key = (String) keys.next();
-			if (host.equals((Host) cache.get(key)))
-				removes.add(key);
-		}
-
-		// Remove the associated names
-		keys = removes.iterator();
-		while (keys.hasNext()) {
-			removeAlias((String) keys.next());
+		// Remove all names mapped to this host
+		HashMap newCache = new HashMap(cache);
+		Iterator values = newCache.values().iterator();
+		while (values.hasNext()) {
+			if (host.equals(values.next()))
+				values.remove();
 		}
+		cache = newCache;
+		clearLearned();
 
 	}
 
@@ -507,6 +673,7 @@ public final class FastEngineMapper
 			defaultHost = null;
 		else
 			defaultHost = (Host) engine.findChild(name);
+		clearLearned();
 
 	}
 
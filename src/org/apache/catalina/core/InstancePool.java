@@ -0,0 +1,371 @@
+package org.apache.catalina.core;
+
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.UnavailableException;
+
+import org.apache.catalina.util.StringManager;
+
+
+/**
+ * Pool of the instances of a servlet implementing
+ * <code>SingleThreadModel</code>.  At most <code>maxInstances</code>
+ * instances are allocated at any time: a permit is taken without locking
+ * when one is free and nobody is waiting, and the other callers wait in
+ * arrival order, up to a timeout after which the allocation fails with an
+ * <code>UnavailableException</code>.  Idle instances are reused most
+ * recently returned first, so that the instances which stay idle for
+ * <code>maxIdleTime</code> are destroyed, down to <code>minInstances</code>
+ * instances, which are created up front when the pool is prepared.
+ * <p>
+ * The pool records how many allocations had to wait, and for how long.
+ */
+
+final class InstancePool {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new pool for the specified wrapper, which has loaded a
+	 * <code>SingleThreadModel</code> servlet.
+	 *
+	 * @param wrapper The wrapper
+	 */
+	InstancePool(StandardWrapper wrapper) {
+
+		this.wrapper = wrapper;
+		this.permits = new Semaphore(Math.max(wrapper.getMaxInstances(), 1),
+				true);
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Has this pool been closed?
+	 */
+	private volatile boolean closed = false;
+
+
+	/**
+	 * Idle instances, the most recently returned first.
+	 */
+	private ConcurrentLinkedDeque<Servlet> idle =
+			new ConcurrentLinkedDeque<Servlet>();
+
+
+	/**
+	 * Number of idle instances.
+	 */
+	private AtomicInteger idleCount = new AtomicInteger();
+
+
+	/**
+	 * Number of live instances, idle or allocated.
+	 */
+	private AtomicInteger instanceCount = new AtomicInteger();
+
+
+	/**
+	 * Smallest number of idle instances since <code>windowStart</code>.
+	 */
+	private AtomicInteger lowWater = new AtomicInteger();
+
+
+	/**
+	 * Longest time an allocation has waited, in nanoseconds.
+	 */
+	private AtomicLong maxWaitTime = new AtomicLong();
+
+
+	/**
+	 * Permits to allocate an instance.
+	 */
+	private Semaphore permits;
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private static final StringManager sm =
+			StringManager.getManager(Constants.Package);
+
+
+	/**
+	 * Number of allocations which timed out.
+	 */
+	private AtomicLong timeoutCount = new AtomicLong();
+
+
+	/**
+	 * Number of allocations which had to wait.
+	 */
+	private AtomicLong waitCount = new AtomicLong();
+
+
+	/**
+	 * Total time the allocations have waited, in nanoseconds.
+	 */
+	private AtomicLong waitTime = new AtomicLong();
+
+
+	/**
+	 * Time at which the current observation of <code>lowWater</code>
+	 * started.
+	 */
+	private AtomicLong windowStart =
+			new AtomicLong(System.currentTimeMillis());
+
+
+	/**
+	 * The wrapper of the servlet.
+	 */
+	private StandardWrapper wrapper;
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the number of live instances.
+	 */
+	public int getInstanceCount() {
+
+		return (instanceCount.get());
+
+	}
+
+
+	/**
+	 * Return the longest time an allocation has waited, in milliseconds.
+	 */
+	public long getMaxWaitTime() {
+
+		return (maxWaitTime.get() / 1000000L);
+
+	}
+
+
+	/**
+	 * Return the number of allocations which have timed out.
+	 */
+	public long getTimeoutCount() {
+
+		return (timeoutCount.get());
+
+	}
+
+
+	/**
+	 * Return the number of allocations which have had to wait.
+	 */
+	public long getWaitCount() {
+
+		return (waitCount.get());
+
+	}
+
+
+	/**
+	 * Return the total time the allocations have waited, in milliseconds.
+	 */
+	public long getWaitTime() {
+
+		return (waitTime.get() / 1000000L);
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Allocate an instance, loading a new one if none is idle.
+	 *
+	 * @param timeout Maximum time to wait for an instance, in milliseconds,
+	 *                or a negative value to wait as long as necessary
+	 * @throws UnavailableException if no instance could be allocated in time
+	 * @throws ServletException if a new instance cannot be loaded, or the
+	 *                          pool has been closed
+	 */
+	public Servlet allocate(long timeout) throws ServletException {
+
+		// Take a permit, waiting in line if there is a line
+		if (permits.hasQueuedThreads() || !permits.tryAcquire()) {
+			long start = System.nanoTime();
+			boolean acquired = false;
+			try {
+				if (timeout < 0) {
+					permits.acquire();
+					acquired = true;
+				} else {
+					acquired = permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ServletException
+						(sm.getString("standardWrapper.allocate"), e);
+			} finally {
+				long waited = System.nanoTime() - start;
+				waitCount.incrementAndGet();
+				waitTime.addAndGet(waited);
+				long max = maxWaitTime.get();
+				while ((waited > max)
+						&& !maxWaitTime.compareAndSet(max, waited))
+					max = maxWaitTime.get();
+			}
+			if (!acquired) {
+				timeoutCount.incrementAndGet();
+				throw new UnavailableException
+						(sm.getString("standardWrapper.allocateTimeout",
+								wrapper.getName()), 1);
+			}
+		}
+		if (closed) {
+			permits.release();
+			throw new ServletException
+					(sm.getString("standardWrapper.unloading",
+							wrapper.getName()));
+		}
+
+		// Take the most recently used idle instance, or load a new one
+		Servlet servlet = idle.pollFirst();
+		if (servlet != null) {
+			lower(idleCount.decrementAndGet());
+			return (servlet);
+		}
+		lower(0);
+		try {
+			servlet = wrapper.loadServlet();
+		} catch (ServletException e) {
+			permits.release();
+			throw e;
+		} catch (Throwable e) {
+			permits.release();
+			throw new ServletException
+					(sm.getString("standardWrapper.allocate"), e);
+		}
+		instanceCount.incrementAndGet();
+		return (servlet);
+
+	}
+
+
+	/**
+	 * Close this pool, and return the idle instances, which the caller is
+	 * expected to destroy.  The instances returned afterwards are destroyed
+	 * by <code>deallocate()</code>.
+	 */
+	public Servlet[] close() {
+
+		closed = true;
+		ArrayList results = new ArrayList();
+		Servlet servlet = null;
+		while ((servlet = idle.pollFirst()) != null) {
+			idleCount.decrementAndGet();
+			instanceCount.decrementAndGet();
+			results.add(servlet);
+		}
+		return ((Servlet[]) results.toArray(new Servlet[results.size()]));
+
+	}
+
+
+	/**
+	 * Return an allocated instance to this pool, and destroy the instances
+	 * which have been idle for too long.
+	 *
+	 * @param servlet The instance
+	 */
+	public void deallocate(Servlet servlet) {
+
+		if (closed) {
+			instanceCount.decrementAndGet();
+			permits.release();
+			wrapper.destroyInstance(servlet);
+			return;
+		}
+		idle.offerFirst(servlet);
+		idleCount.incrementAndGet();
+		permits.release();
+		shrink();
+
+	}
+
+
+	/**
+	 * Load instances until there are at least <code>minInstances</code>.
+	 *
+	 * @throws ServletException if an instance cannot be loaded
+	 */
+	public void prepare() throws ServletException {
+
+		int min = Math.min(wrapper.getMinInstances(),
+				wrapper.getMaxInstances());
+		while (!closed && (instanceCount.get() < min)) {
+			Servlet servlet = wrapper.loadServlet();
+			instanceCount.incrementAndGet();
+			idle.offerLast(servlet);
+			idleCount.incrementAndGet();
+		}
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Record that the number of idle instances has dropped to the
+	 * specified value.
+	 */
+	private void lower(int count) {
+
+		int current = lowWater.get();
+		while ((count < current) && !lowWater.compareAndSet(current, count))
+			current = lowWater.get();
+
+	}
+
+
+	/**
+	 * Once every <code>maxIdleTime</code>, destroy as many of the least
+	 * recently used instances as were idle during the whole period, while
+	 * keeping <code>minInstances</code> instances.
+	 */
+	private void shrink() {
+
+		long maxIdleTime = wrapper.getMaxIdleTime();
+		if (maxIdleTime <= 0)
+			return;
+		long now = System.currentTimeMillis();
+		long start = windowStart.get();
+		if ((now - start < maxIdleTime)
+				|| !windowStart.compareAndSet(start, now))
+			return;
+		int excess = Math.min(lowWater.getAndSet(idleCount.get()),
+				instanceCount.get() - wrapper.getMinInstances());
+		for (int i = 0; i < excess; i++) {
+			Servlet servlet = idle.pollLast();
+			if (servlet == null)
+				break;
+			idleCount.decrementAndGet();
+			instanceCount.decrementAndGet();
+			wrapper.destroyInstance(servlet);
+		}
+
+	}
+
+
+}
@@ -72,6 +72,12 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.TreeMap;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -118,6 +124,7 @@ import org.apache.catalina.deploy.SecurityConstraint;
 import org.apache.catalina.loader.WebappLoader;
 import org.apache.catalina.session.StandardManager;
 import org.apache.catalina.util.CharsetMapper;
+import org.apache.catalina.util.RequestStatistics;
 import org.apache.catalina.util.RequestUtil;
 import org.apache.tomcat.util.log.SystemLogHandler;
 
@@ -153,6 +160,15 @@ public class StandardContext extends ContainerBase implements Context {
 	// ----------------------------------------------------- Instance Variables
 
 
+	// The exception pages, filter configurations, filter mappings, MIME
+	// mappings, servlet mappings and status pages are read on every request
+	// but seldom changed, so they are copy-on-write: each is held in a
+	// volatile field which is read without locking, and a change copies the
+	// map or array, modifies the copy and then replaces the field, while
+	// holding the lock object which goes with that field so that concurrent
+	// changes are not lost.
+
+
 	/**
 	 * The set of application listener class names configured for this
 	 * application, in the order they were encountered in the web.xml file.
@@ -246,14 +262,26 @@ public class StandardContext extends ContainerBase implements Context {
 	 * The exception pages for this web application, keyed by fully qualified
 	 * class name of the Java exception.
 	 */
-	private HashMap exceptionPages = new HashMap();
+	private volatile HashMap exceptionPages = new HashMap();
+
+
+	/**
+	 * Lock guarding the changes to <code>exceptionPages</code>.
+	 */
+	private final Object exceptionPagesLock = new Object();
 
 
 	/**
 	 * The set of filter configurations (and associated filter instances) we
 	 * have initialized, keyed by filter name.
 	 */
-	private HashMap filterConfigs = new HashMap();
+	private volatile HashMap filterConfigs = new HashMap();
+
+
+	/**
+	 * Lock guarding the changes to <code>filterConfigs</code>.
+	 */
+	private final Object filterConfigsLock = new Object();
 
 
 	/**
@@ -267,7 +295,21 @@ public class StandardContext extends ContainerBase implements Context {
 	 * The set of filter mappings for this application, in the order
 	 * they were defined in the deployment descriptor.
 	 */
-	private FilterMap filterMaps[] = new FilterMap[0];
+	private volatile FilterMap filterMaps[] = new FilterMap[0];
+
+
+	/**
+	 * Lock guarding the changes to <code>filterMaps</code>.
+	 */
+	private final Object filterMapsLock = new Object();
+
+
+	/**
+	 * Counter of the changes to the filter mappings and filter
+	 * configurations of this application, which tells the wrappers when
+	 * the filter chains they have computed are out of date.
+	 */
+	private AtomicInteger filterGeneration = new AtomicInteger();
 
 
 	/**
@@ -312,7 +354,13 @@ public class StandardContext extends ContainerBase implements Context {
 	/**
 	 * The MIME mappings for this web application, keyed by extension.
 	 */
-	private HashMap mimeMappings = new HashMap();
+	private volatile HashMap mimeMappings = new HashMap();
+
+
+	/**
+	 * Lock guarding the changes to <code>mimeMappings</code>.
+	 */
+	private final Object mimeMappingsLock = new Object();
 
 
 	/**
@@ -364,6 +412,12 @@ public class StandardContext extends ContainerBase implements Context {
 	private boolean replaceWelcomeFiles = false;
 
 
+	/**
+	 * Statistics of the requests processed by this web application.
+	 */
+	private RequestStatistics requestStatistics = new RequestStatistics();
+
+
 	/**
 	 * The security role mappings for this application, keyed by role
 	 * name (as used within the application).
@@ -381,7 +435,13 @@ public class StandardContext extends ContainerBase implements Context {
 	 * The servlet mappings for this web application, keyed by
 	 * matching pattern.
 	 */
-	private HashMap servletMappings = new HashMap();
+	private volatile HashMap servletMappings = new HashMap();
+
+
+	/**
+	 * Lock guarding the changes to <code>servletMappings</code>.
+	 */
+	private final Object servletMappingsLock = new Object();
 
 
 	/**
@@ -390,11 +450,24 @@ public class StandardContext extends ContainerBase implements Context {
 	private int sessionTimeout = 30;
 
 
+	/**
+	 * The time the last start of this web application took, in
+	 * milliseconds.
+	 */
+	private long startupTime = 0;
+
+
 	/**
 	 * The status code error pages for this web application, keyed by
 	 * HTTP status code (as an Integer).
 	 */
-	private HashMap statusPages = new HashMap();
+	private volatile HashMap statusPages = new HashMap();
+
+
+	/**
+	 * Lock guarding the changes to <code>statusPages</code>.
+	 */
+	private final Object statusPagesLock = new Object();
 
 
 	/**
@@ -998,6 +1071,17 @@ public class StandardContext extends ContainerBase implements Context {
 	}
 
 
+	/**
+	 * Return the statistics of the requests processed by this web
+	 * application.
+	 */
+	public RequestStatistics getRequestStatistics() {
+
+		return (this.requestStatistics);
+
+	}
+
+
 	/**
 	 * Return the "replace welcome files" property.
 	 */
@@ -1065,6 +1149,17 @@ public class StandardContext extends ContainerBase implements Context {
 	}
 
 
+	/**
+	 * Return the time the last start of this web application took, in
+	 * milliseconds.
+	 */
+	public long getStartupTime() {
+
+		return (this.startupTime);
+
+	}
+
+
 	/**
 	 * Return the value of the swallowOutput flag.
 	 */
@@ -1402,13 +1497,16 @@ public class StandardContext extends ContainerBase implements Context {
 		// Add the specified error page to our internal collections
 		String exceptionType = errorPage.getExceptionType();
 		if (exceptionType != null) {
-			synchronized (exceptionPages) {
-				exceptionPages.put(exceptionType, errorPage);
+			synchronized (exceptionPagesLock) {
+				HashMap results = new HashMap(exceptionPages);
+				results.put(exceptionType, errorPage);
+				exceptionPages = results;
 			}
 		} else {
-			synchronized (statusPages) {
-				statusPages.put(new Integer(errorPage.getErrorCode()),
-						errorPage);
+			synchronized (statusPagesLock) {
+				HashMap results = new HashMap(statusPages);
+				results.put(new Integer(errorPage.getErrorCode()), errorPage);
+				statusPages = results;
 			}
 		}
 		fireContainerEvent("addErrorPage", errorPage);
@@ -1462,12 +1560,13 @@ public class StandardContext extends ContainerBase implements Context {
 							urlPattern));
 
 		// Add this filter mapping to our registered set
-		synchronized (filterMaps) {
+		synchronized (filterMapsLock) {
 			FilterMap results[] = new FilterMap[filterMaps.length + 1];
 			System.arraycopy(filterMaps, 0, results, 0, filterMaps.length);
 			results[filterMaps.length] = filterMap;
 			filterMaps = results;
 		}
+		filterGeneration.incrementAndGet();
 		fireContainerEvent("addFilterMap", filterMap);
 
 	}
@@ -1515,8 +1614,10 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public void addMimeMapping(String extension, String mimeType) {
 
-		synchronized (mimeMappings) {
-			mimeMappings.put(extension, mimeType);
+		synchronized (mimeMappingsLock) {
+			HashMap results = new HashMap(mimeMappings);
+			results.put(extension, mimeType);
+			mimeMappings = results;
 		}
 		fireContainerEvent("addMimeMapping", extension);
 
@@ -1647,8 +1748,10 @@ public class StandardContext extends ContainerBase implements Context {
 					(sm.getString("standardContext.servletMap.pattern", pattern));
 
 		// Add this mapping to our registered set
-		synchronized (servletMappings) {
-			servletMappings.put(pattern, name);
+		synchronized (servletMappingsLock) {
+			HashMap results = new HashMap(servletMappings);
+			results.put(pattern, name);
+			servletMappings = results;
 		}
 		fireContainerEvent("addServletMapping", pattern);
 
@@ -1897,9 +2000,7 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public ErrorPage findErrorPage(String exceptionType) {
 
-		synchronized (exceptionPages) {
-			return ((ErrorPage) exceptionPages.get(exceptionType));
-		}
+		return ((ErrorPage) exceptionPages.get(exceptionType));
 
 	}
 
@@ -1910,23 +2011,19 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public ErrorPage[] findErrorPages() {
 
-		synchronized (exceptionPages) {
-			synchronized (statusPages) {
-				ErrorPage results1[] = new ErrorPage[exceptionPages.size()];
-				results1 =
-						(ErrorPage[]) exceptionPages.values().toArray(results1);
-				ErrorPage results2[] = new ErrorPage[statusPages.size()];
-				results2 =
-						(ErrorPage[]) statusPages.values().toArray(results2);
-				ErrorPage results[] =
-						new ErrorPage[results1.length + results2.length];
-				for (int i = 0; i < results1.length; i++)
-					results[i] = results1[i];
-				for (int i = results1.length; i < results.length; i++)
-					results[i] = results2[i - results1.length];
-				return (results);
-			}
-		}
+		HashMap exceptionPages = this.exceptionPages;
+		HashMap statusPages = this.statusPages;
+		ErrorPage results1[] = new ErrorPage[exceptionPages.size()];
+		results1 = (ErrorPage[]) exceptionPages.values().toArray(results1);
+		ErrorPage results2[] = new ErrorPage[statusPages.size()];
+		results2 = (ErrorPage[]) statusPages.values().toArray(results2);
+		ErrorPage results[] =
+				new ErrorPage[results1.length + results2.length];
+		for (int i = 0; i < results1.length; i++)
+			results[i] = results1[i];
+		for (int i = results1.length; i < results.length; i++)
+			results[i] = results2[i - results1.length];
+		return (results);
 
 	}
 
@@ -2012,9 +2109,7 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public String findMimeMapping(String extension) {
 
-		synchronized (mimeMappings) {
-			return ((String) mimeMappings.get(extension));
-		}
+		return ((String) mimeMappings.get(extension));
 
 	}
 
@@ -2025,11 +2120,9 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public String[] findMimeMappings() {
 
-		synchronized (mimeMappings) {
-			String results[] = new String[mimeMappings.size()];
-			return
-					((String[]) mimeMappings.keySet().toArray(results));
-		}
+		HashMap mimeMappings = this.mimeMappings;
+		String results[] = new String[mimeMappings.size()];
+		return ((String[]) mimeMappings.keySet().toArray(results));
 
 	}
 
@@ -2196,9 +2289,7 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public String findServletMapping(String pattern) {
 
-		synchronized (servletMappings) {
-			return ((String) servletMappings.get(pattern));
-		}
+		return ((String) servletMappings.get(pattern));
 
 	}
 
@@ -2209,11 +2300,9 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public String[] findServletMappings() {
 
-		synchronized (servletMappings) {
-			String results[] = new String[servletMappings.size()];
-			return
-					((String[]) servletMappings.keySet().toArray(results));
-		}
+		HashMap servletMappings = this.servletMappings;
+		String results[] = new String[servletMappings.size()];
+		return ((String[]) servletMappings.keySet().toArray(results));
 
 	}
 
@@ -2238,14 +2327,13 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public int[] findStatusPages() {
 
-		synchronized (statusPages) {
-			int results[] = new int[statusPages.size()];
-			Iterator elements = statusPages.keySet().iterator();
-			int i = 0;
-			while (elements.hasNext())
-				results[i++] = ((Integer) elements.next()).intValue();
-			return (results);
-		}
+		HashMap statusPages = this.statusPages;
+		int results[] = new int[statusPages.size()];
+		Iterator elements = statusPages.keySet().iterator();
+		int i = 0;
+		while (elements.hasNext())
+			results[i++] = ((Integer) elements.next()).intValue();
+		return (results);
 
 	}
 
@@ -2701,12 +2789,16 @@ public class StandardContext extends ContainerBase implements Context {
 
 		String exceptionType = errorPage.getExceptionType();
 		if (exceptionType != null) {
-			synchronized (exceptionPages) {
-				exceptionPages.remove(exceptionType);
+			synchronized (exceptionPagesLock) {
+				HashMap results = new HashMap(exceptionPages);
+				results.remove(exceptionType);
+				exceptionPages = results;
 			}
 		} else {
-			synchronized (statusPages) {
-				statusPages.remove(new Integer(errorPage.getErrorCode()));
+			synchronized (statusPagesLock) {
+				HashMap results = new HashMap(statusPages);
+				results.remove(new Integer(errorPage.getErrorCode()));
+				statusPages = results;
 			}
 		}
 		fireContainerEvent("removeErrorPage", errorPage);
@@ -2737,7 +2829,7 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public void removeFilterMap(FilterMap filterMap) {
 
-		synchronized (filterMaps) {
+		synchronized (filterMapsLock) {
 
 			// Make sure this filter mapping is currently present
 			int n = -1;
@@ -2758,6 +2850,7 @@ public class StandardContext extends ContainerBase implements Context {
 			filterMaps = results;
 
 		}
+		filterGeneration.incrementAndGet();
 
 		// Inform interested listeners
 		fireContainerEvent("removeFilterMap", filterMap);
@@ -2824,8 +2917,10 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public void removeMimeMapping(String extension) {
 
-		synchronized (mimeMappings) {
-			mimeMappings.remove(extension);
+		synchronized (mimeMappingsLock) {
+			HashMap results = new HashMap(mimeMappings);
+			results.remove(extension);
+			mimeMappings = results;
 		}
 		fireContainerEvent("removeMimeMapping", extension);
 
@@ -2947,8 +3042,10 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public void removeServletMapping(String pattern) {
 
-		synchronized (servletMappings) {
-			servletMappings.remove(pattern);
+		synchronized (servletMappingsLock) {
+			HashMap results = new HashMap(servletMappings);
+			results.remove(pattern);
+			servletMappings = results;
 		}
 		fireContainerEvent("removeServletMapping", pattern);
 
@@ -3101,8 +3198,8 @@ public class StandardContext extends ContainerBase implements Context {
 
 		// Instantiate and record a FilterConfig for each defined filter
 		boolean ok = true;
-		synchronized (filterConfigs) {
-			filterConfigs.clear();
+		synchronized (filterConfigsLock) {
+			HashMap results = new HashMap();
 			Iterator names = filterDefs.keySet().iterator();
 			while (names.hasNext()) {
 				String name = (String) names.next();
@@ -3112,13 +3209,15 @@ public class StandardContext extends ContainerBase implements Context {
 				try {
 					filterConfig = new ApplicationFilterConfig
 							(this, (FilterDef) filterDefs.get(name));
-					filterConfigs.put(name, filterConfig);
+					results.put(name, filterConfig);
 				} catch (Throwable t) {
 					log(sm.getString("standardContext.filterStart", name), t);
 					ok = false;
 				}
 			}
+			filterConfigs = results;
 		}
+		filterGeneration.incrementAndGet();
 
 		return (ok);
 
@@ -3136,18 +3235,20 @@ public class StandardContext extends ContainerBase implements Context {
 			log("Stopping filters");
 
 		// Release all Filter and FilterConfig instances
-		synchronized (filterConfigs) {
-			Iterator names = filterConfigs.keySet().iterator();
+		synchronized (filterConfigsLock) {
+			HashMap results = filterConfigs;
+			filterConfigs = new HashMap();
+			Iterator names = results.keySet().iterator();
 			while (names.hasNext()) {
 				String name = (String) names.next();
 				if (debug >= 1)
 					log(" Stopping filter '" + name + "'");
 				ApplicationFilterConfig filterConfig =
-						(ApplicationFilterConfig) filterConfigs.get(name);
+						(ApplicationFilterConfig) results.get(name);
 				filterConfig.release();
 			}
-			filterConfigs.clear();
 		}
+		filterGeneration.incrementAndGet();
 		return (true);
 
 	}
@@ -3161,9 +3262,7 @@ public class StandardContext extends ContainerBase implements Context {
 	 */
 	public FilterConfig findFilterConfig(String name) {
 
-		synchronized (filterConfigs) {
-			return ((FilterConfig) filterConfigs.get(name));
-		}
+		return ((FilterConfig) filterConfigs.get(name));
 
 	}
 
@@ -3278,7 +3377,9 @@ public class StandardContext extends ContainerBase implements Context {
 
 	/**
 	 * Load and initialize all servlets marked "load on startup" in the
-	 * web application deployment descriptor.
+	 * web application deployment descriptor.  The servlets with a lower
+	 * load order are loaded first; when <code>startStopThreads</code> is
+	 * not 1, the servlets sharing a load order are loaded concurrently.
 	 *
 	 * @param children Array of wrappers for all currently defined
 	 *                 servlets (including those not declared load on startup)
@@ -3287,6 +3388,7 @@ public class StandardContext extends ContainerBase implements Context {
 
 		// Collect "load on startup" servlets that need to be initialized
 		TreeMap map = new TreeMap();
+		boolean shared = false;
 		for (int i = 0; i < children.length; i++) {
 			Wrapper wrapper = (Wrapper) children[i];
 			int loadOnStartup = wrapper.getLoadOnStartup();
@@ -3301,27 +3403,110 @@ public class StandardContext extends ContainerBase implements Context {
 				map.put(key, list);
 			}
 			list.add(wrapper);
+			if (list.size() > 1)
+				shared = true;
 		}
 
 		// Load the collected "load on startup" servlets
-		Iterator keys = map.keySet().iterator();
-		while (keys.hasNext()) {
-			Integer key = (Integer) keys.next();
-			ArrayList list = (ArrayList) map.get(key);
-			Iterator wrappers = list.iterator();
-			while (wrappers.hasNext()) {
-				Wrapper wrapper = (Wrapper) wrappers.next();
+		int threads = getStartStopThreads();
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = null;
+		if ((threads > 1) && shared)
+			executor = new ForkJoinPool(threads,
+					new StartStopThreadFactory(), null, false);
+		try {
+			Iterator keys = map.keySet().iterator();
+			while (keys.hasNext()) {
+				Integer key = (Integer) keys.next();
+				ArrayList list = (ArrayList) map.get(key);
+				if ((executor == null) || (list.size() < 2)) {
+					for (int i = 0; i < list.size(); i++)
+						loadOnStartup((Wrapper) list.get(i));
+				} else {
+					loadOnStartup(executor, list);
+				}
+			}
+		} finally {
+			if (executor != null)
+				executor.shutdown();
+		}
+
+	}
+
+
+	/**
+	 * Load and initialize the specified "load on startup" servlet.
+	 *
+	 * @param wrapper The wrapper of the servlet
+	 */
+	private void loadOnStartup(Wrapper wrapper) {
+
+		try {
+			wrapper.load();
+		} catch (ServletException e) {
+			log(sm.getString("standardWrapper.loadException",
+					wrapper.getName()), e);
+			// NOTE: load errors (including a servlet that throws
+			// UnavailableException from tht init() method) are NOT
+			// fatal to application startup
+		}
+
+	}
+
+
+	/**
+	 * Load and initialize the specified "load on startup" servlets, which
+	 * share the same load order, concurrently on the specified pool, and
+	 * wait until all of them are done.
+	 *
+	 * @param executor The pool
+	 * @param wrappers The wrappers of the servlets
+	 */
+	private void loadOnStartup(ExecutorService executor, ArrayList wrappers) {
+
+		ArrayList results = new ArrayList();
+		for (int i = 0; i < wrappers.size(); i++) {
+			final Wrapper wrapper = (Wrapper) wrappers.get(i);
+			FutureTask result = new FutureTask(new Callable() {
+				public Object call() {
+					ClassLoader oldCCL = bindThread();
+					try {
+						loadOnStartup(wrapper);
+					} finally {
+						unbindThread(oldCCL);
+					}
+					return (null);
+				}
+			});
+			executor.execute(result);
+			results.add(result);
+		}
+
+		// Wait for all of them, then report the first unexpected failure
+		Throwable failure = null;
+		boolean interrupted = false;
+		for (int i = 0; i < results.size(); i++) {
+			FutureTask result = (FutureTask) results.get(i);
+			while (true) {
 				try {
-					wrapper.load();
-				} catch (ServletException e) {
-					log(sm.getString("standardWrapper.loadException",
-							getName()), e);
-					// NOTE: load errors (including a servlet that throws
-					// UnavailableException from tht init() method) are NOT
-					// fatal to application startup
+					result.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = e.getCause();
+					break;
 				}
 			}
 		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		else if (failure instanceof Error)
+			throw (Error) failure;
 
 	}
 
@@ -3338,6 +3523,7 @@ public class StandardContext extends ContainerBase implements Context {
 
 		if (debug >= 1)
 			log("Starting");
+		long t1 = System.currentTimeMillis();
 
 		// Notify our interested LifecycleListeners
 		lifecycle.fireLifecycleEvent(BEFORE_START_EVENT, null);
@@ -3514,6 +3700,9 @@ public class StandardContext extends ContainerBase implements Context {
 			if (debug >= 1)
 				log("Starting completed");
 			setAvailable(true);
+			startupTime = System.currentTimeMillis() - t1;
+			log(sm.getString("standardContext.startTime",
+					new Long(startupTime)));
 		} else {
 			log(sm.getString("standardContext.startFailed"));
 			try {
@@ -3668,6 +3857,20 @@ public class StandardContext extends ContainerBase implements Context {
 	}
 
 
+	// -------------------------------------------------------- Package Methods
+
+
+	/**
+	 * Return the current value of the counter of the changes to the filter
+	 * mappings and filter configurations of this application.
+	 */
+	int getFilterGeneration() {
+
+		return (filterGeneration.get());
+
+	}
+
+
 	// ------------------------------------------------------ Protected Methods
 
 
@@ -72,6 +72,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.HttpRequest;
+import org.apache.catalina.HttpResponse;
 import org.apache.catalina.Request;
 import org.apache.catalina.Response;
 import org.apache.catalina.ValveContext;
@@ -183,7 +184,18 @@ final class StandardContextValve
 		// Ask this Wrapper to process this Request
 		response.setContext(context);
 
-		wrapper.invoke(request, response);
+		long t1 = System.nanoTime();
+		boolean error = true;
+		try {
+			wrapper.invoke(request, response);
+			error = (response instanceof HttpResponse)
+					&& (((HttpResponse) response).getStatus() >= 500);
+		} finally {
+			if (context instanceof StandardContext)
+				((StandardContext) context).getRequestStatistics().record
+						(System.nanoTime() - t1, error,
+								response.getContentCount());
+		}
 
 	}
 
@@ -72,6 +72,8 @@ import org.apache.catalina.Engine;
 import org.apache.catalina.Host;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Service;
+import org.apache.catalina.util.BackgroundScheduler;
+import org.apache.catalina.util.LatencyHistogram;
 import org.apache.catalina.util.ServerInfo;
 
 /**
@@ -103,6 +105,13 @@ public class StandardEngine extends ContainerBase implements Engine {
 	// ----------------------------------------------------- Instance Variables
 
 
+	/**
+	 * The number of threads running the periodic background work of the
+	 * components of this Engine.
+	 */
+	private int backgroundThreads = 2;
+
+
 	/**
 	 * Host name to use when no server host, or an unknown host,
 	 * is specified in the request.
@@ -121,7 +130,14 @@ public class StandardEngine extends ContainerBase implements Engine {
 	 * The Java class name of the default Mapper class for this Container.
 	 */
 	private String mapperClass =
-			"org.apache.catalina.core.StandardEngineMapper";
+			"org.apache.catalina.core.CompiledEngineMapper";
+
+
+	/**
+	 * The scheduler of the periodic background work of the components of
+	 * this Engine, while it is started.
+	 */
+	private BackgroundScheduler scheduler = null;
 
 
 	/**
@@ -146,6 +162,75 @@ public class StandardEngine extends ContainerBase implements Engine {
 	// ------------------------------------------------------------- Properties
 
 
+	/**
+	 * Return the number of threads running the periodic background work of
+	 * the components of this Engine.
+	 */
+	public int getBackgroundThreads() {
+
+		return (this.backgroundThreads);
+
+	}
+
+
+	/**
+	 * Set the number of threads running the periodic background work of
+	 * the components of this Engine, which takes effect the next time this
+	 * Engine is started.
+	 *
+	 * @param backgroundThreads The new number of threads
+	 */
+	public void setBackgroundThreads(int backgroundThreads) {
+
+		int oldBackgroundThreads = this.backgroundThreads;
+		this.backgroundThreads = backgroundThreads;
+		support.firePropertyChange("backgroundThreads",
+				new Integer(oldBackgroundThreads),
+				new Integer(this.backgroundThreads));
+
+	}
+
+
+	/**
+	 * Return a description of each periodic background task of the
+	 * components of this Engine, with the statistics of its execution
+	 * times in milliseconds.
+	 */
+	public String[] getBackgroundTasks() {
+
+		BackgroundScheduler scheduler = this.scheduler;
+		if (scheduler == null)
+			return (new String[0]);
+		BackgroundScheduler.Task tasks[] = scheduler.findTasks();
+		String results[] = new String[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			LatencyHistogram times = tasks[i].getExecutionTimes();
+			StringBuffer sb = new StringBuffer(tasks[i].getName());
+			sb.append(": interval=").append(tasks[i].getInterval());
+			sb.append(", runs=").append(times.getCount());
+			sb.append(", errors=").append(tasks[i].getErrorCount());
+			sb.append(", mean=").append(times.getMean());
+			sb.append(", p99=").append(times.getPercentile(99.0));
+			sb.append(", max=").append(times.getMax());
+			results[i] = sb.toString();
+		}
+		return (results);
+
+	}
+
+
+	/**
+	 * Return the scheduler of the periodic background work of the
+	 * components of this Engine, or <code>null</code> if this Engine is not
+	 * started.
+	 */
+	public BackgroundScheduler getScheduler() {
+
+		return (this.scheduler);
+
+	}
+
+
 	/**
 	 * Return the default host.
 	 */
@@ -335,8 +420,50 @@ public class StandardEngine extends ContainerBase implements Engine {
 		// Log our server identification information
 		System.out.println(ServerInfo.getServerInfo());
 
-		// Standard container startup
-		super.start();
+		// Start the scheduler of the background work of our components,
+		// unless we are started already, which super.start() reports
+		BackgroundScheduler scheduler = null;
+		if (!started) {
+			scheduler = new BackgroundScheduler(getName());
+			scheduler.setThreads(backgroundThreads);
+			scheduler.start();
+			this.scheduler = scheduler;
+			BackgroundScheduler.register(this, scheduler);
+		}
+
+		// Standard container startup, after which a failure leaves no
+		// scheduler running
+		boolean ok = false;
+		try {
+			super.start();
+			ok = true;
+		} finally {
+			if (!ok && (scheduler != null)) {
+				BackgroundScheduler.deregister(this);
+				scheduler.stop();
+				this.scheduler = null;
+			}
+		}
+
+	}
+
+
+	/**
+	 * Stop this Engine component.
+	 *
+	 * @throws LifecycleException if a shutdown error occurs
+	 */
+	public void stop() throws LifecycleException {
+
+		// Standard container shutdown
+		try {
+			super.stop();
+		} finally {
+			BackgroundScheduler.deregister(this);
+			if (scheduler != null)
+				scheduler.stop();
+			scheduler = null;
+		}
 
 	}
 
@@ -201,7 +201,7 @@ public class StandardHostDeployer implements Deployer {
 	 * @throws IOException              if an input/output error was encountered
 	 *                                  during installation
 	 */
-	public synchronized void install(String contextPath, URL war)
+	public void install(String contextPath, URL war)
 			throws IOException {
 
 		// Validate the format and state of our arguments
@@ -285,7 +285,7 @@ public class StandardHostDeployer implements Deployer {
 	 * @throws IOException              if an input/output error was encountered
 	 *                                  during installation
 	 */
-	public synchronized void install(URL config, URL war) throws IOException {
+	public void install(URL config, URL war) throws IOException {
 
 		// Validate the format and state of our arguments
 		if (config == null)
@@ -315,31 +315,50 @@ public class StandardHostDeployer implements Deployer {
 
 		}
 
+		// Parse the configuration descriptor, which is not thread safe,
+		// while other applications may be starting
+		Context context = null;
+		synchronized (this) {
+			this.context = null;
+			this.overrideDocBase = docBase;
+			InputStream stream = null;
+			try {
+				stream = config.openStream();
+				Digester digester = createDigester();
+				digester.setDebug(host.getDebug());
+				digester.clear();
+				digester.push(this);
+				digester.parse(stream);
+				stream.close();
+				stream = null;
+				context = this.context;
+			} catch (Exception e) {
+				host.log
+						(sm.getString("standardHost.installError", docBase), e);
+				throw new IOException(e.toString());
+			} finally {
+				this.context = null;
+				if (stream != null) {
+					try {
+						stream.close();
+					} catch (Throwable t) {
+						;
+					}
+				}
+			}
+		}
+		if (context == null)
+			return;
+
 		// Install the new web application
-		this.context = null;
-		this.overrideDocBase = docBase;
-		InputStream stream = null;
 		try {
-			stream = config.openStream();
-			Digester digester = createDigester();
-			digester.setDebug(host.getDebug());
-			digester.clear();
-			digester.push(this);
-			digester.parse(stream);
-			stream.close();
-			stream = null;
+			host.fireContainerEvent(PRE_INSTALL_EVENT, context);
+			host.addChild(context);
+			host.fireContainerEvent(INSTALL_EVENT, context);
 		} catch (Exception e) {
 			host.log
 					(sm.getString("standardHost.installError", docBase), e);
 			throw new IOException(e.toString());
-		} finally {
-			if (stream != null) {
-				try {
-					stream.close();
-				} catch (Throwable t) {
-					;
-				}
-			}
 		}
 
 	}
@@ -495,7 +514,9 @@ public class StandardHostDeployer implements Deployer {
 
 
 	/**
-	 * Delegate a request to add a child Context to our associated Host.
+	 * Record the child Context of the configuration descriptor being
+	 * parsed, which is added to our associated Host once the parsing is
+	 * complete.
 	 *
 	 * @param child The child Context to be added
 	 */
@@ -514,9 +535,6 @@ public class StandardHostDeployer implements Deployer {
 					(sm.getString("standardHost.pathUsed", contextPath));
 		if (this.overrideDocBase != null)
 			context.setDocBase(this.overrideDocBase);
-		host.fireContainerEvent(PRE_INSTALL_EVENT, context);
-		host.addChild(child);
-		host.fireContainerEvent(INSTALL_EVENT, context);
 
 	}
 
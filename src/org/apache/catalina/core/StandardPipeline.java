@@ -66,6 +66,8 @@ package org.apache.catalina.core;
 
 
 import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.ServletException;
 
 import org.apache.catalina.Contained;
@@ -88,10 +90,15 @@ import org.apache.catalina.util.StringManager;
  * a series of Valves that have been configured to be called in order.  This
  * implementation can be used for any type of Container.
  * <p/>
- * <b>IMPLEMENTATION WARNING</b> - This implementation assumes that no
- * calls to <code>addValve()</code> or <code>removeValve</code> are allowed
- * while a request is currently being processed.  Otherwise, the mechanism
- * by which per-thread state is maintained will need to be modified.
+ * The Valves are linked into an immutable chain of
+ * <code>ValveContext</code> objects, each one invoking the next Valve, so
+ * that processing a request allocates nothing.  The chain is rebuilt when
+ * Valves are added or removed; requests being processed at that time
+ * complete on the previous chain.
+ * <p/>
+ * When <code>sampleInterval</code> is set, one invocation of each Valve out
+ * of that number, on average, is timed.  The time of a Valve includes the
+ * time of the Valves invoked after it.
  *
  * @author Craig R. McClanahan
  */
@@ -153,6 +160,12 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 	protected String info = "org.apache.catalina.core.StandardPipeline/1.0";
 
 
+	/**
+	 * The first link of the chain of Valves of this Pipeline.
+	 */
+	protected volatile ValveLink first = new ValveLink(null, null);
+
+
 	/**
 	 * The lifecycle event support for this component.
 	 */
@@ -166,6 +179,13 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 			StringManager.getManager(Constants.Package);
 
 
+	/**
+	 * Average number of invocations of a Valve per timed invocation, or 0
+	 * to time none.
+	 */
+	protected int sampleInterval = 0;
+
+
 	/**
 	 * Has this component been started yet?
 	 */
@@ -192,6 +212,60 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 	}
 
 
+	/**
+	 * Return the average number of invocations of a Valve per timed
+	 * invocation, or 0 if the Valves are not timed.
+	 */
+	public int getSampleInterval() {
+
+		return (this.sampleInterval);
+
+	}
+
+
+	/**
+	 * Set the average number of invocations of a Valve per timed
+	 * invocation, or 0 not to time the Valves.  The times collected so far
+	 * are discarded.
+	 *
+	 * @param sampleInterval The new sample interval
+	 */
+	public void setSampleInterval(int sampleInterval) {
+
+		this.sampleInterval = sampleInterval;
+		link();
+
+	}
+
+
+	/**
+	 * Return the average time, in nanoseconds, of the sampled invocations
+	 * of each Valve returned by <code>getValves()</code>, in the same
+	 * order, including the time of the Valves invoked after it.  The time of
+	 * a Valve which has not been sampled is -1.
+	 */
+	public long[] getValveTimes() {
+
+		int n = 0;
+		for (ValveLink link = first; link.valve != null; link = link.next)
+			n++;
+		long times[] = new long[n];
+		n = 0;
+		for (ValveLink link = first; link.valve != null; link = link.next) {
+			times[n] = -1L;
+			if (link instanceof TimedValveLink) {
+				TimedValveLink timed = (TimedValveLink) link;
+				long count = timed.count.get();
+				if (count > 0)
+					times[n] = timed.time.get() / count;
+			}
+			n++;
+		}
+		return (times);
+
+	}
+
+
 	// ------------------------------------------------------ Contained Methods
 
 
@@ -390,6 +464,7 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 			}
 		}
 		this.basic = valve;
+		link();
 
 	}
 
@@ -434,6 +509,7 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 			results[valves.length] = valve;
 			valves = results;
 		}
+		link();
 
 	}
 
@@ -473,7 +549,7 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 	public void invoke(Request request, Response response) throws IOException, ServletException {
 
 		// Invoke the first Valve in this pipeline for this request
-		(new StandardPipelineValveContext()).invokeNext(request, response);
+		first.invokeNext(request, response);
 
 	}
 
@@ -510,6 +586,7 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 				results[n++] = valves[i];
 			}
 			valves = results;
+			link();
 			try {
 				if (valve instanceof Contained)
 					((Contained) valve).setContainer(null);
@@ -534,6 +611,25 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 	// ------------------------------------------------------ Protected Methods
 
 
+	/**
+	 * Build the chain of the current Valves of this Pipeline, followed by
+	 * the basic Valve (if any).
+	 */
+	protected synchronized void link() {
+
+		Valve current[] = getValves();
+		ValveLink link = new ValveLink(null, null);
+		for (int i = current.length - 1; i >= 0; i--) {
+			if (sampleInterval > 0)
+				link = new TimedValveLink(current[i], link);
+			else
+				link = new ValveLink(current[i], link);
+		}
+		first = link;
+
+	}
+
+
 	/**
 	 * Log a message on the Logger associated with our Container (if any).
 	 *
@@ -577,16 +673,38 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 	}
 
 
-	// ------------------------------- StandardPipelineValveContext Inner Class
+	// -------------------------------------------------- ValveLink Inner Class
 
 
-	protected class StandardPipelineValveContext implements ValveContext {
+	/**
+	 * Link of the chain of Valves of a Pipeline, which is the
+	 * <code>ValveContext</code> handed over to the previous Valve.
+	 */
+	protected class ValveLink implements ValveContext {
 
 
 		// ------------------------------------------------- Instance Variables
 
 
-		protected int stage = 0;
+		/**
+		 * The Valve to invoke, or <code>null</code> at the end of the chain.
+		 */
+		protected final Valve valve;
+
+
+		/**
+		 * The link handed over to our Valve.
+		 */
+		protected final ValveLink next;
+
+
+		// ------------------------------------------------------- Constructors
+
+
+		protected ValveLink(Valve valve, ValveLink next) {
+			this.valve = valve;
+			this.next = next;
+		}
 
 
 		// --------------------------------------------------------- Properties
@@ -608,9 +726,9 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 		 * Cause the <code>invoke()</code> method of the next Valve that is
 		 * part of the Pipeline currently being processed (if any) to be
 		 * executed, passing on the specified request and response objects
-		 * plus this <code>ValveContext</code> instance.  Exceptions thrown by
-		 * a subsequently executed Valve (or a Filter or Servlet at the
-		 * application level) will be passed on to our caller.
+		 * plus the <code>ValveContext</code> of the Valve after it.
+		 * Exceptions thrown by a subsequently executed Valve (or a Filter or
+		 * Servlet at the application level) will be passed on to our caller.
 		 * <p/>
 		 * If there are no more Valves to be executed, an appropriate
 		 * ServletException will be thrown by this ValveContext.
@@ -626,17 +744,58 @@ public class StandardPipeline implements Pipeline, Contained, Lifecycle {
 		 */
 		public void invokeNext(Request request, Response response) throws IOException, ServletException {
 
-			int subscript = stage;
-			stage = stage + 1;
-
-			// Invoke the requested Valve for the current request thread
-			if (subscript < valves.length) {
-				valves[subscript].invoke(request, response, this);
-			} else if ((subscript == valves.length) && (basic != null)) {
-				basic.invoke(request, response, this);
-			} else {
+			if (valve == null)
 				throw new ServletException
 						(sm.getString("standardPipeline.noValve"));
+			valve.invoke(request, response, next);
+
+		}
+
+
+	}
+
+
+	// --------------------------------------------- TimedValveLink Inner Class
+
+
+	/**
+	 * Link of the chain of Valves of a Pipeline which times a sample of the
+	 * invocations of its Valve.
+	 */
+	protected class TimedValveLink extends ValveLink {
+
+
+		/**
+		 * Number of timed invocations.
+		 */
+		protected final AtomicLong count = new AtomicLong();
+
+
+		/**
+		 * Total time of the timed invocations, in nanoseconds.
+		 */
+		protected final AtomicLong time = new AtomicLong();
+
+
+		protected TimedValveLink(Valve valve, ValveLink next) {
+			super(valve, next);
+		}
+
+
+		public void invokeNext(Request request, Response response) throws IOException, ServletException {
+
+			int interval = sampleInterval;
+			if ((interval <= 0)
+					|| (ThreadLocalRandom.current().nextInt(interval) != 0)) {
+				super.invokeNext(request, response);
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				super.invokeNext(request, response);
+			} finally {
+				time.addAndGet(System.nanoTime() - start);
+				count.incrementAndGet();
 			}
 
 		}
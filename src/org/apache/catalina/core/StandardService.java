@@ -71,6 +71,7 @@ import java.beans.PropertyChangeSupport;
 import org.apache.catalina.Connector;
 import org.apache.catalina.Container;
 import org.apache.catalina.Engine;
+import org.apache.catalina.Executor;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
@@ -113,6 +114,12 @@ public final class StandardService implements Lifecycle, Service {
 	private int debug = 0;
 
 
+	/**
+	 * The set of Executors shared by the Connectors of this Service.
+	 */
+	private Executor executors[] = new Executor[0];
+
+
 	/**
 	 * Descriptive information about this component implementation.
 	 */
@@ -336,6 +343,31 @@ public final class StandardService implements Lifecycle, Service {
 	}
 
 
+	/**
+	 * Add a named Executor which the Connectors of this Service may share.
+	 *
+	 * @param executor The Executor to be added
+	 */
+	public void addExecutor(Executor executor) {
+
+		synchronized (executors) {
+			Executor results[] = new Executor[executors.length + 1];
+			System.arraycopy(executors, 0, results, 0, executors.length);
+			results[executors.length] = executor;
+			executors = results;
+
+			if (started) {
+				try {
+					executor.start();
+				} catch (LifecycleException e) {
+					;
+				}
+			}
+		}
+
+	}
+
+
 	/**
 	 * Add a property change listener to this component.
 	 *
@@ -358,6 +390,34 @@ public final class StandardService implements Lifecycle, Service {
 	}
 
 
+	/**
+	 * Find and return the set of Executors associated with this Service.
+	 */
+	public Executor[] findExecutors() {
+
+		return (executors);
+
+	}
+
+
+	/**
+	 * Return the Executor with the specified name, or <code>null</code> if
+	 * there is none.
+	 *
+	 * @param name Name of the requested Executor
+	 */
+	public Executor getExecutor(String name) {
+
+		Executor results[] = executors;
+		for (int i = 0; i < results.length; i++) {
+			if ((name != null) && name.equals(results[i].getName()))
+				return (results[i]);
+		}
+		return (null);
+
+	}
+
+
 	/**
 	 * Remove the specified Connector from the set associated from this
 	 * Service.  The removed Connector will also be disassociated from our
@@ -401,6 +461,43 @@ public final class StandardService implements Lifecycle, Service {
 	}
 
 
+	/**
+	 * Remove the specified Executor from the set associated with this
+	 * Service.
+	 *
+	 * @param executor The Executor to be removed
+	 */
+	public void removeExecutor(Executor executor) {
+
+		synchronized (executors) {
+			int j = -1;
+			for (int i = 0; i < executors.length; i++) {
+				if (executor == executors[i]) {
+					j = i;
+					break;
+				}
+			}
+			if (j < 0)
+				return;
+			if (started) {
+				try {
+					executor.stop();
+				} catch (LifecycleException e) {
+					;
+				}
+			}
+			int k = 0;
+			Executor results[] = new Executor[executors.length - 1];
+			for (int i = 0; i < executors.length; i++) {
+				if (i != j)
+					results[k++] = executors[i];
+			}
+			executors = results;
+		}
+
+	}
+
+
 	/**
 	 * Remove a property change listener from this component.
 	 *
@@ -498,6 +595,12 @@ public final class StandardService implements Lifecycle, Service {
 			}
 		}
 
+		// Start our defined Executors before the Connectors which use them
+		synchronized (executors) {
+			for (int i = 0; i < executors.length; i++)
+				executors[i].start();
+		}
+
 		// Start our defined Connectors second
 		synchronized (connectors) {
 			for (int i = 0; i < connectors.length; i++) {
@@ -546,6 +649,12 @@ public final class StandardService implements Lifecycle, Service {
 			}
 		}
 
+		// Stop our defined Executors once no Connector uses them
+		synchronized (executors) {
+			for (int i = 0; i < executors.length; i++)
+				executors[i].stop();
+		}
+
 		// Stop our defined Container second
 		if (container != null) {
 			synchronized (container) {
@@ -0,0 +1,540 @@
+package org.apache.catalina.core;
+
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.catalina.Executor;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.util.LifecycleSupport;
+import org.apache.catalina.util.StringManager;
+
+
+/**
+ * Standard implementation of the <b>Executor</b> interface, backed by a
+ * <code>java.util.concurrent.ThreadPoolExecutor</code>.  Unlike a plain
+ * thread pool executor, new threads are started up to
+ * <code>maxThreads</code> before any work is queued, since connector tasks
+ * block on the network and queuing them behind busy threads would only add
+ * latency.  Once all the threads are busy, at most
+ * <code>maxQueueSize</code> tasks wait in the queue, and further tasks are
+ * rejected.  Threads beyond <code>minSpareThreads</code> are stopped after
+ * being idle for <code>maxIdleTime</code> milliseconds.
+ */
+
+public class StandardThreadExecutor implements Executor {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Run the threads in daemon mode?
+	 */
+	protected boolean daemon = true;
+
+
+	/**
+	 * The thread pool which actually runs the tasks.
+	 */
+	protected ThreadPoolExecutor executor = null;
+
+
+	/**
+	 * The queue of tasks waiting for a thread.
+	 */
+	private TaskQueue queue = null;
+
+
+	/**
+	 * Descriptive information about this implementation.
+	 */
+	private static final String info =
+			"org.apache.catalina.core.StandardThreadExecutor/1.0";
+
+
+	/**
+	 * The lifecycle event support for this component.
+	 */
+	protected LifecycleSupport lifecycle = new LifecycleSupport(this);
+
+
+	/**
+	 * Time, in milliseconds, after which an idle thread above the minimum
+	 * number of spare threads is stopped.
+	 */
+	protected int maxIdleTime = 60000;
+
+
+	/**
+	 * The maximum number of tasks waiting for a thread.
+	 */
+	protected int maxQueueSize = Integer.MAX_VALUE;
+
+
+	/**
+	 * The maximum number of threads.
+	 */
+	protected int maxThreads = 200;
+
+
+	/**
+	 * The number of threads which are kept alive even when idle.
+	 */
+	protected int minSpareThreads = 25;
+
+
+	/**
+	 * The name of this executor.
+	 */
+	protected String name = null;
+
+
+	/**
+	 * The prefix of the names of our threads.
+	 */
+	protected String namePrefix = "catalina-exec-";
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private static final StringManager sm =
+			StringManager.getManager(Constants.Package);
+
+
+	/**
+	 * Has this component been started?
+	 */
+	private boolean started = false;
+
+
+	/**
+	 * The priority of our threads.
+	 */
+	protected int threadPriority = Thread.NORM_PRIORITY;
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the number of threads which are running a task.
+	 */
+	public int getActiveCount() {
+
+		ThreadPoolExecutor executor = this.executor;
+		return ((executor != null) ? executor.getActiveCount() : 0);
+
+	}
+
+
+	/**
+	 * Return the daemon flag of our threads.
+	 */
+	public boolean isDaemon() {
+
+		return (this.daemon);
+
+	}
+
+
+	/**
+	 * Set the daemon flag of our threads.
+	 *
+	 * @param daemon The new daemon flag
+	 */
+	public void setDaemon(boolean daemon) {
+
+		this.daemon = daemon;
+
+	}
+
+
+	/**
+	 * Return descriptive information about this implementation.
+	 */
+	public String getInfo() {
+
+		return (info);
+
+	}
+
+
+	/**
+	 * Return the idle time, in milliseconds, after which a spare thread is
+	 * stopped.
+	 */
+	public int getMaxIdleTime() {
+
+		return (this.maxIdleTime);
+
+	}
+
+
+	/**
+	 * Set the idle time, in milliseconds, after which a spare thread is
+	 * stopped.
+	 *
+	 * @param maxIdleTime The new idle time
+	 */
+	public void setMaxIdleTime(int maxIdleTime) {
+
+		this.maxIdleTime = maxIdleTime;
+		if (executor != null)
+			executor.setKeepAliveTime(maxIdleTime, TimeUnit.MILLISECONDS);
+
+	}
+
+
+	/**
+	 * Return the maximum number of tasks waiting for a thread.
+	 */
+	public int getMaxQueueSize() {
+
+		return (this.maxQueueSize);
+
+	}
+
+
+	/**
+	 * Set the maximum number of tasks waiting for a thread.  This can only
+	 * be changed before the executor is started.
+	 *
+	 * @param maxQueueSize The new maximum queue size
+	 */
+	public void setMaxQueueSize(int maxQueueSize) {
+
+		this.maxQueueSize = maxQueueSize;
+
+	}
+
+
+	/**
+	 * Return the maximum number of threads.
+	 */
+	public int getMaxThreads() {
+
+		return (this.maxThreads);
+
+	}
+
+
+	/**
+	 * Set the maximum number of threads.
+	 *
+	 * @param maxThreads The new maximum number of threads
+	 */
+	public void setMaxThreads(int maxThreads) {
+
+		this.maxThreads = maxThreads;
+		if (executor != null)
+			executor.setMaximumPoolSize(maxThreads);
+
+	}
+
+
+	/**
+	 * Return the number of threads kept alive when idle.
+	 */
+	public int getMinSpareThreads() {
+
+		return (this.minSpareThreads);
+
+	}
+
+
+	/**
+	 * Set the number of threads kept alive when idle.
+	 *
+	 * @param minSpareThreads The new number of spare threads
+	 */
+	public void setMinSpareThreads(int minSpareThreads) {
+
+		this.minSpareThreads = minSpareThreads;
+		if (executor != null)
+			executor.setCorePoolSize(minSpareThreads);
+
+	}
+
+
+	/**
+	 * Return the name of this executor.
+	 */
+	public String getName() {
+
+		return (this.name);
+
+	}
+
+
+	/**
+	 * Set the name of this executor.
+	 *
+	 * @param name The new name
+	 */
+	public void setName(String name) {
+
+		this.name = name;
+
+	}
+
+
+	/**
+	 * Return the prefix of the names of our threads.
+	 */
+	public String getNamePrefix() {
+
+		return (this.namePrefix);
+
+	}
+
+
+	/**
+	 * Set the prefix of the names of our threads.
+	 *
+	 * @param namePrefix The new prefix
+	 */
+	public void setNamePrefix(String namePrefix) {
+
+		this.namePrefix = namePrefix;
+
+	}
+
+
+	/**
+	 * Return the current number of threads.
+	 */
+	public int getPoolSize() {
+
+		ThreadPoolExecutor executor = this.executor;
+		return ((executor != null) ? executor.getPoolSize() : 0);
+
+	}
+
+
+	/**
+	 * Return the number of tasks waiting for a thread.
+	 */
+	public int getQueueSize() {
+
+		ThreadPoolExecutor executor = this.executor;
+		return ((executor != null) ? executor.getQueue().size() : 0);
+
+	}
+
+
+	/**
+	 * Return the priority of our threads.
+	 */
+	public int getThreadPriority() {
+
+		return (this.threadPriority);
+
+	}
+
+
+	/**
+	 * Set the priority of our threads.
+	 *
+	 * @param threadPriority The new priority
+	 */
+	public void setThreadPriority(int threadPriority) {
+
+		this.threadPriority = threadPriority;
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Run the specified task on one of our threads.
+	 *
+	 * @param command The task to run
+	 * @throws RejectedExecutionException if this executor is not running,
+	 *                                    or if all the threads are busy and
+	 *                                    the queue is full
+	 */
+	public void execute(Runnable command) {
+
+		ThreadPoolExecutor executor = this.executor;
+		if (executor == null)
+			throw new RejectedExecutionException
+					(sm.getString("standardThreadExecutor.notStarted", name));
+		try {
+			executor.execute(command);
+		} catch (RejectedExecutionException e) {
+			// The queue refused the task because the pool could still grow,
+			// but the pool reached its maximum size in the meantime
+			if (executor.isShutdown() || !queue.force(command))
+				throw e;
+		}
+
+	}
+
+
+	/**
+	 * Return a String representation of this component.
+	 */
+	public String toString() {
+
+		StringBuffer sb = new StringBuffer("StandardThreadExecutor[");
+		sb.append(name);
+		sb.append("]");
+		return (sb.toString());
+
+	}
+
+
+	// ------------------------------------------------------ Lifecycle Methods
+
+
+	/**
+	 * Add a lifecycle event listener to this component.
+	 *
+	 * @param listener The listener to add
+	 */
+	public void addLifecycleListener(LifecycleListener listener) {
+
+		lifecycle.addLifecycleListener(listener);
+
+	}
+
+
+	/**
+	 * Get the lifecycle listeners associated with this lifecycle. If this
+	 * Lifecycle has no listeners registered, a zero-length array is returned.
+	 */
+	public LifecycleListener[] findLifecycleListeners() {
+
+		return lifecycle.findLifecycleListeners();
+
+	}
+
+
+	/**
+	 * Remove a lifecycle event listener from this component.
+	 *
+	 * @param listener The listener to remove
+	 */
+	public void removeLifecycleListener(LifecycleListener listener) {
+
+		lifecycle.removeLifecycleListener(listener);
+
+	}
+
+
+	/**
+	 * Start the threads of this executor.
+	 *
+	 * @throws LifecycleException if this component detects a fatal error
+	 *                            that prevents it from being started
+	 */
+	public void start() throws LifecycleException {
+
+		if (started)
+			throw new LifecycleException
+					(sm.getString("standardThreadExecutor.alreadyStarted", name));
+		lifecycle.fireLifecycleEvent(BEFORE_START_EVENT, null);
+		started = true;
+
+		queue = new TaskQueue(maxQueueSize);
+		int max = (maxThreads > 0) ? maxThreads : Integer.MAX_VALUE;
+		int core = Math.min(Math.max(minSpareThreads, 0), max);
+		executor = new ThreadPoolExecutor(core, max, maxIdleTime,
+				TimeUnit.MILLISECONDS, queue, new TaskThreadFactory());
+		queue.setParent(executor);
+
+		lifecycle.fireLifecycleEvent(START_EVENT, null);
+		lifecycle.fireLifecycleEvent(AFTER_START_EVENT, null);
+
+	}
+
+
+	/**
+	 * Stop the threads of this executor.  Running tasks are allowed to
+	 * complete, but the tasks still in the queue are discarded.
+	 *
+	 * @throws LifecycleException if this component detects a fatal error
+	 *                            that needs to be reported
+	 */
+	public void stop() throws LifecycleException {
+
+		if (!started)
+			throw new LifecycleException
+					(sm.getString("standardThreadExecutor.notStarted", name));
+		lifecycle.fireLifecycleEvent(BEFORE_STOP_EVENT, null);
+		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
+		started = false;
+
+		ThreadPoolExecutor executor = this.executor;
+		this.executor = null;
+		if (executor != null)
+			executor.shutdownNow();
+
+		lifecycle.fireLifecycleEvent(AFTER_STOP_EVENT, null);
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * Queue which refuses tasks while the pool can still grow, so that the
+	 * pool starts a new thread instead of queuing the task.
+	 */
+	private static final class TaskQueue extends LinkedBlockingQueue<Runnable> {
+
+		private ThreadPoolExecutor parent = null;
+
+		TaskQueue(int capacity) {
+			super((capacity > 0) ? capacity : Integer.MAX_VALUE);
+		}
+
+		void setParent(ThreadPoolExecutor parent) {
+			this.parent = parent;
+		}
+
+		boolean force(Runnable task) {
+			return (super.offer(task));
+		}
+
+		public boolean offer(Runnable task) {
+			ThreadPoolExecutor parent = this.parent;
+			if ((parent != null)
+					&& (parent.getPoolSize() < parent.getMaximumPoolSize())
+					&& (parent.getActiveCount() >= parent.getPoolSize()))
+				return (false);
+			return (super.offer(task));
+		}
+
+	}
+
+
+	/**
+	 * Factory for our named threads.
+	 */
+	private final class TaskThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger(1);
+
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, namePrefix + count.getAndIncrement());
+			thread.setDaemon(daemon);
+			thread.setPriority(threadPriority);
+			return (thread);
+		}
+
+	}
+
+
+}
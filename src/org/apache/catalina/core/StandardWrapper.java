@@ -68,7 +68,7 @@ package org.apache.catalina.core;
 import java.io.PrintStream;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -88,6 +88,7 @@ import org.apache.catalina.connector.HttpRequestBase;
 import org.apache.catalina.connector.HttpResponseBase;
 import org.apache.catalina.util.Enumerator;
 import org.apache.catalina.util.InstanceSupport;
+import org.apache.catalina.util.RequestStatistics;
 import org.apache.tomcat.util.log.SystemLogHandler;
 
 
@@ -123,6 +124,13 @@ public final class StandardWrapper
 	// ----------------------------------------------------- Instance Variables
 
 
+	/**
+	 * Maximum time to wait for an instance of a STM servlet, in
+	 * milliseconds, or a negative value to wait as long as necessary.
+	 */
+	private long allocationTimeout = 30000L;
+
+
 	/**
 	 * The date and time at which this servlet will become available (in
 	 * milliseconds since the epoch), or zero if the servlet is available.
@@ -136,7 +144,7 @@ public final class StandardWrapper
 	 * The count of allocations that are currently active (even if they
 	 * are for the same instance, as will be true on a non-STM servlet).
 	 */
-	private int countAllocated = 0;
+	private AtomicInteger countAllocated = new AtomicInteger();
 
 
 	/**
@@ -199,6 +207,12 @@ public final class StandardWrapper
 	private HashMap references = new HashMap();
 
 
+	/**
+	 * Statistics of the requests processed by this servlet.
+	 */
+	private RequestStatistics requestStatistics = new RequestStatistics();
+
+
 	/**
 	 * The run-as identity for this servlet.
 	 */
@@ -230,20 +244,94 @@ public final class StandardWrapper
 
 
 	/**
-	 * Number of instances currently loaded for a STM servlet.
+	 * Time after which idle STM instances are destroyed, in milliseconds,
+	 * or 0 to keep them.
 	 */
-	private int nInstances = 0;
+	private long maxIdleTime = 60000L;
 
 
 	/**
-	 * Stack containing the STM instances.
+	 * Number of STM instances which are loaded up front, and kept when
+	 * idle.
 	 */
-	private Stack instancePool = null;
+	private int minInstances = 0;
+
+
+	/**
+	 * Pool of the STM instances.
+	 */
+	private volatile InstancePool instancePool = null;
 
 
 	// ------------------------------------------------------------- Properties
 
 
+	/**
+	 * Return the number of allocations of a STM servlet which have timed
+	 * out because all the instances were in use.
+	 */
+	public long getAllocationTimeoutCount() {
+
+		InstancePool pool = instancePool;
+		return ((pool == null) ? 0L : pool.getTimeoutCount());
+
+	}
+
+
+	/**
+	 * Return the maximum time to wait for an instance of a STM servlet, in
+	 * milliseconds.
+	 */
+	public long getAllocationTimeout() {
+
+		return (this.allocationTimeout);
+
+	}
+
+
+	/**
+	 * Set the maximum time to wait for an instance of a STM servlet when
+	 * <code>maxInstances</code> instances are in use, in milliseconds, or
+	 * a negative value to wait as long as necessary.  When the time is up,
+	 * the request gets an SC_SERVICE_UNAVAILABLE error.
+	 *
+	 * @param allocationTimeout The new timeout
+	 */
+	public void setAllocationTimeout(long allocationTimeout) {
+
+		long oldAllocationTimeout = this.allocationTimeout;
+		this.allocationTimeout = allocationTimeout;
+		support.firePropertyChange("allocationTimeout",
+				new Long(oldAllocationTimeout),
+				new Long(this.allocationTimeout));
+
+	}
+
+
+	/**
+	 * Return the number of allocations of a STM servlet which have had to
+	 * wait for an instance.
+	 */
+	public long getAllocationWaitCount() {
+
+		InstancePool pool = instancePool;
+		return ((pool == null) ? 0L : pool.getWaitCount());
+
+	}
+
+
+	/**
+	 * Return the total time the allocations of a STM servlet have waited
+	 * for an instance, in milliseconds.
+	 */
+	public long getAllocationWaitTime() {
+
+		InstancePool pool = instancePool;
+		return ((pool == null) ? 0L : pool.getWaitTime());
+
+	}
+
+
 	/**
 	 * Return the available date/time for this servlet, in milliseconds since
 	 * the epoch.  If this date/time is in the future, any request for this
@@ -285,7 +373,7 @@ public final class StandardWrapper
 	 */
 	public int getCountAllocated() {
 
-		return (this.countAllocated);
+		return (countAllocated.get());
 
 	}
 
@@ -425,7 +513,8 @@ public final class StandardWrapper
 
 	/**
 	 * Set the maximum number of instances that will be allocated when a single
-	 * thread model servlet is used.
+	 * thread model servlet is used.  A change takes effect when the servlet
+	 * is loaded again.
 	 *
 	 * @param maxInstnces New value of maxInstances
 	 */
@@ -439,6 +528,74 @@ public final class StandardWrapper
 	}
 
 
+	/**
+	 * Return the longest time an allocation of a STM servlet has waited for
+	 * an instance, in milliseconds.
+	 */
+	public long getMaxAllocationWaitTime() {
+
+		InstancePool pool = instancePool;
+		return ((pool == null) ? 0L : pool.getMaxWaitTime());
+
+	}
+
+
+	/**
+	 * Return the time after which idle instances of a single thread model
+	 * servlet are destroyed, in milliseconds.
+	 */
+	public long getMaxIdleTime() {
+
+		return (this.maxIdleTime);
+
+	}
+
+
+	/**
+	 * Set the time after which idle instances of a single thread model
+	 * servlet are destroyed, down to <code>minInstances</code> instances,
+	 * in milliseconds, or 0 to keep them.
+	 *
+	 * @param maxIdleTime New value of maxIdleTime
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+
+		long oldMaxIdleTime = this.maxIdleTime;
+		this.maxIdleTime = maxIdleTime;
+		support.firePropertyChange("maxIdleTime", new Long(oldMaxIdleTime),
+				new Long(this.maxIdleTime));
+
+	}
+
+
+	/**
+	 * Return the number of instances of a single thread model servlet which
+	 * are loaded up front, and kept when idle.
+	 */
+	public int getMinInstances() {
+
+		return (this.minInstances);
+
+	}
+
+
+	/**
+	 * Set the number of instances of a single thread model servlet which
+	 * are loaded up front, and kept when idle.
+	 *
+	 * @param minInstances New value of minInstances
+	 */
+	public void setMinInstances(int minInstances) {
+
+		int oldMinInstances = this.minInstances;
+		this.minInstances = minInstances;
+		support.firePropertyChange("minInstances",
+				new Integer(oldMinInstances),
+				new Integer(this.minInstances));
+
+	}
+
+
 	/**
 	 * Set the parent Container of this Wrapper, but only if it is a Context.
 	 *
@@ -455,6 +612,16 @@ public final class StandardWrapper
 	}
 
 
+	/**
+	 * Return the statistics of the requests processed by this servlet.
+	 */
+	public RequestStatistics getRequestStatistics() {
+
+		return (this.requestStatistics);
+
+	}
+
+
 	/**
 	 * Return the run-as identity for this servlet.
 	 */
@@ -645,6 +812,8 @@ public final class StandardWrapper
 					if (instance == null) {
 						try {
 							instance = loadServlet();
+							if (singleThreadModel)
+								instancePool.prepare();
 						} catch (ServletException e) {
 							throw e;
 						} catch (Throwable e) {
@@ -658,40 +827,21 @@ public final class StandardWrapper
 			if (!singleThreadModel) {
 				if (debug >= 2)
 					log("  Returning non-STM instance");
-				countAllocated++;
+				countAllocated.incrementAndGet();
 				return (instance);
 			}
 
 		}
 
-		synchronized (instancePool) {
-
-			while (countAllocated >= nInstances) {
-				// Allocate a new instance if possible, or else wait
-				if (nInstances < maxInstances) {
-					try {
-						instancePool.push(loadServlet());
-						nInstances++;
-					} catch (ServletException e) {
-						throw e;
-					} catch (Throwable e) {
-						throw new ServletException
-								(sm.getString("standardWrapper.allocate"), e);
-					}
-				} else {
-					try {
-						instancePool.wait();
-					} catch (InterruptedException e) {
-						;
-					}
-				}
-			}
-			if (debug >= 2)
-				log("  Returning allocated STM instance");
-			countAllocated++;
-			return (Servlet) instancePool.pop();
-
-		}
+		InstancePool pool = instancePool;
+		if (pool == null)
+			throw new ServletException
+					(sm.getString("standardWrapper.unloading", getName()));
+		Servlet servlet = pool.allocate(allocationTimeout);
+		if (debug >= 2)
+			log("  Returning allocated STM instance");
+		countAllocated.incrementAndGet();
+		return (servlet);
 
 	}
 
@@ -707,17 +857,16 @@ public final class StandardWrapper
 	public void deallocate(Servlet servlet) throws ServletException {
 
 		// If not SingleThreadModel, no action is required
-		if (!singleThreadModel) {
-			countAllocated--;
+		countAllocated.decrementAndGet();
+		if (!singleThreadModel)
 			return;
-		}
 
-		// Unlock and free this instance
-		synchronized (instancePool) {
-			countAllocated--;
-			instancePool.push(servlet);
-			instancePool.notify();
-		}
+		// Return this instance to the pool
+		InstancePool pool = instancePool;
+		if (pool != null)
+			pool.deallocate(servlet);
+		else
+			destroyInstance(servlet);
 
 	}
 
@@ -799,6 +948,8 @@ public final class StandardWrapper
 	 */
 	public synchronized void load() throws ServletException {
 		instance = loadServlet();
+		if (singleThreadModel)
+			instancePool.prepare();
 	}
 
 
@@ -949,7 +1100,7 @@ public final class StandardWrapper
 			singleThreadModel = servlet instanceof SingleThreadModel;
 			if (singleThreadModel) {
 				if (instancePool == null)
-					instancePool = new Stack();
+					instancePool = new InstancePool(this);
 			}
 			fireContainerEvent("load", this);
 		} finally {
@@ -1070,11 +1221,11 @@ public final class StandardWrapper
 
 		// Loaf a while if the current instance is allocated
 		// (possibly more than once if non-STM)
-		if (countAllocated > 0) {
+		if (countAllocated.get() > 0) {
 			int nRetries = 0;
 			while (nRetries < 10) {
 				if (nRetries == 0) {
-					log("Waiting for " + countAllocated +
+					log("Waiting for " + countAllocated.get() +
 							" instance(s) to be deallocated");
 				}
 				try {
@@ -1105,8 +1256,9 @@ public final class StandardWrapper
 			instanceSupport.fireInstanceEvent
 					(InstanceEvent.AFTER_DESTROY_EVENT, instance, t);
 			instance = null;
+			if (instancePool != null)
+				instancePool.close();
 			instancePool = null;
-			nInstances = 0;
 			fireContainerEvent("unload", this);
 			unloading = false;
 			throw new ServletException
@@ -1130,14 +1282,14 @@ public final class StandardWrapper
 		instance = null;
 
 		if (singleThreadModel && (instancePool != null)) {
+			Servlet servlets[] = instancePool.close();
 			try {
 				Thread.currentThread().setContextClassLoader(classLoader);
-				while (!instancePool.isEmpty()) {
-					((Servlet) instancePool.pop()).destroy();
+				for (int i = 0; i < servlets.length; i++) {
+					servlets[i].destroy();
 				}
 			} catch (Throwable t) {
 				instancePool = null;
-				nInstances = 0;
 				unloading = false;
 				fireContainerEvent("unload", this);
 				throw new ServletException
@@ -1149,7 +1301,6 @@ public final class StandardWrapper
 						(oldCtxClassLoader);
 			}
 			instancePool = null;
-			nInstances = 0;
 		}
 
 		unloading = false;
@@ -1215,6 +1366,35 @@ public final class StandardWrapper
 	// -------------------------------------------------------- Package Methods
 
 
+	/**
+	 * Destroy an instance of a single thread model servlet which is no
+	 * longer needed.  Exceptions are logged and swallowed.
+	 *
+	 * @param servlet The instance to destroy
+	 */
+	void destroyInstance(Servlet servlet) {
+
+		ClassLoader oldCtxClassLoader =
+				Thread.currentThread().getContextClassLoader();
+		try {
+			instanceSupport.fireInstanceEvent
+					(InstanceEvent.BEFORE_DESTROY_EVENT, servlet);
+			Thread.currentThread().setContextClassLoader
+					(servlet.getClass().getClassLoader());
+			servlet.destroy();
+			instanceSupport.fireInstanceEvent
+					(InstanceEvent.AFTER_DESTROY_EVENT, servlet);
+		} catch (Throwable t) {
+			instanceSupport.fireInstanceEvent
+					(InstanceEvent.AFTER_DESTROY_EVENT, servlet, t);
+			log(sm.getString("standardWrapper.destroyException", getName()), t);
+		} finally {
+			Thread.currentThread().setContextClassLoader(oldCtxClassLoader);
+		}
+
+	}
+
+
 	// -------------------------------------------------------- Private Methods
 
 
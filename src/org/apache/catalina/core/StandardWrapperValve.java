@@ -2,6 +2,8 @@ package org.apache.catalina.core;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -13,6 +15,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.catalina.Context;
 import org.apache.catalina.Globals;
 import org.apache.catalina.HttpRequest;
+import org.apache.catalina.HttpResponse;
 import org.apache.catalina.Logger;
 import org.apache.catalina.Request;
 import org.apache.catalina.Response;
@@ -50,6 +53,26 @@ final class StandardWrapperValve
 	private FilterDef filterDef = null;
 
 
+	/**
+	 * The filters matching the requests to our wrapper, for the current
+	 * filter configuration of its context, or <code>null</code>.
+	 */
+	private volatile FilterCache filterCache = null;
+
+
+	/**
+	 * Maximum number of request paths whose filters are remembered, when
+	 * the filters cannot be selected from the extension alone.
+	 */
+	private static final int FILTER_CACHE_SIZE = 64;
+
+
+	/**
+	 * Idle filter chain of the current thread, if any.
+	 */
+	private static final ThreadLocal idleChains = new ThreadLocal();
+
+
 	/**
 	 * The descriptive information related to this implementation.
 	 */
@@ -94,6 +117,7 @@ final class StandardWrapperValve
 	                   ValveContext valveContext)
 			throws IOException, ServletException {
 		// Initialize local variables we may need
+		long t1 = System.nanoTime();
 		boolean unavailable = false;
 		Throwable throwable = null;
 		StandardWrapper wrapper = (StandardWrapper) getContainer();
@@ -136,6 +160,17 @@ final class StandardWrapperValve
 			if (!unavailable) {
 				servlet = wrapper.allocate();
 			}
+		} catch (UnavailableException e) {
+			log(sm.getString("standardWrapper.allocateException",
+					wrapper.getName()) + ": " + e.getMessage());
+			if (hres != null) {
+				int seconds = e.getUnavailableSeconds();
+				if (seconds > 0)
+					hres.setIntHeader("Retry-After", seconds);
+				hres.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+						e.getMessage());
+			}
+			servlet = null;
 		} catch (ServletException e) {
 			log(sm.getString("standardWrapper.allocateException",
 					wrapper.getName()), e);
@@ -220,8 +255,11 @@ final class StandardWrapperValve
 
 		// Release the filter chain (if any) for this request
 		try {
-			if (filterChain != null)
+			if (filterChain != null) {
 				filterChain.release();
+				if (System.getSecurityManager() == null)
+					idleChains.set(filterChain);
+			}
 		} catch (Throwable e) {
 			log(sm.getString("standardWrapper.releaseFilters",
 					wrapper.getName()), e);
@@ -261,6 +299,13 @@ final class StandardWrapperValve
 			}
 		}
 
+		// Record the processing of this request
+		boolean error = (throwable != null);
+		if (!error && (response instanceof HttpResponse))
+			error = (((HttpResponse) response).getStatus() >= 500);
+		wrapper.getRequestStatistics().record(System.nanoTime() - t1, error,
+				response.getContentCount());
+
 	}
 
 
@@ -270,9 +315,9 @@ final class StandardWrapperValve
 	/**
 	 * Construct and return a FilterChain implementation that will wrap the
 	 * execution of the specified servlet instance.  If we should not execute
-	 * a filter chain at all, return <code>null</code>.
-	 * <p/>
-	 * <strong>FIXME</strong> - Pool the chain instances!
+	 * a filter chain at all, return <code>null</code>.  The chain is the
+	 * idle chain of the current thread if there is one, and its filters
+	 * come from the cache of this valve.
 	 *
 	 * @param request The servlet request we are processing
 	 * @param servlet The servlet instance to be wrapped
@@ -284,24 +329,17 @@ final class StandardWrapperValve
 		if (servlet == null)
 			return (null);
 
-		// Create and initialize a filter chain object
+		// Acquire a filter chain object
 		ApplicationFilterChain filterChain =
-				new ApplicationFilterChain();
+				(ApplicationFilterChain) idleChains.get();
+		if (filterChain != null)
+			idleChains.set(null);
+		else
+			filterChain = new ApplicationFilterChain();
 		filterChain.setServlet(servlet);
 		StandardWrapper wrapper = (StandardWrapper) getContainer();
 		filterChain.setSupport(wrapper.getInstanceSupport());
 
-		// Acquire the filter mappings for this Context
-		StandardContext context = (StandardContext) wrapper.getParent();
-		FilterMap filterMaps[] = context.findFilterMaps();
-
-		// If there are no filter mappings, we are done
-		if ((filterMaps == null) || (filterMaps.length == 0))
-			return (filterChain);
-//        if (debug >= 1)
-//            log("createFilterChain:  Processing " + filterMaps.length +
-//                " filter map entries");
-
 		// Acquire the information we will need to match filter mappings
 		String requestPath = null;
 		if (request instanceof HttpRequest) {
@@ -314,62 +352,40 @@ final class StandardWrapperValve
 			if (requestURI.length() >= contextPath.length())
 				requestPath = requestURI.substring(contextPath.length());
 		}
-		String servletName = wrapper.getName();
-//        if (debug >= 1) {
-//            log(" requestPath=" + requestPath);
-//            log(" servletName=" + servletName);
-//        }
-		int n = 0;
 
-		// Add the relevant path-mapped filters to this filter chain
-		for (int i = 0; i < filterMaps.length; i++) {
-//            if (debug >= 2)
-//                log(" Checking path-mapped filter '" +
-//                    filterMaps[i] + "'");
-			if (!matchFiltersURL(filterMaps[i], requestPath))
-				continue;
-			ApplicationFilterConfig filterConfig = (ApplicationFilterConfig)
-					context.findFilterConfig(filterMaps[i].getFilterName());
-			if (filterConfig == null) {
-//                if (debug >= 2)
-//                    log(" Missing path-mapped filter '" +
-//                        filterMaps[i] + "'");
-				;       // FIXME - log configuration problem
-				continue;
-			}
-//            if (debug >= 2)
-//                log(" Adding path-mapped filter '" +
-//                    filterConfig.getFilterName() + "'");
-			filterChain.addFilter(filterConfig);
-			n++;
+		// Look up the filters in our cache, unless the filter configuration
+		// of the context has changed since it was built
+		StandardContext context = (StandardContext) wrapper.getParent();
+		int generation = context.getFilterGeneration();
+		FilterCache cache = filterCache;
+		if ((cache == null) || (cache.generation != generation)) {
+			cache = new FilterCache(generation, context.findFilterMaps());
+			filterCache = cache;
+		}
+		ApplicationFilterConfig filters[] = null;
+		String key = null;
+		if (requestPath == null) {
+			filters = cache.noPathFilters;
+		} else {
+			key = cache.getKey(requestPath);
+			filters = (ApplicationFilterConfig[]) cache.filters.get(key);
 		}
 
-		// Add filters that match on servlet name second
-		for (int i = 0; i < filterMaps.length; i++) {
-//            if (debug >= 2)
-//                log(" Checking servlet-mapped filter '" +
-//                    filterMaps[i] + "'");
-			if (!matchFiltersServlet(filterMaps[i], servletName))
-				continue;
-			ApplicationFilterConfig filterConfig = (ApplicationFilterConfig)
-					context.findFilterConfig(filterMaps[i].getFilterName());
-			if (filterConfig == null) {
-//                if (debug >= 2)
-//                    log(" Missing servlet-mapped filter '" +
-//                        filterMaps[i] + "'");
-				;       // FIXME - log configuration problem
-				continue;
+		// Match the filter mappings if we have not done it yet
+		if (filters == null) {
+			filters = matchFilters(context, cache.filterMaps, requestPath,
+					wrapper.getName());
+			if (key == null) {
+				cache.noPathFilters = filters;
+			} else {
+				if (cache.filters.size() >= FILTER_CACHE_SIZE)
+					cache.filters.clear();
+				cache.filters.put(key, filters);
 			}
-//            if (debug >= 2)
-//                log(" Adding servlet-mapped filter '" +
-//                     filterMaps[i] + "'");
-			filterChain.addFilter(filterConfig);
-			n++;
 		}
 
 		// Return the completed filter chain
-//        if (debug >= 2)
-//            log(" Returning chain with " + n + " filters");
+		filterChain.setFilters(filters);
 		return (filterChain);
 
 	}
@@ -451,6 +467,56 @@ final class StandardWrapperValve
 	}
 
 
+	/**
+	 * Return the filters to execute for a request with the specified
+	 * path to the specified servlet: the filters mapped to a URL pattern
+	 * matching the path first, then the ones mapped to the servlet name,
+	 * each in the order of the mappings.
+	 *
+	 * @param context     Context of our wrapper
+	 * @param filterMaps  Filter mappings of the context
+	 * @param requestPath Context-relative request path, or <code>null</code>
+	 * @param servletName Name of the servlet
+	 */
+	private ApplicationFilterConfig[] matchFilters(StandardContext context,
+	                                               FilterMap filterMaps[],
+	                                               String requestPath,
+	                                               String servletName) {
+
+		ArrayList filters = new ArrayList();
+
+		// Add the relevant path-mapped filters to this filter chain
+		for (int i = 0; i < filterMaps.length; i++) {
+			if (!matchFiltersURL(filterMaps[i], requestPath))
+				continue;
+			ApplicationFilterConfig filterConfig = (ApplicationFilterConfig)
+					context.findFilterConfig(filterMaps[i].getFilterName());
+			if (filterConfig == null) {
+				;       // FIXME - log configuration problem
+				continue;
+			}
+			filters.add(filterConfig);
+		}
+
+		// Add filters that match on servlet name second
+		for (int i = 0; i < filterMaps.length; i++) {
+			if (!matchFiltersServlet(filterMaps[i], servletName))
+				continue;
+			ApplicationFilterConfig filterConfig = (ApplicationFilterConfig)
+					context.findFilterConfig(filterMaps[i].getFilterName());
+			if (filterConfig == null) {
+				;       // FIXME - log configuration problem
+				continue;
+			}
+			filters.add(filterConfig);
+		}
+
+		return ((ApplicationFilterConfig[]) filters.toArray
+				(new ApplicationFilterConfig[filters.size()]));
+
+	}
+
+
 	/**
 	 * Return <code>true</code> if the specified servlet name matches
 	 * the requirements of the specified filter mapping; otherwise
@@ -532,4 +598,55 @@ final class StandardWrapperValve
 	}
 
 
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * The filters matching the requests to a wrapper, for a given state of
+	 * the filter configuration of its context.  When the URL patterns of
+	 * the filter mappings are all extension patterns or <code>/*</code>,
+	 * the filters of a request only depend on the extension of its path,
+	 * which is used as the key of the cache; otherwise the whole request
+	 * path is.
+	 */
+	private static final class FilterCache {
+
+		final int generation;
+
+		final FilterMap filterMaps[];
+
+		final boolean byExtension;
+
+		final ConcurrentHashMap filters = new ConcurrentHashMap();
+
+		volatile ApplicationFilterConfig noPathFilters[] = null;
+
+		FilterCache(int generation, FilterMap filterMaps[]) {
+			this.generation = generation;
+			if (filterMaps == null)
+				filterMaps = new FilterMap[0];
+			this.filterMaps = filterMaps;
+			boolean byExtension = true;
+			for (int i = 0; i < filterMaps.length; i++) {
+				String pattern = filterMaps[i].getURLPattern();
+				if ((pattern != null) && !pattern.equals("/*")
+						&& !pattern.startsWith("*."))
+					byExtension = false;
+			}
+			this.byExtension = byExtension;
+		}
+
+		String getKey(String requestPath) {
+			if (!byExtension)
+				return (requestPath);
+			int slash = requestPath.lastIndexOf('/');
+			int period = requestPath.lastIndexOf('.');
+			if ((slash >= 0) && (period > slash))
+				return (requestPath.substring(period));
+			return ("");
+		}
+
+	}
+
+
 }
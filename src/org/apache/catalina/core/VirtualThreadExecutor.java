@@ -0,0 +1,296 @@
+package org.apache.catalina.core;
+
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.catalina.Executor;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.util.LifecycleSupport;
+import org.apache.catalina.util.StringManager;
+
+
+/**
+ * Implementation of the <b>Executor</b> interface which runs every task on
+ * a new virtual thread.  There is no pool and no bound on the number of
+ * tasks running at the same time, so a connector using this executor is
+ * limited by its open connections rather than by a number of threads.
+ * <p>
+ * Virtual threads are only available on Java 21 and later, and are
+ * therefore looked up by reflection; <code>start()</code> fails with a
+ * <code>LifecycleException</code> on older virtual machines.
+ */
+
+public class VirtualThreadExecutor implements Executor {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The executor service which actually runs the tasks.
+	 */
+	protected ExecutorService executor = null;
+
+
+	/**
+	 * Descriptive information about this implementation.
+	 */
+	private static final String info =
+			"org.apache.catalina.core.VirtualThreadExecutor/1.0";
+
+
+	/**
+	 * The lifecycle event support for this component.
+	 */
+	protected LifecycleSupport lifecycle = new LifecycleSupport(this);
+
+
+	/**
+	 * The name of this executor.
+	 */
+	protected String name = null;
+
+
+	/**
+	 * The prefix of the names of our threads.
+	 */
+	protected String namePrefix = "catalina-virt-";
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private static final StringManager sm =
+			StringManager.getManager(Constants.Package);
+
+
+	/**
+	 * Has this component been started?
+	 */
+	private boolean started = false;
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return descriptive information about this implementation.
+	 */
+	public String getInfo() {
+
+		return (info);
+
+	}
+
+
+	/**
+	 * Return the name of this executor.
+	 */
+	public String getName() {
+
+		return (this.name);
+
+	}
+
+
+	/**
+	 * Set the name of this executor.
+	 *
+	 * @param name The new name
+	 */
+	public void setName(String name) {
+
+		this.name = name;
+
+	}
+
+
+	/**
+	 * Return the prefix of the names of our threads.
+	 */
+	public String getNamePrefix() {
+
+		return (this.namePrefix);
+
+	}
+
+
+	/**
+	 * Set the prefix of the names of our threads.
+	 *
+	 * @param namePrefix The new prefix
+	 */
+	public void setNamePrefix(String namePrefix) {
+
+		this.namePrefix = namePrefix;
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Is this virtual machine able to run virtual threads?
+	 */
+	public static boolean isSupported() {
+
+		try {
+			Thread.class.getMethod("ofVirtual", new Class[0]);
+			return (true);
+		} catch (NoSuchMethodException e) {
+			return (false);
+		}
+
+	}
+
+
+	/**
+	 * Run the specified task on a new virtual thread.
+	 *
+	 * @param command The task to run
+	 * @throws RejectedExecutionException if this executor is not running
+	 */
+	public void execute(Runnable command) {
+
+		ExecutorService executor = this.executor;
+		if (executor == null)
+			throw new RejectedExecutionException
+					(sm.getString("virtualThreadExecutor.notStarted", name));
+		executor.execute(command);
+
+	}
+
+
+	/**
+	 * Return a String representation of this component.
+	 */
+	public String toString() {
+
+		StringBuffer sb = new StringBuffer("VirtualThreadExecutor[");
+		sb.append(name);
+		sb.append("]");
+		return (sb.toString());
+
+	}
+
+
+	// ------------------------------------------------------ Lifecycle Methods
+
+
+	/**
+	 * Add a lifecycle event listener to this component.
+	 *
+	 * @param listener The listener to add
+	 */
+	public void addLifecycleListener(LifecycleListener listener) {
+
+		lifecycle.addLifecycleListener(listener);
+
+	}
+
+
+	/**
+	 * Get the lifecycle listeners associated with this lifecycle. If this
+	 * Lifecycle has no listeners registered, a zero-length array is returned.
+	 */
+	public LifecycleListener[] findLifecycleListeners() {
+
+		return lifecycle.findLifecycleListeners();
+
+	}
+
+
+	/**
+	 * Remove a lifecycle event listener from this component.
+	 *
+	 * @param listener The listener to remove
+	 */
+	public void removeLifecycleListener(LifecycleListener listener) {
+
+		lifecycle.removeLifecycleListener(listener);
+
+	}
+
+
+	/**
+	 * Create the executor service which starts our virtual threads.
+	 *
+	 * @throws LifecycleException if this component has already been
+	 *                            started, or if virtual threads are not
+	 *                            supported by this virtual machine
+	 */
+	public void start() throws LifecycleException {
+
+		if (started)
+			throw new LifecycleException
+					(sm.getString("virtualThreadExecutor.alreadyStarted", name));
+
+		ExecutorService executor = null;
+		try {
+			// Thread.ofVirtual().name(namePrefix, 1).factory()
+			Object builder = Thread.class.getMethod("ofVirtual", new Class[0])
+					.invoke(null, new Object[0]);
+			Class builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name",
+					new Class[]{String.class, Long.TYPE})
+					.invoke(builder, new Object[]{namePrefix, new Long(1)});
+			ThreadFactory factory = (ThreadFactory) builderClass
+					.getMethod("factory", new Class[0])
+					.invoke(builder, new Object[0]);
+			// Executors.newThreadPerTaskExecutor(factory)
+			Method method = java.util.concurrent.Executors.class.getMethod
+					("newThreadPerTaskExecutor",
+							new Class[]{ThreadFactory.class});
+			executor = (ExecutorService)
+					method.invoke(null, new Object[]{factory});
+		} catch (InvocationTargetException e) {
+			throw new LifecycleException
+					(sm.getString("virtualThreadExecutor.unsupported", name),
+							e.getTargetException());
+		} catch (Exception e) {
+			throw new LifecycleException
+					(sm.getString("virtualThreadExecutor.unsupported", name), e);
+		}
+
+		lifecycle.fireLifecycleEvent(BEFORE_START_EVENT, null);
+		started = true;
+		this.executor = executor;
+		lifecycle.fireLifecycleEvent(START_EVENT, null);
+		lifecycle.fireLifecycleEvent(AFTER_START_EVENT, null);
+
+	}
+
+
+	/**
+	 * Stop this executor.  The running tasks are interrupted, which closes
+	 * the connections they are blocked on.
+	 *
+	 * @throws LifecycleException if this component detects a fatal error
+	 *                            that needs to be reported
+	 */
+	public void stop() throws LifecycleException {
+
+		if (!started)
+			throw new LifecycleException
+					(sm.getString("virtualThreadExecutor.notStarted", name));
+		lifecycle.fireLifecycleEvent(BEFORE_STOP_EVENT, null);
+		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
+		started = false;
+
+		ExecutorService executor = this.executor;
+		this.executor = null;
+		if (executor != null)
+			executor.shutdownNow();
+
+		lifecycle.fireLifecycleEvent(AFTER_STOP_EVENT, null);
+
+	}
+
+
+}
@@ -99,6 +99,7 @@ import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Loader;
 import org.apache.catalina.Logger;
+import org.apache.catalina.util.BackgroundScheduler;
 import org.apache.catalina.util.LifecycleSupport;
 import org.apache.catalina.util.StringManager;
 
@@ -255,21 +256,10 @@ public class WebappLoader
 
 
 	/**
-	 * The background thread.
+	 * The periodic check for modified classes, while this Loader is started
+	 * and reloadable.
 	 */
-	private Thread thread = null;
-
-
-	/**
-	 * The background thread completion semaphore.
-	 */
-	private boolean threadDone = false;
-
-
-	/**
-	 * Name to register for the background thread.
-	 */
-	private String threadName = "WebappLoader";
+	private BackgroundScheduler.Task backgroundTask = null;
 
 
 	// ------------------------------------------------------------- Properties
@@ -294,6 +284,8 @@ public class WebappLoader
 
 		int oldCheckInterval = this.checkInterval;
 		this.checkInterval = checkInterval;
+		if (backgroundTask != null)
+			backgroundTask.setInterval(checkInterval * 1000L);
 		support.firePropertyChange("checkInterval",
 				new Integer(oldCheckInterval),
 				new Integer(this.checkInterval));
@@ -481,13 +473,13 @@ public class WebappLoader
 				new Boolean(oldReloadable),
 				new Boolean(this.reloadable));
 
-		// Start or stop our background thread if required
+		// Start or stop our background task if required
 		if (!started)
 			return;
 		if (!oldReloadable && this.reloadable)
-			threadStart();
+			backgroundStart();
 		else if (oldReloadable && !this.reloadable)
-			threadStop();
+			backgroundStop();
 
 	}
 
@@ -681,11 +673,11 @@ public class WebappLoader
 		// Validate that all required packages are actually available
 		validatePackages();
 
-		// Start our background thread if we are reloadable
+		// Start our background task if we are reloadable
 		if (reloadable) {
 			log(sm.getString("webappLoader.reloading"));
 			try {
-				threadStart();
+				backgroundStart();
 			} catch (IllegalStateException e) {
 				throw new LifecycleException(e);
 			}
@@ -710,9 +702,9 @@ public class WebappLoader
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		started = false;
 
-		// Stop our background thread if we are reloadable
+		// Stop our background task if we are reloadable
 		if (reloadable)
-			threadStop();
+			backgroundStop();
 
 		// Remove context attributes as appropriate
 		if (container instanceof Context) {
@@ -1211,31 +1203,16 @@ public class WebappLoader
 
 
 	/**
-	 * Sleep for the duration specified by the <code>checkInterval</code>
-	 * property.
-	 */
-	private void threadSleep() {
-
-		try {
-			Thread.sleep(checkInterval * 1000L);
-		} catch (InterruptedException e) {
-			;
-		}
-
-	}
-
-
-	/**
-	 * Start the background thread that will periodically check for
-	 * session timeouts.
+	 * Start the background task that will periodically check for
+	 * modified classes.
 	 *
 	 * @throws IllegalStateException if we should not be starting
-	 *                               a background thread now
+	 *                               a background task now
 	 */
-	private void threadStart() {
+	private void backgroundStart() {
 
-		// Has the background thread already been started?
-		if (thread != null)
+		// Has the background task already been started?
+		if (backgroundTask != null)
 			return;
 
 		// Validate our current state
@@ -1246,38 +1223,30 @@ public class WebappLoader
 			throw new IllegalStateException
 					(sm.getString("webappLoader.notContext"));
 
-		// Start the background thread
+		// Start the background task
 		if (debug >= 1)
-			log(" Starting background thread");
-		threadDone = false;
-		threadName = "WebappLoader[" + container.getName() + "]";
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.start();
+			log(" Starting background task");
+		backgroundTask = BackgroundScheduler.getScheduler(container).schedule
+				("WebappLoader[" + container.getName() + "]", this,
+						checkInterval * 1000L, container);
 
 	}
 
 
 	/**
-	 * Stop the background thread that is periodically checking for
+	 * Stop the background task that is periodically checking for
 	 * modified classes.
 	 */
-	private void threadStop() {
+	private void backgroundStop() {
 
-		if (thread == null)
+		BackgroundScheduler.Task task = backgroundTask;
+		if (task == null)
 			return;
 
 		if (debug >= 1)
-			log(" Stopping background thread");
-		threadDone = true;
-		thread.interrupt();
-		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			;
-		}
-
-		thread = null;
+			log(" Stopping background task");
+		backgroundTask = null;
+		task.cancel();
 
 	}
 
@@ -1326,39 +1295,28 @@ public class WebappLoader
 
 
 	/**
-	 * The background thread that checks for session timeouts and shutdown.
+	 * Check for modified classes, and notify our Context that a reload is
+	 * appropriate if there are any.  This is run periodically by the
+	 * background scheduler of our Engine.
 	 */
 	public void run() {
 
-		if (debug >= 1)
-			log("BACKGROUND THREAD Starting");
-
-		// Loop until the termination semaphore is set
-		while (!threadDone) {
-
-			// Wait for our check interval
-			threadSleep();
-
-			if (!started)
-				break;
-
-			try {
-				// Perform our modification check
-				if (!classLoader.modified())
-					continue;
-			} catch (Exception e) {
-				log(sm.getString("webappLoader.failModifiedCheck"), e);
-				continue;
-			}
-
-			// Handle a need for reloading
-			notifyContext();
-			break;
+		if (!started)
+			return;
 
+		try {
+			// Perform our modification check
+			if (!classLoader.modified())
+				return;
+		} catch (Exception e) {
+			log(sm.getString("webappLoader.failModifiedCheck"), e);
+			return;
 		}
 
-		if (debug >= 1)
-			log("BACKGROUND THREAD Stopping");
+		// Handle a need for reloading, and stop checking until the reload
+		// starts us again
+		backgroundStop();
+		notifyContext();
 
 	}
 
@@ -67,10 +67,16 @@ import java.lang.reflect.Method;
 import javax.management.MBeanException;
 import javax.management.RuntimeOperationsException;
 
+import org.apache.catalina.connector.RequestResponsePool;
+import org.apache.catalina.util.LatencyHistogram;
+import org.apache.catalina.util.RequestStatistics;
+
 
 /**
  * <p>A <strong>ModelMBean</strong> implementation for the
- * <code>org.apache.coyote.tomcat4.CoyoteConnector</code> component.</p>
+ * <code>org.apache.coyote.tomcat4.CoyoteConnector</code> component, and for
+ * the connectors which pool their request and response objects or record
+ * request statistics.</p>
  *
  * @author Amy Roh
  * @version $Revision: 1.4 $ $Date: 2002/05/02 02:03:15 $
@@ -102,6 +108,305 @@ public class ConnectorMBean extends ClassNameMBean {
 	// ------------------------------------------------------------- Attributes
 
 
+	/**
+	 * Return the number of bytes sent in the bodies of the responses.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public long getBytesSent()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ? statistics.getBytesSent() : 0L);
+
+	}
+
+
+	/**
+	 * Return the number of requests which have failed, or have been
+	 * answered with a server error status.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public long getErrorCount()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ? statistics.getErrorCount() : 0L);
+
+	}
+
+
+	/**
+	 * Return the longest time spent processing a request, in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getMaxTime()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ? statistics.getTimes().getMax() : 0.0);
+
+	}
+
+
+	/**
+	 * Return the median of the times spent parsing the requests, in
+	 * milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getParseTimeP50()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("ParseTimes");
+		return ((times != null) ? times.getPercentile(50.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the 99th percentile of the times spent parsing the requests,
+	 * in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getParseTimeP99()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("ParseTimes");
+		return ((times != null) ? times.getPercentile(99.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the number of request and response objects which have been
+	 * created because the pool of the connector was empty.
+	 *
+	 * @throws Exception if the pool cannot be retrieved
+	 */
+	public long getPooledObjectsCreated()
+			throws Exception {
+
+		RequestResponsePool pool = getRequestPool();
+		return ((pool != null) ? pool.getCreatedCount() : 0L);
+
+	}
+
+
+	/**
+	 * Return the number of request and response objects which have been
+	 * dropped because the pool of the connector was full.
+	 *
+	 * @throws Exception if the pool cannot be retrieved
+	 */
+	public long getPooledObjectsDiscarded()
+			throws Exception {
+
+		RequestResponsePool pool = getRequestPool();
+		return ((pool != null) ? pool.getDiscardedCount() : 0L);
+
+	}
+
+
+	/**
+	 * Return the number of idle request and response objects in the pool
+	 * of the connector.
+	 *
+	 * @throws Exception if the pool cannot be retrieved
+	 */
+	public int getPooledObjectsIdle()
+			throws Exception {
+
+		RequestResponsePool pool = getRequestPool();
+		return ((pool != null) ? pool.getIdleCount() : 0);
+
+	}
+
+
+	/**
+	 * Return the number of request and response objects which have been
+	 * taken from the pool of the connector instead of being created.
+	 *
+	 * @throws Exception if the pool cannot be retrieved
+	 */
+	public long getPooledObjectsReused()
+			throws Exception {
+
+		RequestResponsePool pool = getRequestPool();
+		return ((pool != null) ? pool.getReusedCount() : 0L);
+
+	}
+
+
+	/**
+	 * Return the total time spent processing the requests, in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public long getProcessingTime()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ? statistics.getTimes().getTotal() : 0L);
+
+	}
+
+
+	/**
+	 * Return the median of the times spent processing the requests,
+	 * in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getProcessingTimeP50()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ?
+				statistics.getTimes().getPercentile(50.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the 90th percentile of the times spent processing the requests,
+	 * in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getProcessingTimeP90()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ?
+				statistics.getTimes().getPercentile(90.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the 99th percentile of the times spent processing the requests,
+	 * in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getProcessingTimeP99()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ?
+				statistics.getTimes().getPercentile(99.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the median of the times the connections have waited for a
+	 * processing thread, in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getQueueTimeP50()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("QueueTimes");
+		return ((times != null) ? times.getPercentile(50.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the 99th percentile of the times the connections have waited
+	 * for a processing thread, in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getQueueTimeP99()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("QueueTimes");
+		return ((times != null) ? times.getPercentile(99.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the number of requests processed.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public long getRequestCount()
+			throws Exception {
+
+		RequestStatistics statistics = getRequestStatistics();
+		return ((statistics != null) ? statistics.getRequestCount() : 0L);
+
+	}
+
+
+	/**
+	 * Return the median of the times spent by the container processing
+	 * the requests, in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getServiceTimeP50()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("ServiceTimes");
+		return ((times != null) ? times.getPercentile(50.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the 99th percentile of the times spent by the container
+	 * processing the requests, in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getServiceTimeP99()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("ServiceTimes");
+		return ((times != null) ? times.getPercentile(99.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the median of the times spent sending the responses, in
+	 * milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getWriteTimeP50()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("WriteTimes");
+		return ((times != null) ? times.getPercentile(50.0) : 0.0);
+
+	}
+
+
+	/**
+	 * Return the 99th percentile of the times spent sending the responses,
+	 * in milliseconds.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	public double getWriteTimeP99()
+			throws Exception {
+
+		LatencyHistogram times = getTimes("WriteTimes");
+		return ((times != null) ? times.getPercentile(99.0) : 0.0);
+
+	}
+
+
 	// ------------------------------------------------------------- Operations
 
 
@@ -288,4 +593,70 @@ public class ConnectorMBean extends ClassNameMBean {
 	}
 
 
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Return the pool of request and response objects of the managed
+	 * connector, or <code>null</code> if it does not have one.
+	 *
+	 * @throws Exception if the pool cannot be retrieved
+	 */
+	private RequestResponsePool getRequestPool()
+			throws Exception {
+
+		Method method = null;
+		try {
+			method = this.resource.getClass().getMethod("getRequestPool", null);
+		} catch (NoSuchMethodException e) {
+			return (null);
+		}
+		return ((RequestResponsePool) method.invoke(this.resource, null));
+
+	}
+
+
+	/**
+	 * Return the request statistics of the managed connector, or
+	 * <code>null</code> if it does not record any.
+	 *
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	private RequestStatistics getRequestStatistics()
+			throws Exception {
+
+		Method method = null;
+		try {
+			method = this.resource.getClass().getMethod
+					("getRequestStatistics", null);
+		} catch (NoSuchMethodException e) {
+			return (null);
+		}
+		return ((RequestStatistics) method.invoke(this.resource, null));
+
+	}
+
+
+	/**
+	 * Return the specified histogram of the managed connector, or
+	 * <code>null</code> if it does not record it.
+	 *
+	 * @param name Name of the histogram property, such as
+	 *             <code>ParseTimes</code>
+	 * @throws Exception if the statistics cannot be retrieved
+	 */
+	private LatencyHistogram getTimes(String name)
+			throws Exception {
+
+		Method method = null;
+		try {
+			method = this.resource.getClass().getMethod("get" + name, null);
+		} catch (NoSuchMethodException e) {
+			return (null);
+		}
+		return ((LatencyHistogram) method.invoke(this.resource, null));
+
+	}
+
+
 }
@@ -91,6 +91,7 @@ import org.apache.catalina.Service;
 import org.apache.catalina.User;
 import org.apache.catalina.UserDatabase;
 import org.apache.catalina.Valve;
+import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.http.HttpConnector;
 import org.apache.catalina.deploy.ContextEnvironment;
 import org.apache.catalina.deploy.ContextResource;
@@ -132,6 +133,8 @@ public class MBeanUtils {
 					"Http10Connector"},
 			{"org.apache.catalina.connector.http.HttpConnector",
 					"Http11Connector"},
+			{"org.apache.catalina.connector.http.NioHttpConnector",
+					"Http11Connector"},
 			{"org.apache.catalina.users.JDBCGroup",
 					"Group"},
 			{"org.apache.catalina.users.JDBCRole",
@@ -763,6 +766,33 @@ public class MBeanUtils {
 
 	}
 
+
+	/**
+	 * Create, register, and return an MBean for this
+	 * <code>Wrapper</code> object.
+	 *
+	 * @param wrapper The Wrapper to be managed
+	 * @throws Exception if an MBean cannot be created or registered
+	 */
+	public static ModelMBean createMBean(Wrapper wrapper)
+			throws Exception {
+
+		String mname = createManagedName(wrapper);
+		ManagedBean managed = registry.findManagedBean(mname);
+		if (managed == null) {
+			Exception e = new Exception("ManagedBean is not found with " + mname);
+			throw new MBeanException(e);
+		}
+		String domain = managed.getDomain();
+		if (domain == null)
+			domain = mserver.getDefaultDomain();
+		ModelMBean mbean = managed.createMBean(wrapper);
+		ObjectName oname = createObjectName(domain, wrapper);
+		mserver.registerMBean(mbean, oname);
+		return (mbean);
+
+	}
+
 	/**
 	 * Create an <code>ObjectName</code> for this
 	 * <code>Connector</code> object.
@@ -799,6 +829,26 @@ public class MBeanUtils {
 					",port=" + httpConnector.getPort() +
 					",address=" + httpConnector.getAddress());
 			return (name);
+		} else if ("org.apache.catalina.connector.comet.CometConnector".equals
+				(connector.getClass().getName())) {
+			try {
+				String address = (String)
+						PropertyUtils.getSimpleProperty(connector, "address");
+				Integer port = (Integer)
+						PropertyUtils.getSimpleProperty(connector, "port");
+				Service service = connector.getService();
+				String serviceName = null;
+				if (service != null)
+					serviceName = service.getName();
+				name = new ObjectName(domain + ":type=Connector" +
+						",service=" + serviceName +
+						",port=" + port +
+						",address=" + address);
+				return (name);
+			} catch (Exception e) {
+				throw new MalformedObjectNameException
+						("Cannot create object name for " + connector + e);
+			}
 		} else if ("org.apache.ajp.tomcat4.Ajp13Connector".equals
 				(connector.getClass().getName())) {
 			try {
@@ -1554,6 +1604,35 @@ public class MBeanUtils {
 
 	}
 
+
+	/**
+	 * Create an <code>ObjectName</code> for this
+	 * <code>Wrapper</code> object.
+	 *
+	 * @param domain  Domain in which this name is to be created
+	 * @param wrapper The Wrapper to be named
+	 * @throws MalformedObjectNameException if a name cannot be created
+	 */
+	public static ObjectName createObjectName(String domain,
+	                                          Wrapper wrapper)
+			throws MalformedObjectNameException {
+
+		ObjectName name = null;
+		Context context = (Context) wrapper.getParent();
+		Host host = (Host) context.getParent();
+		Service service = ((Engine) host.getParent()).getService();
+		String path = context.getPath();
+		if (path.length() < 1)
+			path = "/";
+		name = new ObjectName(domain + ":type=Wrapper,name=" +
+				encodeStr(wrapper.getName()) + ",path=" +
+				path + ",host=" +
+				host.getName() + ",service=" +
+				service.getName());
+		return (name);
+
+	}
+
 	/**
 	 * Create and configure (if necessary) and return the registry of
 	 * managed object descriptions.
@@ -2109,4 +2188,28 @@ public class MBeanUtils {
 
 	}
 
+
+	/**
+	 * Deregister the MBean for this
+	 * <code>Wrapper</code> object.
+	 *
+	 * @param wrapper The Wrapper to be managed
+	 * @throws Exception if an MBean cannot be deregistered
+	 */
+	public static void destroyMBean(Wrapper wrapper)
+			throws Exception {
+
+		String mname = createManagedName(wrapper);
+		ManagedBean managed = registry.findManagedBean(mname);
+		if (managed == null) {
+			return;
+		}
+		String domain = managed.getDomain();
+		if (domain == null)
+			domain = mserver.getDefaultDomain();
+		ObjectName oname = createObjectName(domain, wrapper);
+		mserver.unregisterMBean(oname);
+
+	}
+
 }
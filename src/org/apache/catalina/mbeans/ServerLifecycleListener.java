@@ -89,6 +89,7 @@ import org.apache.catalina.Server;
 import org.apache.catalina.ServerFactory;
 import org.apache.catalina.Service;
 import org.apache.catalina.Valve;
+import org.apache.catalina.Wrapper;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.core.StandardEngine;
 import org.apache.catalina.core.StandardHost;
@@ -428,6 +429,14 @@ public class ServerLifecycleListener
 
 		}
 
+		// Create the MBeans for the Wrappers added while starting
+		Container wrappers[] = context.findChildren();
+		for (int i = 0; i < wrappers.length; i++) {
+			if (debug >= 4)
+				log("Creating MBean for Wrapper " + wrappers[i]);
+			MBeanUtils.createMBean((Wrapper) wrappers[i]);
+		}
+
 		// Create the MBeans for the NamingResources (if any)
 		NamingResources resources = context.getNamingResources();
 		createMBeans(resources);
@@ -821,6 +830,14 @@ public class ServerLifecycleListener
 		// Deregister ourselves as a ContainerListener
 		context.removeContainerListener(this);
 
+		// Destroy the MBeans for the Wrappers
+		Container wrappers[] = context.findChildren();
+		for (int i = 0; i < wrappers.length; i++) {
+			if (debug >= 4)
+				log("Destroying MBean for Wrapper " + wrappers[i]);
+			MBeanUtils.destroyMBean((Wrapper) wrappers[i]);
+		}
+
 		// destroy the MBeans for the associated Valves
 		if (context instanceof StandardContext) {
 			Valve cValves[] = ((StandardContext) context).getValves();
@@ -1230,6 +1247,10 @@ public class ServerLifecycleListener
 				createMBeans((Engine) child);
 			} else if (child instanceof Host) {
 				createMBeans((Host) child);
+			} else if (child instanceof Wrapper) {
+				if (debug >= 4)
+					log("  Creating MBean for Wrapper " + child);
+				MBeanUtils.createMBean((Wrapper) child);
 			}
 		} catch (MBeanException t) {
 			Exception e = t.getTargetException();
@@ -1485,6 +1506,10 @@ public class ServerLifecycleListener
 					((StandardHost) host).
 							removePropertyChangeListener(this);
 				}
+			} else if (child instanceof Wrapper) {
+				if (debug >= 4)
+					log("  Removing MBean for Wrapper " + child);
+				MBeanUtils.destroyMBean((Wrapper) child);
 			}
 		} catch (MBeanException t) {
 			Exception e = t.getTargetException();
@@ -75,6 +75,7 @@ import org.apache.catalina.deploy.ContextEnvironment;
 import org.apache.catalina.deploy.ContextResource;
 import org.apache.catalina.deploy.ContextResourceLink;
 import org.apache.catalina.deploy.NamingResources;
+import org.apache.catalina.util.RequestStatistics;
 import org.apache.commons.modeler.BaseModelMBean;
 import org.apache.commons.modeler.ManagedBean;
 import org.apache.commons.modeler.Registry;
@@ -138,6 +139,103 @@ public class StandardContextMBean extends BaseModelMBean {
 	}
 
 
+	/**
+	 * Return the request statistics of this web application.
+	 */
+	private RequestStatistics getRequestStatistics() {
+
+		return (((StandardContext) this.resource).getRequestStatistics());
+
+	}
+
+
+	/**
+	 * Return the number of bytes sent in the bodies of the responses of
+	 * this web application.
+	 */
+	public long getBytesSent() {
+
+		return (getRequestStatistics().getBytesSent());
+
+	}
+
+
+	/**
+	 * Return the number of requests of this web application which have failed, or
+	 * have been answered with a server error status.
+	 */
+	public long getErrorCount() {
+
+		return (getRequestStatistics().getErrorCount());
+
+	}
+
+
+	/**
+	 * Return the longest time spent processing a request of this web application,
+	 * in milliseconds.
+	 */
+	public double getMaxTime() {
+
+		return (getRequestStatistics().getTimes().getMax());
+
+	}
+
+
+	/**
+	 * Return the total time spent processing the requests of this web application,
+	 * in milliseconds.
+	 */
+	public long getProcessingTime() {
+
+		return (getRequestStatistics().getTimes().getTotal());
+
+	}
+
+
+	/**
+	 * Return the median of the times spent processing the requests of
+	 * this web application, in milliseconds.
+	 */
+	public double getProcessingTimeP50() {
+
+		return (getRequestStatistics().getTimes().getPercentile(50.0));
+
+	}
+
+
+	/**
+	 * Return the 90th percentile of the times spent processing the requests of
+	 * this web application, in milliseconds.
+	 */
+	public double getProcessingTimeP90() {
+
+		return (getRequestStatistics().getTimes().getPercentile(90.0));
+
+	}
+
+
+	/**
+	 * Return the 99th percentile of the times spent processing the requests of
+	 * this web application, in milliseconds.
+	 */
+	public double getProcessingTimeP99() {
+
+		return (getRequestStatistics().getTimes().getPercentile(99.0));
+
+	}
+
+
+	/**
+	 * Return the number of requests processed by this web application.
+	 */
+	public long getRequestCount() {
+
+		return (getRequestStatistics().getRequestCount());
+
+	}
+
+
 	/**
 	 * Return the MBean Names of the set of defined environment entries for
 	 * this web application
@@ -365,4 +463,14 @@ public class StandardContextMBean extends BaseModelMBean {
 	}
 
 
+	/**
+	 * Forget the request statistics recorded so far for this web application.
+	 */
+	public void resetStatistics() {
+
+		getRequestStatistics().reset();
+
+	}
+
+
 }
@@ -0,0 +1,154 @@
+package org.apache.catalina.mbeans;
+
+
+import javax.management.MBeanException;
+import javax.management.RuntimeOperationsException;
+
+import org.apache.catalina.core.StandardWrapper;
+import org.apache.catalina.util.RequestStatistics;
+import org.apache.commons.modeler.BaseModelMBean;
+
+
+/**
+ * <p>A <strong>ModelMBean</strong> implementation for the
+ * <code>org.apache.catalina.core.StandardWrapper</code> component, which
+ * publishes the request statistics of the servlet.</p>
+ */
+
+public class StandardWrapperMBean extends BaseModelMBean {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a <code>ModelMBean</code> with default
+	 * <code>ModelMBeanInfo</code> information.
+	 *
+	 * @throws MBeanException             if the initializer of an object
+	 *                                    throws an exception
+	 * @throws RuntimeOperationsException if an IllegalArgumentException
+	 *                                    occurs
+	 */
+	public StandardWrapperMBean()
+			throws MBeanException, RuntimeOperationsException {
+
+		super();
+
+	}
+
+
+	// ------------------------------------------------------------- Attributes
+
+
+	/**
+	 * Return the number of bytes sent in the bodies of the responses of
+	 * this servlet.
+	 */
+	public long getBytesSent() {
+
+		return (getRequestStatistics().getBytesSent());
+
+	}
+
+
+	/**
+	 * Return the number of requests of this servlet which have failed, or
+	 * have been answered with a server error status.
+	 */
+	public long getErrorCount() {
+
+		return (getRequestStatistics().getErrorCount());
+
+	}
+
+
+	/**
+	 * Return the longest time spent processing a request of this servlet,
+	 * in milliseconds.
+	 */
+	public double getMaxTime() {
+
+		return (getRequestStatistics().getTimes().getMax());
+
+	}
+
+
+	/**
+	 * Return the total time spent processing the requests of this servlet,
+	 * in milliseconds.
+	 */
+	public long getProcessingTime() {
+
+		return (getRequestStatistics().getTimes().getTotal());
+
+	}
+
+
+	/**
+	 * Return the median of the times spent processing the requests of
+	 * this servlet, in milliseconds.
+	 */
+	public double getProcessingTimeP50() {
+
+		return (getRequestStatistics().getTimes().getPercentile(50.0));
+
+	}
+
+
+	/**
+	 * Return the 90th percentile of the times spent processing the requests of
+	 * this servlet, in milliseconds.
+	 */
+	public double getProcessingTimeP90() {
+
+		return (getRequestStatistics().getTimes().getPercentile(90.0));
+
+	}
+
+
+	/**
+	 * Return the 99th percentile of the times spent processing the requests of
+	 * this servlet, in milliseconds.
+	 */
+	public double getProcessingTimeP99() {
+
+		return (getRequestStatistics().getTimes().getPercentile(99.0));
+
+	}
+
+
+	/**
+	 * Return the number of requests processed by this servlet.
+	 */
+	public long getRequestCount() {
+
+		return (getRequestStatistics().getRequestCount());
+
+	}
+
+
+	/**
+	 * Return the request statistics of this servlet.
+	 */
+	private RequestStatistics getRequestStatistics() {
+
+		return (((StandardWrapper) this.resource).getRequestStatistics());
+
+	}
+
+
+	// ------------------------------------------------------------- Operations
+
+
+	/**
+	 * Forget the request statistics recorded so far for this servlet.
+	 */
+	public void resetStatistics() {
+
+		getRequestStatistics().reset();
+
+	}
+
+
+}
@@ -71,6 +71,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
@@ -80,16 +81,21 @@ import java.io.OutputStreamWriter;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Vector;
 import java.util.StringTokenizer;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.zip.DeflaterOutputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -100,9 +106,11 @@ import javax.naming.NameClassPair;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.Attributes;
 
+import org.apache.naming.resources.FileDirContext;
 import org.apache.naming.resources.Resource;
 import org.apache.naming.resources.ResourceAttributes;
 import org.apache.catalina.Globals;
+import org.apache.catalina.util.CompressionPolicy;
 import org.apache.catalina.util.FastHttpDateFormat;
 import org.apache.catalina.util.MD5Encoder;
 import org.apache.catalina.util.ServerInfo;
@@ -156,6 +164,42 @@ public class DefaultServlet
 	protected int output = 2048;
 
 
+	/**
+	 * The minimum size, in bytes, of the files which are sent by the
+	 * connector straight from the file system when it supports it, or 0 to
+	 * always copy the content through the response.
+	 */
+	protected int sendfileSize = 48 * 1024;
+
+
+	/**
+	 * The maximum size, in bytes, of the resources whose compressed content
+	 * is kept in memory, or 0 to let the connector compress them on every
+	 * request.
+	 */
+	protected int compressedCacheObjectMaxSize = 64 * 1024;
+
+
+	/**
+	 * The maximum total size, in bytes, of the compressed content kept in
+	 * memory.
+	 */
+	protected int compressedCacheMaxSize = 1024 * 1024;
+
+
+	/**
+	 * The compressed content of the resources, keyed by content coding and
+	 * path, in least recently used order.
+	 */
+	private LinkedHashMap compressedCache = new LinkedHashMap(16, 0.75f, true);
+
+
+	/**
+	 * The total size of the compressed content kept in memory.
+	 */
+	private long compressedCacheSize = 0;
+
+
 	/**
 	 * The set of welcome files for this web application
 	 */
@@ -287,6 +331,32 @@ public class DefaultServlet
 			;
 		}
 
+		try {
+			value = getServletConfig().getInitParameter("sendfileSize");
+			if (value != null)
+				sendfileSize = Integer.parseInt(value) * 1024;
+		} catch (Throwable t) {
+			;
+		}
+
+		try {
+			value = getServletConfig().getInitParameter
+					("compressedCacheObjectMaxSize");
+			if (value != null)
+				compressedCacheObjectMaxSize = Integer.parseInt(value) * 1024;
+		} catch (Throwable t) {
+			;
+		}
+
+		try {
+			value = getServletConfig().getInitParameter
+					("compressedCacheMaxSize");
+			if (value != null)
+				compressedCacheMaxSize = Integer.parseInt(value) * 1024;
+		} catch (Throwable t) {
+			;
+		}
+
 		// Sanity check on the specified buffer sizes
 		if (input < 256)
 			input = 256;
@@ -1055,7 +1125,17 @@ public class DefaultServlet
 					// Silent catch
 				}
 				if (ostream != null) {
-					copy(resourceInfo, ostream);
+					String encoding = checkCompression(request, response,
+							resourceInfo, contentType);
+					if (encoding == null) {
+						if (!checkSendfile(request, response, resourceInfo,
+								0, contentLength))
+							copy(resourceInfo, ostream);
+					} else if (!copyCompressed(response, resourceInfo,
+							encoding, ostream)) {
+						// The connector compresses the content as it goes
+						copy(resourceInfo, ostream);
+					}
 				} else {
 					copy(resourceInfo, writer);
 				}
@@ -1093,7 +1173,9 @@ public class DefaultServlet
 						// Silent catch
 					}
 					if (ostream != null) {
-						copy(resourceInfo, ostream, range);
+						if (!checkSendfile(request, response, resourceInfo,
+								range.start, range.end + 1))
+							copy(resourceInfo, ostream, range);
 					} else {
 						copy(resourceInfo, writer, range);
 					}
@@ -1126,6 +1208,85 @@ public class DefaultServlet
 	}
 
 
+	/**
+	 * Check whether the connector compresses its responses, and if the
+	 * content of the resource is worth compressing, in which case the
+	 * response varies with the content codings accepted by the client.
+	 *
+	 * @param request      The servlet request we are processing
+	 * @param response     The servlet response we are creating
+	 * @param resourceInfo The resource information
+	 * @param contentType  The content type of the resource
+	 * @return the content coding with which the content should be
+	 *         compressed, or <code>null</code> if it should not
+	 */
+	protected String checkCompression(HttpServletRequest request,
+	                                  HttpServletResponse response,
+	                                  ResourceInfo resourceInfo,
+	                                  String contentType) {
+
+		Object policy = request.getAttribute(Globals.COMPRESSION_POLICY_ATTR);
+		if (!(policy instanceof CompressionPolicy)
+				|| resourceInfo.collection
+				|| !((CompressionPolicy) policy).isCompressable
+				(contentType, resourceInfo.length))
+			return (null);
+
+		// The values of a Vary header set by a filter cannot be read back,
+		// so the filter is trusted to have listed Accept-Encoding
+		if (!response.containsHeader("Vary"))
+			response.addHeader("Vary", "Accept-Encoding");
+		return (((CompressionPolicy) policy).getEncoding
+				(request.getHeader("Accept-Encoding"),
+						request.getHeader("User-Agent")));
+
+	}
+
+
+	/**
+	 * Ask the connector to send the specified region of the resource
+	 * straight from the file system, if possible.  This is only done for
+	 * large enough resources of a <code>FileDirContext</code>, when the
+	 * connector supports it and the request and response have not been
+	 * wrapped by a filter or a request dispatcher.
+	 *
+	 * @param request      The servlet request we are processing
+	 * @param response     The servlet response we are creating
+	 * @param resourceInfo The resource information
+	 * @param start        Offset of the first byte to send
+	 * @param end          Offset of the byte following the last byte to send
+	 * @return <code>true</code> if the connector will send the content, in
+	 *         which case nothing must be written to the response
+	 */
+	protected boolean checkSendfile(HttpServletRequest request,
+	                                HttpServletResponse response,
+	                                ResourceInfo resourceInfo,
+	                                long start, long end) {
+
+		if ((sendfileSize <= 0)
+				|| (resourceInfo.length < sendfileSize)
+				|| !(resourceInfo.file instanceof FileDirContext.FileResource)
+				|| !Boolean.TRUE.equals(request.getAttribute
+						(Globals.SENDFILE_SUPPORTED_ATTR))
+				|| (request instanceof ServletRequestWrapper)
+				|| (response instanceof ServletResponseWrapper))
+			return (false);
+
+		File file =
+				((FileDirContext.FileResource) resourceInfo.file).getFile();
+		if (debug > 0)
+			log("DefaultServlet.serveFile:  sendfile='" + file + "' "
+					+ start + "-" + end);
+		request.setAttribute(Globals.SENDFILE_FILENAME_ATTR,
+				file.getAbsolutePath());
+		request.setAttribute(Globals.SENDFILE_FILE_START_ATTR,
+				new Long(start));
+		request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, new Long(end));
+		return (true);
+
+	}
+
+
 	/**
 	 * Parse the content-range header.
 	 *
@@ -1706,6 +1867,108 @@ public class DefaultServlet
 	}
 
 
+	/**
+	 * Send the content of the resource compressed with the specified
+	 * content coding, if it is small enough for its compressed content to
+	 * be kept in memory, so that it is only compressed again when the
+	 * resource is modified.
+	 *
+	 * @param response     The servlet response we are creating
+	 * @param resourceInfo The resource information
+	 * @param encoding     The content coding
+	 * @param ostream      The output stream to write to
+	 * @return <code>true</code> if the content has been sent
+	 * @throws IOException if an input/output error occurs
+	 */
+	private boolean copyCompressed(HttpServletResponse response,
+	                               ResourceInfo resourceInfo,
+	                               String encoding,
+	                               ServletOutputStream ostream)
+			throws IOException {
+
+		if ((resourceInfo.length < 0)
+				|| (resourceInfo.length > compressedCacheObjectMaxSize))
+			return (false);
+
+		String key = encoding + ':' + resourceInfo.path;
+		CompressedContent content = null;
+		synchronized (compressedCache) {
+			content = (CompressedContent) compressedCache.get(key);
+		}
+		if ((content == null) || (content.date != resourceInfo.date)
+				|| (content.length != resourceInfo.length)) {
+			content = compress(resourceInfo, encoding);
+			synchronized (compressedCache) {
+				CompressedContent old = (CompressedContent)
+						compressedCache.put(key, content);
+				if (old != null)
+					compressedCacheSize -= old.bytes.length;
+				compressedCacheSize += content.bytes.length;
+				Iterator entries = compressedCache.values().iterator();
+				while ((compressedCacheSize > compressedCacheMaxSize)
+						&& entries.hasNext()) {
+					old = (CompressedContent) entries.next();
+					compressedCacheSize -= old.bytes.length;
+					entries.remove();
+				}
+			}
+		}
+		if (debug > 0)
+			log("DefaultServlet.serveFile:  contentEncoding='" + encoding
+					+ "' " + resourceInfo.length + "->" + content.bytes.length);
+
+		response.setHeader("Content-Encoding", encoding);
+		response.setContentLength(content.bytes.length);
+		ostream.write(content.bytes);
+		return (true);
+
+	}
+
+
+	/**
+	 * Compress the content of the resource.
+	 *
+	 * @param resourceInfo The resource information
+	 * @param encoding     The content coding
+	 * @throws IOException if an input/output error occurs
+	 */
+	private CompressedContent compress(ResourceInfo resourceInfo,
+	                                   String encoding)
+			throws IOException {
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream
+				((int) Math.max(resourceInfo.length / 4, 256));
+		DeflaterOutputStream compressor = CompressionPolicy.newStream
+				(buffer, encoding, output, false);
+		InputStream istream = null;
+		try {
+			istream = resourceInfo.getStream();
+			byte[] b = new byte[input];
+			int len;
+			while ((len = istream.read(b)) != -1)
+				compressor.write(b, 0, len);
+			compressor.close();
+			compressor = null;
+		} finally {
+			// Release the compressor if the content could not be read
+			CompressionPolicy.discard(compressor);
+			try {
+				if (istream != null)
+					istream.close();
+			} catch (Throwable t) {
+				;
+			}
+		}
+
+		CompressedContent content = new CompressedContent();
+		content.date = resourceInfo.date;
+		content.length = resourceInfo.length;
+		content.bytes = buffer.toByteArray();
+		return (content);
+
+	}
+
+
 	/**
 	 * Copy the contents of the specified input stream to the specified
 	 * output stream, and ensure that both streams are closed before returning
@@ -2159,6 +2422,21 @@ public class DefaultServlet
 	}
 
 
+	// ------------------------------------------ CompressedContent Inner Class
+
+
+	/**
+	 * Compressed content of a resource, as of its last modification.
+	 */
+	private static class CompressedContent {
+
+		public long date;
+		public long length;
+		public byte[] bytes;
+
+	}
+
+
 	// ------------------------------------------------------ Range Inner Class
 
 
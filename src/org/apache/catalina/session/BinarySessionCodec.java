@@ -0,0 +1,439 @@
+package org.apache.catalina.session;
+
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.io.WriteAbortedException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+import org.apache.catalina.util.StringManager;
+
+
+/**
+ * Session codec writing the contents of a session in a compact binary
+ * format.  The times and the maximum inactive interval are written as
+ * variable length differences, and the attribute values which are Strings,
+ * wrappers of primitive values or byte arrays are written as raw data,
+ * Java serialization being used only for the other values.
+ * <p>
+ * The contents start with a format version byte, which tells them apart
+ * from the contents written with Java serialization by the earlier
+ * versions, so that those are still read.
+ * <p>
+ * Each attribute is written as a type byte, its name and its value.  The
+ * type byte tells whether the name is written with <code>writeUTF()</code>
+ * or, if it is too long for it, with Java serialization.
+ */
+
+public final class BinarySessionCodec implements SessionCodec {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Flag set when the session is new.
+	 */
+	private static final int FLAG_NEW = 0x01;
+
+
+	/**
+	 * Flag set when the session is valid.
+	 */
+	private static final int FLAG_VALID = 0x02;
+
+
+	/**
+	 * Flag set when the session has an identifier.
+	 */
+	private static final int FLAG_ID = 0x04;
+
+
+	/**
+	 * Flag set in the type byte of an attribute when its name is written
+	 * with Java serialization.
+	 */
+	private static final int FLAG_NAME_OBJECT = 0x80;
+
+
+	/**
+	 * The longest String which is always short enough for
+	 * <code>writeUTF()</code>.
+	 */
+	private static final int MAX_UTF_LENGTH = 65535 / 3;
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private static final StringManager sm =
+			StringManager.getManager(Constants.Package);
+
+
+	/**
+	 * Types of the attribute values.
+	 */
+	private static final int TYPE_OBJECT = 0;
+	private static final int TYPE_STRING = 1;
+	private static final int TYPE_INTEGER = 2;
+	private static final int TYPE_LONG = 3;
+	private static final int TYPE_TRUE = 4;
+	private static final int TYPE_FALSE = 5;
+	private static final int TYPE_DOUBLE = 6;
+	private static final int TYPE_FLOAT = 7;
+	private static final int TYPE_SHORT = 8;
+	private static final int TYPE_BYTE = 9;
+	private static final int TYPE_CHARACTER = 10;
+	private static final int TYPE_BYTES = 11;
+
+
+	/**
+	 * The version of the format.
+	 */
+	private static final int VERSION = 1;
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Read the contents of the specified session from the specified stream.
+	 *
+	 * @param session The session, which is not active yet
+	 * @param stream  The stream to read from
+	 * @throws ClassNotFoundException if the class of an attribute value
+	 *                                cannot be found
+	 * @throws IOException            if an input/output error occurs
+	 */
+	public void readSession(Session session, ObjectInputStream stream)
+			throws ClassNotFoundException, IOException {
+
+		StandardSession standardSession = (StandardSession) session;
+
+		// The contents written with Java serialization start with an object
+		// instead of data, which reads as the end of the data
+		int version = stream.read();
+		if (version < 0) {
+			standardSession.readSerializedData(stream);
+			return;
+		}
+		if (version != VERSION)
+			throw new StreamCorruptedException
+					(sm.getString("binarySessionCodec.version",
+							new Integer(version)));
+
+		// Read the scalar instance variables
+		int flags = stream.readUnsignedByte();
+		standardSession.id =
+				((flags & FLAG_ID) != 0) ? stream.readUTF() : null;
+		standardSession.isNew = ((flags & FLAG_NEW) != 0);
+		standardSession.isValid = ((flags & FLAG_VALID) != 0);
+		standardSession.creationTime = stream.readLong();
+		standardSession.lastAccessedTime =
+				standardSession.creationTime + readLong(stream);
+		standardSession.thisAccessedTime =
+				standardSession.lastAccessedTime + readLong(stream);
+		standardSession.maxInactiveInterval = (int) readLong(stream);
+
+		// Read the attributes
+		int n = (int) readLong(stream);
+		for (int i = 0; i < n; i++) {
+			String name = null;
+			int type = stream.readUnsignedByte();
+			if ((type & FLAG_NAME_OBJECT) != 0)
+				name = (String) stream.readObject();
+			else
+				name = stream.readUTF();
+			Object value = readValue(stream, type & ~FLAG_NAME_OBJECT);
+			if (value == null)
+				continue;
+			synchronized (standardSession.attributes) {
+				standardSession.attributes.put(name, value);
+			}
+		}
+
+	}
+
+
+	/**
+	 * Write the contents of the specified session to the specified stream.
+	 *
+	 * @param session The session
+	 * @param stream  The stream to write to
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void writeSession(Session session, ObjectOutputStream stream)
+			throws IOException {
+
+		StandardSession standardSession = (StandardSession) session;
+
+		// Write the scalar instance variables
+		String id = standardSession.id;
+		int flags = 0;
+		if (standardSession.isNew)
+			flags |= FLAG_NEW;
+		if (standardSession.isValid)
+			flags |= FLAG_VALID;
+		if (id != null)
+			flags |= FLAG_ID;
+		stream.write(VERSION);
+		stream.write(flags);
+		if (id != null)
+			stream.writeUTF(id);
+		stream.writeLong(standardSession.creationTime);
+		writeLong(stream, standardSession.lastAccessedTime
+				- standardSession.creationTime);
+		writeLong(stream, standardSession.thisAccessedTime
+				- standardSession.lastAccessedTime);
+		writeLong(stream, standardSession.maxInactiveInterval);
+
+		// Take a snapshot of the Serializable attributes
+		ArrayList names = new ArrayList();
+		ArrayList values = new ArrayList();
+		synchronized (standardSession.attributes) {
+			Iterator entries = standardSession.attributes.entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry entry = (Map.Entry) entries.next();
+				if (entry.getValue() instanceof Serializable) {
+					names.add(entry.getKey());
+					values.add(entry.getValue());
+				}
+			}
+		}
+
+		// Write the attributes
+		int n = names.size();
+		writeLong(stream, n);
+		for (int i = 0; i < n; i++) {
+			String name = (String) names.get(i);
+			Object value = values.get(i);
+			int type = typeOf(value);
+			if (name.length() <= MAX_UTF_LENGTH) {
+				stream.write(type);
+				stream.writeUTF(name);
+			} else {
+				stream.write(type | FLAG_NAME_OBJECT);
+				stream.writeObject(name);
+			}
+			try {
+				writeValue(stream, type, value);
+			} catch (NotSerializableException e) {
+				Manager manager = standardSession.getManager();
+				if (manager instanceof ManagerBase)
+					((ManagerBase) manager).log
+							(sm.getString("standardSession.notSerializable",
+									name, id), e);
+				// The stream has recorded the failure, after which both
+				// ends must forget the objects seen so far
+				stream.reset();
+				stream.writeObject(StandardSession.NOT_SERIALIZED);
+			}
+		}
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Read a number written by <code>writeLong()</code>.
+	 *
+	 * @param stream The stream to read from
+	 * @throws IOException if an input/output error occurs
+	 */
+	private static long readLong(ObjectInputStream stream)
+			throws IOException {
+
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = stream.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return ((value >>> 1) ^ -(value & 1L));
+		}
+		throw new StreamCorruptedException
+				(sm.getString("binarySessionCodec.number"));
+
+	}
+
+
+	/**
+	 * Read an attribute value written by <code>writeValue()</code>, or
+	 * return <code>null</code> if the value could not be serialized.
+	 *
+	 * @param stream The stream to read from
+	 * @param type   The type of the value
+	 * @throws ClassNotFoundException if the class of the value cannot be
+	 *                                found
+	 * @throws IOException            if an input/output error occurs
+	 */
+	private static Object readValue(ObjectInputStream stream, int type)
+			throws ClassNotFoundException, IOException {
+
+		switch (type) {
+			case TYPE_STRING:
+				return (stream.readUTF());
+			case TYPE_INTEGER:
+				return (Integer.valueOf((int) readLong(stream)));
+			case TYPE_LONG:
+				return (Long.valueOf(readLong(stream)));
+			case TYPE_TRUE:
+				return (Boolean.TRUE);
+			case TYPE_FALSE:
+				return (Boolean.FALSE);
+			case TYPE_DOUBLE:
+				return (Double.valueOf(stream.readDouble()));
+			case TYPE_FLOAT:
+				return (Float.valueOf(stream.readFloat()));
+			case TYPE_SHORT:
+				return (Short.valueOf(stream.readShort()));
+			case TYPE_BYTE:
+				return (Byte.valueOf(stream.readByte()));
+			case TYPE_CHARACTER:
+				return (Character.valueOf(stream.readChar()));
+			case TYPE_BYTES:
+				byte bytes[] = new byte[(int) readLong(stream)];
+				stream.readFully(bytes);
+				return (bytes);
+			case TYPE_OBJECT:
+				Object value = null;
+				try {
+					value = stream.readObject();
+				} catch (WriteAbortedException e) {
+					// The value could not be serialized, and was replaced
+					value = stream.readObject();
+				}
+				if (StandardSession.NOT_SERIALIZED.equals(value))
+					return (null);
+				return (value);
+			default:
+				throw new StreamCorruptedException
+						(sm.getString("binarySessionCodec.type",
+								new Integer(type)));
+		}
+
+	}
+
+
+	/**
+	 * Write a number in as few bytes as its magnitude allows, seven bits
+	 * at a time, the sign being moved to the lowest bit.
+	 *
+	 * @param stream The stream to write to
+	 * @param value  The number
+	 * @throws IOException if an input/output error occurs
+	 */
+	private static void writeLong(ObjectOutputStream stream, long value)
+			throws IOException {
+
+		value = (value << 1) ^ (value >> 63);
+		while ((value & ~0x7fL) != 0) {
+			stream.write((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		stream.write((int) value);
+
+	}
+
+
+	/**
+	 * Return the type with which the specified attribute value is written.
+	 *
+	 * @param value The value
+	 */
+	private static int typeOf(Object value) {
+
+		Class type = value.getClass();
+		if (type == String.class)
+			return ((((String) value).length() <= MAX_UTF_LENGTH)
+					? TYPE_STRING : TYPE_OBJECT);
+		else if (type == Integer.class)
+			return (TYPE_INTEGER);
+		else if (type == Long.class)
+			return (TYPE_LONG);
+		else if (type == Boolean.class)
+			return (((Boolean) value).booleanValue() ? TYPE_TRUE : TYPE_FALSE);
+		else if (type == Double.class)
+			return (TYPE_DOUBLE);
+		else if (type == Float.class)
+			return (TYPE_FLOAT);
+		else if (type == Short.class)
+			return (TYPE_SHORT);
+		else if (type == Byte.class)
+			return (TYPE_BYTE);
+		else if (type == Character.class)
+			return (TYPE_CHARACTER);
+		else if (type == byte[].class)
+			return (TYPE_BYTES);
+		return (TYPE_OBJECT);
+
+	}
+
+
+	/**
+	 * Write an attribute value of the specified type, as raw data if it is
+	 * a String, the wrapper of a primitive value or a byte array, or else
+	 * with Java serialization.
+	 *
+	 * @param stream The stream to write to
+	 * @param type   The type of the value, as returned by
+	 *               <code>typeOf()</code>
+	 * @param value  The value
+	 * @throws NotSerializableException if the value cannot be serialized
+	 * @throws IOException              if an input/output error occurs
+	 */
+	private static void writeValue(ObjectOutputStream stream, int type,
+	                               Object value)
+			throws IOException {
+
+		switch (type) {
+			case TYPE_STRING:
+				stream.writeUTF((String) value);
+				break;
+			case TYPE_INTEGER:
+				writeLong(stream, ((Integer) value).intValue());
+				break;
+			case TYPE_LONG:
+				writeLong(stream, ((Long) value).longValue());
+				break;
+			case TYPE_TRUE:
+			case TYPE_FALSE:
+				break;
+			case TYPE_DOUBLE:
+				stream.writeDouble(((Double) value).doubleValue());
+				break;
+			case TYPE_FLOAT:
+				stream.writeFloat(((Float) value).floatValue());
+				break;
+			case TYPE_SHORT:
+				stream.writeShort(((Short) value).shortValue());
+				break;
+			case TYPE_BYTE:
+				stream.writeByte(((Byte) value).byteValue());
+				break;
+			case TYPE_CHARACTER:
+				stream.writeChar(((Character) value).charValue());
+				break;
+			case TYPE_BYTES:
+				byte bytes[] = (byte[]) value;
+				writeLong(stream, bytes.length);
+				stream.write(bytes);
+				break;
+			default:
+				stream.writeObject(value);
+				break;
+		}
+
+	}
+
+
+}
@@ -247,15 +247,16 @@ public final class DistributedManager extends PersistentManagerBase {
 	}
 
 	/**
-	 * The background thread that checks for session timeouts and shutdown.
+	 * Load the replicated sessions, expire the sessions which have timed
+	 * out, and swap sessions out to the Store as configured.
 	 */
 	public void run() {
-		// Loop until the termination semaphore is set
-		while (!threadDone) {
-			threadSleep();
+		try {
 			processClusterReceiver();
 			processExpires();
 			processPersistenceChecks();
+		} catch (Throwable t) {
+			log(sm.getString("persistentManager.backgroundException"), t);
 		}
 	}
 }
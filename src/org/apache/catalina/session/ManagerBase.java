@@ -71,8 +71,8 @@ import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.catalina.Container;
 import org.apache.catalina.DefaultContext;
@@ -80,6 +80,7 @@ import org.apache.catalina.Engine;
 import org.apache.catalina.Logger;
 import org.apache.catalina.Manager;
 import org.apache.catalina.Session;
+import org.apache.catalina.util.SessionIdGenerator;
 import org.apache.catalina.util.StringManager;
 
 
@@ -106,20 +107,27 @@ public abstract class ManagerBase implements Manager {
 
 
 	/**
-	 * The number of random bytes to include when generating a
-	 * session identifier.
+	 * The default number of random bytes of a session identifier.
 	 */
 	protected static final int SESSION_ID_BYTES = 16;
 
 
 	/**
-	 * The message digest algorithm to be used when generating session
-	 * identifiers.  This must be an algorithm supported by the
+	 * The message digest algorithm of the digest returned by
+	 * <code>getDigest()</code>.  This must be an algorithm supported by the
 	 * <code>java.security.MessageDigest</code> class on your platform.
+	 * Session identifiers are not digested any longer.
 	 */
 	protected String algorithm = DEFAULT_ALGORITHM;
 
 
+	/**
+	 * The codec reading and writing the contents of the sessions when they
+	 * are saved, swapped out or replicated.
+	 */
+	protected SessionCodec codec = new BinarySessionCodec();
+
+
 	/**
 	 * The Container with which this Manager is associated.
 	 */
@@ -200,9 +208,25 @@ public abstract class ManagerBase implements Manager {
 
 	/**
 	 * The set of currently active Sessions for this Manager, keyed by
-	 * session identifier.
+	 * session identifier.  Sessions are looked up without locking, and
+	 * the identifiers of new sessions are reserved with
+	 * <code>putIfAbsent()</code>.
+	 */
+	protected ConcurrentHashMap<String, Session> sessions =
+			new ConcurrentHashMap<String, Session>(256, 0.75f,
+					Runtime.getRuntime().availableProcessors() * 4);
+
+
+	/**
+	 * The expiry wheel of the sessions of this Manager.
+	 */
+	protected SessionExpiry expiry = new SessionExpiry(this);
+
+
+	/**
+	 * The generator of the identifiers of new sessions.
 	 */
-	protected HashMap sessions = new HashMap();
+	protected SessionIdGenerator sessionIdGenerator = new SessionIdGenerator();
 
 
 	/**
@@ -221,6 +245,16 @@ public abstract class ManagerBase implements Manager {
 	// ------------------------------------------------------------- Properties
 
 
+	/**
+	 * Return the number of currently active sessions.
+	 */
+	public int getActiveSessions() {
+
+		return (sessions.size());
+
+	}
+
+
 	/**
 	 * Return the message digest algorithm for this Manager.
 	 */
@@ -399,6 +433,7 @@ public abstract class ManagerBase implements Manager {
 
 		String oldEntropy = entropy;
 		this.entropy = entropy;
+		sessionIdGenerator.setEntropy(entropy);
 		support.firePropertyChange("entropy", oldEntropy, this.entropy);
 
 	}
@@ -455,9 +490,10 @@ public abstract class ManagerBase implements Manager {
 
 
 	/**
-	 * Return the random number generator instance we should use for
-	 * generating session identifiers.  If there is no such generator
-	 * currently defined, construct and seed a new one.
+	 * Return a random number generator of the class this Manager has been
+	 * configured with.  If there is no such generator currently defined,
+	 * construct and seed a new one.  Session identifiers are generated by
+	 * <code>sessionIdGenerator</code>, which has its own generators.
 	 */
 	public synchronized Random getRandom() {
 
@@ -513,12 +549,127 @@ public abstract class ManagerBase implements Manager {
 
 		String oldRandomClass = this.randomClass;
 		this.randomClass = randomClass;
+		sessionIdGenerator.setRandomClass(randomClass);
 		support.firePropertyChange("randomClass", oldRandomClass,
 				this.randomClass);
 
 	}
 
 
+	/**
+	 * Return the Java class name of the session codec.
+	 */
+	public String getSessionCodec() {
+
+		return (codec.getClass().getName());
+
+	}
+
+
+	/**
+	 * Set the Java class name of the session codec, which reads and writes
+	 * the contents of the sessions when they are saved, swapped out or
+	 * replicated.  The codec is left unchanged if the class cannot be
+	 * instantiated.
+	 *
+	 * @param sessionCodec The new session codec class name
+	 */
+	public void setSessionCodec(String sessionCodec) {
+
+		String oldSessionCodec = getSessionCodec();
+		try {
+			Class clazz = Class.forName(sessionCodec);
+			this.codec = (SessionCodec) clazz.newInstance();
+		} catch (Throwable t) {
+			log(sm.getString("managerBase.sessionCodec", sessionCodec), t);
+			return;
+		}
+		support.firePropertyChange("sessionCodec", oldSessionCodec,
+				sessionCodec);
+
+	}
+
+
+	/**
+	 * Return the encoding of session identifiers.
+	 */
+	public String getSessionIdEncoding() {
+
+		return (sessionIdGenerator.getEncoding());
+
+	}
+
+
+	/**
+	 * Set the encoding of session identifiers.
+	 *
+	 * @param encoding <code>hex</code> (the default) or
+	 *                 <code>base64url</code>
+	 * @throws IllegalArgumentException if the encoding is not supported
+	 */
+	public void setSessionIdEncoding(String encoding) {
+
+		String oldEncoding = sessionIdGenerator.getEncoding();
+		sessionIdGenerator.setEncoding(encoding);
+		support.firePropertyChange("sessionIdEncoding", oldEncoding,
+				encoding);
+
+	}
+
+
+	/**
+	 * Return the number of random bytes of a session identifier.
+	 */
+	public int getSessionIdLength() {
+
+		return (sessionIdGenerator.getLength());
+
+	}
+
+
+	/**
+	 * Set the number of random bytes of a session identifier.
+	 *
+	 * @param length The new number of bytes
+	 * @throws IllegalArgumentException if the length is not positive
+	 */
+	public void setSessionIdLength(int length) {
+
+		int oldLength = sessionIdGenerator.getLength();
+		sessionIdGenerator.setLength(length);
+		support.firePropertyChange("sessionIdLength",
+				new Integer(oldLength), new Integer(length));
+
+	}
+
+
+	/**
+	 * Return the number of session identifiers generated ahead of time.
+	 */
+	public int getSessionIdPrefetch() {
+
+		return (sessionIdGenerator.getPrefetch());
+
+	}
+
+
+	/**
+	 * Set the number of session identifiers generated ahead of time, and
+	 * refilled in the background, or 0 to generate each identifier when a
+	 * session is created.
+	 *
+	 * @param prefetch The new number of identifiers
+	 */
+	public void setSessionIdPrefetch(int prefetch) {
+
+		int oldPrefetch = sessionIdGenerator.getPrefetch();
+		sessionIdGenerator.setPrefetch(prefetch);
+		support.firePropertyChange("sessionIdPrefetch",
+				new Integer(oldPrefetch), new Integer(prefetch));
+
+	}
+
+
 	// --------------------------------------------------------- Public Methods
 
 
@@ -529,9 +680,9 @@ public abstract class ManagerBase implements Manager {
 	 */
 	public void add(Session session) {
 
-		synchronized (sessions) {
-			sessions.put(session.getId(), session);
-		}
+		sessions.put(session.getId(), session);
+		if (session instanceof StandardSession)
+			expiry.schedule((StandardSession) session);
 
 	}
 
@@ -579,19 +730,16 @@ public abstract class ManagerBase implements Manager {
 		session.setValid(true);
 		session.setCreationTime(System.currentTimeMillis());
 		session.setMaxInactiveInterval(this.maxInactiveInterval);
-		String sessionId = generateSessionId();
+
+		// Reserve a unique session identifier
 		String jvmRoute = getJvmRoute();
-		// @todo Move appending of jvmRoute generateSessionId()???
-		if (jvmRoute != null) {
-			sessionId += '.' + jvmRoute;
-			session.setId(sessionId);
-		}
-	    /*
-        synchronized (sessions) {
-            while (sessions.get(sessionId) != null)        // Guarantee uniqueness
-                sessionId = generateSessionId();
-        }
-        */
+		String sessionId = null;
+		do {
+			sessionId = generateSessionId();
+			// @todo Move appending of jvmRoute generateSessionId()???
+			if (jvmRoute != null)
+				sessionId += '.' + jvmRoute;
+		} while (sessions.putIfAbsent(sessionId, session) != null);
 		session.setId(sessionId);
 
 		return (session);
@@ -613,10 +761,7 @@ public abstract class ManagerBase implements Manager {
 
 		if (id == null)
 			return (null);
-		synchronized (sessions) {
-			Session session = (Session) sessions.get(id);
-			return (session);
-		}
+		return (sessions.get(id));
 
 	}
 
@@ -627,12 +772,7 @@ public abstract class ManagerBase implements Manager {
 	 */
 	public Session[] findSessions() {
 
-		Session results[] = null;
-		synchronized (sessions) {
-			results = new Session[sessions.size()];
-			results = (Session[]) sessions.values().toArray(results);
-		}
-		return (results);
+		return (sessions.values().toArray(new Session[0]));
 
 	}
 
@@ -644,9 +784,9 @@ public abstract class ManagerBase implements Manager {
 	 */
 	public void remove(Session session) {
 
-		synchronized (sessions) {
-			sessions.remove(session.getId());
-		}
+		sessions.remove(session.getId());
+		if (session instanceof StandardSession)
+			expiry.cancel((StandardSession) session);
 
 	}
 
@@ -669,29 +809,9 @@ public abstract class ManagerBase implements Manager {
 	/**
 	 * Generate and return a new session identifier.
 	 */
-	protected synchronized String generateSessionId() {
-
-		// Generate a byte array containing a session identifier
-		Random random = getRandom();
-		byte bytes[] = new byte[SESSION_ID_BYTES];
-		getRandom().nextBytes(bytes);
-		bytes = getDigest().digest(bytes);
-
-		// Render the result as a String of hexadecimal digits
-		StringBuffer result = new StringBuffer();
-		for (int i = 0; i < bytes.length; i++) {
-			byte b1 = (byte) ((bytes[i] & 0xf0) >> 4);
-			byte b2 = (byte) (bytes[i] & 0x0f);
-			if (b1 < 10)
-				result.append((char) ('0' + b1));
-			else
-				result.append((char) ('A' + (b1 - 10)));
-			if (b2 < 10)
-				result.append((char) ('0' + b2));
-			else
-				result.append((char) ('A' + (b2 - 10)));
-		}
-		return (result.toString());
+	protected String generateSessionId() {
+
+		return (sessionIdGenerator.generateSessionId());
 
 	}
 
@@ -75,6 +75,7 @@ import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Session;
 import org.apache.catalina.Store;
+import org.apache.catalina.util.BackgroundScheduler;
 import org.apache.catalina.util.LifecycleSupport;
 
 
@@ -99,6 +100,22 @@ public abstract class PersistentManagerBase
 	// ----------------------------------------------------- Instance Variables
 
 
+	/**
+	 * The periodic background processing of this Manager, while it is
+	 * started.
+	 */
+	private BackgroundScheduler.Task backgroundTask = null;
+
+
+	/**
+	 * The background thread completion semaphore.
+	 *
+	 * @deprecated The background processing is run by a task of the
+	 *             background scheduler, this is not used
+	 */
+	protected boolean threadDone = false;
+
+
 	/**
 	 * The interval (in seconds) between checks for expired sessions.
 	 */
@@ -135,24 +152,6 @@ public abstract class PersistentManagerBase
 	private boolean started = false;
 
 
-	/**
-	 * The background thread.
-	 */
-	private Thread thread = null;
-
-
-	/**
-	 * The background thread completion semaphore.
-	 */
-	protected boolean threadDone = false;
-
-
-	/**
-	 * Name to register for the background thread.
-	 */
-	private String threadName = "PersistentManagerBase";
-
-
 	/**
 	 * Store object which will manage the Session store.
 	 */
@@ -210,6 +209,8 @@ public abstract class PersistentManagerBase
 
 		int oldCheckInterval = this.checkInterval;
 		this.checkInterval = checkInterval;
+		if (backgroundTask != null)
+			backgroundTask.setInterval(checkInterval * 1000L);
 		support.firePropertyChange("checkInterval",
 				new Integer(oldCheckInterval),
 				new Integer(this.checkInterval));
@@ -522,7 +523,7 @@ public abstract class PersistentManagerBase
 	public Session createSession() {
 
 		if ((maxActiveSessions >= 0) &&
-				(sessions.size() >= maxActiveSessions))
+				(getActiveSessions() >= maxActiveSessions))
 			throw new IllegalStateException
 					(sm.getString("standardManager.createSession.ise"));
 
@@ -836,7 +837,7 @@ public abstract class PersistentManagerBase
 		else if (store instanceof Lifecycle)
 			((Lifecycle) store).start();
 
-		// Start the background reaper thread
+		// Start the periodic background processing
 		threadStart();
 
 	}
@@ -862,7 +863,7 @@ public abstract class PersistentManagerBase
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		setStarted(false);
 
-		// Stop the background reaper thread
+		// Stop the periodic background processing
 		threadStop();
 
 		if (getStore() != null && saveOnRestart) {
@@ -941,23 +942,15 @@ public abstract class PersistentManagerBase
 
 
 	/**
-	 * Invalidate all sessions that have expired.
+	 * Invalidate all sessions that have expired, looking only at the
+	 * sessions filed in the expiry wheel under the seconds which have passed.
 	 */
 	protected void processExpires() {
 
 		if (!started)
 			return;
 
-		long timeNow = System.currentTimeMillis();
-		Session sessions[] = findSessions();
-
-		for (int i = 0; i < sessions.length; i++) {
-			StandardSession session = (StandardSession) sessions[i];
-			if (!session.isValid())
-				continue;
-			if (isSessionStale(session, timeNow))
-				session.expire();
-		}
+		expiry.expire(System.currentTimeMillis());
 
 	}
 
@@ -1079,9 +1072,15 @@ public abstract class PersistentManagerBase
 	}
 
 
+	// ------------------------------------------------------ Background Thread
+
+
 	/**
 	 * Sleep for the duration specified by the <code>checkInterval</code>
 	 * property.
+	 *
+	 * @deprecated The background processing is run by a task of the
+	 *             background scheduler, which does not sleep
 	 */
 	protected void threadSleep() {
 
@@ -1095,58 +1094,48 @@ public abstract class PersistentManagerBase
 
 
 	/**
-	 * Start the background thread that will periodically check for
-	 * session timeouts.
+	 * Start the periodic background processing of this Manager, on the
+	 * background scheduler of our Engine.
 	 */
 	protected void threadStart() {
 
-		if (thread != null)
+		if (backgroundTask != null)
 			return;
 
-		threadDone = false;
-		threadName = "StandardManager[" + container.getName() + "]";
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.start();
+		backgroundTask = BackgroundScheduler.getScheduler(container).schedule
+				("PersistentManager[" + container.getName() + "]", this,
+						checkInterval * 1000L, container);
 
 	}
 
 
 	/**
-	 * Stop the background thread that is periodically checking for
-	 * session timeouts.
+	 * Stop the periodic background processing of this Manager, waiting for
+	 * the current run, if any, to complete.
 	 */
 	protected void threadStop() {
 
-		if (thread == null)
+		if (backgroundTask == null)
 			return;
 
-		threadDone = true;
-		thread.interrupt();
-		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			;
-		}
-
-		thread = null;
+		backgroundTask.cancel();
+		backgroundTask = null;
 
 	}
 
 
-	// ------------------------------------------------------ Background Thread
-
-
 	/**
-	 * The background thread that checks for session timeouts and shutdown.
+	 * Expire the sessions which have timed out, and swap sessions out to
+	 * the Store as configured.  This is run periodically by the background
+	 * scheduler of our Engine.
 	 */
 	public void run() {
 
-		// Loop until the termination semaphore is set
-		while (!threadDone) {
-			threadSleep();
+		try {
 			processExpires();
 			processPersistenceChecks();
+		} catch (Throwable t) {
+			log(sm.getString("persistentManager.backgroundException"), t);
 		}
 
 	}
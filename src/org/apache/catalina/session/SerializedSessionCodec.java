@@ -0,0 +1,66 @@
+package org.apache.catalina.session;
+
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.catalina.Session;
+
+
+/**
+ * Session codec writing the contents of a session in the format of Java
+ * serialization, which the earlier versions of the managers and stores
+ * read and write.  It reads both that format and the format of
+ * <code>BinarySessionCodec</code>, so that the sessions saved before
+ * switching to it are not lost.
+ */
+
+public final class SerializedSessionCodec implements SessionCodec {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The codec telling the two formats apart when reading.
+	 */
+	private static final SessionCodec reader = new BinarySessionCodec();
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Read the contents of the specified session from the specified stream.
+	 *
+	 * @param session The session, which is not active yet
+	 * @param stream  The stream to read from
+	 * @throws ClassNotFoundException if the class of an attribute value
+	 *                                cannot be found
+	 * @throws IOException            if an input/output error occurs
+	 */
+	public void readSession(Session session, ObjectInputStream stream)
+			throws ClassNotFoundException, IOException {
+
+		reader.readSession(session, stream);
+
+	}
+
+
+	/**
+	 * Write the contents of the specified session to the specified stream.
+	 *
+	 * @param session The session
+	 * @param stream  The stream to write to
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void writeSession(Session session, ObjectOutputStream stream)
+			throws IOException {
+
+		((StandardSession) session).writeSerializedData(stream);
+
+	}
+
+
+}
@@ -0,0 +1,51 @@
+package org.apache.catalina.session;
+
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.catalina.Session;
+
+
+/**
+ * A <b>SessionCodec</b> writes the contents of a session to a stream, and
+ * reads them back, when the sessions of a <code>ManagerBase</code> are
+ * saved across restarts, swapped out to a <code>Store</code>, or
+ * replicated to the other members of a cluster.  The streams are object
+ * streams, so that a codec can fall back to Java serialization for the
+ * attribute values it has no better format for; the input stream resolves
+ * classes with the class loader of the web application.
+ */
+
+public interface SessionCodec {
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Read the contents of the specified session from the specified stream.
+	 *
+	 * @param session The session, which is not active yet
+	 * @param stream  The stream to read from
+	 * @throws ClassNotFoundException if the class of an attribute value
+	 *                                cannot be found
+	 * @throws IOException            if an input/output error occurs
+	 */
+	public void readSession(Session session, ObjectInputStream stream)
+			throws ClassNotFoundException, IOException;
+
+
+	/**
+	 * Write the contents of the specified session to the specified stream.
+	 *
+	 * @param session The session
+	 * @param stream  The stream to write to
+	 * @throws IOException if an input/output error occurs
+	 */
+	public void writeSession(Session session, ObjectOutputStream stream)
+			throws IOException;
+
+
+}
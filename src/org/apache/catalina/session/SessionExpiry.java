@@ -0,0 +1,233 @@
+package org.apache.catalina.session;
+
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+
+/**
+ * Timing wheel of the sessions of a manager, in which a session is filed
+ * under the second at which it would expire if it were not accessed again,
+ * so that expiring the sessions only looks at the sessions filed under the
+ * seconds which have passed, instead of at all the sessions.
+ * <p>
+ * Accessing a session does not move it in the wheel: when its second comes,
+ * a session which has been accessed since it was filed is filed again under
+ * its new expiration time, so that a session is looked at about once per
+ * inactive interval whatever the number of requests.  Changing the maximum
+ * inactive interval of a session files it again at once.
+ * <p>
+ * A session is added to or removed from a slot, and its
+ * <code>expiryTick</code> changed, only while holding the lock of that slot,
+ * and only if its <code>expiryTick</code> still holds the value which was
+ * read, so that filing a session again never races with the expiration of
+ * the sessions of its previous slot.
+ */
+
+final class SessionExpiry {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new wheel for the sessions of the specified manager.
+	 *
+	 * @param manager The manager
+	 */
+	SessionExpiry(ManagerBase manager) {
+
+		this.manager = manager;
+		for (int i = 0; i < SLOTS; i++)
+			slots[i] = new HashSet<StandardSession>();
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The last second of which the sessions have been looked at.
+	 */
+	private volatile long lastTick = System.currentTimeMillis() / 1000L;
+
+
+	/**
+	 * The manager of the sessions.
+	 */
+	private ManagerBase manager;
+
+
+	/**
+	 * The number of seconds of the wheel.  A session expiring more than
+	 * this number of seconds ahead is looked at once per revolution until
+	 * its second comes.
+	 */
+	private static final int SLOTS = 1024;
+
+
+	/**
+	 * The sessions filed under each second, modulo <code>SLOTS</code>.
+	 */
+	private final Set<StandardSession> slots[] = new Set[SLOTS];
+
+
+	/**
+	 * Updater of the second under which a session is filed, or -1 if it is
+	 * not filed.
+	 */
+	private static final AtomicLongFieldUpdater<StandardSession> EXPIRY_TICK =
+		AtomicLongFieldUpdater.newUpdater(StandardSession.class, "expiryTick");
+
+
+	// -------------------------------------------------------- Package Methods
+
+
+	/**
+	 * Remove the specified session from this wheel.
+	 *
+	 * @param session The session
+	 */
+	void cancel(StandardSession session) {
+
+		while (true) {
+			long tick = session.expiryTick;
+			if (tick < 0L)
+				return;
+			Set<StandardSession> slot = slots[(int) (tick % SLOTS)];
+			synchronized (slot) {
+				if (EXPIRY_TICK.compareAndSet(session, tick, -1L)) {
+					slot.remove(session);
+					return;
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Remove all the sessions from this wheel.
+	 */
+	void clear() {
+
+		for (int i = 0; i < SLOTS; i++) {
+			synchronized (slots[i]) {
+				Iterator sessions = slots[i].iterator();
+				while (sessions.hasNext())
+					((StandardSession) sessions.next()).expiryTick = -1L;
+				slots[i].clear();
+			}
+		}
+
+	}
+
+
+	/**
+	 * Expire the sessions filed under the seconds which have passed, and
+	 * file the others again under their new expiration time.
+	 *
+	 * @param timeNow The current time, in milliseconds
+	 */
+	synchronized void expire(long timeNow) {
+
+		long now = timeNow / 1000L;
+		long tick = Math.max(lastTick + 1, now - SLOTS + 1);
+		ArrayList due = new ArrayList();
+		for (; tick <= now; tick++) {
+			Set<StandardSession> slot = slots[(int) (tick % SLOTS)];
+			synchronized (slot) {
+				Iterator sessions = slot.iterator();
+				while (sessions.hasNext()) {
+					StandardSession session = (StandardSession) sessions.next();
+					long filed = session.expiryTick;
+					if (filed > now)
+						continue;
+					sessions.remove();
+					if ((filed >= 0L)
+							&& EXPIRY_TICK.compareAndSet(session, filed, -1L))
+						due.add(session);
+				}
+			}
+		}
+
+		// Expire the sessions outside of the slot locks, since their
+		// listeners may take a while
+		for (int i = 0; i < due.size(); i++) {
+			StandardSession session = (StandardSession) due.get(i);
+			if (!session.isValid())
+				continue;
+			// Filed again in the meantime by a change of its interval
+			if (session.expiryTick >= 0L)
+				continue;
+			int maxInactiveInterval = session.getMaxInactiveInterval();
+			if (maxInactiveInterval < 0)
+				continue;
+			if (timeNow - session.getLastAccessedTime()
+					>= maxInactiveInterval * 1000L) {
+				try {
+					session.expire();
+				} catch (Throwable t) {
+					manager.log(ManagerBase.sm.getString
+							("standardManager.expireException"), t);
+				}
+			} else {
+				file(session, now);
+			}
+		}
+		lastTick = now;
+
+	}
+
+
+	/**
+	 * File the specified session under its expiration time, or remove it
+	 * if it never expires.
+	 *
+	 * @param session The session
+	 */
+	void schedule(StandardSession session) {
+
+		do {
+			cancel(session);
+			if (session.getMaxInactiveInterval() < 0)
+				return;
+		} while (!file(session, lastTick));
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * File the specified session under the second at which it expires,
+	 * which is at least the second after the specified one, unless it has
+	 * been filed by another thread in the meantime.
+	 *
+	 * @param session The session
+	 * @param after   The last second of which the sessions have been looked
+	 *                at
+	 * @return <code>true</code> if the session has been filed
+	 */
+	private boolean file(StandardSession session, long after) {
+
+		long deadline = session.getLastAccessedTime()
+				+ session.getMaxInactiveInterval() * 1000L;
+		long tick = Math.max((deadline + 999L) / 1000L, after + 1);
+		Set<StandardSession> slot = slots[(int) (tick % SLOTS)];
+		synchronized (slot) {
+			if (!EXPIRY_TICK.compareAndSet(session, -1L, tick))
+				return (false);
+			slot.add(session);
+		}
+		return (true);
+
+	}
+
+
+}
@@ -87,6 +87,7 @@ import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Loader;
 import org.apache.catalina.Session;
+import org.apache.catalina.util.BackgroundScheduler;
 import org.apache.catalina.util.CustomObjectInputStream;
 import org.apache.catalina.util.LifecycleSupport;
 
@@ -113,6 +114,13 @@ public class StandardManager
 	// ----------------------------------------------------- Instance Variables
 
 
+	/**
+	 * The periodic expiration of the sessions, while this Manager is
+	 * started.
+	 */
+	private BackgroundScheduler.Task backgroundTask = null;
+
+
 	/**
 	 * The interval (in seconds) between checks for expired sessions.
 	 */
@@ -160,24 +168,6 @@ public class StandardManager
 	private boolean started = false;
 
 
-	/**
-	 * The background thread.
-	 */
-	private Thread thread = null;
-
-
-	/**
-	 * The background thread completion semaphore.
-	 */
-	private boolean threadDone = false;
-
-
-	/**
-	 * Name to register for the background thread.
-	 */
-	private String threadName = "StandardManager";
-
-
 	// ------------------------------------------------------------- Properties
 
 
@@ -200,6 +190,8 @@ public class StandardManager
 
 		int oldCheckInterval = this.checkInterval;
 		this.checkInterval = checkInterval;
+		if (backgroundTask != null)
+			backgroundTask.setInterval(checkInterval * 1000L);
 		support.firePropertyChange("checkInterval",
 				new Integer(oldCheckInterval),
 				new Integer(this.checkInterval));
@@ -324,7 +316,7 @@ public class StandardManager
 	public Session createSession() {
 
 		if ((maxActiveSessions >= 0) &&
-				(sessions.size() >= maxActiveSessions))
+				(getActiveSessions() >= maxActiveSessions))
 			throw new IllegalStateException
 					(sm.getString("standardManager.createSession.ise"));
 
@@ -396,54 +388,52 @@ public class StandardManager
 		}
 
 		// Load the previously unloaded active sessions
-		synchronized (sessions) {
-			try {
-				Integer count = (Integer) ois.readObject();
-				int n = count.intValue();
-				if (debug >= 1)
-					log("Loading " + n + " persisted sessions");
-				for (int i = 0; i < n; i++) {
-					StandardSession session = new StandardSession(this);
-					session.readObjectData(ois);
-					session.setManager(this);
-					sessions.put(session.getId(), session);
-					((StandardSession) session).activate();
-				}
-			} catch (ClassNotFoundException e) {
-				log(sm.getString("standardManager.loading.cnfe", e), e);
-				if (ois != null) {
-					try {
-						ois.close();
-					} catch (IOException f) {
-						;
-					}
-					ois = null;
-				}
-				throw e;
-			} catch (IOException e) {
-				log(sm.getString("standardManager.loading.ioe", e), e);
-				if (ois != null) {
-					try {
-						ois.close();
-					} catch (IOException f) {
-						;
-					}
-					ois = null;
+		try {
+			Integer count = (Integer) ois.readObject();
+			int n = count.intValue();
+			if (debug >= 1)
+				log("Loading " + n + " persisted sessions");
+			for (int i = 0; i < n; i++) {
+				StandardSession session = new StandardSession(this);
+				session.readObjectData(ois);
+				session.setManager(this);
+				add(session);
+				((StandardSession) session).activate();
+			}
+		} catch (ClassNotFoundException e) {
+			log(sm.getString("standardManager.loading.cnfe", e), e);
+			if (ois != null) {
+				try {
+					ois.close();
+				} catch (IOException f) {
+					;
 				}
-				throw e;
-			} finally {
-				// Close the input stream
+				ois = null;
+			}
+			throw e;
+		} catch (IOException e) {
+			log(sm.getString("standardManager.loading.ioe", e), e);
+			if (ois != null) {
 				try {
-					if (ois != null)
-						ois.close();
+					ois.close();
 				} catch (IOException f) {
-					// ignored
+					;
 				}
-
-				// Delete the persistent storage file
-				if (file != null && file.exists())
-					file.delete();
+				ois = null;
+			}
+			throw e;
+		} finally {
+			// Close the input stream
+			try {
+				if (ois != null)
+					ois.close();
+			} catch (IOException f) {
+				// ignored
 			}
+
+			// Delete the persistent storage file
+			if (file != null && file.exists())
+				file.delete();
 		}
 
 		if (debug >= 1)
@@ -487,33 +477,31 @@ public class StandardManager
 			throw e;
 		}
 
-		// Write the number of active sessions, followed by the details
+		// Write the number of active sessions, followed by the details of
+		// the sessions which were active when the count was taken
 		ArrayList list = new ArrayList();
-		synchronized (sessions) {
-			if (debug >= 1)
-				log("Unloading " + sessions.size() + " sessions");
-			try {
-				oos.writeObject(new Integer(sessions.size()));
-				Iterator elements = sessions.values().iterator();
-				while (elements.hasNext()) {
-					StandardSession session =
-							(StandardSession) elements.next();
-					list.add(session);
-					((StandardSession) session).passivate();
-					session.writeObjectData(oos);
-				}
-			} catch (IOException e) {
-				log(sm.getString("standardManager.unloading.ioe", e), e);
-				if (oos != null) {
-					try {
-						oos.close();
-					} catch (IOException f) {
-						;
-					}
-					oos = null;
+		Session sessions[] = findSessions();
+		if (debug >= 1)
+			log("Unloading " + sessions.length + " sessions");
+		try {
+			oos.writeObject(new Integer(sessions.length));
+			for (int i = 0; i < sessions.length; i++) {
+				StandardSession session = (StandardSession) sessions[i];
+				list.add(session);
+				((StandardSession) session).passivate();
+				session.writeObjectData(oos);
+			}
+		} catch (IOException e) {
+			log(sm.getString("standardManager.unloading.ioe", e), e);
+			if (oos != null) {
+				try {
+					oos.close();
+				} catch (IOException f) {
+					;
 				}
-				throw e;
+				oos = null;
 			}
+			throw e;
 		}
 
 		// Flush and close the output stream
@@ -624,8 +612,10 @@ public class StandardManager
 			log(sm.getString("standardManager.managerLoad"), t);
 		}
 
-		// Start the background reaper thread
-		threadStart();
+		// Start expiring the sessions periodically
+		backgroundTask = BackgroundScheduler.getScheduler(container).schedule
+				("StandardManager[" + container.getName() + "]", this,
+						checkInterval * 1000L, container);
 
 	}
 
@@ -650,8 +640,11 @@ public class StandardManager
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		started = false;
 
-		// Stop the background reaper thread
-		threadStop();
+		// Stop expiring the sessions periodically
+		if (backgroundTask != null) {
+			backgroundTask.cancel();
+			backgroundTask = null;
+		}
 
 		// Write out sessions
 		try {
@@ -737,104 +730,27 @@ public class StandardManager
 	}
 
 
-	/**
-	 * Invalidate all sessions that have expired.
-	 */
-	private void processExpires() {
-
-		long timeNow = System.currentTimeMillis();
-		Session sessions[] = findSessions();
-
-		for (int i = 0; i < sessions.length; i++) {
-			StandardSession session = (StandardSession) sessions[i];
-			if (!session.isValid())
-				continue;
-			int maxInactiveInterval = session.getMaxInactiveInterval();
-			if (maxInactiveInterval < 0)
-				continue;
-			int timeIdle = // Truncate, do not round up
-					(int) ((timeNow - session.getLastAccessedTime()) / 1000L);
-			if (timeIdle >= maxInactiveInterval) {
-				try {
-					session.expire();
-				} catch (Throwable t) {
-					log(sm.getString("standardManager.expireException"), t);
-				}
-			}
-		}
-
-	}
-
-
-	/**
-	 * Sleep for the duration specified by the <code>checkInterval</code>
-	 * property.
-	 */
-	private void threadSleep() {
-
-		try {
-			Thread.sleep(checkInterval * 1000L);
-		} catch (InterruptedException e) {
-			;
-		}
-
-	}
-
-
-	/**
-	 * Start the background thread that will periodically check for
-	 * session timeouts.
-	 */
-	private void threadStart() {
-
-		if (thread != null)
-			return;
-
-		threadDone = false;
-		threadName = "StandardManager[" + container.getName() + "]";
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.setContextClassLoader(container.getLoader().getClassLoader());
-		thread.start();
-
-	}
+	// ------------------------------------------------------ Background Thread
 
 
 	/**
-	 * Stop the background thread that is periodically checking for
-	 * session timeouts.
+	 * Expire the sessions which have timed out, with the class loader of
+	 * our web application as the context class loader.  This is run
+	 * periodically by the background scheduler of our Engine.
 	 */
-	private void threadStop() {
-
-		if (thread == null)
-			return;
+	public void run() {
 
-		threadDone = true;
-		thread.interrupt();
+		Loader loader = (container != null) ? container.getLoader() : null;
+		if (loader != null)
+			Thread.currentThread().setContextClassLoader
+					(loader.getClassLoader());
 		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			;
+			expiry.expire(System.currentTimeMillis());
+		} catch (Throwable t) {
+			log(sm.getString("standardManager.expireException"), t);
 		}
 
-		thread = null;
-
 	}
 
 
-	// ------------------------------------------------------ Background Thread
-
-
-	/**
-	 * The background thread that checks for session timeouts and shutdown.
-	 */
-	public void run() {
-
-		// Loop until the termination semaphore is set
-		while (!threadDone) {
-			threadSleep();
-			processExpires();
-		}
-
-	}
 }
@@ -71,6 +71,7 @@ import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.WriteAbortedException;
 import java.lang.reflect.Method;
 import java.security.Principal;
 import java.util.ArrayList;
@@ -108,8 +109,9 @@ import org.apache.catalina.util.StringManager;
  * HttpSession view of this instance back to a Session view.
  * <p/>
  * <b>IMPLEMENTATION NOTE</b>:  If you add fields to this class, you must
- * make sure that you carry them over in the read/writeObject methods so
- * that this class is properly serialized.
+ * make sure that you carry them over in the read/writeObject methods, and
+ * in the <code>SessionCodec</code> implementations, so that this class is
+ * properly serialized.
  *
  * @author Craig R. McClanahan
  * @author Sean Legassick
@@ -146,14 +148,14 @@ class StandardSession
 	 * The dummy attribute value serialized when a NotSerializableException is
 	 * encountered in <code>writeObject()</code>.
 	 */
-	private static final String NOT_SERIALIZED =
+	static final String NOT_SERIALIZED =
 			"___NOT_SERIALIZABLE_EXCEPTION___";
 
 
 	/**
 	 * The collection of user data attributes associated with this Session.
 	 */
-	private HashMap attributes = new HashMap();
+	HashMap attributes = new HashMap();
 
 
 	/**
@@ -186,7 +188,7 @@ class StandardSession
 	 * The time this session was created, in milliseconds since midnight,
 	 * January 1, 1970 GMT.
 	 */
-	private long creationTime = 0L;
+	long creationTime = 0L;
 
 
 	/**
@@ -214,7 +216,14 @@ class StandardSession
 	/**
 	 * The session identifier of this Session.
 	 */
-	private String id = null;
+	String id = null;
+
+
+	/**
+	 * The second under which this Session is filed in the expiry wheel of
+	 * its Manager, or -1 if it is not filed.
+	 */
+	transient volatile long expiryTick = -1L;
 
 
 	/**
@@ -226,7 +235,7 @@ class StandardSession
 	/**
 	 * The last accessed time for this Session.
 	 */
-	private long lastAccessedTime = creationTime;
+	long lastAccessedTime = creationTime;
 
 
 	/**
@@ -246,19 +255,19 @@ class StandardSession
 	 * the servlet container may invalidate this session.  A negative time
 	 * indicates that the session should never time out.
 	 */
-	private int maxInactiveInterval = -1;
+	int maxInactiveInterval = -1;
 
 
 	/**
 	 * Flag indicating whether this session is new or not.
 	 */
-	private boolean isNew = false;
+	boolean isNew = false;
 
 
 	/**
 	 * Flag indicating whether this session is valid or not.
 	 */
-	private boolean isValid = false;
+	boolean isValid = false;
 
 
 	/**
@@ -301,7 +310,7 @@ class StandardSession
 	/**
 	 * The current accessed time for this session.
 	 */
-	private long thisAccessedTime = creationTime;
+	long thisAccessedTime = creationTime;
 
 
 	// ----------------------------------------------------- Session Properties
@@ -481,6 +490,8 @@ class StandardSession
 	public void setMaxInactiveInterval(int interval) {
 
 		this.maxInactiveInterval = interval;
+		if ((id != null) && (manager instanceof ManagerBase))
+			((ManagerBase) manager).expiry.schedule(this);
 
 	}
 
@@ -838,7 +849,8 @@ class StandardSession
 	/**
 	 * Read a serialized version of the contents of this session object from
 	 * the specified object input stream, without requiring that the
-	 * StandardSession itself have been serialized.
+	 * StandardSession itself have been serialized.  The contents are read
+	 * by the session codec of our Manager.
 	 *
 	 * @param stream The object input stream to read from
 	 * @throws ClassNotFoundException if an unknown class is specified
@@ -847,6 +859,25 @@ class StandardSession
 	void readObjectData(ObjectInputStream stream)
 			throws ClassNotFoundException, IOException {
 
+		if (manager instanceof ManagerBase)
+			((ManagerBase) manager).codec.readSession(this, stream);
+		else
+			readObject(stream);
+
+	}
+
+
+	/**
+	 * Read the contents of this session object from the specified object
+	 * input stream, in the format of Java serialization.
+	 *
+	 * @param stream The object input stream to read from
+	 * @throws ClassNotFoundException if an unknown class is specified
+	 * @throws IOException            if an input/output error occurs
+	 */
+	void readSerializedData(ObjectInputStream stream)
+			throws ClassNotFoundException, IOException {
+
 		readObject(stream);
 
 	}
@@ -855,7 +886,8 @@ class StandardSession
 	/**
 	 * Write a serialized version of the contents of this session object to
 	 * the specified object output stream, without requiring that the
-	 * StandardSession itself have been serialized.
+	 * StandardSession itself have been serialized.  The contents are
+	 * written by the session codec of our Manager.
 	 *
 	 * @param stream The object output stream to write to
 	 * @throws IOException if an input/output error occurs
@@ -863,6 +895,24 @@ class StandardSession
 	void writeObjectData(ObjectOutputStream stream)
 			throws IOException {
 
+		if (manager instanceof ManagerBase)
+			((ManagerBase) manager).codec.writeSession(this, stream);
+		else
+			writeObject(stream);
+
+	}
+
+
+	/**
+	 * Write the contents of this session object to the specified object
+	 * output stream, in the format of Java serialization.
+	 *
+	 * @param stream The object output stream to write to
+	 * @throws IOException if an input/output error occurs
+	 */
+	void writeSerializedData(ObjectOutputStream stream)
+			throws IOException {
+
 		writeObject(stream);
 
 	}
@@ -1339,7 +1389,13 @@ class StandardSession
 		isValid = true;
 		for (int i = 0; i < n; i++) {
 			String name = (String) stream.readObject();
-			Object value = (Object) stream.readObject();
+			Object value = null;
+			try {
+				value = (Object) stream.readObject();
+			} catch (WriteAbortedException e) {
+				// The value could not be serialized, and was replaced
+				value = (Object) stream.readObject();
+			}
 			if ((value instanceof String) && (value.equals(NOT_SERIALIZED)))
 				continue;
 			if (debug >= 2)
@@ -1415,6 +1471,7 @@ class StandardSession
 			} catch (NotSerializableException e) {
 				log(sm.getString("standardSession.notSerializable",
 						saveNames.get(i), id), e);
+				stream.reset();
 				stream.writeObject(NOT_SERIALIZED);
 				if (debug >= 2)
 					log("  storing attribute '" + saveNames.get(i) +
@@ -75,6 +75,7 @@ import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Logger;
 import org.apache.catalina.Manager;
 import org.apache.catalina.Store;
+import org.apache.catalina.util.BackgroundScheduler;
 import org.apache.catalina.util.LifecycleSupport;
 import org.apache.catalina.util.StringManager;
 
@@ -102,7 +103,7 @@ public abstract class StoreBase
 	protected int checkInterval = 60;
 
 	/**
-	 * Name to register for the background thread.
+	 * Name to register for the background task.
 	 */
 	protected String threadName = "StoreBase";
 
@@ -111,13 +112,26 @@ public abstract class StoreBase
 	 */
 	protected static String storeName = "StoreBase";
 
+	/**
+	 * The periodic expiration of the stored sessions, while this Store is
+	 * started.
+	 */
+	protected BackgroundScheduler.Task backgroundTask = null;
+
 	/**
 	 * The background thread.
+	 *
+	 * @deprecated The stored sessions are expired by
+	 *             <code>backgroundTask</code>, this is always
+	 *             <code>null</code>
 	 */
 	protected Thread thread = null;
 
 	/**
 	 * The background thread completion semaphore.
+	 *
+	 * @deprecated The stored sessions are expired by
+	 *             <code>backgroundTask</code>, this is not used
 	 */
 	protected boolean threadDone = false;
 
@@ -199,6 +213,8 @@ public abstract class StoreBase
 	public void setCheckInterval(int checkInterval) {
 		int oldCheckInterval = this.checkInterval;
 		this.checkInterval = checkInterval;
+		if (backgroundTask != null)
+			backgroundTask.setInterval(checkInterval * 1000L);
 		support.firePropertyChange("checkInterval",
 				new Integer(oldCheckInterval),
 				new Integer(this.checkInterval));
@@ -282,7 +298,7 @@ public abstract class StoreBase
 	// --------------------------------------------------------- Protected Methods
 
 	/**
-	 * Called by our background reaper thread to check if Sessions
+	 * Called by our background task to check if Sessions
 	 * saved in our store are subject of being expired. If so expire
 	 * the Session and remove it from the Store.
 	 */
@@ -355,17 +371,47 @@ public abstract class StoreBase
 		}
 	}
 
+	/**
+	 * Log a message and an exception on the Logger associated with our
+	 * Container (if any).
+	 *
+	 * @param message   Message to be logged
+	 * @param throwable Associated exception
+	 */
+	protected void log(String message, Throwable throwable) {
+		Logger logger = null;
+		Container container = manager.getContainer();
+
+		if (container != null)
+			logger = container.getLogger();
+
+		if (logger != null) {
+			logger.log(getStoreName() + "[" + container.getName() + "]: "
+					+ message, throwable);
+		} else {
+			String containerName = null;
+			if (container != null)
+				containerName = container.getName();
+			System.out.println(getStoreName() + "[" + containerName
+					+ "]: " + message);
+			throwable.printStackTrace(System.out);
+		}
+	}
+
 	// --------------------------------------------------------- Thread Methods
 
 	/**
-	 * The background thread that checks for session timeouts and shutdown.
+	 * Expire the stored sessions which have timed out.  This is run
+	 * periodically by the background scheduler of our Engine.
 	 */
 	public void run() {
-		// Loop until the termination semaphore is set
-		while (!threadDone) {
-			threadSleep();
+
+		try {
 			processExpires();
+		} catch (Throwable t) {
+			log(sm.getString(getStoreName() + ".backgroundException"), t);
 		}
+
 	}
 
 	/**
@@ -384,7 +430,7 @@ public abstract class StoreBase
 		lifecycle.fireLifecycleEvent(START_EVENT, null);
 		started = true;
 
-		// Start the background reaper thread
+		// Start expiring the stored sessions periodically
 		threadStart();
 	}
 
@@ -404,27 +450,33 @@ public abstract class StoreBase
 		lifecycle.fireLifecycleEvent(STOP_EVENT, null);
 		started = false;
 
-		// Stop the background reaper thread
+		// Stop expiring the stored sessions periodically
 		threadStop();
 	}
 
+	// ------------------------------------------------------ Background Task
+
 	/**
-	 * Start the background thread that will periodically check for
-	 * session timeouts.
+	 * Start expiring the stored sessions periodically, on the background
+	 * scheduler of our Engine.
 	 */
 	protected void threadStart() {
-		if (thread != null)
+		if (backgroundTask != null)
 			return;
 
-		threadDone = false;
-		thread = new Thread(this, getThreadName());
-		thread.setDaemon(true);
-		thread.start();
+		Container container =
+				(manager != null) ? manager.getContainer() : null;
+		backgroundTask = BackgroundScheduler.getScheduler(container)
+				.schedule(getThreadName(), this, checkInterval * 1000L,
+						container);
 	}
 
 	/**
 	 * Sleep for the duration specified by the <code>checkInterval</code>
 	 * property.
+	 *
+	 * @deprecated The stored sessions are expired by
+	 *             <code>backgroundTask</code>, which does not sleep
 	 */
 	protected void threadSleep() {
 		try {
@@ -435,21 +487,14 @@ public abstract class StoreBase
 	}
 
 	/**
-	 * Stop the background thread that is periodically checking for
-	 * session timeouts.
+	 * Stop expiring the stored sessions periodically, waiting for the
+	 * current run, if any, to complete.
 	 */
 	protected void threadStop() {
-		if (thread == null)
+		if (backgroundTask == null)
 			return;
 
-		threadDone = true;
-		thread.interrupt();
-		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			;
-		}
-
-		thread = null;
+		backgroundTask.cancel();
+		backgroundTask = null;
 	}
 }
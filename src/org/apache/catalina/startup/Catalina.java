@@ -302,6 +302,10 @@ public class Catalina {
 		digester.addSetProperties("Server/Service/Listener");
 		digester.addSetNext("Server/Service/Listener","addLifecycleListener","org.apache.catalina.LifecycleListener");
 
+		digester.addObjectCreate("Server/Service/Executor","org.apache.catalina.core.StandardThreadExecutor","className");
+		digester.addSetProperties("Server/Service/Executor");
+		digester.addSetNext("Server/Service/Executor","addExecutor","org.apache.catalina.Executor");
+
 		digester.addObjectCreate("Server/Service/Connector", "org.apache.catalina.connector.http.HttpConnector","className");
 		digester.addSetProperties("Server/Service/Connector");
 		digester.addSetNext("Server/Service/Connector", "addConnector", "org.apache.catalina.Connector");
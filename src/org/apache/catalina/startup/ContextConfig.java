@@ -83,6 +83,7 @@ import java.util.jar.JarFile;
 import javax.naming.NamingException;
 import javax.naming.NameClassPair;
 import javax.naming.NamingEnumeration;
+import javax.naming.directory.Attributes;
 import javax.naming.directory.DirContext;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -92,6 +93,7 @@ import org.apache.catalina.Connector;
 import org.apache.catalina.Container;
 import org.apache.catalina.Context;
 import org.apache.catalina.Engine;
+import org.apache.catalina.Globals;
 import org.apache.catalina.Host;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleEvent;
@@ -111,6 +113,7 @@ import org.apache.catalina.deploy.LoginConfig;
 import org.apache.catalina.deploy.SecurityConstraint;
 import org.apache.catalina.util.StringManager;
 import org.apache.commons.digester.Digester;
+import org.apache.naming.resources.ResourceAttributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXParseException;
 
@@ -163,17 +166,33 @@ public final class ContextConfig implements LifecycleListener {
 
 
 	/**
-	 * The <code>Digester</code> we will use to process tag library
-	 * descriptor files.
+	 * The name of the file of the work directory of the application which
+	 * stores the listeners declared by the TLDs of its JAR files.
 	 */
-	private static Digester tldDigester = createTldDigester();
+	private static final String TLD_CACHE = "tldCache.properties";
 
 
 	/**
-	 * The <code>Digester</code> we will use to process web application
+	 * The <code>Digester</code> each thread uses to process tag library
+	 * descriptor files, so that several applications can be configured
+	 * concurrently.
+	 */
+	private static ThreadLocal tldDigesters = new ThreadLocal() {
+		protected Object initialValue() {
+			return (createTldDigester());
+		}
+	};
+
+
+	/**
+	 * The <code>Digester</code> each thread uses to process web application
 	 * deployment descriptor files.
 	 */
-	private static Digester webDigester = createWebDigester();
+	private static ThreadLocal webDigesters = new ThreadLocal() {
+		protected Object initialValue() {
+			return (createWebDigester());
+		}
+	};
 
 
 	// ------------------------------------------------------------- Properties
@@ -252,36 +271,36 @@ public final class ContextConfig implements LifecycleListener {
 		}
 
 		// Process the application web.xml file
-		synchronized (webDigester) {
-			try {
-				URL url = servletContext.getResource(Constants.ApplicationWebXml);
+		Digester webDigester = (Digester) webDigesters.get();
+		try {
+			URL url = servletContext.getResource(Constants.ApplicationWebXml);
 
-				InputSource is = new InputSource(url.toExternalForm());
-				is.setByteStream(stream);
-				webDigester.setDebug(getDebug());
-				if (context instanceof StandardContext) {
-					((StandardContext) context).setReplaceWelcomeFiles(true);
-				}
-				webDigester.clear();
-				webDigester.push(context);
-				webDigester.parse(is);
-			} catch (SAXParseException e) {
-				log(sm.getString("contextConfig.applicationParse"), e);
-				log(sm.getString("contextConfig.applicationPosition",
-						"" + e.getLineNumber(),
-						"" + e.getColumnNumber()));
-				ok = false;
-			} catch (Exception e) {
-				log(sm.getString("contextConfig.applicationParse"), e);
-				ok = false;
-			} finally {
-				try {
-					if (stream != null) {
-						stream.close();
-					}
-				} catch (IOException e) {
-					log(sm.getString("contextConfig.applicationClose"), e);
+			InputSource is = new InputSource(url.toExternalForm());
+			is.setByteStream(stream);
+			webDigester.setDebug(getDebug());
+			if (context instanceof StandardContext) {
+				((StandardContext) context).setReplaceWelcomeFiles(true);
+			}
+			webDigester.clear();
+			webDigester.push(context);
+			webDigester.parse(is);
+		} catch (SAXParseException e) {
+			log(sm.getString("contextConfig.applicationParse"), e);
+			log(sm.getString("contextConfig.applicationPosition",
+					"" + e.getLineNumber(),
+					"" + e.getColumnNumber()));
+			ok = false;
+		} catch (Exception e) {
+			log(sm.getString("contextConfig.applicationParse"), e);
+			ok = false;
+		} finally {
+			webDigester.clear();
+			try {
+				if (stream != null) {
+					stream.close();
 				}
+			} catch (IOException e) {
+				log(sm.getString("contextConfig.applicationClose"), e);
 			}
 		}
 
@@ -519,35 +538,35 @@ public final class ContextConfig implements LifecycleListener {
 		}
 
 		// Process the default web.xml file
-		synchronized (webDigester) {
+		Digester webDigester = (Digester) webDigesters.get();
+		try {
+			InputSource is =
+					new InputSource("file://" + file.getAbsolutePath());
+			stream = new FileInputStream(file);
+			is.setByteStream(stream);
+			webDigester.setDebug(getDebug());
+			if (context instanceof StandardContext)
+				((StandardContext) context).setReplaceWelcomeFiles(true);
+			webDigester.clear();
+			webDigester.push(context);
+			webDigester.parse(is);
+		} catch (SAXParseException e) {
+			log(sm.getString("contextConfig.defaultParse"), e);
+			log(sm.getString("contextConfig.defaultPosition",
+					"" + e.getLineNumber(),
+					"" + e.getColumnNumber()));
+			ok = false;
+		} catch (Exception e) {
+			log(sm.getString("contextConfig.defaultParse"), e);
+			ok = false;
+		} finally {
+			webDigester.clear();
 			try {
-				InputSource is =
-						new InputSource("file://" + file.getAbsolutePath());
-				stream = new FileInputStream(file);
-				is.setByteStream(stream);
-				webDigester.setDebug(getDebug());
-				if (context instanceof StandardContext)
-					((StandardContext) context).setReplaceWelcomeFiles(true);
-				webDigester.clear();
-				webDigester.push(context);
-				webDigester.parse(is);
-			} catch (SAXParseException e) {
-				log(sm.getString("contextConfig.defaultParse"), e);
-				log(sm.getString("contextConfig.defaultPosition",
-						"" + e.getLineNumber(),
-						"" + e.getColumnNumber()));
-				ok = false;
-			} catch (Exception e) {
-				log(sm.getString("contextConfig.defaultParse"), e);
-				ok = false;
-			} finally {
-				try {
-					if (stream != null) {
-						stream.close();
-					}
-				} catch (IOException e) {
-					log(sm.getString("contextConfig.defaultClose"), e);
+				if (stream != null) {
+					stream.close();
 				}
+			} catch (IOException e) {
+				log(sm.getString("contextConfig.defaultClose"), e);
 			}
 		}
 
@@ -845,17 +864,83 @@ public final class ContextConfig implements LifecycleListener {
 		// Acquire this list of TLD resource paths to be processed
 		Set resourcePaths = tldScanResourcePaths();
 
+		// Load the listeners found in the JAR files during the last scan
+		File workDir = (File) context.getServletContext().getAttribute
+				(Globals.WORK_DIR_ATTR);
+		TldCache cache =
+				new TldCache((workDir == null) ? null
+						: new File(workDir, TLD_CACHE));
+		try {
+			cache.load();
+		} catch (IOException e) {
+			log(sm.getString("contextConfig.tldCacheLoad"), e);
+		}
+
 		// Scan each accumulated resource paths for TLDs to be processed
 		Iterator paths = resourcePaths.iterator();
 		while (paths.hasNext()) {
 			String path = (String) paths.next();
 			if (path.endsWith(".jar")) {
-				tldScanJar(path);
+				tldScanJar(path, cache);
 			} else {
 				tldScanTld(path);
 			}
 		}
 
+		try {
+			cache.save();
+		} catch (IOException e) {
+			log(sm.getString("contextConfig.tldCacheSave"), e);
+		}
+
+	}
+
+
+	/**
+	 * Register the application event listeners declared by the TLDs of the
+	 * JAR file at the specified resource path, which are looked up in the
+	 * specified cache, or else found by scanning the JAR file and recorded
+	 * in the cache.
+	 *
+	 * @param resourcePath Resource path of the JAR file to scan
+	 * @param cache        The cache of the listeners of the JAR files
+	 * @throws Exception if an exception occurs while scanning this JAR
+	 */
+	private void tldScanJar(String resourcePath, TldCache cache)
+			throws Exception {
+
+		// Look for an entry matching the size and date of the JAR file
+		long length = -1;
+		long lastModified = -1;
+		try {
+			Attributes attributes =
+					context.getResources().getAttributes(resourcePath);
+			if (attributes instanceof ResourceAttributes) {
+				length = ((ResourceAttributes) attributes).getContentLength();
+				lastModified =
+						((ResourceAttributes) attributes).getLastModified();
+			}
+		} catch (NamingException e) {
+			;
+		}
+		String listeners[] = null;
+		if ((length >= 0) && (lastModified > 0))
+			listeners = cache.get(resourcePath, length, lastModified);
+		if (listeners != null) {
+			if (debug >= 1) {
+				log(" Using cached TLD listeners of JAR at resource path '" +
+						resourcePath + "'");
+			}
+		} else {
+			TldCache.Listeners results = new TldCache.Listeners();
+			tldScanJar(resourcePath, results);
+			listeners = results.getListeners();
+			if ((length >= 0) && (lastModified > 0))
+				cache.put(resourcePath, length, lastModified, listeners);
+		}
+		for (int i = 0; i < listeners.length; i++)
+			context.addApplicationListener(listeners[i]);
+
 	}
 
 
@@ -865,9 +950,11 @@ public final class ContextConfig implements LifecycleListener {
 	 * event listeners that need to be registered.
 	 *
 	 * @param resourcePath Resource path of the JAR file to scan
+	 * @param target       Object to which the listeners are added
 	 * @throws Exception if an exception occurs while scanning this JAR
 	 */
-	private void tldScanJar(String resourcePath) throws Exception {
+	private void tldScanJar(String resourcePath, Object target)
+			throws Exception {
 
 		if (debug >= 1) {
 			log(" Scanning JAR at resource path '" + resourcePath + "'");
@@ -902,7 +989,7 @@ public final class ContextConfig implements LifecycleListener {
 					log("  Processing TLD at '" + name + "'");
 				}
 				inputStream = jarFile.getInputStream(entry);
-				tldScanStream(inputStream);
+				tldScanStream(inputStream, target);
 				inputStream.close();
 				inputStream = null;
 				name = null;
@@ -949,15 +1036,19 @@ public final class ContextConfig implements LifecycleListener {
 	 * method returns.
 	 *
 	 * @param resourceStream InputStream containing a tag library descriptor
+	 * @param target         Object to which the listeners are added
 	 * @throws Exception if an exception occurs while scanning this TLD
 	 */
-	private void tldScanStream(InputStream resourceStream)
+	private void tldScanStream(InputStream resourceStream, Object target)
 			throws Exception {
 
-		synchronized (tldDigester) {
+		Digester tldDigester = (Digester) tldDigesters.get();
+		try {
 			tldDigester.clear();
-			tldDigester.push(context);
+			tldDigester.push(target);
 			tldDigester.parse(resourceStream);
+		} finally {
+			tldDigester.clear();
 		}
 
 	}
@@ -985,7 +1076,7 @@ public final class ContextConfig implements LifecycleListener {
 						(sm.getString("contextConfig.tldResourcePath",
 								resourcePath));
 			}
-			tldScanStream(inputStream);
+			tldScanStream(inputStream, context);
 			inputStream.close();
 			inputStream = null;
 		} catch (Exception e) {
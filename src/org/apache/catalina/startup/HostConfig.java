@@ -75,6 +75,10 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import javax.naming.NamingException;
@@ -89,7 +93,9 @@ import org.apache.catalina.LifecycleEvent;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Logger;
+import org.apache.catalina.core.ContainerBase;
 import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.util.BackgroundScheduler;
 import org.apache.catalina.util.StringManager;
 
 
@@ -134,6 +140,13 @@ public class HostConfig
 	protected ArrayList deployed = new ArrayList();
 
 
+	/**
+	 * The deployments which are running on the start and stop pool of the
+	 * Host, and have not been waited for yet.
+	 */
+	protected ArrayList deployments = new ArrayList();
+
+
 	/**
 	 * The Host we are associated with.
 	 */
@@ -167,21 +180,10 @@ public class HostConfig
 
 
 	/**
-	 * The background thread.
-	 */
-	private Thread thread = null;
-
-
-	/**
-	 * The background thread completion semaphore.
+	 * The periodic check for new and modified applications, while the Host
+	 * is started and live deployment is enabled.
 	 */
-	private boolean threadDone = false;
-
-
-	/**
-	 * Name to register for the background thread.
-	 */
-	private String threadName = "HostConfig";
+	private BackgroundScheduler.Task backgroundTask = null;
 
 
 	/**
@@ -403,9 +405,70 @@ public class HostConfig
 			return;
 		String files[] = appBase.list();
 
+		// The applications of a kind may be deployed concurrently, but each
+		// kind waits for the previous one, so that the directory of an
+		// expanded WAR is recognized as deployed
+		long t1 = System.currentTimeMillis();
 		deployDescriptors(appBase, files);
+		awaitDeployments();
 		deployWARs(appBase, files);
+		awaitDeployments();
 		deployDirectories(appBase, files);
+		awaitDeployments();
+		if (debug >= 1)
+			log(sm.getString("hostConfig.deployTime",
+					new Long(System.currentTimeMillis() - t1)));
+
+	}
+
+
+	/**
+	 * Wait until all the deployments started by <code>deploy()</code> are
+	 * complete.
+	 */
+	protected void awaitDeployments() {
+
+		boolean interrupted = false;
+		for (int i = 0; i < deployments.size(); i++) {
+			Future deployment = (Future) deployments.get(i);
+			while (true) {
+				try {
+					deployment.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					break;      // Already logged by the deployment
+				}
+			}
+		}
+		deployments.clear();
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+	}
+
+
+	/**
+	 * Run the specified deployment on the start and stop pool of our Host,
+	 * if it has one, or else in the calling thread.
+	 *
+	 * @param deployment The deployment, which logs its own errors
+	 */
+	protected void deploy(Runnable deployment) {
+
+		ExecutorService executor = null;
+		if (host instanceof ContainerBase)
+			executor = ((ContainerBase) host).getStartStopExecutor();
+		if (executor == null) {
+			deployment.run();
+			return;
+		}
+		try {
+			deployments.add(executor.submit(deployment));
+		} catch (RejectedExecutionException e) {
+			deployment.run();   // The Host is being stopped
+		}
 
 	}
 
@@ -442,15 +505,22 @@ public class HostConfig
 				}
 
 				// Assume this is a configuration descriptor and deploy it
-				log(sm.getString("hostConfig.deployDescriptor", files[i]));
-				try {
-					URL config =
-							new URL("file", null, dir.getCanonicalPath());
-					((Deployer) host).install(config, null);
-				} catch (Throwable t) {
-					log(sm.getString("hostConfig.deployDescriptor.error",
-							files[i]), t);
-				}
+				final String name = files[i];
+				final File descriptor = dir;
+				deploy(new Runnable() {
+					public void run() {
+						log(sm.getString("hostConfig.deployDescriptor", name));
+						try {
+							URL config = new URL("file", null,
+									descriptor.getCanonicalPath());
+							((Deployer) host).install(config, null);
+						} catch (Throwable t) {
+							log(sm.getString
+									("hostConfig.deployDescriptor.error",
+											name), t);
+						}
+					}
+				});
 
 			}
 
@@ -487,34 +557,45 @@ public class HostConfig
 				if (host.findChild(contextPath) != null)
 					continue;
 
+				final String name = files[i];
+				final File war = dir;
+				final String path = contextPath;
 				if (isUnpackWARs()) {
 
 					// Expand and deploy this application as a directory
-					log(sm.getString("hostConfig.expand", files[i]));
-					try {
-						URL url = new URL("jar:file:" +
-								dir.getCanonicalPath() + "!/");
-						String path = expand(url);
-						url = new URL("file:" + path);
-						((Deployer) host).install(contextPath, url);
-					} catch (Throwable t) {
-						log(sm.getString("hostConfig.expand.error", files[i]),
-								t);
-					}
+					deploy(new Runnable() {
+						public void run() {
+							log(sm.getString("hostConfig.expand", name));
+							try {
+								URL url = new URL("jar:file:" +
+										war.getCanonicalPath() + "!/");
+								String docBase = expand(url);
+								url = new URL("file:" + docBase);
+								((Deployer) host).install(path, url);
+							} catch (Throwable t) {
+								log(sm.getString("hostConfig.expand.error",
+										name), t);
+							}
+						}
+					});
 
 				} else {
 
 					// Deploy the application in this WAR file
-					log(sm.getString("hostConfig.deployJar", files[i]));
-					try {
-						URL url = new URL("file", null,
-								dir.getCanonicalPath());
-						url = new URL("jar:" + url.toString() + "!/");
-						((Deployer) host).install(contextPath, url);
-					} catch (Throwable t) {
-						log(sm.getString("hostConfig.deployJar.error",
-								files[i]), t);
-					}
+					deploy(new Runnable() {
+						public void run() {
+							log(sm.getString("hostConfig.deployJar", name));
+							try {
+								URL url = new URL("file", null,
+										war.getCanonicalPath());
+								url = new URL("jar:" + url.toString() + "!/");
+								((Deployer) host).install(path, url);
+							} catch (Throwable t) {
+								log(sm.getString("hostConfig.deployJar.error",
+										name), t);
+							}
+						}
+					});
 
 				}
 
@@ -560,14 +641,22 @@ public class HostConfig
 					continue;
 
 				// Deploy the application in this directory
-				log(sm.getString("hostConfig.deployDir", files[i]));
-				try {
-					URL url = new URL("file", null, dir.getCanonicalPath());
-					((Deployer) host).install(contextPath, url);
-				} catch (Throwable t) {
-					log(sm.getString("hostConfig.deployDir.error", files[i]),
-							t);
-				}
+				final String name = files[i];
+				final File docBase = dir;
+				final String path = contextPath;
+				deploy(new Runnable() {
+					public void run() {
+						log(sm.getString("hostConfig.deployDir", name));
+						try {
+							URL url = new URL("file", null,
+									docBase.getCanonicalPath());
+							((Deployer) host).install(path, url);
+						} catch (Throwable t) {
+							log(sm.getString("hostConfig.deployDir.error",
+									name), t);
+						}
+					}
+				});
 
 			}
 
@@ -921,50 +1010,38 @@ public class HostConfig
 
 
 	/**
-	 * Start the background thread that will periodically check for
+	 * Start the background task that will periodically check for
 	 * web application autoDeploy and changes to the web.xml config.
-	 *
-	 * @throws IllegalStateException if we should not be starting
-	 *                               a background thread now
 	 */
 	protected void threadStart() {
 
-		// Has the background thread already been started?
-		if (thread != null)
+		// Has the background task already been started?
+		if (backgroundTask != null)
 			return;
 
-		// Start the background thread
+		// Start the background task
 		if (debug >= 1)
-			log(" Starting background thread");
-		threadDone = false;
-		threadName = "HostConfig[" + host.getName() + "]";
-		thread = new Thread(this, threadName);
-		thread.setDaemon(true);
-		thread.start();
+			log(" Starting background task");
+		backgroundTask = BackgroundScheduler.getScheduler(host).schedule
+				("HostConfig[" + host.getName() + "]", this,
+						checkInterval * 1000L, host);
 
 	}
 
 
 	/**
-	 * Stop the background thread that is periodically checking for
+	 * Stop the background task that is periodically checking for
 	 * for web application autoDeploy and changes to the web.xml config.
 	 */
 	protected void threadStop() {
 
-		if (thread == null)
+		if (backgroundTask == null)
 			return;
 
 		if (debug >= 1)
-			log(" Stopping background thread");
-		threadDone = true;
-		thread.interrupt();
-		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			;
-		}
-
-		thread = null;
+			log(" Stopping background task");
+		backgroundTask.cancel();
+		backgroundTask = null;
 
 	}
 
@@ -972,6 +1049,9 @@ public class HostConfig
 	/**
 	 * Sleep for the duration specified by the <code>checkInterval</code>
 	 * property.
+	 *
+	 * @deprecated The checks are run by a task of the background
+	 *             scheduler, which does not sleep
 	 */
 	protected void threadSleep() {
 
@@ -988,30 +1068,17 @@ public class HostConfig
 
 
 	/**
-	 * The background thread that checks for web application autoDeploy
-	 * and changes to the web.xml config.
+	 * Check for web application autoDeploy and changes to the web.xml
+	 * config.  This is run periodically by the background scheduler of our
+	 * Engine.
 	 */
 	public void run() {
 
-		if (debug >= 1)
-			log("BACKGROUND THREAD Starting");
-
-		// Loop until the termination semaphore is set
-		while (!threadDone) {
+		// Deploy apps if the Host allows auto deploying
+		deployApps();
 
-			// Wait for our check interval
-			threadSleep();
-
-			// Deploy apps if the Host allows auto deploying
-			deployApps();
-
-			// Check for web.xml modification
-			checkWebXmlLastModified();
-
-		}
-
-		if (debug >= 1)
-			log("BACKGROUND THREAD Stopping");
+		// Check for web.xml modification
+		checkWebXmlLastModified();
 
 	}
 
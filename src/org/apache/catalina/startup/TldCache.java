@@ -0,0 +1,195 @@
+package org.apache.catalina.startup;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.StringTokenizer;
+
+
+/**
+ * Cache of the application event listeners declared by the tag library
+ * descriptors of the JAR files of a web application, so that the JAR files
+ * which have not changed are not opened and parsed again when the
+ * application is reloaded or restarted.  An entry is keyed by the resource
+ * path of the JAR file, and is valid as long as the size and the last
+ * modification time of the file are unchanged.
+ * <p>
+ * The cache is stored in a file of the work directory of the application.
+ * Only the entries which have been looked up or added since the cache was
+ * loaded are stored, so that the entries of removed JAR files are dropped.
+ */
+
+final class TldCache {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new cache stored in the specified file.
+	 *
+	 * @param file The file storing the cache, or <code>null</code> if the
+	 *             cache is not stored
+	 */
+	TldCache(File file) {
+
+		this.file = file;
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The entries loaded from the file.
+	 */
+	private Properties entries = new Properties();
+
+
+	/**
+	 * The file storing the cache, or <code>null</code>.
+	 */
+	private File file;
+
+
+	/**
+	 * Have entries been added or changed since the cache was loaded?
+	 */
+	private boolean modified = false;
+
+
+	/**
+	 * The entries looked up or added since the cache was loaded.
+	 */
+	private Properties results = new Properties();
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Return the listeners declared by the specified JAR file, or
+	 * <code>null</code> if the cache has no valid entry for it.
+	 *
+	 * @param path         Resource path of the JAR file
+	 * @param length       Size of the JAR file
+	 * @param lastModified Last modification time of the JAR file
+	 */
+	public String[] get(String path, long length, long lastModified) {
+
+		String value = entries.getProperty(path);
+		if (value == null)
+			return (null);
+		StringTokenizer st = new StringTokenizer(value, ";");
+		try {
+			if ((Long.parseLong(st.nextToken()) != length)
+					|| (Long.parseLong(st.nextToken()) != lastModified))
+				return (null);
+		} catch (RuntimeException e) {
+			return (null);
+		}
+		ArrayList listeners = new ArrayList();
+		while (st.hasMoreTokens())
+			listeners.add(st.nextToken());
+		results.setProperty(path, value);
+		return ((String[]) listeners.toArray(new String[listeners.size()]));
+
+	}
+
+
+	/**
+	 * Load the cache from its file, if the file exists.
+	 *
+	 * @throws IOException if the file cannot be read
+	 */
+	public void load() throws IOException {
+
+		if ((file == null) || !file.exists())
+			return;
+		InputStream stream = new FileInputStream(file);
+		try {
+			entries.load(stream);
+		} finally {
+			stream.close();
+		}
+
+	}
+
+
+	/**
+	 * Record the listeners declared by the specified JAR file.
+	 *
+	 * @param path         Resource path of the JAR file
+	 * @param length       Size of the JAR file
+	 * @param lastModified Last modification time of the JAR file
+	 * @param listeners    Class names of the listeners
+	 */
+	public void put(String path, long length, long lastModified,
+	                String listeners[]) {
+
+		StringBuffer sb = new StringBuffer();
+		sb.append(length).append(';').append(lastModified);
+		for (int i = 0; i < listeners.length; i++)
+			sb.append(';').append(listeners[i]);
+		results.setProperty(path, sb.toString());
+		modified = true;
+
+	}
+
+
+	/**
+	 * Store the cache in its file, if it has changed.
+	 *
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save() throws IOException {
+
+		if ((file == null) || (!modified && results.equals(entries)))
+			return;
+		File parent = file.getParentFile();
+		if ((parent != null) && !parent.exists())
+			parent.mkdirs();
+		OutputStream stream = new FileOutputStream(file);
+		try {
+			results.store(stream, null);
+		} finally {
+			stream.close();
+		}
+		entries = results;
+		results = new Properties();
+		modified = false;
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * Target of the tag library descriptor digester, which collects the
+	 * listeners declared by the descriptors of a JAR file.
+	 */
+	public static final class Listeners {
+
+		private ArrayList listeners = new ArrayList();
+
+		public void addApplicationListener(String listener) {
+			if (!listeners.contains(listener))
+				listeners.add(listener);
+		}
+
+		public String[] getListeners() {
+			return ((String[]) listeners.toArray(new String[listeners.size()]));
+		}
+
+	}
+
+
+}
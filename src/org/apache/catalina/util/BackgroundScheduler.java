@@ -0,0 +1,599 @@
+package org.apache.catalina.util;
+
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.Logger;
+
+
+/**
+ * Scheduler running the periodic background work of the components of an
+ * Engine, such as expiring sessions or checking for modified classes, on
+ * a small fixed pool of daemon threads instead of one sleeping thread per
+ * component.  Each task runs every <code>interval</code> milliseconds,
+ * give or take <code>jitter</code> percent so that the tasks registered at
+ * the same time drift apart, and never runs concurrently with itself.  The
+ * execution times of each task are recorded in a histogram.
+ * <p>
+ * A component finds the scheduler of its Engine with
+ * <code>getScheduler()</code>.  The components which do not belong to an
+ * Engine which has registered a scheduler share a default scheduler.
+ * A failure which escapes the work of a task is logged on the Logger of
+ * the Container which scheduled it, or else on the Logger of the Engine
+ * which registered the scheduler.
+ */
+
+public final class BackgroundScheduler {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new scheduler.
+	 *
+	 * @param name The name of the scheduler, used to name its threads
+	 */
+	public BackgroundScheduler(String name) {
+
+		this.name = name;
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The scheduler of the components which do not belong to an Engine
+	 * which has registered a scheduler, created when first needed.
+	 */
+	private static BackgroundScheduler defaultScheduler = null;
+
+
+	/**
+	 * The top level Container which has registered this scheduler, if any.
+	 */
+	private volatile Container container = null;
+
+
+	/**
+	 * The pool running the tasks while this scheduler is started.
+	 */
+	private volatile ScheduledThreadPoolExecutor executor = null;
+
+
+	/**
+	 * The percentage by which the delay between two runs of a task varies.
+	 */
+	private volatile int jitter = 10;
+
+
+	/**
+	 * The name of this scheduler.
+	 */
+	private String name;
+
+
+	/**
+	 * The schedulers registered by the top level Containers.
+	 */
+	private static final ConcurrentHashMap<Container, BackgroundScheduler>
+			schedulers = new ConcurrentHashMap<Container, BackgroundScheduler>();
+
+
+	/**
+	 * The string manager for this package.
+	 */
+	private static final StringManager sm =
+			StringManager.getManager("org.apache.catalina.util");
+
+
+	/**
+	 * The tasks of this scheduler.
+	 */
+	private final Set<Task> tasks = ConcurrentHashMap.newKeySet();
+
+
+	/**
+	 * The number of threads.
+	 */
+	private int threads = 2;
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the percentage by which the delay between two runs of a task
+	 * varies.
+	 */
+	public int getJitter() {
+
+		return (this.jitter);
+
+	}
+
+
+	/**
+	 * Set the percentage by which the delay between two runs of a task
+	 * varies, between 0 and 100.
+	 *
+	 * @param jitter The new percentage
+	 */
+	public void setJitter(int jitter) {
+
+		this.jitter = Math.min(Math.max(jitter, 0), 100);
+
+	}
+
+
+	/**
+	 * Return the name of this scheduler.
+	 */
+	public String getName() {
+
+		return (this.name);
+
+	}
+
+
+	/**
+	 * Return the number of threads.
+	 */
+	public int getThreads() {
+
+		return (this.threads);
+
+	}
+
+
+	/**
+	 * Set the number of threads, which takes effect the next time this
+	 * scheduler is started.
+	 *
+	 * @param threads The new number of threads
+	 */
+	public void setThreads(int threads) {
+
+		this.threads = Math.max(threads, 1);
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Return the tasks of this scheduler.
+	 */
+	public Task[] findTasks() {
+
+		return ((Task[]) tasks.toArray(new Task[0]));
+
+	}
+
+
+	/**
+	 * Return the scheduler of the Engine of the specified Container, or the
+	 * default scheduler if the Engine has not registered one.
+	 *
+	 * @param container The Container, or <code>null</code>
+	 */
+	public static BackgroundScheduler getScheduler(Container container) {
+
+		while ((container != null) && (container.getParent() != null))
+			container = container.getParent();
+		BackgroundScheduler scheduler =
+				(container != null) ? schedulers.get(container) : null;
+		if (scheduler != null)
+			return (scheduler);
+		synchronized (schedulers) {
+			if (defaultScheduler == null) {
+				defaultScheduler = new BackgroundScheduler("Catalina");
+				defaultScheduler.start();
+			}
+			return (defaultScheduler);
+		}
+
+	}
+
+
+	/**
+	 * Register the scheduler of the components of the specified top level
+	 * Container.
+	 *
+	 * @param container The Container, usually an Engine
+	 * @param scheduler The scheduler
+	 */
+	public static void register(Container container,
+	                            BackgroundScheduler scheduler) {
+
+		scheduler.container = container;
+		schedulers.put(container, scheduler);
+
+	}
+
+
+	/**
+	 * Forget the scheduler of the components of the specified top level
+	 * Container.
+	 *
+	 * @param container The Container
+	 */
+	public static void deregister(Container container) {
+
+		BackgroundScheduler scheduler = schedulers.remove(container);
+		if ((scheduler != null) && (scheduler.container == container))
+			scheduler.container = null;
+
+	}
+
+
+	/**
+	 * Run the specified work every <code>interval</code> milliseconds,
+	 * starting about <code>interval</code> milliseconds from now, until the
+	 * returned task is cancelled.
+	 *
+	 * @param name     The name of the task
+	 * @param work     The work
+	 * @param interval The interval between two runs, in milliseconds
+	 */
+	public Task schedule(String name, Runnable work, long interval) {
+
+		return (schedule(name, work, interval, null));
+
+	}
+
+
+	/**
+	 * Run the specified work every <code>interval</code> milliseconds,
+	 * starting about <code>interval</code> milliseconds from now, until the
+	 * returned task is cancelled.  The failures which escape the work are
+	 * logged on the Logger of the specified Container.
+	 *
+	 * @param name      The name of the task
+	 * @param work      The work
+	 * @param interval  The interval between two runs, in milliseconds
+	 * @param container The Container which owns the work, or
+	 *                  <code>null</code>
+	 */
+	public Task schedule(String name, Runnable work, long interval,
+	                     Container container) {
+
+		Task task = new Task(name, work, interval, container);
+		tasks.add(task);
+		submit(task);
+		return (task);
+
+	}
+
+
+	/**
+	 * Start the threads of this scheduler, and the tasks registered while
+	 * it was stopped.
+	 */
+	public synchronized void start() {
+
+		if (executor != null)
+			return;
+		final AtomicInteger count = new AtomicInteger(1);
+		ScheduledThreadPoolExecutor executor =
+				new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, name + "-background-"
+								+ count.getAndIncrement());
+						thread.setDaemon(true);
+						thread.setContextClassLoader
+								(BackgroundScheduler.class.getClassLoader());
+						return (thread);
+					}
+				});
+		executor.setRemoveOnCancelPolicy(true);
+		this.executor = executor;
+		Iterator tasks = this.tasks.iterator();
+		while (tasks.hasNext())
+			submit((Task) tasks.next());
+
+	}
+
+
+	/**
+	 * Stop the threads of this scheduler.  The running tasks are allowed to
+	 * complete, and the registered tasks run again once this scheduler is
+	 * started again.
+	 */
+	public synchronized void stop() {
+
+		ScheduledThreadPoolExecutor executor = this.executor;
+		this.executor = null;
+		if (executor != null)
+			executor.shutdownNow();
+
+	}
+
+
+	/**
+	 * Return a String representation of this component.
+	 */
+	public String toString() {
+
+		StringBuffer sb = new StringBuffer("BackgroundScheduler[");
+		sb.append(name);
+		sb.append("]");
+		return (sb.toString());
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Schedule the next run of the specified task, unless this scheduler
+	 * is stopped or the task has been cancelled.  Each run schedules the
+	 * next one, as long as the pool it ran on is still the pool of this
+	 * scheduler: a run of a pool which has been stopped while it was in
+	 * progress does not, as starting the scheduler again has resubmitted
+	 * the task already.
+	 *
+	 * @param task The task
+	 */
+	private void submit(final Task task) {
+
+		final ScheduledThreadPoolExecutor executor = this.executor;
+		if ((executor == null) || task.cancelled)
+			return;
+		Runnable run = new Runnable() {
+			public void run() {
+				task.run();
+				if (executor == BackgroundScheduler.this.executor)
+					submit(task);
+			}
+		};
+		long delay = task.interval;
+		long spread = delay * jitter / 100L;
+		if (spread > 0)
+			delay += ThreadLocalRandom.current().nextLong(-spread, spread + 1);
+		try {
+			task.future = executor.schedule(run, Math.max(delay, 1L),
+					TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			;   // Stopped in the meantime
+		}
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * Periodic work registered with a scheduler.
+	 */
+	public final class Task implements Runnable {
+
+
+		Task(String name, Runnable work, long interval, Container container) {
+
+			this.container = container;
+			this.name = name;
+			this.work = work;
+			this.interval = Math.max(interval, 1L);
+
+		}
+
+
+		/**
+		 * Has this task been cancelled?
+		 */
+		private volatile boolean cancelled = false;
+
+
+		/**
+		 * The Container which owns the work of this task, if any.
+		 */
+		private final Container container;
+
+
+		/**
+		 * The number of runs which have thrown an exception.
+		 */
+		private final AtomicLong errorCount = new AtomicLong();
+
+
+		/**
+		 * The next run of this task.
+		 */
+		private volatile ScheduledFuture future = null;
+
+
+		/**
+		 * The interval between two runs, in milliseconds.
+		 */
+		private volatile long interval;
+
+
+		/**
+		 * The name of this task.
+		 */
+		private final String name;
+
+
+		/**
+		 * Held while the work is running.
+		 */
+		private final ReentrantLock running = new ReentrantLock();
+
+
+		/**
+		 * The execution times of this task.
+		 */
+		private final LatencyHistogram times = new LatencyHistogram();
+
+
+		/**
+		 * The work of this task.
+		 */
+		private final Runnable work;
+
+
+		/**
+		 * Return the number of runs which have thrown an exception.
+		 */
+		public long getErrorCount() {
+
+			return (errorCount.get());
+
+		}
+
+
+		/**
+		 * Return the execution times of this task.
+		 */
+		public LatencyHistogram getExecutionTimes() {
+
+			return (times);
+
+		}
+
+
+		/**
+		 * Return the interval between two runs, in milliseconds.
+		 */
+		public long getInterval() {
+
+			return (interval);
+
+		}
+
+
+		/**
+		 * Set the interval between two runs, which takes effect after the
+		 * next run.
+		 *
+		 * @param interval The new interval, in milliseconds
+		 */
+		public void setInterval(long interval) {
+
+			this.interval = Math.max(interval, 1L);
+
+		}
+
+
+		/**
+		 * Return the name of this task.
+		 */
+		public String getName() {
+
+			return (name);
+
+		}
+
+
+		/**
+		 * Cancel this task, waiting for the current run, if any, to
+		 * complete unless it is the caller.
+		 */
+		public void cancel() {
+
+			cancelled = true;
+			tasks.remove(this);
+			ScheduledFuture future = this.future;
+			if (future != null)
+				future.cancel(false);
+			if (!running.isHeldByCurrentThread()) {
+				running.lock();
+				running.unlock();
+			}
+
+		}
+
+
+		/**
+		 * Run the work of this task once.  The work is expected to log its
+		 * own failures, those it lets through being counted and logged.
+		 */
+		public void run() {
+
+			running.lock();
+			try {
+				if (cancelled)
+					return;
+				Thread thread = Thread.currentThread();
+				ClassLoader oldLoader = thread.getContextClassLoader();
+				long start = System.nanoTime();
+				try {
+					work.run();
+				} catch (Throwable t) {
+					errorCount.incrementAndGet();
+					log(sm.getString("backgroundScheduler.taskException",
+							name), t);
+				} finally {
+					times.record(System.nanoTime() - start);
+					thread.setContextClassLoader(oldLoader);
+				}
+			} finally {
+				running.unlock();
+			}
+
+		}
+
+
+		/**
+		 * Log a message and an exception on the Logger of the Container
+		 * which owns this task, or else of the Engine which registered our
+		 * scheduler.
+		 *
+		 * @param message   Message to be logged
+		 * @param throwable Associated exception
+		 */
+		private void log(String message, Throwable throwable) {
+
+			Container container = this.container;
+			if (container == null)
+				container = BackgroundScheduler.this.container;
+			Logger logger = null;
+			if (container != null)
+				logger = container.getLogger();
+			if (logger != null)
+				logger.log(BackgroundScheduler.this.name + " " + message,
+						throwable);
+			else {
+				System.out.println(BackgroundScheduler.this.name + " "
+						+ message);
+				throwable.printStackTrace(System.out);
+			}
+
+		}
+
+
+		/**
+		 * Return a String representation of this component.
+		 */
+		public String toString() {
+
+			StringBuffer sb = new StringBuffer("Task[");
+			sb.append(name);
+			sb.append("]");
+			return (sb.toString());
+
+		}
+
+
+	}
+
+
+}
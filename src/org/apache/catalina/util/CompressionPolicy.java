@@ -0,0 +1,357 @@
+package org.apache.catalina.util;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Rules deciding which responses a connector compresses: the MIME types
+ * which are worth compressing, the minimum content length below which
+ * compression does not pay off, and the user agents which are known to
+ * mishandle compressed content.  The content coding of a response is
+ * negotiated from the <code>Accept-Encoding</code> header of the request,
+ * <code>gzip</code> being preferred over <code>deflate</code>.
+ * <p>
+ * Instances are immutable, so that a connector can share one with all its
+ * processors, and hand it over to the applications as a request attribute.
+ */
+
+public final class CompressionPolicy {
+
+
+	// ----------------------------------------------------------- Constructors
+
+
+	/**
+	 * Construct a new policy.
+	 *
+	 * @param mimeTypes       Comma separated list of the MIME types to
+	 *                        compress; an entry like <code>text/*</code>
+	 *                        matches all the subtypes of a type
+	 * @param minSize         Minimum content length of the responses to
+	 *                        compress, when it is known
+	 * @param noUserAgents    Comma separated list of regular expressions
+	 *                        matching the <code>User-Agent</code> header of
+	 *                        the clients which must not get compressed
+	 *                        content, or <code>null</code>
+	 */
+	public CompressionPolicy(String mimeTypes, int minSize,
+	                         String noUserAgents) {
+
+		ArrayList list = new ArrayList();
+		if (mimeTypes != null) {
+			StringTokenizer st = new StringTokenizer(mimeTypes, ",");
+			while (st.hasMoreTokens()) {
+				String mimeType = st.nextToken().trim().toLowerCase();
+				if (mimeType.length() > 0)
+					list.add(mimeType);
+			}
+		}
+		this.mimeTypes = (String[]) list.toArray(new String[list.size()]);
+		this.minSize = minSize;
+
+		StringBuffer sb = new StringBuffer();
+		if (noUserAgents != null) {
+			StringTokenizer st = new StringTokenizer(noUserAgents, ",");
+			while (st.hasMoreTokens()) {
+				String regex = st.nextToken().trim();
+				if (regex.length() == 0)
+					continue;
+				if (sb.length() > 0)
+					sb.append('|');
+				sb.append("(?:").append(regex).append(')');
+			}
+		}
+		this.noUserAgents =
+				(sb.length() > 0) ? Pattern.compile(sb.toString()) : null;
+
+	}
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The content coding of the compressed responses, when the client
+	 * accepts it.
+	 */
+	public static final String DEFLATE = "deflate";
+
+
+	/**
+	 * The preferred content coding of the compressed responses.
+	 */
+	public static final String GZIP = "gzip";
+
+
+	/**
+	 * The MIME types to compress, in lower case.
+	 */
+	private String[] mimeTypes;
+
+
+	/**
+	 * Minimum content length of the responses to compress.
+	 */
+	private int minSize;
+
+
+	/**
+	 * The user agents which must not get compressed content, or
+	 * <code>null</code>.
+	 */
+	private Pattern noUserAgents;
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Return the content coding with which the response to a request should
+	 * be compressed, or <code>null</code> if the client does not accept any
+	 * of the codings we support, or must not get compressed content.
+	 *
+	 * @param acceptEncoding The <code>Accept-Encoding</code> header of the
+	 *                       request, or <code>null</code>
+	 * @param userAgent      The <code>User-Agent</code> header of the
+	 *                       request, or <code>null</code>
+	 */
+	public String getEncoding(String acceptEncoding, String userAgent) {
+
+		if (acceptEncoding == null)
+			return (null);
+		if ((noUserAgents != null) && (userAgent != null)
+				&& noUserAgents.matcher(userAgent).matches())
+			return (null);
+
+		boolean gzip = false;
+		boolean deflate = false;
+		boolean any = false;
+		StringTokenizer st = new StringTokenizer(acceptEncoding, ",");
+		while (st.hasMoreTokens()) {
+			String token = st.nextToken();
+			String coding = token;
+			int semicolon = token.indexOf(';');
+			if (semicolon >= 0) {
+				coding = token.substring(0, semicolon);
+				if (isZeroQuality(token.substring(semicolon + 1)))
+					continue;
+			}
+			coding = coding.trim();
+			if (coding.equalsIgnoreCase(GZIP)
+					|| coding.equalsIgnoreCase("x-gzip"))
+				gzip = true;
+			else if (coding.equalsIgnoreCase(DEFLATE))
+				deflate = true;
+			else if (coding.equals("*"))
+				any = true;
+		}
+		if (gzip || any)
+			return (GZIP);
+		if (deflate)
+			return (DEFLATE);
+		return (null);
+
+	}
+
+
+	/**
+	 * Return the minimum content length of the responses to compress.
+	 */
+	public int getMinSize() {
+
+		return (this.minSize);
+
+	}
+
+
+	/**
+	 * Is a response with the specified content type and length worth
+	 * compressing?
+	 *
+	 * @param contentType   The content type, with or without parameters,
+	 *                      or <code>null</code>
+	 * @param contentLength The content length, or -1 if it is not known
+	 */
+	public boolean isCompressable(String contentType, long contentLength) {
+
+		if ((contentLength >= 0) && (contentLength < minSize))
+			return (false);
+		if (contentType == null)
+			return (false);
+
+		int end = contentType.indexOf(';');
+		if (end < 0)
+			end = contentType.length();
+		while ((end > 0) && (contentType.charAt(end - 1) == ' '))
+			end--;
+		int slash = contentType.indexOf('/');
+		for (int i = 0; i < mimeTypes.length; i++) {
+			String mimeType = mimeTypes[i];
+			int length = mimeType.length();
+			if (mimeType.endsWith("/*")) {
+				if ((slash == length - 2)
+						&& contentType.regionMatches(true, 0, mimeType, 0, slash))
+					return (true);
+			} else if ((length == end)
+					&& contentType.regionMatches(true, 0, mimeType, 0, end)) {
+				return (true);
+			}
+		}
+		return (false);
+
+	}
+
+
+	/**
+	 * Create a stream compressing the data written to it with the specified
+	 * content coding.  Closing the returned stream finishes the compressed
+	 * data, and releases the native resources of the compressor, but does
+	 * not close the underlying stream.
+	 *
+	 * @param out        The stream receiving the compressed data
+	 * @param encoding   <code>GZIP</code> or <code>DEFLATE</code>
+	 * @param bufferSize Size of the buffer of compressed data
+	 * @param syncFlush  Should flushing the returned stream flush the data
+	 *                   compressed so far?
+	 * @throws IOException if an input/output error occurs
+	 */
+	public static DeflaterOutputStream newStream(OutputStream out,
+	                                             String encoding,
+	                                             int bufferSize,
+	                                             boolean syncFlush)
+			throws IOException {
+
+		out = new UnclosableOutputStream(out);
+		if (GZIP.equals(encoding))
+			return (new GzipStream(out, bufferSize, syncFlush));
+		return (new DeflateStream(out, bufferSize, syncFlush));
+
+	}
+
+
+	/**
+	 * Release the native resources of a stream created by
+	 * <code>newStream()</code> without finishing the compressed data, when
+	 * that data is thrown away.  The stream cannot be used afterwards.
+	 *
+	 * @param stream The stream, or <code>null</code>
+	 */
+	public static void discard(DeflaterOutputStream stream) {
+
+		if (stream instanceof GzipStream)
+			((GzipStream) stream).end();
+		else if (stream instanceof DeflateStream)
+			((DeflateStream) stream).end();
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Do the specified parameters of a coding give it a quality of zero?
+	 */
+	private static boolean isZeroQuality(String parameters) {
+
+		StringTokenizer st = new StringTokenizer(parameters, ";");
+		while (st.hasMoreTokens()) {
+			String parameter = st.nextToken().trim();
+			if (!parameter.startsWith("q=") && !parameter.startsWith("Q="))
+				continue;
+			try {
+				return (Double.parseDouble(parameter.substring(2).trim())
+						<= 0.0);
+			} catch (NumberFormatException e) {
+				return (false);
+			}
+		}
+		return (false);
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * Stream compressing with the <code>deflate</code> coding, which
+	 * releases its compressor when it is closed.
+	 */
+	private static final class DeflateStream extends DeflaterOutputStream {
+
+		DeflateStream(OutputStream out, int bufferSize, boolean syncFlush) {
+			super(out, new Deflater(), bufferSize, syncFlush);
+		}
+
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				def.end();
+			}
+		}
+
+		void end() {
+			def.end();
+		}
+
+	}
+
+
+	/**
+	 * Stream compressing with the <code>gzip</code> coding.
+	 */
+	private static final class GzipStream extends GZIPOutputStream {
+
+		GzipStream(OutputStream out, int bufferSize, boolean syncFlush)
+				throws IOException {
+			super(out, bufferSize, syncFlush);
+		}
+
+		void end() {
+			def.end();
+		}
+
+	}
+
+
+	/**
+	 * Stream which passes everything on to another stream, except for
+	 * <code>close()</code>.
+	 */
+	private static final class UnclosableOutputStream extends OutputStream {
+
+		private final OutputStream out;
+
+		UnclosableOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		public void close() {
+		}
+
+	}
+
+
+}
@@ -97,13 +97,13 @@ public final class FastHttpDateFormat {
 	/**
 	 * Instant on which the currentDate object was generated.
 	 */
-	protected static long currentDateGenerated = 0L;
+	protected static volatile long currentDateGenerated = 0L;
 
 
 	/**
 	 * Current formatted date.
 	 */
-	protected static String currentDate = null;
+	protected static volatile String currentDate = null;
 
 
 	/**
@@ -124,8 +124,8 @@ public final class FastHttpDateFormat {
 		if ((now - currentDateGenerated) > 1000) {
 			synchronized (format) {
 				if ((now - currentDateGenerated) > 1000) {
-					currentDateGenerated = now;
 					currentDate = format.format(new Date(now));
+					currentDateGenerated = now;
 				}
 			}
 		}
@@ -0,0 +1,244 @@
+package org.apache.catalina.util;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Histogram of durations, from which percentiles can be estimated, which
+ * can be recorded into by any number of threads without locking.  The
+ * durations are counted in microseconds, in buckets whose width doubles
+ * with each power of two, each power of two being split into 16 buckets,
+ * so that an estimate is within about 3% of the actual value.  Durations
+ * longer than about 25 days are counted in the last bucket.
+ * <p>
+ * Reading the histogram while it is being recorded into gives an estimate
+ * which may not take the latest durations into account.
+ */
+
+public final class LatencyHistogram {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Number of bits of a duration which select a bucket within a power
+	 * of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+
+	/**
+	 * Number of buckets within a power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+
+	/**
+	 * Largest power of two of the durations, in microseconds.
+	 */
+	private static final int MAX_EXPONENT = 40;
+
+
+	/**
+	 * Number of buckets.
+	 */
+	private static final int BUCKETS =
+			(MAX_EXPONENT - SUB_BUCKET_BITS + 2) << SUB_BUCKET_BITS;
+
+
+	/**
+	 * Number of durations in each bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+
+	/**
+	 * Number of durations recorded.
+	 */
+	private final LongAdder count = new LongAdder();
+
+
+	/**
+	 * Longest duration recorded, in nanoseconds.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+
+	/**
+	 * Sum of the durations recorded, in nanoseconds.
+	 */
+	private final LongAdder total = new LongAdder();
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the number of durations recorded.
+	 */
+	public long getCount() {
+
+		return (count.sum());
+
+	}
+
+
+	/**
+	 * Return the longest duration recorded, in milliseconds.
+	 */
+	public double getMax() {
+
+		return (max.get() / 1000000.0);
+
+	}
+
+
+	/**
+	 * Return the average duration, in milliseconds, or 0 if nothing has been
+	 * recorded.
+	 */
+	public double getMean() {
+
+		long n = count.sum();
+		return ((n > 0) ? (total.sum() / 1000000.0) / n : 0.0);
+
+	}
+
+
+	/**
+	 * Return the sum of the durations recorded, in milliseconds.
+	 */
+	public long getTotal() {
+
+		return (total.sum() / 1000000L);
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Return an estimate of the specified percentile of the durations, in
+	 * milliseconds, or 0 if nothing has been recorded.
+	 *
+	 * @param percentile The percentile, between 0 and 100
+	 */
+	public double getPercentile(double percentile) {
+
+		long counts[] = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			n += counts[i];
+		}
+		if (n == 0)
+			return (0.0);
+		percentile = Math.min(Math.max(percentile, 0.0), 100.0);
+		long rank = (long) Math.ceil(percentile * n / 100.0);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				double micros = lowerBound(i) + (width(i) - 1) / 2.0;
+				return (Math.min(micros / 1000.0, getMax()));
+			}
+		}
+		return (getMax());
+
+	}
+
+
+	/**
+	 * Record the specified duration.
+	 *
+	 * @param nanos The duration, in nanoseconds
+	 */
+	public void record(long nanos) {
+
+		if (nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(index(nanos / 1000L));
+		count.increment();
+		total.add(nanos);
+		long current = max.get();
+		while ((nanos > current) && !max.compareAndSet(current, nanos))
+			current = max.get();
+
+	}
+
+
+	/**
+	 * Forget the durations recorded so far.  The durations recorded while
+	 * this method runs may be partly forgotten.
+	 */
+	public void reset() {
+
+		for (int i = 0; i < BUCKETS; i++)
+			buckets.set(i, 0L);
+		count.reset();
+		total.reset();
+		max.set(0L);
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Return the index of the bucket of the specified duration.
+	 *
+	 * @param micros The duration, in microseconds
+	 */
+	private static int index(long micros) {
+
+		if (micros < SUB_BUCKETS)
+			return ((int) micros);
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT)
+			return (BUCKETS - 1);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return (((shift + 1) << SUB_BUCKET_BITS)
+				+ (int) ((micros >>> shift) & (SUB_BUCKETS - 1)));
+
+	}
+
+
+	/**
+	 * Return the smallest duration of the specified bucket, in microseconds.
+	 *
+	 * @param index The index of the bucket
+	 */
+	private static long lowerBound(int index) {
+
+		if (index < SUB_BUCKETS)
+			return (index);
+		int shift = (index >> SUB_BUCKET_BITS) - 1;
+		return ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift);
+
+	}
+
+
+	/**
+	 * Return the number of durations, in microseconds, in the specified
+	 * bucket.
+	 *
+	 * @param index The index of the bucket
+	 */
+	private static long width(int index) {
+
+		if (index < SUB_BUCKETS)
+			return (1L);
+		return (1L << ((index >> SUB_BUCKET_BITS) - 1));
+
+	}
+
+
+}
@@ -0,0 +1,115 @@
+package org.apache.catalina.util;
+
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Statistics of the requests processed by a component: how many there
+ * were, how many failed, how many bytes were sent back, and how long the
+ * processing took.  Any number of threads can record requests without
+ * locking.
+ */
+
+public final class RequestStatistics {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * Number of bytes of content sent back.
+	 */
+	private final LongAdder bytesSent = new LongAdder();
+
+
+	/**
+	 * Number of requests which failed.
+	 */
+	private final LongAdder errorCount = new LongAdder();
+
+
+	/**
+	 * Processing times of the requests.
+	 */
+	private final LatencyHistogram times = new LatencyHistogram();
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the number of bytes of content sent back.
+	 */
+	public long getBytesSent() {
+
+		return (bytesSent.sum());
+
+	}
+
+
+	/**
+	 * Return the number of requests which failed, with an exception or a
+	 * server error status.
+	 */
+	public long getErrorCount() {
+
+		return (errorCount.sum());
+
+	}
+
+
+	/**
+	 * Return the number of requests processed.
+	 */
+	public long getRequestCount() {
+
+		return (times.getCount());
+
+	}
+
+
+	/**
+	 * Return the processing times of the requests.
+	 */
+	public LatencyHistogram getTimes() {
+
+		return (this.times);
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Record a processed request.
+	 *
+	 * @param nanos     The processing time, in nanoseconds
+	 * @param error     Did the request fail?
+	 * @param bytesSent Number of bytes of content sent back
+	 */
+	public void record(long nanos, boolean error, long bytesSent) {
+
+		times.record(nanos);
+		if (error)
+			errorCount.increment();
+		if (bytesSent > 0)
+			this.bytesSent.add(bytesSent);
+
+	}
+
+
+	/**
+	 * Forget the requests recorded so far.
+	 */
+	public void reset() {
+
+		times.reset();
+		errorCount.reset();
+		bytesSent.reset();
+
+	}
+
+
+}
@@ -0,0 +1,376 @@
+package org.apache.catalina.util;
+
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Generator of session identifiers which can be called by any number of
+ * threads without locking.  Each identifier is made of random bytes taken
+ * from a pool of random number generators, so that a caller uses a
+ * generator nobody else is using, a new generator being created when all
+ * of them are in use.  The bytes are rendered in upper case hexadecimal
+ * digits, or in URL safe base 64 digits.
+ * <p>
+ * When <code>prefetch</code> is positive, that many identifiers are
+ * generated ahead of time, and the batch is refilled in the background
+ * once half of it has been handed out, so that the callers rarely wait
+ * for random bytes.
+ */
+
+public final class SessionIdGenerator {
+
+
+	// ----------------------------------------------------- Instance Variables
+
+
+	/**
+	 * The encoding of the identifiers, <code>hex</code> or
+	 * <code>base64url</code>.
+	 */
+	private volatile String encoding = "hex";
+
+
+	/**
+	 * A String mixed into the seed of the random number generators, or
+	 * <code>null</code>.
+	 */
+	private volatile String entropy = null;
+
+
+	/**
+	 * Upper case hexadecimal digits.
+	 */
+	private static final char HEX[] = "0123456789ABCDEF".toCharArray();
+
+
+	/**
+	 * The number of random bytes of an identifier.
+	 */
+	private volatile int length = 16;
+
+
+	/**
+	 * The number of identifiers generated ahead of time.
+	 */
+	private volatile int prefetch = 0;
+
+
+	/**
+	 * The identifiers generated ahead of time, replaced as a whole when
+	 * the format of the identifiers changes.
+	 */
+	private volatile Batch prefetched = new Batch();
+
+
+	/**
+	 * The Java class name of the random number generators.
+	 */
+	private volatile String randomClass = "java.security.SecureRandom";
+
+
+	/**
+	 * The random number generators which are not in use.
+	 */
+	private volatile ConcurrentLinkedQueue<Random> randoms =
+			new ConcurrentLinkedQueue<Random>();
+
+
+	/**
+	 * Is the batch of identifiers being refilled?
+	 */
+	private AtomicBoolean refilling = new AtomicBoolean(false);
+
+
+	// ------------------------------------------------------------- Properties
+
+
+	/**
+	 * Return the encoding of the identifiers.
+	 */
+	public String getEncoding() {
+
+		return (this.encoding);
+
+	}
+
+
+	/**
+	 * Set the encoding of the identifiers.
+	 *
+	 * @param encoding <code>hex</code> or <code>base64url</code>
+	 * @throws IllegalArgumentException if the encoding is not supported
+	 */
+	public void setEncoding(String encoding) {
+
+		if (!"hex".equals(encoding) && !"base64url".equals(encoding))
+			throw new IllegalArgumentException(encoding);
+		this.encoding = encoding;
+		discard();
+
+	}
+
+
+	/**
+	 * Return the String mixed into the seed of the random number
+	 * generators.
+	 */
+	public String getEntropy() {
+
+		return (this.entropy);
+
+	}
+
+
+	/**
+	 * Set the String mixed into the seed of the random number generators
+	 * created from now on.
+	 *
+	 * @param entropy The new entropy increaser value
+	 */
+	public void setEntropy(String entropy) {
+
+		this.entropy = entropy;
+
+	}
+
+
+	/**
+	 * Return the number of random bytes of an identifier.
+	 */
+	public int getLength() {
+
+		return (this.length);
+
+	}
+
+
+	/**
+	 * Set the number of random bytes of an identifier.
+	 *
+	 * @param length The new number of bytes
+	 * @throws IllegalArgumentException if the length is not positive
+	 */
+	public void setLength(int length) {
+
+		if (length < 1)
+			throw new IllegalArgumentException(String.valueOf(length));
+		this.length = length;
+		discard();
+
+	}
+
+
+	/**
+	 * Return the number of identifiers generated ahead of time.
+	 */
+	public int getPrefetch() {
+
+		return (this.prefetch);
+
+	}
+
+
+	/**
+	 * Set the number of identifiers generated ahead of time, or 0 to
+	 * generate each identifier when it is asked for.
+	 *
+	 * @param prefetch The new number of identifiers
+	 */
+	public void setPrefetch(int prefetch) {
+
+		this.prefetch = Math.max(prefetch, 0);
+		discard();
+
+	}
+
+
+	/**
+	 * Return the Java class name of the random number generators.
+	 */
+	public String getRandomClass() {
+
+		return (this.randomClass);
+
+	}
+
+
+	/**
+	 * Set the Java class name of the random number generators.
+	 *
+	 * @param randomClass The new class name
+	 */
+	public void setRandomClass(String randomClass) {
+
+		this.randomClass = randomClass;
+		this.randoms = new ConcurrentLinkedQueue<Random>();
+		discard();
+
+	}
+
+
+	// --------------------------------------------------------- Public Methods
+
+
+	/**
+	 * Generate and return a new session identifier.
+	 */
+	public String generateSessionId() {
+
+		if (prefetch > 0) {
+			Batch batch = prefetched;
+			String id = batch.ids.poll();
+			if (id != null) {
+				if (batch.count.decrementAndGet() <= prefetch / 2)
+					refill();
+				return (id);
+			}
+			refill();
+		}
+		return (createSessionId());
+
+	}
+
+
+	// -------------------------------------------------------- Private Methods
+
+
+	/**
+	 * Generate a new session identifier with a random number generator
+	 * of the pool.
+	 */
+	private String createSessionId() {
+
+		ConcurrentLinkedQueue<Random> randoms = this.randoms;
+		Random random = randoms.poll();
+		if (random == null)
+			random = createRandom();
+		byte bytes[] = new byte[length];
+		try {
+			random.nextBytes(bytes);
+		} finally {
+			randoms.offer(random);
+		}
+
+		if ("base64url".equals(encoding))
+			return (Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(bytes));
+		char result[] = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			result[i * 2] = HEX[(bytes[i] & 0xf0) >> 4];
+			result[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+		}
+		return (new String(result));
+
+	}
+
+
+	/**
+	 * Create and seed a new random number generator.  A
+	 * <code>SecureRandom</code> seeds itself before the entropy is mixed
+	 * in, so that the entropy only adds to its seed.  The default
+	 * <code>SecureRandom</code> is a <code>SHA1PRNG</code> when the
+	 * platform has one, as the native generators of some platforms
+	 * serialize all their callers.
+	 */
+	private Random createRandom() {
+
+		long seed = System.nanoTime();
+		String entropy = this.entropy;
+		if (entropy != null) {
+			char chars[] = entropy.toCharArray();
+			for (int i = 0; i < chars.length; i++)
+				seed ^= ((long) (byte) chars[i]) << ((i % 8) * 8);
+		}
+
+		Random random = null;
+		try {
+			if (SecureRandom.class.getName().equals(randomClass))
+				random = SecureRandom.getInstance("SHA1PRNG");
+			else
+				random = (Random) Class.forName(randomClass).newInstance();
+		} catch (Exception e) {
+			random = new SecureRandom();
+		}
+		if (random instanceof SecureRandom)
+			random.nextInt();
+		random.setSeed(seed);
+		return (random);
+
+	}
+
+
+	/**
+	 * Forget the identifiers generated ahead of time, after the format of
+	 * the identifiers has changed.
+	 */
+	private void discard() {
+
+		prefetched = new Batch();
+
+	}
+
+
+	/**
+	 * Refill the batch of identifiers in the background, unless it is
+	 * being refilled already.
+	 */
+	private void refill() {
+
+		if (!refilling.compareAndSet(false, true))
+			return;
+		Runnable task = new Runnable() {
+			public void run() {
+				try {
+					// A discarded batch is left alone, so that its count
+					// does not drift from the new one
+					Batch batch = prefetched;
+					while ((batch == prefetched)
+							&& (batch.count.get() < prefetch)) {
+						batch.ids.offer(createSessionId());
+						batch.count.incrementAndGet();
+					}
+				} finally {
+					refilling.set(false);
+				}
+			}
+		};
+		try {
+			ForkJoinPool.commonPool().execute(task);
+		} catch (RejectedExecutionException e) {
+			refilling.set(false);
+		}
+
+	}
+
+
+	// ---------------------------------------------------------- Inner Classes
+
+
+	/**
+	 * Identifiers generated ahead of time, and their number.
+	 */
+	private static final class Batch {
+
+		/**
+		 * The number of identifiers which have not been handed out yet.
+		 */
+		final AtomicInteger count = new AtomicInteger();
+
+		/**
+		 * The identifiers.
+		 */
+		final ConcurrentLinkedQueue<String> ids =
+				new ConcurrentLinkedQueue<String>();
+
+	}
+
+
+}
@@ -960,7 +960,7 @@ public class FileDirContext extends BaseDirContext {
 	 * This specialized resource implementation avoids opening the IputStream
 	 * to the file right away (which would put a lock on the file).
 	 */
-	protected class FileResource extends Resource {
+	public class FileResource extends Resource {
 
 
 		// -------------------------------------------------------- Constructor
@@ -986,6 +986,17 @@ public class FileDirContext extends BaseDirContext {
 		protected long length = -1L;
 
 
+		// --------------------------------------------------------- Properties
+
+
+		/**
+		 * Return the file associated with this resource.
+		 */
+		public File getFile() {
+			return file;
+		}
+
+
 		// --------------------------------------------------- Resource Methods
 
 
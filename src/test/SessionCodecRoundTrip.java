@@ -0,0 +1,161 @@
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.session.BinarySessionCodec;
+import org.apache.catalina.session.SerializedSessionCodec;
+import org.apache.catalina.session.SessionCodec;
+import org.apache.catalina.session.StandardManager;
+
+/**
+ * Checks that the sessions read back by the session codecs hold the same
+ * attributes as the sessions they wrote: Strings, wrappers of primitive
+ * values, byte arrays, other serializable values and names too long for
+ * <code>writeUTF()</code>, the values which cannot be serialized being
+ * left out without disturbing the rest of the stream.
+ * <p>
+ * Usage: <code>java test.SessionCodecRoundTrip</code>
+ */
+public class SessionCodecRoundTrip {
+
+	/**
+	 * A serializable value holding a value which is not.
+	 */
+	static class Holder implements Serializable {
+		Object value = new Object();
+	}
+
+	private static int failures = 0;
+
+	private static String longText;
+
+	public static void main(String[] args) throws Exception {
+		StandardContext context = new StandardContext();
+		context.setPath("/roundtrip");
+		StandardManager manager = new StandardManager();
+		manager.setContainer(context);
+
+		// Names and values which are too long for writeUTF()
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < 40000; i++)
+			sb.append('\u20ac');
+		longText = sb.toString();
+
+		Session session = manager.createSession();
+		HttpSession attributes = session.getSession();
+		attributes.setAttribute("string", "value \u00e9\u20ac");
+		attributes.setAttribute("empty", "");
+		attributes.setAttribute("longString", longText);
+		attributes.setAttribute("integer", new Integer(-42));
+		attributes.setAttribute("long", new Long(Long.MIN_VALUE));
+		attributes.setAttribute("true", Boolean.TRUE);
+		attributes.setAttribute("false", Boolean.FALSE);
+		attributes.setAttribute("double", new Double(Math.PI));
+		attributes.setAttribute("float", new Float(-1.5f));
+		attributes.setAttribute("short", new Short(Short.MAX_VALUE));
+		attributes.setAttribute("byte", new Byte((byte) -1));
+		attributes.setAttribute("character", new Character('\u20ac'));
+		attributes.setAttribute("bytes", new byte[]{0, 1, -128, 127});
+		attributes.setAttribute("date", new Date(0L));
+		attributes.setAttribute(longText, "long name");
+		attributes.setAttribute("notSerializable", new Object());
+		attributes.setAttribute("holder", new Holder());
+		attributes.setAttribute(longText + "holder", new Holder());
+		session.setMaxInactiveInterval(1234);
+
+		Session other = manager.createSession();
+		other.getSession().setAttribute("after", "still readable");
+
+		check(new BinarySessionCodec(), new BinarySessionCodec(),
+				manager, session, other);
+		check(new SerializedSessionCodec(), new SerializedSessionCodec(),
+				manager, session, other);
+		check(new BinarySessionCodec(), new SerializedSessionCodec(),
+				manager, session, other);
+		check(new SerializedSessionCodec(), new BinarySessionCodec(),
+				manager, session, other);
+
+		System.out.println((failures == 0) ? "All round trips OK"
+				: failures + " failures");
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Write the sessions with one codec, read them back with another, and
+	 * compare the results with the originals.
+	 */
+	private static void check(SessionCodec writer, SessionCodec reader,
+			StandardManager manager, Session session, Session other)
+			throws Exception {
+		String label = writer.getClass().getName() + " -> "
+				+ reader.getClass().getName() + ": ";
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream output = new ObjectOutputStream(bytes);
+		writer.writeSession(session, output);
+		writer.writeSession(other, output);
+		output.writeObject("trailer");
+		output.close();
+
+		ObjectInputStream input = new ObjectInputStream
+				(new ByteArrayInputStream(bytes.toByteArray()));
+		Session copy = manager.createSession();
+		reader.readSession(copy, input);
+		Session otherCopy = manager.createSession();
+		reader.readSession(otherCopy, input);
+		Object trailer = input.readObject();
+		input.close();
+
+		HttpSession expected = session.getSession();
+		HttpSession actual = copy.getSession();
+		expect(label + "id", session.getId(), copy.getId());
+		expect(label + "creation time", new Long(session.getCreationTime()),
+				new Long(copy.getCreationTime()));
+		expect(label + "max inactive interval",
+				new Integer(session.getMaxInactiveInterval()),
+				new Integer(copy.getMaxInactiveInterval()));
+		String names[] = {"string", "empty", "longString", "integer", "long",
+				"true", "false", "double", "float", "short", "byte",
+				"character", "bytes", "date", longText};
+		for (int i = 0; i < names.length; i++)
+			expect(label + abbreviate(names[i]),
+					expected.getAttribute(names[i]),
+					actual.getAttribute(names[i]));
+		expect(label + "notSerializable", null,
+				actual.getAttribute("notSerializable"));
+		expect(label + "holder", null, actual.getAttribute("holder"));
+		expect(label + "long name holder", null,
+				actual.getAttribute(longText + "holder"));
+		expect(label + "next session", "still readable",
+				otherCopy.getSession().getAttribute("after"));
+		expect(label + "trailer", "trailer", trailer);
+	}
+
+	private static String abbreviate(String name) {
+		return ((name.length() > 20)
+				? name.length() + " character name" : name);
+	}
+
+	private static void expect(String what, Object expected, Object actual) {
+		boolean equal = (expected == null) ? (actual == null)
+				: ((expected instanceof byte[]) && (actual instanceof byte[]))
+				? Arrays.equals((byte[]) expected, (byte[]) actual)
+				: expected.equals(actual);
+		if (!equal) {
+			failures++;
+			System.out.println("FAILED " + what + ": expected " + expected
+					+ ", got " + actual);
+		}
+	}
+}
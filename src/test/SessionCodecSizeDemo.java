@@ -0,0 +1,60 @@
+package test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.session.BinarySessionCodec;
+import org.apache.catalina.session.SerializedSessionCodec;
+import org.apache.catalina.session.SessionCodec;
+import org.apache.catalina.session.StandardManager;
+
+/**
+ * Compares the number of bytes BinarySessionCodec and SerializedSessionCodec
+ * write for the same sessions, each holding a few typical attributes.
+ * <p>
+ * Usage: <code>java test.SessionCodecSizeDemo [sessions]</code>
+ */
+public class SessionCodecSizeDemo {
+
+	public static void main(String[] args) throws Exception {
+		int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+
+		StandardContext context = new StandardContext();
+		context.setPath("/demo");
+		StandardManager manager = new StandardManager();
+		manager.setContainer(context);
+		Session sessions[] = new Session[count];
+		for (int i = 0; i < count; i++) {
+			sessions[i] = manager.createSession();
+			sessions[i].getSession().setAttribute("user", "user" + i);
+			sessions[i].getSession().setAttribute("count", new Integer(i));
+			sessions[i].getSession().setAttribute("flag", Boolean.TRUE);
+			sessions[i].getSession().setAttribute("time",
+					new Long(System.currentTimeMillis()));
+			sessions[i].getSession().setAttribute("blob", new byte[]{1, 2, 3});
+		}
+
+		int binary = write(new BinarySessionCodec(), sessions);
+		int serialized = write(new SerializedSessionCodec(), sessions);
+		System.out.println(count + " sessions: binary " + binary
+				+ " bytes, serialized " + serialized + " bytes ("
+				+ (100 - binary * 100 / serialized) + "% smaller)");
+	}
+
+	/**
+	 * Write the sessions to a single stream, as StandardManager does when
+	 * it saves them, and return the number of bytes written.
+	 */
+	private static int write(SessionCodec codec, Session sessions[])
+			throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream stream = new ObjectOutputStream(bytes);
+		stream.writeObject(new Integer(sessions.length));
+		for (int i = 0; i < sessions.length; i++)
+			codec.writeSession(sessions[i], stream);
+		stream.close();
+		return (bytes.size());
+	}
+}
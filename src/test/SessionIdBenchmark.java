@@ -0,0 +1,90 @@
+package test;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Random;
+
+import org.apache.catalina.util.SessionIdGenerator;
+
+/**
+ * Measures how many session identifiers per second a number of threads
+ * get from SessionIdGenerator, and from the synchronized, digest based
+ * generation ManagerBase used before it.
+ * <p>
+ * Usage: <code>java test.SessionIdBenchmark [threads] [ids per thread]</code>
+ */
+public class SessionIdBenchmark {
+
+	/**
+	 * Generation of the previous ManagerBase: one seeded Random and one
+	 * MessageDigest shared by all the callers.
+	 */
+	static class LegacyGenerator {
+
+		private Random random = new SecureRandom();
+
+		private MessageDigest digest;
+
+		LegacyGenerator() throws Exception {
+			digest = MessageDigest.getInstance("MD5");
+			random.setSeed(System.currentTimeMillis());
+		}
+
+		synchronized String generateSessionId() {
+			byte bytes[] = new byte[16];
+			random.nextBytes(bytes);
+			bytes = digest.digest(bytes);
+			StringBuffer result = new StringBuffer();
+			for (int i = 0; i < bytes.length; i++) {
+				byte b1 = (byte) ((bytes[i] & 0xf0) >> 4);
+				byte b2 = (byte) (bytes[i] & 0x0f);
+				result.append((char) ((b1 < 10) ? '0' + b1 : 'A' + (b1 - 10)));
+				result.append((char) ((b2 < 10) ? '0' + b2 : 'A' + (b2 - 10)));
+			}
+			return (result.toString());
+		}
+
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+		final int count = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+
+		final LegacyGenerator legacy = new LegacyGenerator();
+		final SessionIdGenerator generator = new SessionIdGenerator();
+		for (int round = 0; round < 3; round++) {
+			long before = run(threads, count, new Runnable() {
+				public void run() {
+					for (int i = 0; i < count; i++)
+						legacy.generateSessionId();
+				}
+			});
+			long after = run(threads, count, new Runnable() {
+				public void run() {
+					for (int i = 0; i < count; i++)
+						generator.generateSessionId();
+				}
+			});
+			System.out.println(threads + " threads: before " + before
+					+ " ids/s, after " + after + " ids/s");
+		}
+	}
+
+	/**
+	 * Run the work on the specified number of threads, and return the
+	 * number of identifiers generated per second.
+	 */
+	private static long run(int threads, int count, Runnable work)
+			throws InterruptedException {
+		Thread workers[] = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+			workers[i] = new Thread(work);
+		long start = System.nanoTime();
+		for (int i = 0; i < threads; i++)
+			workers[i].start();
+		for (int i = 0; i < threads; i++)
+			workers[i].join();
+		long elapsed = Math.max(System.nanoTime() - start, 1L);
+		return ((long) threads * count * 1000000000L / elapsed);
+	}
+}